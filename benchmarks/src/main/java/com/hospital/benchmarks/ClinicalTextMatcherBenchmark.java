@@ -0,0 +1,165 @@
+package com.hospital.benchmarks;
+
+import com.hospital.services.coding.ClinicalTextMatcher;
+import com.hospital.services.coding.CodeCandidate;
+import com.hospital.services.coding.CodeSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares code suggestion from clinical text before and after {@link ClinicalTextMatcher}.
+ *
+ * <p>{@code legacyKeywordChain} reproduces the former {@code contains()} chains of
+ * {@code AssignCodesDelegate} (a handful of keywords); {@code legacyContainsDictionary}
+ * is what they cost once grown to every term of the dictionary. {@code match}
+ * finds all terms of the dictionary for ICD-10, TUSS and CBHPM. Note lengths range from a
+ * diagnosis line to an evolution note and a discharge summary. {@code syntheticTerms}
+ * adds generated ICD-10 terms to the bundled dictionary, approaching the size of the real
+ * vocabularies: {@code match} should not slow down with it, {@code legacyContainsDictionary}
+ * grows with every term.</p>
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar ClinicalTextMatcherBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ClinicalTextMatcherBenchmark {
+
+    private static final String DICTIONARY = "coding/synonyms.tsv";
+
+    private static final String[] SENTENCES = {
+        "Paciente do sexo feminino, 67 anos, admitida no pronto socorro com dor torácica em aperto. ",
+        "Antecedentes de hipertensão arterial sistêmica, diabetes mellitus tipo 2 e dislipidemia. ",
+        "Nega tabagismo e etilismo. Refere dispneia aos médios esforços há duas semanas. ",
+        "Ao exame físico: regular estado geral, corada, hidratada, PA 170x100 mmHg, FC 98 bpm. ",
+        "Ausculta pulmonar com estertores crepitantes em base direita, sugestivo de pneumonia. ",
+        "Solicitados hemograma, glicemia, eletrocardiograma e radiografia de tórax. ",
+        "Evolui estável, sem febre, mantida antibioticoterapia e controle glicêmico. ",
+        "Programada avaliação da cardiologia e ecocardiograma antes da alta hospitalar. "
+    };
+
+    private static final String[] SYLLABLES = {
+        "ca", "ro", "te", "di", "mo", "pa", "ne", "cu", "la", "tri", "sa", "ve", "bo", "fi", "gu", "xo"
+    };
+
+    @Param({"200", "2000", "20000"})
+    private int noteLength;
+
+    @Param({"0", "50000"})
+    private int syntheticTerms;
+
+    private ClinicalTextMatcher matcher;
+    private String note;
+    private List<String> dictionaryTerms;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder dictionary;
+        try (InputStream in = new ClassPathResource(DICTIONARY).getInputStream()) {
+            dictionary = new StringBuilder(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < syntheticTerms; i++) {
+            dictionary.append("\nICD10\tX").append(i).append("\t0.5\tSintético\t")
+                .append(word(random)).append(' ').append(word(random));
+        }
+        matcher = new ClinicalTextMatcher(new ByteArrayResource(
+            dictionary.toString().getBytes(StandardCharsets.UTF_8), "benchmark dictionary"));
+
+        StringBuilder text = new StringBuilder(noteLength + 128);
+        for (int i = 0; text.length() < noteLength; i++) {
+            text.append(SENTENCES[i % SENTENCES.length]);
+        }
+        note = text.substring(0, noteLength);
+
+        dictionaryTerms = new ArrayList<>();
+        for (String line : dictionary.toString().split("\n")) {
+            if (!line.isBlank() && !line.startsWith("#")) {
+                for (String term : line.split("\t")[4].split("\\|")) {
+                    dictionaryTerms.add(term.toLowerCase());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int legacyKeywordChain() {
+        int found = 0;
+        String lower = note.toLowerCase();
+        if (lower.contains("hipertens") || lower.contains("pressão alta")) {
+            found++;
+        } else if (lower.contains("diabetes")) {
+            found++;
+        } else if (lower.contains("pneumonia")) {
+            found++;
+        }
+        String procedureLower = note.toLowerCase();
+        if (procedureLower.contains("consulta") || procedureLower.contains("avaliação")) {
+            found++;
+        } else if (procedureLower.contains("cirurgia") || procedureLower.contains("operação")) {
+            found++;
+        } else if (procedureLower.contains("exame") || procedureLower.contains("análise")) {
+            found++;
+        }
+        String cbhpmLower = note.toLowerCase();
+        if (cbhpmLower.contains("consulta")) {
+            found++;
+        } else if (cbhpmLower.contains("cirurgia")) {
+            found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int legacyContainsDictionary() {
+        int found = 0;
+        String lower = note.toLowerCase();
+        for (String term : dictionaryTerms) {
+            if (lower.contains(term)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int match() {
+        List<CodeCandidate> diagnoses = matcher.match(CodeSystem.ICD10, note);
+        List<CodeCandidate> procedures = matcher.match(CodeSystem.TUSS, note);
+        List<CodeCandidate> fees = matcher.match(CodeSystem.CBHPM, note);
+        return diagnoses.size() + procedures.size() + fees.size();
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 2 + random.nextInt(3); i > 0; i--) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+}
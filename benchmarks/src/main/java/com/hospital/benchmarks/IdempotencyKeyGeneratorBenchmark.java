@@ -0,0 +1,151 @@
+package com.hospital.benchmarks;
+
+import com.hospital.services.idempotency.IdempotencyKeyGenerator;
+import com.hospital.services.idempotency.IdempotencyKeyHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares idempotency key derivation before and after {@link IdempotencyKeyHasher}.
+ *
+ * <p>The {@code legacy*} benchmarks reproduce the previous implementation (a new
+ * {@link MessageDigest} per call, string concatenation, stream sorting and
+ * {@code Integer.toHexString} hex encoding). Run with {@code -prof gc} to compare
+ * allocation rates:</p>
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar IdempotencyKeyGeneratorBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class IdempotencyKeyGeneratorBenchmark {
+
+    private String invoiceId;
+    private String transactionReference;
+    private Map<String, Object> variables;
+    private String patientId;
+    private String authorizationNumber;
+    private List<String> icd10Codes;
+    private Double totalCharges;
+
+    @Setup
+    public void setUp() {
+        invoiceId = "INV-2025-000123";
+        transactionReference = "TX-8f14e45f-ceea-467a-9af8-2d1c3f5a9b11";
+
+        variables = new HashMap<>();
+        variables.put("patientCPF", "12345678900");
+        variables.put("appointmentDate", "2025-01-15");
+        variables.put("doctorId", "DOC123");
+        variables.put("attempt", 3L);
+        variables.put("amount", 1500.75);
+
+        patientId = "PAT-000987";
+        authorizationNumber = "AUTH-2025-554433";
+        icd10Codes = List.of("J18.9", "E11.9", "I10", "N39.0");
+        totalCharges = 12850.40;
+    }
+
+    @Benchmark
+    public String legacyComponents() {
+        return legacyHash(String.join("|", "PAYMENT_PROCESSING", invoiceId, transactionReference));
+    }
+
+    @Benchmark
+    public String components() {
+        return IdempotencyKeyGenerator.generatePaymentProcessingKey(invoiceId, transactionReference);
+    }
+
+    @Benchmark
+    public byte[] componentsRaw() {
+        return IdempotencyKeyGenerator.generateRawFromComponents("PAYMENT_PROCESSING", invoiceId, transactionReference);
+    }
+
+    @Benchmark
+    public String legacyVariables() {
+        return legacyHash(variables.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .map(entry -> entry.getKey() + "=" + String.valueOf(entry.getValue()))
+            .collect(Collectors.joining("|")));
+    }
+
+    @Benchmark
+    public String variables() {
+        return IdempotencyKeyGenerator.generateFromVariables(variables);
+    }
+
+    @Benchmark
+    public String legacyClaimKey() {
+        StringBuilder keyBuilder = new StringBuilder();
+        keyBuilder.append("patient:").append(patientId);
+        keyBuilder.append("|auth:").append(authorizationNumber);
+        List<String> codes = new ArrayList<>(icd10Codes);
+        Collections.sort(codes);
+        keyBuilder.append("|icd10:").append(String.join(",", codes));
+        keyBuilder.append("|charges:").append(totalCharges != null ? totalCharges : 0.0);
+        return legacyHash(keyBuilder.toString());
+    }
+
+    @Benchmark
+    public String claimKey() {
+        IdempotencyKeyHasher hasher = IdempotencyKeyHasher.start()
+            .append("patient:").append(patientId)
+            .append("|auth:").append(authorizationNumber)
+            .append("|icd10:");
+        Object[] codes = icd10Codes.toArray();
+        Arrays.sort(codes);
+        for (int i = 0; i < codes.length; i++) {
+            if (i > 0) {
+                hasher.append(',');
+            }
+            hasher.append(codes[i]);
+        }
+        return hasher.append("|charges:").append(totalCharges != null ? totalCharges : 0.0).toHex();
+    }
+
+    private static String legacyHash(String input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hexString = new StringBuilder();
+            for (byte b : hashBytes) {
+                String hex = Integer.toHexString(0xff & b);
+                if (hex.length() == 1) {
+                    hexString.append('0');
+                }
+                hexString.append(hex);
+            }
+            return hexString.toString();
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.hospital.benchmarks;
+
+import com.hospital.services.idempotency.EncodedResult;
+import com.hospital.services.idempotency.IdempotencyCleanupEngine;
+import com.hospital.services.idempotency.IdempotencyClaim;
+import com.hospital.services.idempotency.IdempotencyKeyJdbcRepository;
+import com.hospital.services.idempotency.IdempotencyPartitionManager;
+import com.hospital.services.idempotency.IdempotencyStore;
+import com.hospital.services.idempotency.JdbcIdempotencyStore;
+import com.hospital.services.idempotency.OffHeapIdempotencyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the throughput of the {@link IdempotencyStore} backends.
+ *
+ * <p>{@code execute} is the path of a new operation (claim, then record the result);
+ * {@code replay} claims a key that has already completed. The JDBC store runs against
+ * an in-memory H2 database, so its numbers are a lower bound on statement overhead, not
+ * on network round-trips. Each iteration starts from a fresh store.</p>
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar IdempotencyStoreBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+@Threads(4)
+public class IdempotencyStoreBenchmark {
+
+    private static final String OPERATION_TYPE = "PAYMENT_PROCESSING";
+    private static final int REPLAY_KEYS = 10_000;
+
+    @Param({"jdbc", "off-heap"})
+    private String backend;
+
+    private IdempotencyStore store;
+    private EmbeddedDatabase database;
+    private EncodedResult result;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        if ("jdbc".equals(backend)) {
+            database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema/idempotency_keys.sql")
+                .build();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(database);
+            IdempotencyKeyJdbcRepository repository =
+                new IdempotencyKeyJdbcRepository(jdbcTemplate, transactionManager);
+            store = new JdbcIdempotencyStore(
+                repository,
+                new IdempotencyPartitionManager(jdbcTemplate, repository, transactionManager, 7,
+                    IdempotencyPartitionManager.ExpiredPartitionAction.DROP),
+                new IdempotencyCleanupEngine(jdbcTemplate, transactionManager, new SimpleMeterRegistry(),
+                    1000, 0, Duration.ofMinutes(1)));
+        } else {
+            store = new OffHeapIdempotencyStore(DataSize.ofGigabytes(1));
+        }
+
+        byte[] payload = new byte[96];
+        ThreadLocalRandom.current().nextBytes(payload);
+        result = new EncodedResult("com.hospital.model.PaymentResult", payload, null);
+
+        for (int i = 0; i < REPLAY_KEYS; i++) {
+            IdempotencyClaim claim = claim(replayKey(i));
+            store.markCompleted(claim.getKey().getId(), claim.getKey().getFencingToken(), result);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        if (database != null) {
+            database.shutdown();
+            database = null;
+        }
+    }
+
+    @Benchmark
+    public boolean execute() {
+        IdempotencyClaim claim = claim("new-" + sequence.incrementAndGet());
+        return store.markCompleted(claim.getKey().getId(), claim.getKey().getFencingToken(), result);
+    }
+
+    @Benchmark
+    public IdempotencyClaim replay() {
+        return claim(replayKey(ThreadLocalRandom.current().nextInt(REPLAY_KEYS)));
+    }
+
+    private IdempotencyClaim claim(String operationKey) {
+        LocalDateTime now = LocalDateTime.now();
+        return store.claim(OPERATION_TYPE, operationKey, null, null, now, now.plusHours(24),
+            "benchmark", now.plusMinutes(2));
+    }
+
+    private static String replayKey(int index) {
+        return "replay-" + index;
+    }
+}
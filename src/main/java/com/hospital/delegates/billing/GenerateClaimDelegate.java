@@ -1,8 +1,8 @@
 package com.hospital.delegates.billing;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.services.idempotency.IdempotencyOutcome;
 import com.hospital.services.idempotency.IdempotencyService;
+import com.hospital.util.KeyHasher;
 import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.camunda.bpm.engine.delegate.JavaDelegate;
 import org.slf4j.Logger;
@@ -11,10 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import jakarta.inject.Named;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
@@ -39,9 +36,6 @@ public class GenerateClaimDelegate implements JavaDelegate {
     @Autowired
     private IdempotencyService idempotencyService;
 
-    @Autowired
-    private ObjectMapper objectMapper;
-
     @Override
     public void execute(DelegateExecution execution) throws Exception {
         LOGGER.info("Generating insurance claim for process instance: {}",
@@ -64,27 +58,18 @@ public class GenerateClaimDelegate implements JavaDelegate {
 
             LOGGER.debug("Idempotency key generated: {}", idempotencyKey);
 
-            // Execute with idempotency protection
-            String claimJson = idempotencyService.executeIdempotent(
+            // Execute with idempotency protection (replays are decoded straight into InsuranceClaim)
+            IdempotencyOutcome<InsuranceClaim> outcome = idempotencyService.executeWithOutcome(
                 OPERATION_TYPE,
                 idempotencyKey,
-                () -> {
-                    try {
-                        // Generate new claim (only executed if not duplicate)
-                        InsuranceClaim newClaim = generateClaimInternal(
-                            patientId, authorizationNumber, icd10Codes, cptCodes, totalCharges);
-                        return objectMapper.writeValueAsString(newClaim);
-                    } catch (JsonProcessingException e) {
-                        throw new RuntimeException("Failed to serialize claim", e);
-                    }
-                }
+                InsuranceClaim.class,
+                () -> generateClaimInternal(
+                    patientId, authorizationNumber, icd10Codes, cptCodes, totalCharges)
             );
+            InsuranceClaim claim = outcome.getValue();
 
-            // Deserialize claim from JSON
-            InsuranceClaim claim = objectMapper.readValue(claimJson, InsuranceClaim.class);
-
-            // Check if this was a duplicate attempt
-            boolean isDuplicate = idempotencyService.getStoredResult(OPERATION_TYPE, idempotencyKey).isPresent();
+            // A duplicate attempt is one answered with the result of an earlier generation
+            boolean isDuplicate = outcome.isReplayed();
 
             // Set output variables
             execution.setVariable("claimId", claim.claimId);
@@ -97,15 +82,15 @@ public class GenerateClaimDelegate implements JavaDelegate {
 
             if (isDuplicate) {
                 LOGGER.warn("DUPLICATE CLAIM PREVENTED - Returned existing claim for authorization: {}, " +
-                    "Claim ID: {}, Original generation: {}",
-                    authorizationNumber, claim.claimId, claim.generationDate);
+                    "Claim ID: {}, Original generation: {}, Stored at: {}",
+                    authorizationNumber, claim.claimId, claim.generationDate, outcome.getStoredAt());
 
                 // Audit log for compliance
                 execution.setVariable("claimAuditNote",
                     "Duplicate claim generation attempt prevented by idempotency control");
             } else {
-                LOGGER.info("NEW CLAIM GENERATED - Claim ID: {}, Number: {}, Amount: {}",
-                    claim.claimId, claim.claimNumber, claim.totalAmount);
+                LOGGER.info("NEW CLAIM GENERATED - Claim ID: {}, Number: {}, Amount: {}, Outcome: {}",
+                    claim.claimId, claim.claimNumber, claim.totalAmount, outcome.getStatus());
             }
 
         } catch (Exception e) {
@@ -128,32 +113,31 @@ public class GenerateClaimDelegate implements JavaDelegate {
     private String generateClaimIdempotencyKey(String patientId, String authNumber,
                                                 Object icd10Codes, Double charges) {
         try {
-            StringBuilder keyBuilder = new StringBuilder();
-            keyBuilder.append("patient:").append(patientId != null ? patientId : "");
-            keyBuilder.append("|auth:").append(authNumber != null ? authNumber : "");
-
-            // Sort ICD-10 codes for consistent ordering
+            // Sort ICD-10 codes for consistent ordering, before the key is started
+            Object[] codes = null;
             if (icd10Codes instanceof List) {
-                List<String> codes = new ArrayList<>((List<String>) icd10Codes);
-                Collections.sort(codes);
-                keyBuilder.append("|icd10:").append(String.join(",", codes));
+                codes = ((List<?>) icd10Codes).toArray();
+                Arrays.sort(codes);
             }
 
-            keyBuilder.append("|charges:").append(charges != null ? charges : 0.0);
-
-            // Generate SHA-256 hash
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(keyBuilder.toString().getBytes(StandardCharsets.UTF_8));
+            KeyHasher hasher = KeyHasher.start()
+                .append("patient:").append(patientId != null ? patientId : "")
+                .append("|auth:").append(authNumber != null ? authNumber : "");
 
-            // Convert to hex string
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+            if (codes != null) {
+                hasher.append("|icd10:");
+                for (int i = 0; i < codes.length; i++) {
+                    if (i > 0) {
+                        hasher.append(',');
+                    }
+                    hasher.append(codes[i]);
+                }
             }
 
-            return hexString.toString();
+            hasher.append("|charges:").append(charges != null ? charges : 0.0);
+
+            // SHA-256 hex of the fields above
+            return hasher.toHex();
 
         } catch (Exception e) {
             LOGGER.error("Error generating idempotency key: {}", e.getMessage(), e);
@@ -0,0 +1,110 @@
+package com.hospital.delegates.coding;
+
+import org.camunda.bpm.engine.delegate.BpmnError;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+import org.camunda.bpm.engine.delegate.JavaDelegate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.hospital.delegates.coding.exceptions.CodingException;
+import com.hospital.services.coding.BatchCodingService;
+import com.hospital.services.coding.BatchCodingSummary;
+import com.hospital.services.coding.CodingRequest;
+import com.hospital.services.coding.CodingResult;
+
+import jakarta.inject.Named;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codes a whole lot of encounters in one service task, e.g. the backlog waiting for
+ * SUB_05 coding audit after a TASY outage
+ *
+ * Input:
+ * - encounterBatch: list of encounters, each a map with the variables read by
+ *   {@link AssignCodesDelegate} (medicalRecordId, patientId, diagnosisDescription,
+ *   procedureDescription, procedureDate, comorbidities)
+ *
+ * Output:
+ * - batchCodingTotal, batchCodingCoded, batchCodingAutoApproved,
+ *   batchCodingReviewCount, batchCodingFailedCount, batchCodingElapsedMs
+ * - batchCodingReviewEncounterIds: encounters coded below the auto-approve confidence
+ * - batchCodingFailures: errors by encounter id
+ *
+ * Encounters that cannot be coded are reported and do not fail the task; a database
+ * error does, and the task can be retried since the groupings are replaced.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Component
+@Named("batchAssignCodesDelegate")
+public class BatchAssignCodesDelegate implements JavaDelegate {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchAssignCodesDelegate.class);
+
+    @Autowired
+    private BatchCodingService batchCodingService;
+
+    @Override
+    public void execute(DelegateExecution execution) throws Exception {
+        String processInstanceId = execution.getProcessInstanceId();
+
+        try {
+            List<Map<String, Object>> encounters = extractEncounters(execution);
+            LOGGER.info("[CODING] Starting batch code assignment - Process: {}, Encounters: {}",
+                processInstanceId, encounters.size());
+
+            BatchCodingSummary summary = batchCodingService.codeAll(
+                encounters.stream().map(BatchAssignCodesDelegate::toRequest));
+
+            execution.setVariable("batchCodingTotal", summary.getTotal());
+            execution.setVariable("batchCodingCoded", summary.getCoded());
+            execution.setVariable("batchCodingAutoApproved", summary.getAutoApproved());
+            execution.setVariable("batchCodingReviewCount", summary.getRequiresReview());
+            execution.setVariable("batchCodingFailedCount", summary.getFailed());
+            execution.setVariable("batchCodingReviewEncounterIds", new ArrayList<>(summary.getReviewEncounterIds()));
+            execution.setVariable("batchCodingFailures", new LinkedHashMap<>(summary.getFailures()));
+            execution.setVariable("batchCodingElapsedMs", summary.getElapsedMillis());
+
+            LOGGER.info("[CODING] Batch code assignment completed - Process: {}, Coded: {}/{}, Review: {}, Failed: {}",
+                processInstanceId, summary.getCoded(), summary.getTotal(), summary.getRequiresReview(),
+                summary.getFailed());
+
+        } catch (CodingException e) {
+            LOGGER.error("[CODING] Batch coding error - Process: {}, Error: {}", processInstanceId, e.toString());
+            execution.setVariable("codingError", e.getMessage());
+            execution.setVariable("codingErrorCode", e.getErrorCode());
+            throw new BpmnError("CODING_ERROR", e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> extractEncounters(DelegateExecution execution) {
+        Object encounters = execution.getVariable("encounterBatch");
+        if (!(encounters instanceof List) || ((List<?>) encounters).isEmpty()) {
+            throw new CodingException("Encounter batch is required",
+                CodingResult.INPUT_VALIDATION_ERROR, "GENERAL", null);
+        }
+        return (List<Map<String, Object>>) encounters;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CodingRequest toRequest(Map<String, Object> encounter) {
+        List<String> comorbidities = (List<String>) encounter.get("comorbidities");
+
+        return CodingRequest.builder()
+            .encounterId((String) encounter.get("medicalRecordId"))
+            .patientId((String) encounter.get("patientId"))
+            .diagnosisDescription((String) encounter.get("diagnosisDescription"))
+            .procedureDescription((String) encounter.get("procedureDescription"))
+            .procedureDate((String) encounter.get("procedureDate"))
+            .comorbidities(comorbidities != null ? comorbidities : new ArrayList<>())
+            .build();
+    }
+}
@@ -4,9 +4,16 @@ import org.camunda.bpm.engine.delegate.DelegateExecution;
 import org.camunda.bpm.engine.delegate.JavaDelegate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.hospital.services.coding.CodeCatalog;
+import com.hospital.services.coding.CodeCatalogService;
+import com.hospital.services.coding.CodeSystem;
+
 import jakarta.inject.Named;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,6 +32,9 @@ public class ValidateCodesDelegate implements JavaDelegate {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ValidateCodesDelegate.class);
 
+    @Autowired
+    private CodeCatalogService codeCatalogService;
+
     @Override
     public void execute(DelegateExecution execution) throws Exception {
         LOGGER.info("Validating medical codes for process instance: {}",
@@ -37,11 +47,12 @@ public class ValidateCodesDelegate implements JavaDelegate {
             @SuppressWarnings("unchecked")
             List<String> tussCodes = (List<String>) execution.getVariable("tussCodes"); // FIX: Brazilian standard uses TUSS not CPT
             String primaryDiagnosisCode = (String) execution.getVariable("primaryDiagnosisCode");
+            LocalDate serviceDate = serviceDate((String) execution.getVariable("procedureDate"));
 
             LOGGER.debug("Validating codes - ICD-10: {}, TUSS: {}", icd10Codes, tussCodes);
 
             // Validate codes
-            ValidationResult validation = validateCodes(icd10Codes, tussCodes, primaryDiagnosisCode);
+            ValidationResult validation = validateCodes(icd10Codes, tussCodes, primaryDiagnosisCode, serviceDate);
 
             // Set output variables
             execution.setVariable("codesValid", validation.isValid);
@@ -61,7 +72,8 @@ public class ValidateCodesDelegate implements JavaDelegate {
         }
     }
 
-    private ValidationResult validateCodes(List<String> icd10, List<String> cpt, String primaryDx) {
+    private ValidationResult validateCodes(List<String> icd10, List<String> cpt, String primaryDx,
+                                           LocalDate serviceDate) {
         // Simulated code validation
         // TODO: Replace with actual medical code validation rules and compliance checks
         ValidationResult result = new ValidationResult();
@@ -86,11 +98,44 @@ public class ValidateCodesDelegate implements JavaDelegate {
             result.warnings.add("No primary diagnosis code specified");
         }
 
+        // Codes must exist in the code tables and be billable on the service date
+        CodeCatalog catalog = codeCatalogService.getCatalog();
+        checkCatalog(catalog, CodeSystem.ICD10, icd10, serviceDate, result);
+        checkCatalog(catalog, CodeSystem.TUSS, cpt, serviceDate, result);
+
         // Additional validation rules would go here
 
         return result;
     }
 
+    private void checkCatalog(CodeCatalog catalog, CodeSystem system, List<String> codes,
+                              LocalDate serviceDate, ValidationResult result) {
+        if (codes == null) {
+            return;
+        }
+        for (String code : codes) {
+            int ordinal = catalog.ordinal(system, code);
+            if (ordinal < 0) {
+                result.errors.add("Unknown " + system + " code: " + code);
+                result.isValid = false;
+            } else if (!catalog.isValid(ordinal, serviceDate)) {
+                result.errors.add(system + " code " + code + " not valid on " + serviceDate);
+                result.isValid = false;
+            }
+        }
+    }
+
+    private LocalDate serviceDate(String procedureDate) {
+        if (procedureDate != null && procedureDate.length() >= 10) {
+            try {
+                return LocalDate.parse(procedureDate.substring(0, 10));
+            } catch (DateTimeParseException e) {
+                LOGGER.warn("Invalid procedure date {}, validating codes for today", procedureDate);
+            }
+        }
+        return LocalDate.now();
+    }
+
     private static class ValidationResult {
         Boolean isValid;
         List<String> errors;
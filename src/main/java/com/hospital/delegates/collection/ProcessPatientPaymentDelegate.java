@@ -1,6 +1,7 @@
 package com.hospital.delegates.collection;
 
 import com.hospital.services.idempotency.IdempotencyException;
+import com.hospital.services.idempotency.IdempotencyOutcome;
 import com.hospital.services.idempotency.IdempotencyService;
 import com.hospital.services.idempotency.IdempotencyKeyGenerator;
 import org.camunda.bpm.engine.delegate.BpmnError;
@@ -58,7 +59,7 @@ public class ProcessPatientPaymentDelegate implements JavaDelegate {
             LOGGER.info("Generated idempotency key: {} for payment processing", idempotencyKey);
 
             // Execute payment with idempotency protection
-            PaymentResult result = executePaymentWithIdempotency(
+            IdempotencyOutcome<PaymentResult> outcome = executePaymentWithIdempotency(
                 idempotencyKey,
                 patientId,
                 patientBalance,
@@ -66,9 +67,11 @@ public class ProcessPatientPaymentDelegate implements JavaDelegate {
                 paymentMethod,
                 processInstanceId
             );
+            PaymentResult result = outcome.getValue();
 
             // Set output variables
             setOutputVariables(execution, result);
+            execution.setVariable("paymentDuplicateDetected", outcome.isReplayed());
 
             LOGGER.info("Payment processed successfully - Transaction: {}, Success: {}, Remaining balance: {}, Paid in full: {}",
                 result.transactionId, result.success, result.remainingBalance, result.paidInFull);
@@ -123,7 +126,7 @@ public class ProcessPatientPaymentDelegate implements JavaDelegate {
     /**
      * Execute payment with idempotency protection
      */
-    private PaymentResult executePaymentWithIdempotency(
+    private IdempotencyOutcome<PaymentResult> executePaymentWithIdempotency(
             String idempotencyKey,
             String patientId,
             Double patientBalance,
@@ -135,14 +138,21 @@ public class ProcessPatientPaymentDelegate implements JavaDelegate {
             // Execute payment with idempotency protection
             LOGGER.info("Executing payment with idempotency protection - Key: {}", idempotencyKey);
 
-            PaymentResult result = idempotencyService.executeIdempotent(
+            IdempotencyOutcome<PaymentResult> outcome = idempotencyService.executeWithOutcome(
                 "PAYMENT",
                 idempotencyKey,
+                PaymentResult.class,
                 () -> processPaymentInternal(patientId, patientBalance, paymentAmount, paymentMethod, processInstanceId)
             );
 
-            LOGGER.info("Payment execution completed - Transaction: {}", result.transactionId);
-            return result;
+            if (outcome.isReplayed()) {
+                LOGGER.warn("DUPLICATE PAYMENT PREVENTED - Returned existing transaction: {}, originally processed: {}",
+                    outcome.getValue().transactionId, outcome.getStoredAt());
+            } else {
+                LOGGER.info("Payment execution completed - Transaction: {}, Outcome: {}, Attempts: {}",
+                    outcome.getValue().transactionId, outcome.getStatus(), outcome.getAttempts());
+            }
+            return outcome;
 
         } catch (IdempotencyException e) {
             LOGGER.error("Idempotency violation detected - Key: {}, Type: {}",
@@ -6,6 +6,10 @@ import java.time.LocalDateTime;
 /**
  * Entity to track idempotency of operations
  * Prevents duplicate execution of critical operations like payments
+ *
+ * <p>Legacy: the idempotency service does not use this entity. Idempotent operations are
+ * tracked through {@link com.hospital.services.idempotency.IdempotencyStore}, which new
+ * code should use instead.</p>
  */
 @Entity
 @Table(name = "idempotency_records",
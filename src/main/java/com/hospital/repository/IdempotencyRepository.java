@@ -14,6 +14,10 @@ import java.util.Optional;
 
 /**
  * Repository for managing idempotency records
+ *
+ * <p>Legacy: the idempotency service does not use this repository. Idempotent operations are
+ * tracked through {@link com.hospital.services.idempotency.IdempotencyStore}, which new
+ * code should use instead.</p>
  */
 @Repository
 public interface IdempotencyRepository extends JpaRepository<IdempotencyRecord, Long> {
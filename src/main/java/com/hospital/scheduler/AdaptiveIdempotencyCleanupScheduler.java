@@ -0,0 +1,281 @@
+package com.hospital.scheduler;
+
+import com.hospital.services.idempotency.IdempotencyCleanupEngine;
+import com.hospital.services.idempotency.IdempotencyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cleans up expired idempotency keys at a cadence that follows the backlog, instead of the
+ * fixed cron and fixed-rate jobs of {@link IdempotencyCleanupScheduler}.
+ *
+ * <p>Before each run the backlog is sampled with a count capped at
+ * {@code idempotency.cleanup.adaptive.sample-limit}, and one of four decisions is taken:</p>
+ * <ul>
+ *   <li>{@code backoff} - the database is under pressure: the last chunks took longer than
+ *       {@code latency-threshold} on average, or threads are waiting for a pooled
+ *       connection ({@code hikaricp.connections.pending}). The interval doubles and the
+ *       chunk size halves.</li>
+ *   <li>{@code accelerate} - at least one chunk of keys is waiting: the interval halves and
+ *       the chunk size doubles.</li>
+ *   <li>{@code relax} - nothing is waiting: the interval doubles and no cleanup runs.</li>
+ *   <li>{@code steady} - otherwise.</li>
+ * </ul>
+ *
+ * <p>Interval and chunk size always stay within their configured bounds. The cleanup
+ * itself runs under the {@code idempotencyCleanup} lock, or shard by shard when
+ * {@code idempotency.cleanup.shards} is above 1 (see {@link IdempotencyCleanupShards}).
+ * Every node samples and decides on its own, on a dedicated thread.</p>
+ *
+ * <p>Published meters: {@code idempotency.cleanup.adaptive.decisions} (counter, per
+ * {@code decision}), {@code idempotency.cleanup.adaptive.interval} (seconds),
+ * {@code idempotency.cleanup.adaptive.chunk_size} and
+ * {@code idempotency.cleanup.adaptive.backlog} (gauges, as of the last decision).</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class AdaptiveIdempotencyCleanupScheduler {
+
+    private static final String LOCK_NAME = "idempotencyCleanup";
+    private static final Duration LOCK_AT_MOST_FOR = Duration.ofHours(4);
+
+    /**
+     * Decision taken before a run.
+     */
+    public enum Decision {
+        ACCELERATE,
+        STEADY,
+        RELAX,
+        BACKOFF
+    }
+
+    private final IdempotencyService idempotencyService;
+    private final IdempotencyCleanupEngine cleanupEngine;
+    private final IdempotencyCleanupShards cleanupShards;
+    private final LockProvider lockProvider;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final int sampleLimit;
+    private final Duration latencyThreshold;
+
+    private final Map<Decision, Counter> decisionCounters = new EnumMap<>(Decision.class);
+    private final AtomicLong intervalSeconds = new AtomicLong();
+    private final AtomicLong chunkSize = new AtomicLong();
+    private final AtomicLong lastBacklog = new AtomicLong();
+
+    private volatile Duration interval;
+    private ScheduledExecutorService cleanupExecutor;
+
+    public AdaptiveIdempotencyCleanupScheduler(
+            IdempotencyService idempotencyService,
+            IdempotencyCleanupEngine cleanupEngine,
+            IdempotencyCleanupShards cleanupShards,
+            LockProvider lockProvider,
+            MeterRegistry meterRegistry,
+            @Value("${idempotency.cleanup.adaptive.enabled:false}") boolean enabled,
+            @Value("${idempotency.cleanup.adaptive.min-interval:PT1M}") Duration minInterval,
+            @Value("${idempotency.cleanup.adaptive.max-interval:PT6H}") Duration maxInterval,
+            @Value("${idempotency.cleanup.adaptive.min-chunk-size:200}") int minChunkSize,
+            @Value("${idempotency.cleanup.adaptive.max-chunk-size:10000}") int maxChunkSize,
+            @Value("${idempotency.cleanup.adaptive.sample-limit:100000}") int sampleLimit,
+            @Value("${idempotency.cleanup.adaptive.latency-threshold:PT0.5S}") Duration latencyThreshold) {
+        if (minInterval.isZero() || minInterval.isNegative() || minInterval.compareTo(maxInterval) > 0
+                || minChunkSize < 1 || minChunkSize > maxChunkSize) {
+            throw new IllegalArgumentException("Invalid adaptive cleanup bounds: interval " + minInterval
+                + ".." + maxInterval + ", chunk size " + minChunkSize + ".." + maxChunkSize);
+        }
+        this.idempotencyService = idempotencyService;
+        this.cleanupEngine = cleanupEngine;
+        this.cleanupShards = cleanupShards;
+        this.lockProvider = lockProvider;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.sampleLimit = sampleLimit;
+        this.latencyThreshold = latencyThreshold;
+
+        this.interval = minInterval;
+        this.intervalSeconds.set(minInterval.toSeconds());
+        this.chunkSize.set(clamp(cleanupEngine.getChunkSize(), minChunkSize, maxChunkSize));
+
+        for (Decision decision : Decision.values()) {
+            decisionCounters.put(decision, Counter.builder("idempotency.cleanup.adaptive.decisions")
+                .description("Decisions of the adaptive idempotency cleanup")
+                .tag("decision", decision.name().toLowerCase())
+                .register(meterRegistry));
+        }
+        Gauge.builder("idempotency.cleanup.adaptive.interval", intervalSeconds, AtomicLong::get)
+            .description("Current interval of the adaptive idempotency cleanup, in seconds")
+            .register(meterRegistry);
+        Gauge.builder("idempotency.cleanup.adaptive.chunk_size", chunkSize, AtomicLong::get)
+            .description("Current chunk size of the adaptive idempotency cleanup")
+            .register(meterRegistry);
+        Gauge.builder("idempotency.cleanup.adaptive.backlog", lastBacklog, AtomicLong::get)
+            .description("Expired idempotency keys sampled before the last decision (capped)")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Whether the adaptive cleanup replaces the fixed jobs of {@link IdempotencyCleanupScheduler}.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        cleanupExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-adaptive-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleanupExecutor.schedule(this::runAndReschedule, minInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Adaptive idempotency cleanup started - interval: {}..{}, chunk size: {}..{}",
+                minInterval, maxInterval, minChunkSize, maxChunkSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (cleanupExecutor != null) {
+            cleanupExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Samples the backlog, adapts interval and chunk size, and cleans up if anything is waiting.
+     *
+     * @return the decision taken
+     */
+    public Decision runOnce() {
+        long backlog = idempotencyService.sampleExpiredBacklog(sampleLimit);
+        Decision decision = decide(backlog, underPressure());
+
+        int chunk = (int) chunkSize.get();
+        Duration next = interval;
+        switch (decision) {
+            case BACKOFF -> {
+                next = interval.multipliedBy(2);
+                chunk = chunk / 2;
+            }
+            case ACCELERATE -> {
+                next = interval.dividedBy(2);
+                chunk = chunk * 2;
+            }
+            case RELAX -> next = interval.multipliedBy(2);
+            case STEADY -> { }
+        }
+        interval = clamp(next, minInterval, maxInterval);
+        chunkSize.set(clamp(chunk, minChunkSize, maxChunkSize));
+        intervalSeconds.set(interval.toSeconds());
+        lastBacklog.set(backlog);
+        decisionCounters.get(decision).increment();
+        log.debug("Adaptive idempotency cleanup - backlog: {}, decision: {}, next interval: {}, chunk size: {}",
+                backlog, decision, interval, chunkSize.get());
+
+        if (backlog > 0) {
+            cleanupEngine.setChunkSize((int) chunkSize.get());
+            cleanup();
+        }
+        return decision;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public int getChunkSize() {
+        return (int) chunkSize.get();
+    }
+
+    Decision decide(long backlog, boolean underPressure) {
+        if (underPressure) {
+            return Decision.BACKOFF;
+        }
+        if (backlog == 0) {
+            return Decision.RELAX;
+        }
+        return backlog >= chunkSize.get() ? Decision.ACCELERATE : Decision.STEADY;
+    }
+
+    private boolean underPressure() {
+        if (cleanupEngine.getLastChunkLatency().compareTo(latencyThreshold) > 0) {
+            return true;
+        }
+        double pendingConnections = meterRegistry.find("hikaricp.connections.pending").gauges().stream()
+            .mapToDouble(Gauge::value)
+            .filter(value -> !Double.isNaN(value))
+            .sum();
+        return pendingConnections > 0;
+    }
+
+    private void cleanup() {
+        if (cleanupShards.isEnabled()) {
+            cleanupShards.cleanupAll();
+            return;
+        }
+        // Held at least until the earliest next run, so another node does not repeat it
+        Optional<SimpleLock> lock = lockProvider.lock(new LockConfiguration(
+            Instant.now(), LOCK_NAME, LOCK_AT_MOST_FOR, minInterval));
+        if (lock.isEmpty()) {
+            log.debug("Idempotency cleanup is running on another node");
+            return;
+        }
+        try {
+            idempotencyService.cleanupExpiredKeys();
+        } finally {
+            lock.get().unlock();
+        }
+    }
+
+    private void runAndReschedule() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            log.error("Adaptive idempotency cleanup failed: {}", e.getMessage(), e);
+        } finally {
+            if (!cleanupExecutor.isShutdown()) {
+                cleanupExecutor.schedule(this::runAndReschedule, interval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private static Duration clamp(Duration value, Duration min, Duration max) {
+        return value.compareTo(min) < 0 ? min : value.compareTo(max) > 0 ? max : value;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
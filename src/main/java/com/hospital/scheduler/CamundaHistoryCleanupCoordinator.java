@@ -0,0 +1,287 @@
+package com.hospital.scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.camunda.bpm.engine.HistoryService;
+import org.camunda.bpm.engine.ManagementService;
+import org.camunda.bpm.engine.OptimisticLockingException;
+import org.camunda.bpm.engine.runtime.Job;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs Camunda's removal-time-based history cleanup under ShedLock, in a maintenance window.
+ *
+ * <p>With {@code history-level: full}, the ACT_HI_* tables are the fastest growing tables
+ * of the application. Camunda's own cleanup schedule runs on every node, has no budget per
+ * run and reports no progress, so the engine is configured without a batch window
+ * ({@code camunda.bpm.generic-properties} in {@code application.yml}) and this coordinator
+ * drives the history cleanup jobs instead:</p>
+ * <ol>
+ *   <li>outside {@code history-cleanup.window-start} - {@code window-end} nothing happens</li>
+ *   <li>the backlog of every history table - rows whose {@code REMOVAL_TIME_} has passed -
+ *       is counted, up to {@code history-cleanup.backlog-sample-limit} rows per table</li>
+ *   <li>the cleanup jobs are executed one batch ({@code history-cleanup.batch-size} rows
+ *       per table) at a time until they report no more work, {@code max-batches} or
+ *       {@code max-duration} is reached, or the window closes</li>
+ *   <li>the backlog is counted again; the difference is what the run removed</li>
+ * </ol>
+ *
+ * <p>The jobs are kept suspended between batches, so the job executor never picks them up
+ * and the cleanup does not continue outside the window or the budget of the run.</p>
+ *
+ * <p>Removal times are set when a process instance ends. Instances that ended before the
+ * removal-time strategy was enabled have none and are not cleaned up by this coordinator.</p>
+ *
+ * <p>Published meters, per {@code table}: {@code camunda.history.cleanup.removed} (counter),
+ * {@code camunda.history.cleanup.backlog} and {@code camunda.history.cleanup.rows_per_second}
+ * (gauges, as of the last run); and {@code camunda.history.cleanup.run} (timer) and
+ * {@code camunda.history.cleanup.batches} (counter).</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class CamundaHistoryCleanupCoordinator {
+
+    /**
+     * History tables cleaned up by removal time.
+     */
+    static final List<String> HISTORY_TABLES = List.of(
+        "ACT_HI_PROCINST", "ACT_HI_ACTINST", "ACT_HI_TASKINST", "ACT_HI_VARINST", "ACT_HI_DETAIL",
+        "ACT_HI_IDENTITYLINK", "ACT_HI_COMMENT", "ACT_HI_ATTACHMENT", "ACT_HI_OP_LOG", "ACT_HI_INCIDENT",
+        "ACT_HI_JOB_LOG", "ACT_HI_EXT_TASK_LOG", "ACT_HI_BATCH", "ACT_HI_DECINST", "ACT_HI_DEC_IN",
+        "ACT_HI_DEC_OUT", "ACT_GE_BYTEARRAY");
+
+    private static final String BACKLOG_SQL =
+        "SELECT COUNT(*) FROM (SELECT 1 FROM %s WHERE REMOVAL_TIME_ <= ? LIMIT ?) backlog";
+
+    private final HistoryService historyService;
+    private final ManagementService managementService;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final LocalTime windowStart;
+    private final LocalTime windowEnd;
+    private final int maxBatches;
+    private final Duration maxDuration;
+    private final int backlogSampleLimit;
+
+    private final Timer runTimer;
+    private final Counter batchCounter;
+    private final Map<String, Counter> removedCounters = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> lastBacklog = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> lastRowsPerSecond = new LinkedHashMap<>();
+
+    public CamundaHistoryCleanupCoordinator(
+            HistoryService historyService,
+            ManagementService managementService,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${history-cleanup.enabled:true}") boolean enabled,
+            @Value("${history-cleanup.window-start:00:00}") String windowStart,
+            @Value("${history-cleanup.window-end:06:00}") String windowEnd,
+            @Value("${history-cleanup.max-batches:1000}") int maxBatches,
+            @Value("${history-cleanup.max-duration:PT1H}") Duration maxDuration,
+            @Value("${history-cleanup.backlog-sample-limit:1000000}") int backlogSampleLimit) {
+        this.historyService = historyService;
+        this.managementService = managementService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.windowStart = LocalTime.parse(windowStart);
+        this.windowEnd = LocalTime.parse(windowEnd);
+        this.maxBatches = maxBatches;
+        this.maxDuration = maxDuration;
+        this.backlogSampleLimit = backlogSampleLimit;
+
+        this.runTimer = Timer.builder("camunda.history.cleanup.run")
+            .description("Duration of a Camunda history cleanup run")
+            .register(meterRegistry);
+        this.batchCounter = Counter.builder("camunda.history.cleanup.batches")
+            .description("Camunda history cleanup job executions")
+            .register(meterRegistry);
+        for (String table : HISTORY_TABLES) {
+            removedCounters.put(table, Counter.builder("camunda.history.cleanup.removed")
+                .description("History rows removed by the cleanup")
+                .tag("table", table)
+                .register(meterRegistry));
+            AtomicLong backlog = new AtomicLong();
+            lastBacklog.put(table, backlog);
+            Gauge.builder("camunda.history.cleanup.backlog", backlog, AtomicLong::get)
+                .description("History rows past their removal time after the last cleanup run (sampled)")
+                .tag("table", table)
+                .register(meterRegistry);
+            AtomicLong rowsPerSecond = new AtomicLong();
+            lastRowsPerSecond.put(table, rowsPerSecond);
+            Gauge.builder("camunda.history.cleanup.rows_per_second", rowsPerSecond, AtomicLong::get)
+                .description("Removal rate of the last history cleanup run")
+                .tag("table", table)
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Cleans up the Camunda history - every 15 minutes during the maintenance window by default.
+     *
+     * <p><strong>Lock Configuration:</strong></p>
+     * <ul>
+     *   <li>Lock name: "camundaHistoryCleanup" (independent of the idempotency cleanup)</li>
+     *   <li>Max duration: 4 hours; {@code history-cleanup.max-duration} must stay below it</li>
+     *   <li>Min duration: 1 minute (prevents too-frequent executions)</li>
+     * </ul>
+     */
+    @Scheduled(cron = "${history-cleanup.cron:0 */15 0-5 * * ?}")
+    @SchedulerLock(
+        name = "camundaHistoryCleanup",
+        lockAtMostFor = "4h",
+        lockAtLeastFor = "1m"
+    )
+    public void cleanupHistory() {
+        try {
+            CleanupRun run = runCleanup();
+            if (run.isSkipped()) {
+                log.debug("Camunda history cleanup skipped - disabled or outside the maintenance window");
+            } else if (run.getRemoved() > 0 || !run.isCompleted()) {
+                log.info("Camunda history cleanup - {}", run);
+            } else {
+                log.debug("Camunda history cleanup - {}", run);
+            }
+
+        } catch (DataAccessException e) {
+            log.error("Database error during Camunda history cleanup: {}", e.getMessage(), e);
+            throw e; // Re-throw; batches executed so far are kept
+        }
+    }
+
+    /**
+     * Runs one cleanup if enabled and inside the maintenance window.
+     *
+     * @return the outcome of the run; {@link CleanupRun#isSkipped()} if nothing was done
+     */
+    public CleanupRun runCleanup() {
+        if (!enabled || !inWindow(LocalTime.now())) {
+            return CleanupRun.skipped();
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + maxDuration.toNanos();
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now());
+        Map<String, Long> backlogBefore = countBacklog(cutoff);
+
+        historyService.cleanUpHistoryAsync(true);
+        List<String> pending = new ArrayList<>();
+        for (Job job : historyService.findHistoryCleanupJobs()) {
+            managementService.suspendJobById(job.getId());
+            pending.add(job.getId());
+        }
+
+        int batches = 0;
+        while (!pending.isEmpty() && batches < maxBatches && System.nanoTime() < deadline
+                && inWindow(LocalTime.now()) && !Thread.currentThread().isInterrupted()) {
+            String jobId = pending.remove(0);
+            try {
+                managementService.executeJob(jobId);
+            } catch (OptimisticLockingException e) {
+                // Picked up by the job executor in the meantime; left to the next run
+                log.warn("History cleanup job {} was executed concurrently; stopping this run", jobId);
+                break;
+            }
+            batches++;
+            batchCounter.increment();
+
+            // The job suspends itself when it found nothing left to remove
+            Job job = managementService.createJobQuery().jobId(jobId).singleResult();
+            if (job != null && !job.isSuspended()) {
+                managementService.suspendJobById(jobId);
+                pending.add(jobId);
+            }
+        }
+
+        Map<String, Long> backlogAfter = countBacklog(cutoff);
+        long elapsedNanos = System.nanoTime() - start;
+        runTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        Map<String, Long> removedByTable = new LinkedHashMap<>();
+        long removed = 0;
+        for (String table : HISTORY_TABLES) {
+            // Lower bound when the backlog before the run exceeded the sample limit
+            long tableRemoved = Math.max(0, backlogBefore.get(table) - backlogAfter.get(table));
+            removedByTable.put(table, tableRemoved);
+            removed += tableRemoved;
+            removedCounters.get(table).increment(tableRemoved);
+            lastBacklog.get(table).set(backlogAfter.get(table));
+            lastRowsPerSecond.get(table).set(elapsedNanos > 0 ? tableRemoved * 1_000_000_000L / elapsedNanos : 0);
+        }
+
+        return new CleanupRun(false, pending.isEmpty(), batches, removed,
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos), removedByTable, backlogAfter);
+    }
+
+    /**
+     * Whether {@code time} falls in the maintenance window. The window may span midnight;
+     * equal start and end mean always open.
+     */
+    boolean inWindow(LocalTime time) {
+        if (windowStart.equals(windowEnd)) {
+            return true;
+        }
+        if (windowStart.isBefore(windowEnd)) {
+            return !time.isBefore(windowStart) && time.isBefore(windowEnd);
+        }
+        return !time.isBefore(windowStart) || time.isBefore(windowEnd);
+    }
+
+    /**
+     * Counts the rows past their removal time per table, up to the sample limit, so a huge
+     * backlog does not turn into a full index scan.
+     */
+    private Map<String, Long> countBacklog(Timestamp cutoff) {
+        Map<String, Long> backlog = new LinkedHashMap<>();
+        for (String table : HISTORY_TABLES) {
+            Long count = jdbcTemplate.queryForObject(String.format(BACKLOG_SQL, table), Long.class,
+                cutoff, backlogSampleLimit);
+            backlog.put(table, count != null ? count : 0);
+        }
+        return backlog;
+    }
+
+    /**
+     * Outcome of one history cleanup run.
+     */
+    @lombok.Value
+    public static class CleanupRun {
+        /** Whether the run was disabled or outside the maintenance window. */
+        boolean skipped;
+        /** Whether the cleanup jobs found nothing left to remove. */
+        boolean completed;
+        int batches;
+        long removed;
+        long durationMillis;
+        Map<String, Long> removedByTable;
+        /** Rows past their removal time left per table, capped at the sample limit. */
+        Map<String, Long> backlogByTable;
+
+        static CleanupRun skipped() {
+            return new CleanupRun(true, false, 0, 0, 0, Collections.emptyMap(), Collections.emptyMap());
+        }
+    }
+}
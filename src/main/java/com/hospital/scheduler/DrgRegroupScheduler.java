@@ -0,0 +1,44 @@
+package com.hospital.scheduler;
+
+import com.hospital.services.coding.DrgGrouperService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Regroups coded encounters after a new DRG table version is published.
+ *
+ * <p>Every node loads the new tables on its own; this job, locked by ShedLock so that one
+ * node runs it at a time, regroups the encounters still grouped with an older version.
+ * Most runs find nothing to do and cost one indexed query.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DrgRegroupScheduler {
+
+    private final DrgGrouperService drgGrouperService;
+
+    @Scheduled(
+        fixedDelayString = "${coding.drg.regroup.interval:PT5M}",
+        initialDelayString = "${coding.drg.regroup.interval:PT5M}"
+    )
+    @SchedulerLock(
+        name = "drgRegroup",
+        lockAtMostFor = "4h",
+        lockAtLeastFor = "1m"
+    )
+    public void regroupStaleEncounters() {
+        long startTime = System.currentTimeMillis();
+        int regrouped = drgGrouperService.regroupStale();
+        if (regrouped > 0) {
+            log.info("Regrouped {} encounters with DRG tables version {} in {}ms",
+                regrouped, drgGrouperService.getTableVersion(), System.currentTimeMillis() - startTime);
+        }
+    }
+}
@@ -7,7 +7,6 @@ import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.springframework.dao.DataAccessException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Scheduled task to clean up expired idempotency records.
@@ -22,6 +21,21 @@ import org.springframework.transaction.annotation.Transactional;
  *   <li>Both use the SAME lock name to prevent concurrent execution</li>
  * </ul>
  *
+ * <p>The jobs do not run in one long transaction: the cleanup commits in bounded chunks
+ * and stops before {@code idempotency.cleanup.max-duration}, which is kept below the
+ * 4-hour {@code lockAtMostFor}.</p>
+ *
+ * <p>With {@code idempotency.cleanup.shards} above 1, both jobs stand down and
+ * {@link #cleanupExpiredRecordsSharded()} runs on every node instead, each node cleaning
+ * up the shards it can lock (see {@link IdempotencyCleanupShards}).</p>
+ *
+ * <p>With {@code idempotency.cleanup.adaptive.enabled}, all three jobs stand down and
+ * {@link AdaptiveIdempotencyCleanupScheduler} sets the cadence from the backlog.</p>
+ *
+ * <p>Each node removes the keys it created as they expire and fails its own stuck keys
+ * within seconds ({@code IdempotencyExpiryTracker}), so these sweeps mostly catch what
+ * nodes that crashed or restarted left behind.</p>
+ *
  * @author Hospital Revenue Cycle System
  * @version 2.0.0
  */
@@ -31,6 +45,8 @@ import org.springframework.transaction.annotation.Transactional;
 public class IdempotencyCleanupScheduler {
 
     private final IdempotencyService idempotencyService;
+    private final IdempotencyCleanupShards cleanupShards;
+    private final AdaptiveIdempotencyCleanupScheduler adaptiveCleanup;
 
     /**
      * Clean up expired idempotency records - Daily schedule.
@@ -44,7 +60,6 @@ public class IdempotencyCleanupScheduler {
      *   <li>Min duration: 1 minute (prevents too-frequent executions)</li>
      * </ul>
      */
-    @Transactional(timeout = 14400) // 4 hour transaction timeout
     @Scheduled(cron = "${idempotency.cleanup.cron:0 0 2 * * ?}")
     @SchedulerLock(
         name = "idempotencyCleanup",
@@ -52,6 +67,9 @@ public class IdempotencyCleanupScheduler {
         lockAtLeastFor = "1m"
     )
     public void cleanupExpiredRecordsDaily() {
+        if (cleanupShards.isEnabled() || adaptiveCleanup.isEnabled()) {
+            return; // Sharded or adaptive cleanup runs instead
+        }
         log.debug("Starting daily cleanup of expired idempotency records");
         long startTime = System.currentTimeMillis();
 
@@ -68,11 +86,11 @@ public class IdempotencyCleanupScheduler {
 
         } catch (DataAccessException e) {
             log.error("Database error during daily cleanup: {}", e.getMessage(), e);
-            throw e; // Re-throw to trigger transaction rollback
+            throw e; // Re-throw; chunks committed so far are kept
 
         } catch (Exception e) {
             log.error("Unexpected error during daily cleanup: {}", e.getMessage(), e);
-            throw e; // Re-throw to trigger transaction rollback
+            throw e; // Re-throw; chunks committed so far are kept
         }
     }
 
@@ -93,7 +111,6 @@ public class IdempotencyCleanupScheduler {
      *   <li>Lock: Shared with daily cleanup (prevents collision)</li>
      * </ul>
      */
-    @Transactional(timeout = 14400) // 4 hour transaction timeout
     @Scheduled(
         fixedRateString = "${idempotency.cleanup.fixed-rate:21600000}",
         initialDelayString = "${idempotency.cleanup.initial-delay:3600000}"
@@ -104,6 +121,9 @@ public class IdempotencyCleanupScheduler {
         lockAtLeastFor = "1m"
     )
     public void cleanupExpiredRecordsFrequent() {
+        if (cleanupShards.isEnabled() || adaptiveCleanup.isEnabled()) {
+            return; // Sharded or adaptive cleanup runs instead
+        }
         log.debug("Starting frequent cleanup of expired idempotency records");
         long startTime = System.currentTimeMillis();
 
@@ -120,11 +140,66 @@ public class IdempotencyCleanupScheduler {
 
         } catch (DataAccessException e) {
             log.error("Database error during frequent cleanup: {}", e.getMessage(), e);
-            throw e; // Re-throw to trigger transaction rollback
+            throw e; // Re-throw; chunks committed so far are kept
 
         } catch (Exception e) {
             log.error("Unexpected error during frequent cleanup: {}", e.getMessage(), e);
-            throw e; // Re-throw to trigger transaction rollback
+            throw e; // Re-throw; chunks committed so far are kept
+        }
+    }
+
+    /**
+     * Clean up expired records by shard, on every node (sharded mode only).
+     *
+     * <p>Not guarded by a single lock: each shard is locked on its own, so all nodes
+     * drain the backlog in parallel without cleaning up the same keys.</p>
+     */
+    @Scheduled(
+        fixedRateString = "${idempotency.cleanup.shard-interval:PT15M}",
+        initialDelayString = "${idempotency.cleanup.initial-delay:3600000}"
+    )
+    public void cleanupExpiredRecordsSharded() {
+        if (!cleanupShards.isEnabled() || adaptiveCleanup.isEnabled()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+
+        try {
+            IdempotencyCleanupShards.ShardedCleanupResult result = cleanupShards.cleanupAll();
+            if (result.getDeleted() > 0) {
+                log.info("Sharded cleanup completed - Deleted {} expired records from {} of {} shards in {}ms",
+                         result.getDeleted(), result.getShardsCleaned(), cleanupShards.getShardCount(),
+                         System.currentTimeMillis() - startTime);
+            }
+
+        } catch (DataAccessException e) {
+            log.error("Database error during sharded cleanup: {}", e.getMessage(), e);
+            throw e; // Re-throw; chunks committed so far are kept
+        }
+    }
+
+    /**
+     * Recovers idempotency keys whose lease has expired, e.g. after a node crash.
+     *
+     * <p>Runs every minute by default under its own lock, so it is never blocked by a
+     * long-running expiry cleanup. Recovery is a single UPDATE statement.</p>
+     */
+    @Scheduled(fixedRateString = "${idempotency.lease.recovery-interval:PT1M}")
+    @SchedulerLock(
+        name = "idempotencyLeaseRecovery",
+        lockAtMostFor = "5m",
+        lockAtLeastFor = "10s"
+    )
+    public void recoverExpiredLeases() {
+        try {
+            int recovered = idempotencyService.recoverExpiredLeases();
+            if (recovered > 0) {
+                log.info("Lease recovery completed - Failed {} abandoned operations", recovered);
+            }
+
+        } catch (DataAccessException e) {
+            log.error("Database error during lease recovery: {}", e.getMessage(), e);
+            throw e;
         }
     }
 }
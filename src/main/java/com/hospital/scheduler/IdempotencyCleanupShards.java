@@ -0,0 +1,116 @@
+package com.hospital.scheduler;
+
+import com.hospital.services.idempotency.IdempotencyService;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Splits the expired-key cleanup into {@code idempotency.cleanup.shards} shards (stripes
+ * of ids, see {@link com.hospital.services.idempotency.IdempotencyCleanupEngine}), each
+ * guarded by its own ShedLock lock.
+ *
+ * <p>With the single {@code idempotencyCleanup} lock only one node ever cleans up,
+ * whatever the backlog. Here every node walks all shards, starting at a random one, and
+ * cleans up each shard whose lock it gets; shards locked by another node are skipped.
+ * The nodes thereby drain disjoint parts of the table in parallel, and a shard cleaned
+ * up less than {@code lockAtLeastFor} ago is not cleaned up again by a node that comes
+ * late.</p>
+ *
+ * <p>Lock names are {@code idempotencyCleanup-shard-<n>}. Changing the shard count while
+ * nodes are running is safe - shards of different counts overlap, but the deletes are
+ * idempotent - it only costs some double work until every node runs with the new count.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyCleanupShards {
+
+    static final String LOCK_NAME_PREFIX = "idempotencyCleanup-shard-";
+
+    /**
+     * Same bounds as the {@code idempotencyCleanup} lock; {@code idempotency.cleanup.max-duration}
+     * must stay below the upper one.
+     */
+    private static final Duration LOCK_AT_MOST_FOR = Duration.ofHours(4);
+    private static final Duration LOCK_AT_LEAST_FOR = Duration.ofMinutes(1);
+
+    private final IdempotencyService idempotencyService;
+    private final LockProvider lockProvider;
+    private final int shardCount;
+
+    public IdempotencyCleanupShards(
+            IdempotencyService idempotencyService,
+            LockProvider lockProvider,
+            @Value("${idempotency.cleanup.shards:1}") int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("idempotency.cleanup.shards must be at least 1: " + shardCount);
+        }
+        this.idempotencyService = idempotencyService;
+        this.lockProvider = lockProvider;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Whether the cleanup is sharded; with a single shard the {@code idempotencyCleanup}
+     * jobs of {@link IdempotencyCleanupScheduler} clean up instead.
+     */
+    public boolean isEnabled() {
+        return shardCount > 1;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Cleans up every shard this node can lock.
+     *
+     * @return the shards cleaned up and skipped, and the keys deleted
+     */
+    public ShardedCleanupResult cleanupAll() {
+        int first = ThreadLocalRandom.current().nextInt(shardCount);
+        int cleaned = 0;
+        int skipped = 0;
+        long deleted = 0;
+
+        for (int i = 0; i < shardCount; i++) {
+            int shard = (first + i) % shardCount;
+            Optional<SimpleLock> lock = lockProvider.lock(new LockConfiguration(
+                Instant.now(), LOCK_NAME_PREFIX + shard, LOCK_AT_MOST_FOR, LOCK_AT_LEAST_FOR));
+            if (lock.isEmpty()) {
+                log.debug("Idempotency cleanup shard {}/{} is locked by another node", shard, shardCount);
+                skipped++;
+                continue;
+            }
+            try {
+                deleted += idempotencyService.cleanupExpiredKeys(shard, shardCount);
+                cleaned++;
+            } finally {
+                lock.get().unlock();
+            }
+        }
+        return new ShardedCleanupResult(cleaned, skipped, deleted);
+    }
+
+    /**
+     * Outcome of one sharded cleanup on this node.
+     */
+    @lombok.Value
+    public static class ShardedCleanupResult {
+        int shardsCleaned;
+        /** Shards locked by another node. */
+        int shardsSkipped;
+        long deleted;
+    }
+}
@@ -0,0 +1,172 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Codes lots of encounters with the {@link CodingPipeline}, e.g. the backlog left by a
+ * TASY outage.
+ *
+ * <p>The stream of encounters is read in chunks of {@code coding.batch.chunk-size}. Each
+ * chunk is coded on a dedicated fork-join pool of {@code coding.batch.parallelism}
+ * workers (the available processors by default) while the calling thread records the
+ * groupings of the previous chunk with JDBC batches, so only two chunks are held in
+ * memory. An encounter that cannot be coded is reported in the summary and does not stop
+ * the lot; a failure to record the groupings does, and since recording replaces earlier
+ * rows the whole lot can simply be retried.</p>
+ *
+ * <p>Published meters: {@code coding.batch.encounters} (counter, tagged with the
+ * {@code outcome}: {@code auto_approved}, {@code review} or {@code failed}).</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class BatchCodingService {
+
+    private final CodingPipeline pipeline;
+    private final DrgGrouperService drgGrouperService;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+    private final Counter autoApproved;
+    private final Counter review;
+    private final Counter failed;
+
+    public BatchCodingService(
+            CodingPipeline pipeline,
+            DrgGrouperService drgGrouperService,
+            @Value("${coding.batch.parallelism:0}") int parallelism,
+            @Value("${coding.batch.chunk-size:500}") int chunkSize,
+            MeterRegistry meterRegistry) {
+        this.pipeline = pipeline;
+        this.drgGrouperService = drgGrouperService;
+        this.chunkSize = chunkSize;
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(workers, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("coding-batch-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        this.autoApproved = outcomeCounter(meterRegistry, "auto_approved");
+        this.review = outcomeCounter(meterRegistry, "review");
+        this.failed = outcomeCounter(meterRegistry, "failed");
+        log.info("Batch coding runs with parallelism {} in chunks of {}", workers, chunkSize);
+    }
+
+    /**
+     * Codes and records every encounter of {@code encounters}, in chunks.
+     *
+     * @throws org.springframework.dao.DataAccessException if groupings could not be
+     *         recorded; the chunks before it are recorded
+     */
+    public BatchCodingSummary codeAll(Stream<CodingRequest> encounters) {
+        long start = System.currentTimeMillis();
+        Tally tally = new Tally();
+        Iterator<CodingRequest> iterator = encounters.iterator();
+        List<CodingResult> previous = null;
+        while (iterator.hasNext()) {
+            List<CodingRequest> chunk = new ArrayList<>(chunkSize);
+            while (iterator.hasNext() && chunk.size() < chunkSize) {
+                chunk.add(iterator.next());
+            }
+            ForkJoinTask<List<CodingResult>> coding = pool.submit(() ->
+                chunk.parallelStream().map(this::code).collect(Collectors.toList()));
+            if (previous != null) {
+                record(previous, tally);
+            }
+            previous = coding.join();
+        }
+        if (previous != null) {
+            record(previous, tally);
+        }
+        BatchCodingSummary summary = tally.summary(System.currentTimeMillis() - start);
+        log.info("Batch coded {} encounters in {}ms - auto-approved: {}, review: {}, failed: {}",
+            summary.getTotal(), summary.getElapsedMillis(), summary.getAutoApproved(),
+            summary.getRequiresReview(), summary.getFailed());
+        return summary;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private CodingResult code(CodingRequest request) {
+        try {
+            return pipeline.code(request);
+        } catch (RuntimeException e) {
+            log.error("Batch coding of encounter {} failed", request.getEncounterId(), e);
+            return CodingResult.failed(request, null, CodingResult.SYSTEM_ERROR,
+                List.of("System error during code assignment: " + e.getMessage()));
+        }
+    }
+
+    private void record(List<CodingResult> results, Tally tally) {
+        List<EncounterCoding> codings = new ArrayList<>(results.size());
+        for (CodingResult result : results) {
+            if (result.isCoded()) {
+                codings.add(result.getCoding());
+            }
+        }
+        drgGrouperService.recordGroupings(codings);
+        for (CodingResult result : results) {
+            tally.add(result);
+        }
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("coding.batch.encounters")
+            .description("Encounters coded in batch, by outcome")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    private final class Tally {
+        private int total;
+        private int coded;
+        private int autoApprovedCount;
+        private int failedCount;
+        private final List<String> reviewEncounterIds = new ArrayList<>();
+        private final Map<String, String> failures = new LinkedHashMap<>();
+
+        void add(CodingResult result) {
+            total++;
+            if (!result.isCoded()) {
+                failures.put(String.valueOf(result.getRequest().getEncounterId()),
+                    result.getErrorCode() + ": " + String.join("; ", result.getErrors()));
+                failedCount++;
+                failed.increment();
+            } else if (result.getSuggestions().requiresReview()) {
+                coded++;
+                reviewEncounterIds.add(result.getRequest().getEncounterId());
+                review.increment();
+            } else {
+                coded++;
+                autoApprovedCount++;
+                autoApproved.increment();
+            }
+        }
+
+        BatchCodingSummary summary(long elapsedMillis) {
+            return new BatchCodingSummary(total, coded, autoApprovedCount, reviewEncounterIds.size(),
+                failedCount, List.copyOf(reviewEncounterIds), failures, elapsedMillis);
+        }
+    }
+}
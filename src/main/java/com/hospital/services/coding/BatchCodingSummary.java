@@ -0,0 +1,36 @@
+package com.hospital.services.coding;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of coding a lot of encounters with {@link BatchCodingService#codeAll}.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class BatchCodingSummary {
+
+    int total;
+
+    /** Encounters coded and recorded, with or without review. */
+    int coded;
+
+    int autoApproved;
+
+    /** Encounters coded below the auto-approve confidence, listed in {@link #reviewEncounterIds}. */
+    int requiresReview;
+
+    /** Encounters that could not be coded, listed in {@link #failures}. */
+    int failed;
+
+    List<String> reviewEncounterIds;
+
+    /** Errors by encounter id. */
+    Map<String, String> failures;
+
+    long elapsedMillis;
+}
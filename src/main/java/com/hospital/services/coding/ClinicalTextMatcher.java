@@ -0,0 +1,463 @@
+package com.hospital.services.coding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the ICD-10, TUSS and CBHPM codes whose terms occur in a clinical text.
+ *
+ * <p>The terms come from a synonym dictionary ({@code coding.dictionary}, by default
+ * {@code classpath:coding/synonyms.tsv}) loaded at startup. It is a tab-separated file with
+ * one code per line:</p>
+ * <pre>
+ * # system  code   weight  description                        terms (|-separated)
+ * ICD10     I10    0.95    Hipertensão essencial (primária)   hipertens|pressão alta
+ * </pre>
+ *
+ * <p>Terms and texts are normalized alike by {@link ClinicalTextNormalizer}, so case and
+ * accents do not matter. A term matches where it starts a word; it need not end one, so
+ * {@code hipertens} matches {@code hipertensão} and {@code hipertensiva} as the former
+ * {@code contains()} checks did.</p>
+ *
+ * <p>The terms of each code system are compiled into an Aho-Corasick automaton, which
+ * finds all occurrences of all terms in one pass over the text - in time linear in the
+ * text length plus the number of occurrences, whatever the size of the dictionary.
+ * The transitions of the shallowest states - where matching spends most of its time - are
+ * precomputed into a bounded table; deeper states keep sparse children and failure links
+ * in flat arrays, so large vocabularies stay compact. The normalized text and the per-code scores are kept in
+ * per-thread buffers that are reused across calls.</p>
+ *
+ * <p>A code's score is the highest weight among its matched terms. Candidates are
+ * ranked by score, then by number of occurrences, then by first position.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class ClinicalTextMatcher {
+
+    /** Symbols of the normalized text: space, a-z and 0-9. */
+    private static final int ALPHABET = 37;
+
+    /** States with precomputed transitions per code system (at most 4096 * 37 ints). */
+    private static final int DENSE_STATES = 4096;
+
+    private static final Comparator<CodeCandidate> RANKING = Comparator
+        .comparingDouble(CodeCandidate::getScore).reversed()
+        .thenComparing(Comparator.comparingInt(CodeCandidate::getHits).reversed())
+        .thenComparingInt(CodeCandidate::getFirstPosition);
+
+    private final List<CodeSystem> codeSystems = new ArrayList<>();
+    private final List<String> codes = new ArrayList<>();
+    private final List<String> descriptions = new ArrayList<>();
+    private final Map<CodeSystem, Automaton> automata = new EnumMap<>(CodeSystem.class);
+    private final ThreadLocal<Scratch> scratch;
+
+    public ClinicalTextMatcher(@Value("${coding.dictionary:classpath:coding/synonyms.tsv}") Resource dictionary) {
+        Map<CodeSystem, AutomatonBuilder> builders = new EnumMap<>(CodeSystem.class);
+        int terms;
+        try {
+            terms = load(dictionary, builders);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read synonym dictionary " + dictionary, e);
+        }
+        int states = 0;
+        for (Map.Entry<CodeSystem, AutomatonBuilder> entry : builders.entrySet()) {
+            Automaton automaton = entry.getValue().build();
+            automata.put(entry.getKey(), automaton);
+            states += automaton.fail.length;
+        }
+        int codeCount = codes.size();
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(codeCount));
+        log.info("Loaded synonym dictionary {} - codes: {}, terms: {}, automaton states: {}",
+                dictionary.getDescription(), codeCount, terms, states);
+    }
+
+    /**
+     * Finds the codes of {@code system} whose terms occur in {@code text}.
+     *
+     * @return the candidates, best first; empty if none matched
+     */
+    public List<CodeCandidate> match(CodeSystem system, CharSequence text) {
+        Automaton automaton = automata.get(system);
+        if (automaton == null || text == null || text.length() == 0) {
+            return List.of();
+        }
+        Scratch buffers = scratch.get();
+        char[] normalized = buffers.text(text.length());
+        int length = ClinicalTextNormalizer.normalize(text, normalized);
+
+        int state = 0;
+        for (int i = 0; i < length; i++) {
+            state = automaton.next(state, symbol(normalized[i]));
+            for (int output = automaton.firstOutput[state]; output > 0; output = automaton.outputLink[output]) {
+                for (int o = automaton.outputStart[output]; o < automaton.outputStart[output + 1]; o++) {
+                    int term = automaton.outputs[o];
+                    int start = i - automaton.termLength[term] + 1;
+                    if (start == 0 || normalized[start - 1] == ' ') {
+                        buffers.record(automaton.termCode[term], automaton.termWeight[term], start);
+                    }
+                }
+            }
+        }
+        return buffers.drain(this);
+    }
+
+    /**
+     * Best candidate of {@code system} for {@code text}, or {@code null} if none matched.
+     */
+    public CodeCandidate bestMatch(CodeSystem system, CharSequence text) {
+        List<CodeCandidate> candidates = match(system, text);
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    private int load(Resource dictionary, Map<CodeSystem, AutomatonBuilder> builders) throws IOException {
+        Map<String, Integer> ordinals = new HashMap<>();
+        int terms = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(dictionary.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t");
+                if (columns.length != 5) {
+                    throw new IllegalArgumentException("Synonym dictionary line " + lineNumber
+                        + " must have 5 tab-separated columns: " + line);
+                }
+                CodeSystem system = CodeSystem.valueOf(columns[0].trim());
+                String code = columns[1].trim();
+                double weight = Double.parseDouble(columns[2].trim());
+                if (!(weight > 0 && weight <= 1)) {
+                    throw new IllegalArgumentException("Synonym dictionary line " + lineNumber
+                        + " has a weight outside (0, 1]: " + weight);
+                }
+                Integer ordinal = ordinals.get(system + ":" + code);
+                if (ordinal == null) {
+                    ordinal = codes.size();
+                    ordinals.put(system + ":" + code, ordinal);
+                    codeSystems.add(system);
+                    codes.add(code);
+                    descriptions.add(columns[3].trim());
+                }
+                AutomatonBuilder builder = builders.computeIfAbsent(system, s -> new AutomatonBuilder());
+                for (String term : columns[4].split("\\|")) {
+                    String normalized = ClinicalTextNormalizer.normalize(term);
+                    if (normalized.isEmpty()) {
+                        throw new IllegalArgumentException("Synonym dictionary line " + lineNumber
+                            + " has an empty term for " + code);
+                    }
+                    builder.add(normalized, ordinal, weight);
+                    terms++;
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static int symbol(char c) {
+        if (c == ' ') {
+            return 0;
+        }
+        return c <= '9' ? c - '0' + 27 : c - 'a' + 1;
+    }
+
+    /**
+     * Compiled Aho-Corasick automaton of the terms of one code system. States are numbered
+     * breadth first, so state 0 is the root and a state's failure target precedes it.
+     */
+    private static final class Automaton {
+
+        /** Number of (shallowest) states whose transitions are all precomputed in {@link #dense}. */
+        final int denseStates;
+
+        /** Transition of state s &lt; denseStates for symbol c is dense[s * ALPHABET + c]. */
+        final int[] dense;
+
+        /** Children of state s are childSymbol/childTarget[childStart[s] .. childStart[s + 1]). */
+        final int[] childStart;
+        final byte[] childSymbol;
+        final int[] childTarget;
+
+        /** Longest proper suffix of the state that is also a state. */
+        final int[] fail;
+
+        /** Nearest state on the failure chain that ends a term, 0 if none. */
+        final int[] outputLink;
+
+        /** The state itself if it ends a term, its output link otherwise. */
+        final int[] firstOutput;
+
+        /** Terms ending in state s are outputs[outputStart[s] .. outputStart[s + 1]). */
+        final int[] outputStart;
+        final int[] outputs;
+
+        final int[] termLength;
+        final int[] termCode;
+        final double[] termWeight;
+
+        Automaton(int denseStates, int[] dense, int[] childStart, byte[] childSymbol, int[] childTarget,
+                  int[] fail, int[] outputLink, int[] firstOutput, int[] outputStart, int[] outputs,
+                  int[] termLength, int[] termCode, double[] termWeight) {
+            this.denseStates = denseStates;
+            this.dense = dense;
+            this.childStart = childStart;
+            this.childSymbol = childSymbol;
+            this.childTarget = childTarget;
+            this.fail = fail;
+            this.outputLink = outputLink;
+            this.firstOutput = firstOutput;
+            this.outputStart = outputStart;
+            this.outputs = outputs;
+            this.termLength = termLength;
+            this.termCode = termCode;
+            this.termWeight = termWeight;
+        }
+
+        int next(int state, int symbol) {
+            while (state >= denseStates) {
+                for (int c = childStart[state], end = childStart[state + 1]; c < end; c++) {
+                    if (childSymbol[c] == symbol) {
+                        return childTarget[c];
+                    }
+                }
+                state = fail[state];
+            }
+            return dense[state * ALPHABET + symbol];
+        }
+    }
+
+    /**
+     * Trie of the terms of one code system, compiled into an {@link Automaton}. Children
+     * are kept sparse while building too, as real vocabularies have hundreds of thousands
+     * of states.
+     */
+    private static final class AutomatonBuilder {
+
+        private static final byte[] NO_SYMBOLS = new byte[0];
+        private static final int[] NO_STATES = new int[0];
+
+        private final List<byte[]> childSymbols = new ArrayList<>();
+        private final List<int[]> childTargets = new ArrayList<>();
+        private final List<int[]> terminals = new ArrayList<>();
+        private final List<Integer> termLengths = new ArrayList<>();
+        private final List<Integer> termCodes = new ArrayList<>();
+        private final List<Double> termWeights = new ArrayList<>();
+
+        AutomatonBuilder() {
+            newState();
+        }
+
+        void add(String term, int code, double weight) {
+            int state = 0;
+            for (int i = 0; i < term.length(); i++) {
+                int symbol = symbol(term.charAt(i));
+                int child = child(state, symbol);
+                if (child == 0) {
+                    child = newState();
+                    byte[] symbols = Arrays.copyOf(childSymbols.get(state), childSymbols.get(state).length + 1);
+                    int[] targets = Arrays.copyOf(childTargets.get(state), symbols.length);
+                    symbols[symbols.length - 1] = (byte) symbol;
+                    targets[targets.length - 1] = child;
+                    childSymbols.set(state, symbols);
+                    childTargets.set(state, targets);
+                }
+                state = child;
+            }
+            int termId = termLengths.size();
+            termLengths.add(term.length());
+            termCodes.add(code);
+            termWeights.add(weight);
+            int[] ending = Arrays.copyOf(terminals.get(state), terminals.get(state).length + 1);
+            ending[ending.length - 1] = termId;
+            terminals.set(state, ending);
+        }
+
+        Automaton build() {
+            int states = childSymbols.size();
+
+            // Breadth-first order; trie states are renumbered to their position in it
+            int[] order = new int[states];
+            int[] id = new int[states];
+            int tail = 1;
+            for (int head = 0; head < tail; head++) {
+                for (int target : childTargets.get(order[head])) {
+                    order[tail++] = target;
+                }
+            }
+            for (int n = 0; n < states; n++) {
+                id[order[n]] = n;
+            }
+
+            // Failure and output links, parents before children
+            int[] fail = new int[states];
+            int[] outputLink = new int[states];
+            for (int n = 0; n < states; n++) {
+                int state = order[n];
+                byte[] symbols = childSymbols.get(state);
+                int[] targets = childTargets.get(state);
+                for (int c = 0; c < symbols.length; c++) {
+                    int target = 0;
+                    if (state != 0) {
+                        int f = fail[id[state]];
+                        target = child(order[f], symbols[c]);
+                        while (target == 0 && f != 0) {
+                            f = fail[f];
+                            target = child(order[f], symbols[c]);
+                        }
+                    }
+                    int next = id[targets[c]];
+                    fail[next] = id[target];
+                    outputLink[next] = terminals.get(target).length > 0 ? id[target] : outputLink[id[target]];
+                }
+            }
+
+            // Children in flat arrays
+            int[] childStart = new int[states + 1];
+            for (int n = 0; n < states; n++) {
+                childStart[n + 1] = childStart[n] + childSymbols.get(order[n]).length;
+            }
+            byte[] childSymbol = new byte[childStart[states]];
+            int[] childTarget = new int[childStart[states]];
+            for (int n = 0; n < states; n++) {
+                byte[] symbols = childSymbols.get(order[n]);
+                int[] targets = childTargets.get(order[n]);
+                for (int c = 0; c < symbols.length; c++) {
+                    childSymbol[childStart[n] + c] = symbols[c];
+                    childTarget[childStart[n] + c] = id[targets[c]];
+                }
+            }
+
+            // All transitions of the shallowest states, where matching spends most of its time
+            int denseStates = Math.min(states, DENSE_STATES);
+            int[] dense = new int[denseStates * ALPHABET];
+            for (int n = 0; n < denseStates; n++) {
+                for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                    int child = child(order[n], symbol);
+                    if (child != 0) {
+                        dense[n * ALPHABET + symbol] = id[child];
+                    } else if (n != 0) {
+                        dense[n * ALPHABET + symbol] = dense[fail[n] * ALPHABET + symbol];
+                    }
+                }
+            }
+
+            // Terms ending in each state
+            int[] outputStart = new int[states + 1];
+            for (int n = 0; n < states; n++) {
+                outputStart[n + 1] = outputStart[n] + terminals.get(order[n]).length;
+            }
+            int[] outputs = new int[outputStart[states]];
+            int[] firstOutput = new int[states];
+            for (int n = 0; n < states; n++) {
+                int[] ending = terminals.get(order[n]);
+                System.arraycopy(ending, 0, outputs, outputStart[n], ending.length);
+                firstOutput[n] = ending.length > 0 ? n : outputLink[n];
+            }
+
+            int terms = termLengths.size();
+            int[] termLength = new int[terms];
+            int[] termCode = new int[terms];
+            double[] termWeight = new double[terms];
+            for (int t = 0; t < terms; t++) {
+                termLength[t] = termLengths.get(t);
+                termCode[t] = termCodes.get(t);
+                termWeight[t] = termWeights.get(t);
+            }
+            return new Automaton(denseStates, dense, childStart, childSymbol, childTarget, fail, outputLink,
+                firstOutput, outputStart, outputs, termLength, termCode, termWeight);
+        }
+
+        /**
+         * Child of {@code state} for {@code symbol}, 0 (the root) if there is none.
+         */
+        private int child(int state, int symbol) {
+            byte[] symbols = childSymbols.get(state);
+            for (int c = 0; c < symbols.length; c++) {
+                if (symbols[c] == symbol) {
+                    return childTargets.get(state)[c];
+                }
+            }
+            return 0;
+        }
+
+        private int newState() {
+            childSymbols.add(NO_SYMBOLS);
+            childTargets.add(NO_STATES);
+            terminals.add(NO_STATES);
+            return childSymbols.size() - 1;
+        }
+    }
+
+    /**
+     * Per-thread buffers of one match: the normalized text and the scores of the codes found.
+     */
+    private static final class Scratch {
+
+        private char[] text = new char[1024];
+        private final double[] score;
+        private final int[] hits;
+        private final int[] firstPosition;
+        private final int[] found;
+        private int foundCount;
+
+        Scratch(int codeCount) {
+            score = new double[codeCount];
+            hits = new int[codeCount];
+            firstPosition = new int[codeCount];
+            found = new int[codeCount];
+        }
+
+        char[] text(int length) {
+            if (text.length < length) {
+                text = new char[Math.max(length, text.length * 2)];
+            }
+            return text;
+        }
+
+        void record(int code, double weight, int position) {
+            if (hits[code]++ == 0) {
+                found[foundCount++] = code;
+                score[code] = weight;
+                firstPosition[code] = position;
+            } else if (weight > score[code]) {
+                score[code] = weight;
+            }
+        }
+
+        List<CodeCandidate> drain(ClinicalTextMatcher matcher) {
+            if (foundCount == 0) {
+                return List.of();
+            }
+            List<CodeCandidate> candidates = new ArrayList<>(foundCount);
+            for (int i = 0; i < foundCount; i++) {
+                int code = found[i];
+                candidates.add(new CodeCandidate(matcher.codeSystems.get(code), matcher.codes.get(code),
+                    matcher.descriptions.get(code), score[code], hits[code], firstPosition[code]));
+                hits[code] = 0;
+            }
+            foundCount = 0;
+            candidates.sort(RANKING);
+            return candidates;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.hospital.services.coding;
+
+import java.text.Normalizer;
+
+/**
+ * Single-pass normalization of Portuguese clinical text for dictionary matching.
+ *
+ * <p>Letters are lowercased and stripped of their accents ({@code "Pressão ALTA"} becomes
+ * {@code "pressao alta"}), digits are kept, and every run of other characters -
+ * whitespace, punctuation, symbols - becomes a single space. Leading and trailing
+ * separators are dropped. The result therefore only contains {@code a-z}, {@code 0-9}
+ * and single spaces, and is never longer than the input.</p>
+ *
+ * <p>Characters of the Latin blocks are folded through a lookup table computed once, so
+ * normalizing does not allocate; the caller provides (and reuses) the output buffer.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public final class ClinicalTextNormalizer {
+
+    /** Marks characters that separate words. */
+    private static final char SEPARATOR = 0;
+
+    /** Basic Latin, Latin-1 Supplement and Latin Extended-A/B. */
+    private static final char[] FOLD = new char[0x250];
+
+    static {
+        for (char c = 0; c < FOLD.length; c++) {
+            char base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+            base = Character.toLowerCase(base);
+            FOLD[c] = (base >= 'a' && base <= 'z') || (base >= '0' && base <= '9') ? base : SEPARATOR;
+        }
+    }
+
+    private ClinicalTextNormalizer() {
+    }
+
+    /**
+     * Normalizes {@code text} into {@code out}.
+     *
+     * @param text text to normalize
+     * @param out  buffer of at least {@code text.length()} characters
+     * @return the number of characters written to {@code out}
+     */
+    public static int normalize(CharSequence text, char[] out) {
+        int length = 0;
+        boolean pendingSeparator = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            char folded = c < FOLD.length ? FOLD[c] : SEPARATOR;
+            if (folded == SEPARATOR) {
+                pendingSeparator = length > 0;
+                continue;
+            }
+            if (pendingSeparator) {
+                out[length++] = ' ';
+                pendingSeparator = false;
+            }
+            out[length++] = folded;
+        }
+        return length;
+    }
+
+    /**
+     * Normalizes {@code text} into a new string; for dictionaries and tests rather than
+     * per-request use.
+     */
+    public static String normalize(CharSequence text) {
+        char[] out = new char[text.length()];
+        return new String(out, 0, normalize(text, out));
+    }
+}
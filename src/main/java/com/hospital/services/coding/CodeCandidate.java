@@ -0,0 +1,26 @@
+package com.hospital.services.coding;
+
+import lombok.Value;
+
+/**
+ * Code suggested by the {@link ClinicalTextMatcher} for a clinical text.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class CodeCandidate {
+
+    CodeSystem system;
+    String code;
+    String description;
+
+    /** Highest weight of the matched dictionary terms, between 0 and 1. */
+    double score;
+
+    /** Occurrences of the code's terms in the text. */
+    int hits;
+
+    /** Offset of the first occurrence in the normalized text. */
+    int firstPosition;
+}
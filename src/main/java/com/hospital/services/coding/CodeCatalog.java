@@ -0,0 +1,288 @@
+package com.hospital.services.coding;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Read-only ICD-10, TUSS and CBHPM code table, memory-mapped from a file written by the
+ * {@link CodeCatalogWriter}.
+ *
+ * <p>The table is not copied onto the heap: lookups read the mapped file directly. A code
+ * is found through a perfect hash (hash and displace), so {@link #ordinal},
+ * {@link #contains} and {@link #isValid} cost one hash of the code and a single probe,
+ * and do not allocate. Only the descriptions are decoded into new strings.</p>
+ *
+ * <p>Entries are sorted by code system, then code; their position is the catalog
+ * <em>ordinal</em>, and the ordinals of one code system are contiguous
+ * ({@link #firstOrdinal}, {@link #count}).</p>
+ *
+ * <p>File layout (big-endian): a 40-byte header {@code magic:int, format:int,
+ * version:long, entries:int, buckets:int, slots:int, entriesOffset:int,
+ * stringsOffset:int, reserved:int}, the displacement of each bucket ({@code int}), the
+ * entry in each slot ({@code int}, -1 if empty), 24-byte entry records
+ * {@code system:byte, codeLength:byte, reserved:short, codeOffset:int,
+ * descriptionOffset:int, descriptionLength:int, validFrom:int, validTo:int} (epoch days,
+ * inclusive) and the string pool (ASCII codes, UTF-8 descriptions).</p>
+ *
+ * <p>Instances are immutable and safe for concurrent use. The mapping stays valid after
+ * the file is replaced or deleted, and is released once the instance is no longer
+ * referenced.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public final class CodeCatalog {
+
+    static final int MAGIC = 0x43434154; // "CCAT"
+    static final int FORMAT = 1;
+    static final int HEADER_SIZE = 40;
+    static final int RECORD_SIZE = 24;
+
+    static final int OPEN_START = Integer.MIN_VALUE;
+    static final int OPEN_END = Integer.MAX_VALUE;
+
+    private static final CodeSystem[] SYSTEMS = CodeSystem.values();
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final long version;
+    private final int size;
+    private final int buckets;
+    private final int slots;
+    private final int slotsOffset;
+    private final int entriesOffset;
+    private final int stringsOffset;
+    private final int[] firstOrdinal = new int[SYSTEMS.length];
+    private final int[] count = new int[SYSTEMS.length];
+
+    private CodeCatalog(Path file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a code catalog: " + file);
+        }
+        if (buffer.getInt(4) != FORMAT) {
+            throw new IllegalArgumentException("Unsupported code catalog format " + buffer.getInt(4) + ": " + file);
+        }
+        this.version = buffer.getLong(8);
+        this.size = buffer.getInt(16);
+        this.buckets = buffer.getInt(20);
+        this.slots = buffer.getInt(24);
+        this.entriesOffset = buffer.getInt(28);
+        this.stringsOffset = buffer.getInt(32);
+        this.slotsOffset = HEADER_SIZE + 4 * buckets;
+        if (buckets < 1 || slots < 1 || slotsOffset + 4L * slots != entriesOffset
+                || entriesOffset + (long) RECORD_SIZE * size != stringsOffset || stringsOffset > buffer.capacity()) {
+            throw new IllegalArgumentException("Corrupt code catalog: " + file);
+        }
+
+        int previous = -1;
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int system = buffer.get(record(ordinal));
+            if (system < previous || system >= SYSTEMS.length) {
+                throw new IllegalArgumentException("Corrupt code catalog: " + file);
+            }
+            if (system != previous) {
+                firstOrdinal[system] = ordinal;
+                previous = system;
+            }
+            count[system]++;
+        }
+    }
+
+    /**
+     * Maps the catalog in {@code file}.
+     *
+     * @throws IllegalArgumentException if the file is not a valid code catalog
+     */
+    public static CodeCatalog open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CodeCatalog(file, buffer);
+        }
+    }
+
+    /**
+     * Reads the table version of the catalog in {@code file} without mapping it.
+     *
+     * @throws IllegalArgumentException if the file is not a code catalog
+     */
+    static long readVersion(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read the whole header
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a code catalog: " + file);
+            }
+            return header.getLong(8);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Version of the code table, as given to the {@link CodeCatalogWriter}.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Number of codes, of all code systems.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Ordinal of the first code of {@code system}.
+     */
+    public int firstOrdinal(CodeSystem system) {
+        return firstOrdinal[system.ordinal()];
+    }
+
+    /**
+     * Number of codes of {@code system}.
+     */
+    public int count(CodeSystem system) {
+        return count[system.ordinal()];
+    }
+
+    /**
+     * Ordinal of a code, -1 if it is not in the catalog.
+     */
+    public int ordinal(CodeSystem system, CharSequence code) {
+        if (size == 0 || code == null) {
+            return -1;
+        }
+        long hash = hash(system, code);
+        int displacement = buffer.getInt(HEADER_SIZE + 4 * bucket(hash, buckets));
+        int ordinal = buffer.getInt(slotsOffset + 4 * slot(hash, displacement, slots));
+        return ordinal >= 0 && matches(ordinal, system, code) ? ordinal : -1;
+    }
+
+    public boolean contains(CodeSystem system, CharSequence code) {
+        return ordinal(system, code) >= 0;
+    }
+
+    /**
+     * Whether a code is in the catalog and may be billed on {@code date}.
+     */
+    public boolean isValid(CodeSystem system, CharSequence code, LocalDate date) {
+        int ordinal = ordinal(system, code);
+        return ordinal >= 0 && isValid(ordinal, date);
+    }
+
+    public boolean isValid(int ordinal, LocalDate date) {
+        long day = date.toEpochDay();
+        int record = record(ordinal);
+        return day >= buffer.getInt(record + 16) && day <= buffer.getInt(record + 20);
+    }
+
+    /**
+     * Description of a code, {@code null} if it is not in the catalog.
+     */
+    public String description(CodeSystem system, CharSequence code) {
+        int ordinal = ordinal(system, code);
+        return ordinal >= 0 ? description(ordinal) : null;
+    }
+
+    public String description(int ordinal) {
+        int record = record(ordinal);
+        return string(buffer.getInt(record + 8), buffer.getInt(record + 12), StandardCharsets.UTF_8);
+    }
+
+    public String code(int ordinal) {
+        int record = record(ordinal);
+        return string(buffer.getInt(record + 4), buffer.get(record + 1) & 0xFF, StandardCharsets.US_ASCII);
+    }
+
+    public CodeSystem system(int ordinal) {
+        return SYSTEMS[buffer.get(record(ordinal))];
+    }
+
+    /**
+     * First day the code may be billed, {@code null} if always.
+     */
+    public LocalDate validFrom(int ordinal) {
+        int day = buffer.getInt(record(ordinal) + 16);
+        return day == OPEN_START ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /**
+     * Last day the code may be billed, {@code null} while it is active.
+     */
+    public LocalDate validTo(int ordinal) {
+        int day = buffer.getInt(record(ordinal) + 20);
+        return day == OPEN_END ? null : LocalDate.ofEpochDay(day);
+    }
+
+    @Override
+    public String toString() {
+        return "CodeCatalog[version=" + version + ", codes=" + size + ", file=" + file + "]";
+    }
+
+    private boolean matches(int ordinal, CodeSystem system, CharSequence code) {
+        int record = record(ordinal);
+        if (buffer.get(record) != system.ordinal() || (buffer.get(record + 1) & 0xFF) != code.length()) {
+            return false;
+        }
+        int offset = stringsOffset + buffer.getInt(record + 4);
+        for (int i = 0; i < code.length(); i++) {
+            if (buffer.get(offset + i) != code.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int record(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Catalog ordinal " + ordinal + " out of [0, " + size + ")");
+        }
+        return entriesOffset + ordinal * RECORD_SIZE;
+    }
+
+    private String string(int offset, int length, Charset charset) {
+        byte[] bytes = new byte[length];
+        buffer.get(stringsOffset + offset, bytes);
+        return new String(bytes, charset);
+    }
+
+    // Perfect hash, shared with the CodeCatalogWriter
+
+    static long hash(CodeSystem system, CharSequence code) {
+        long hash = 0xcbf29ce484222325L ^ system.ordinal();
+        hash *= 0x100000001b3L;
+        for (int i = 0; i < code.length(); i++) {
+            hash ^= code.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    static int bucket(long hash, int buckets) {
+        return (int) (((hash >>> 32) * buckets) >>> 32);
+    }
+
+    static int slot(long hash, int displacement, int slots) {
+        return (int) (((mix(hash ^ (displacement * 0x9E3779B97F4A7C15L)) >>> 32) * slots) >>> 32);
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
@@ -0,0 +1,28 @@
+package com.hospital.services.coding;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * One code of a {@link CodeCatalog}, as written by the {@link CodeCatalogWriter}.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class CodeCatalogEntry {
+
+    CodeSystem system;
+
+    /** ASCII, at most 255 characters. */
+    String code;
+
+    String description;
+
+    /** First day the code may be billed, {@code null} if always. */
+    LocalDate validFrom;
+
+    /** Last day the code may be billed, {@code null} while it is active. */
+    LocalDate validTo;
+}
@@ -0,0 +1,166 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Holds the current {@link CodeCatalog} and swaps in newer table versions as they appear.
+ *
+ * <p>Catalog files ({@code code-catalog-*.bin}, written by the {@link CodeCatalogWriter})
+ * are read from {@code coding.catalog.directory}. Every {@code coding.catalog.reload-interval}
+ * the directory is scanned, and a file with a higher table version than the current one
+ * is mapped and replaces it; lookups in progress finish on the catalog they started with.
+ * A file that cannot be read is logged and skipped, and the current catalog stays.</p>
+ *
+ * <p>Without a directory, or while it holds no catalog, the codes bundled in
+ * {@code coding/catalog.tsv} are used (as table version 0).</p>
+ *
+ * <p>Published meters: {@code coding.catalog.version} and {@code coding.catalog.codes}
+ * (gauges) and {@code coding.catalog.reloads} (counter, per {@code result}).</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class CodeCatalogService {
+
+    static final String FILE_GLOB = "code-catalog-*.bin";
+
+    private final Path directory;
+    private final Resource bundledCodes;
+    private final Counter reloads;
+    private final Counter failedReloads;
+
+    private volatile CodeCatalog catalog;
+
+    public CodeCatalogService(
+            @Value("${coding.catalog.directory:}") String directory,
+            @Value("${coding.catalog.bundled:classpath:coding/catalog.tsv}") Resource bundledCodes,
+            MeterRegistry meterRegistry) {
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+        this.bundledCodes = bundledCodes;
+        this.reloads = Counter.builder("coding.catalog.reloads")
+            .description("Code catalog versions loaded")
+            .tag("result", "success")
+            .register(meterRegistry);
+        this.failedReloads = Counter.builder("coding.catalog.reloads")
+            .description("Code catalog versions loaded")
+            .tag("result", "failure")
+            .register(meterRegistry);
+        Gauge.builder("coding.catalog.version", this, service -> service.catalog == null ? -1 : service.catalog.getVersion())
+            .description("Table version of the code catalog in use")
+            .register(meterRegistry);
+        Gauge.builder("coding.catalog.codes", this, service -> service.catalog == null ? 0 : service.catalog.size())
+            .description("Codes in the code catalog in use")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        reload();
+        if (catalog == null) {
+            catalog = loadBundled();
+            log.info("Loaded bundled code catalog {} - codes: {}", bundledCodes.getDescription(), catalog.size());
+        }
+    }
+
+    /**
+     * Switches to the newest catalog file in the directory, if it is newer than the
+     * current one.
+     */
+    @Scheduled(fixedDelayString = "${coding.catalog.reload-interval:PT1M}",
+               initialDelayString = "${coding.catalog.reload-interval:PT1M}")
+    public void reload() {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        Path newest = null;
+        long newestVersion = catalog == null ? Long.MIN_VALUE : catalog.getVersion();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_GLOB)) {
+            for (Path file : files) {
+                try {
+                    long version = CodeCatalog.readVersion(file);
+                    if (version > newestVersion) {
+                        newest = file;
+                        newestVersion = version;
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    log.warn("Skipping code catalog file {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list code catalog directory {}: {}", directory, e.getMessage());
+            return;
+        }
+        if (newest == null) {
+            return;
+        }
+
+        try {
+            CodeCatalog loaded = CodeCatalog.open(newest);
+            CodeCatalog previous = catalog;
+            catalog = loaded;
+            reloads.increment();
+            log.info("Loaded code catalog version {} from {} - codes: {} (was version {})",
+                    loaded.getVersion(), newest, loaded.size(), previous == null ? "none" : previous.getVersion());
+        } catch (IOException | IllegalArgumentException e) {
+            failedReloads.increment();
+            log.warn("Could not load code catalog {}: {}", newest, e.getMessage());
+        }
+    }
+
+    /**
+     * The catalog in use. Callers doing several lookups that must agree should keep the
+     * returned instance rather than call this again.
+     */
+    public CodeCatalog getCatalog() {
+        return catalog;
+    }
+
+    public boolean exists(CodeSystem system, String code) {
+        return catalog.contains(system, code);
+    }
+
+    /**
+     * Whether a code exists and may be billed on {@code date}.
+     */
+    public boolean isValid(CodeSystem system, String code, LocalDate date) {
+        return catalog.isValid(system, code, date);
+    }
+
+    /**
+     * Description of a code, {@code null} if it does not exist.
+     */
+    public String description(CodeSystem system, String code) {
+        return catalog.description(system, code);
+    }
+
+    private CodeCatalog loadBundled() {
+        try (Reader reader = new InputStreamReader(bundledCodes.getInputStream(), StandardCharsets.UTF_8)) {
+            Path file = Files.createTempFile("code-catalog-bundled-", ".bin");
+            file.toFile().deleteOnExit();
+            CodeCatalogWriter.write(file, 0, CodeCatalogWriter.readTsv(reader));
+            return CodeCatalog.open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load bundled code catalog " + bundledCodes, e);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.hospital.services.coding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds the binary files read by {@link CodeCatalog}.
+ *
+ * <p>New table versions are built offline, for example from the ANS/DATASUS
+ * publications exported as a tab-separated file, and dropped into
+ * {@code coding.catalog.directory}:</p>
+ * <pre>
+ * java -cp revenue-cycle.jar -Dloader.main=com.hospital.services.coding.CodeCatalogWriter \
+ *     org.springframework.boot.loader.PropertiesLauncher codes.tsv 202601 code-catalog-202601.bin
+ * </pre>
+ *
+ * <p>The tab-separated input has one code per line: {@code system, code, validFrom,
+ * validTo, description}, with ISO dates and empty {@code validFrom}/{@code validTo} for
+ * open ends; blank lines and lines starting with {@code #} are skipped.</p>
+ *
+ * <p>The perfect hash is built with hash and displace: codes are hashed into buckets of
+ * about four, and each bucket, largest first, gets the smallest displacement that places
+ * all its codes into free slots. With slots for 10% more codes than there are, a
+ * displacement is found after a handful of attempts.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+public final class CodeCatalogWriter {
+
+    private static final int CODES_PER_BUCKET = 4;
+    private static final int MAX_DISPLACEMENT = 1 << 24;
+
+    private static final Comparator<CodeCatalogEntry> ORDER = Comparator
+        .comparing(CodeCatalogEntry::getSystem)
+        .thenComparing(CodeCatalogEntry::getCode);
+
+    private CodeCatalogWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            log.error("Usage: CodeCatalogWriter <codes.tsv> <version> <catalog.bin>");
+            System.exit(2);
+        }
+        List<CodeCatalogEntry> entries;
+        try (Reader reader = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            entries = readTsv(reader);
+        }
+        write(Path.of(args[2]), Long.parseLong(args[1]), entries);
+        log.info("Wrote {} codes to {}", entries.size(), args[2]);
+    }
+
+    /**
+     * Reads codes from the tab-separated format described above.
+     *
+     * @throws IllegalArgumentException on a malformed line
+     */
+    public static List<CodeCatalogEntry> readTsv(Reader source) throws IOException {
+        List<CodeCatalogEntry> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            if (columns.length != 5) {
+                throw new IllegalArgumentException("Code catalog line " + lineNumber
+                    + " must have 5 tab-separated columns: " + line);
+            }
+            entries.add(new CodeCatalogEntry(
+                CodeSystem.valueOf(columns[0].trim()),
+                columns[1].trim(),
+                columns[4].trim(),
+                columns[2].isBlank() ? null : LocalDate.parse(columns[2].trim()),
+                columns[3].isBlank() ? null : LocalDate.parse(columns[3].trim())));
+        }
+        return entries;
+    }
+
+    /**
+     * Writes a catalog of {@code entries} to {@code target}. The file is written next to
+     * the target and then moved into place, so a watching {@link CodeCatalogService}
+     * never sees a partial file.
+     *
+     * @throws IllegalArgumentException on duplicate or non-ASCII codes
+     */
+    public static void write(Path target, long version, Collection<CodeCatalogEntry> entries) throws IOException {
+        CodeCatalogEntry[] sorted = entries.toArray(new CodeCatalogEntry[0]);
+        Arrays.sort(sorted, ORDER);
+        int size = sorted.length;
+
+        long[] hashes = new long[size];
+        byte[][] codes = new byte[size][];
+        byte[][] descriptions = new byte[size][];
+        int stringsLength = 0;
+        for (int i = 0; i < size; i++) {
+            CodeCatalogEntry entry = sorted[i];
+            if (i > 0 && ORDER.compare(sorted[i - 1], entry) == 0) {
+                throw new IllegalArgumentException("Duplicate code " + entry.getSystem() + " " + entry.getCode());
+            }
+            String code = entry.getCode();
+            if (code.isEmpty() || code.length() > 255 || !code.chars().allMatch(c -> c < 128)) {
+                throw new IllegalArgumentException("Codes must have 1 to 255 ASCII characters: " + code);
+            }
+            hashes[i] = CodeCatalog.hash(entry.getSystem(), code);
+            codes[i] = code.getBytes(StandardCharsets.US_ASCII);
+            descriptions[i] = (entry.getDescription() == null ? "" : entry.getDescription())
+                .getBytes(StandardCharsets.UTF_8);
+            stringsLength += codes[i].length + descriptions[i].length;
+        }
+
+        int buckets = Math.max(1, size / CODES_PER_BUCKET);
+        int slots = Math.max(1, size + size / 10);
+        int[] displacements = new int[buckets];
+        int[] slotOrdinals = place(hashes, buckets, slots, displacements);
+
+        int entriesOffset = CodeCatalog.HEADER_SIZE + 4 * buckets + 4 * slots;
+        int stringsOffset = entriesOffset + CodeCatalog.RECORD_SIZE * size;
+        ByteBuffer buffer = ByteBuffer.allocate(stringsOffset + stringsLength);
+        buffer.putInt(CodeCatalog.MAGIC)
+            .putInt(CodeCatalog.FORMAT)
+            .putLong(version)
+            .putInt(size)
+            .putInt(buckets)
+            .putInt(slots)
+            .putInt(entriesOffset)
+            .putInt(stringsOffset)
+            .putInt(0);
+        for (int displacement : displacements) {
+            buffer.putInt(displacement);
+        }
+        for (int ordinal : slotOrdinals) {
+            buffer.putInt(ordinal);
+        }
+        int stringOffset = 0;
+        for (int i = 0; i < size; i++) {
+            CodeCatalogEntry entry = sorted[i];
+            buffer.put((byte) entry.getSystem().ordinal())
+                .put((byte) codes[i].length)
+                .putShort((short) 0)
+                .putInt(stringOffset)
+                .putInt(stringOffset + codes[i].length)
+                .putInt(descriptions[i].length)
+                .putInt(entry.getValidFrom() == null ? CodeCatalog.OPEN_START
+                    : Math.toIntExact(entry.getValidFrom().toEpochDay()))
+                .putInt(entry.getValidTo() == null ? CodeCatalog.OPEN_END
+                    : Math.toIntExact(entry.getValidTo().toEpochDay()));
+            stringOffset += codes[i].length + descriptions[i].length;
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.put(codes[i]).put(descriptions[i]);
+        }
+
+        Path absolute = target.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), ".code-catalog-", ".tmp");
+        try {
+            Files.write(temporary, buffer.array());
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Finds a displacement per bucket such that every code lands in its own slot.
+     *
+     * @return the ordinal in each slot, -1 for empty slots
+     */
+    private static int[] place(long[] hashes, int buckets, int slots, int[] displacements) {
+        int[] bucketSize = new int[buckets + 1];
+        for (long hash : hashes) {
+            bucketSize[CodeCatalog.bucket(hash, buckets) + 1]++;
+        }
+        // Ordinals grouped by bucket: members of bucket b are at [start[b], start[b + 1])
+        int[] start = new int[buckets + 1];
+        for (int b = 0; b < buckets; b++) {
+            start[b + 1] = start[b] + bucketSize[b + 1];
+        }
+        int[] members = new int[hashes.length];
+        int[] fill = Arrays.copyOf(start, buckets);
+        for (int ordinal = 0; ordinal < hashes.length; ordinal++) {
+            members[fill[CodeCatalog.bucket(hashes[ordinal], buckets)]++] = ordinal;
+        }
+        Integer[] order = new Integer[buckets];
+        for (int b = 0; b < buckets; b++) {
+            order[b] = b;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer b) -> start[b + 1] - start[b]).reversed());
+
+        int[] slotOrdinals = new int[slots];
+        Arrays.fill(slotOrdinals, -1);
+        int[] candidate = new int[CODES_PER_BUCKET * 8];
+        for (int bucket : order) {
+            int from = start[bucket];
+            int count = start[bucket + 1] - from;
+            if (count == 0) {
+                continue;
+            }
+            if (candidate.length < count) {
+                candidate = new int[count];
+            }
+            int displacement = 0;
+            while (!fits(hashes, members, from, count, displacement, slotOrdinals, candidate)) {
+                if (++displacement == MAX_DISPLACEMENT) {
+                    throw new IllegalStateException("No perfect hash found; duplicate 64-bit code hashes?");
+                }
+            }
+            displacements[bucket] = displacement;
+            for (int i = 0; i < count; i++) {
+                slotOrdinals[candidate[i]] = members[from + i];
+            }
+        }
+        return slotOrdinals;
+    }
+
+    private static boolean fits(long[] hashes, int[] members, int from, int count, int displacement,
+                                int[] slotOrdinals, int[] candidate) {
+        int slots = slotOrdinals.length;
+        for (int i = 0; i < count; i++) {
+            int slot = CodeCatalog.slot(hashes[members[from + i]], displacement, slots);
+            if (slotOrdinals[slot] >= 0) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (candidate[j] == slot) {
+                    return false;
+                }
+            }
+            candidate[i] = slot;
+        }
+        return true;
+    }
+}
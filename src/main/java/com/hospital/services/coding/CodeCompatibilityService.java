@@ -0,0 +1,82 @@
+package com.hospital.services.coding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Checks ICD-10 x TUSS pairs against the rules in {@code coding.compatibility.rules}.
+ *
+ * <p>The rules are read once; the {@link CompatibilityIndex} is built over the catalog in
+ * use and rebuilt, on first use, after the {@link CodeCatalogService} loads a new table
+ * version.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class CodeCompatibilityService {
+
+    private final CodeCatalogService catalogService;
+    private final List<CompatibilityRule> rules;
+
+    private volatile CompatibilityIndex index;
+
+    public CodeCompatibilityService(
+            @Value("${coding.compatibility.rules:classpath:coding/compatibility.tsv}") Resource rulesFile,
+            CodeCatalogService catalogService) {
+        this.catalogService = catalogService;
+        try (Reader reader = new InputStreamReader(rulesFile.getInputStream(), StandardCharsets.UTF_8)) {
+            this.rules = CompatibilityIndex.readRules(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read compatibility rules " + rulesFile, e);
+        }
+        log.info("Loaded {} ICD-10 x TUSS compatibility rules from {}", rules.size(), rulesFile.getDescription());
+    }
+
+    /**
+     * The index over the catalog in use.
+     */
+    public CompatibilityIndex getIndex() {
+        return getIndex(catalogService.getCatalog());
+    }
+
+    /**
+     * The index over {@code catalog}, so that its ordinals agree with lookups already
+     * made on that catalog.
+     */
+    public CompatibilityIndex getIndex(CodeCatalog catalog) {
+        CompatibilityIndex current = index;
+        if (current != null && current.getCatalog() == catalog) {
+            return current;
+        }
+        synchronized (this) {
+            current = index;
+            if (current == null || current.getCatalog() != catalog) {
+                long start = System.nanoTime();
+                current = CompatibilityIndex.build(catalog, rules);
+                index = current;
+                log.info("Built ICD-10 x TUSS compatibility index for catalog version {} - constraints: {}, took {} ms",
+                    catalog.getVersion(), current.constraintCount(), (System.nanoTime() - start) / 1_000_000);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Every incompatible pair of the given diagnoses and procedures.
+     */
+    public List<CompatibilityViolation> violations(Collection<String> icd10Codes, Collection<String> tussCodes) {
+        return getIndex().violations(icd10Codes, tussCodes);
+    }
+}
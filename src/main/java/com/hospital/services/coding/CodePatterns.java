@@ -0,0 +1,80 @@
+package com.hospital.services.coding;
+
+import java.util.regex.Pattern;
+
+/**
+ * Code patterns of the rule and table files: a code ({@code I10}), a code prefix
+ * ({@code Z*}) or an inclusive range of code prefixes ({@code I20-I25}, which includes
+ * {@code I25.9}).
+ *
+ * <p>Catalog ordinals follow code order, so every pattern selects a run of consecutive
+ * ordinals, found with two binary searches over the catalog.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+final class CodePatterns {
+
+    private static final Pattern TUSS = Pattern.compile("[0-9]{1,8}(\\*|-[0-9]{1,8})?");
+    private static final Pattern ICD10 = Pattern.compile("[A-Z][0-9A-Z.]*(\\*|-[A-Z][0-9A-Z.]*)?");
+
+    private CodePatterns() {
+    }
+
+    static boolean isValid(CodeSystem system, String pattern) {
+        switch (system) {
+            case ICD10: return ICD10.matcher(pattern).matches();
+            case TUSS: return TUSS.matcher(pattern).matches();
+            default: return !pattern.isEmpty();
+        }
+    }
+
+    /**
+     * Ordinals {@code [from, to)} of the codes of {@code system} matching {@code pattern},
+     * relative to the first ordinal of the system. A code missing from the catalog
+     * matches nothing.
+     */
+    static int[] range(CodeCatalog catalog, CodeSystem system, String pattern) {
+        if (pattern.endsWith("*")) {
+            String prefix = pattern.substring(0, pattern.length() - 1);
+            return new int[]{lowerBound(catalog, system, prefix), lowerBound(catalog, system, successor(prefix))};
+        }
+        int dash = pattern.indexOf('-', 1);
+        if (dash > 0 && system != CodeSystem.CBHPM) {
+            int from = lowerBound(catalog, system, pattern.substring(0, dash));
+            int to = lowerBound(catalog, system, successor(pattern.substring(dash + 1)));
+            return new int[]{from, Math.max(from, to)};
+        }
+        int ordinal = catalog.ordinal(system, pattern);
+        if (ordinal < 0) {
+            return new int[]{0, 0};
+        }
+        int relative = ordinal - catalog.firstOrdinal(system);
+        return new int[]{relative, relative + 1};
+    }
+
+    /**
+     * Relative ordinal of the first code of {@code system} not below {@code key}.
+     */
+    private static int lowerBound(CodeCatalog catalog, CodeSystem system, String key) {
+        int first = catalog.firstOrdinal(system);
+        int low = 0;
+        int high = catalog.count(system);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (catalog.code(first + middle).compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Smallest string above every string starting with {@code prefix}.
+     */
+    private static String successor(String prefix) {
+        return prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
+    }
+}
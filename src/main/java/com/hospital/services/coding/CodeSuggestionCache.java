@@ -0,0 +1,88 @@
+package com.hospital.services.coding;
+
+import com.hospital.util.BoundedCache;
+import com.hospital.util.KeyHasher;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Bounded memo cache of {@link CodeSuggestions}, keyed by a hash of the normalized
+ * (diagnosis, procedure, comorbidities) text.
+ *
+ * <p>Texts are normalized with the {@link ClinicalTextNormalizer}, so differences in case,
+ * accents and punctuation do not miss; comorbidities keep their order, which is the order
+ * of the secondary diagnoses. The key is the SHA-256 of the normalized texts and the
+ * provider name, so the cache holds no clinical text. Least-recently-used entries are
+ * evicted beyond {@code coding.suggestion.cache.max-size}, and entries live at most
+ * {@code coding.suggestion.cache.ttl}, in a {@link BoundedCache}. A max-size of 0 disables
+ * the cache.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+final class CodeSuggestionCache {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final long ttlMillis;
+    private final BoundedCache<String, CodeSuggestions> entries;
+
+    CodeSuggestionCache(int maxSize, Duration ttl) {
+        this.ttlMillis = ttl.toMillis();
+        this.entries = new BoundedCache<>(maxSize);
+    }
+
+    /**
+     * The cache key of {@code request} for {@code provider}.
+     */
+    static String key(String provider, CodingRequest request) {
+        KeyHasher hasher = KeyHasher.start()
+            .append(provider)
+            .append(KEY_SEPARATOR).append(normalize(request.getDiagnosisDescription()))
+            .append(KEY_SEPARATOR).append(normalize(request.getProcedureDescription()));
+        List<String> comorbidities = request.getComorbidities();
+        for (String comorbidity : comorbidities) {
+            hasher.append(KEY_SEPARATOR).append(normalize(comorbidity));
+        }
+        return hasher.toHex();
+    }
+
+    /**
+     * The cached suggestions, or {@code null} on a miss.
+     */
+    CodeSuggestions get(String key) {
+        return entries.get(key);
+    }
+
+    void put(String key, CodeSuggestions suggestions) {
+        entries.put(key, suggestions, System.currentTimeMillis() + ttlMillis);
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getHitCount() {
+        return entries.getHitCount();
+    }
+
+    long getMissCount() {
+        return entries.getMissCount();
+    }
+
+    /**
+     * Ratio of hits to lookups since startup, 0 if nothing was looked up.
+     */
+    double getHitRate() {
+        return entries.getHitRate();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : ClinicalTextNormalizer.normalize(text);
+    }
+}
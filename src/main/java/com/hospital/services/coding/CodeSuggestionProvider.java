@@ -0,0 +1,33 @@
+package com.hospital.services.coding;
+
+import java.util.List;
+
+/**
+ * Source of code suggestions for the {@link CodeSuggestionService}, such as the synonym
+ * dictionary or a remote AI/LLM coding model.
+ *
+ * <p>Providers are Spring beans selected by {@link #getName()} with
+ * {@code coding.suggestion.provider}. Except for the {@link DictionarySuggestionProvider},
+ * which also serves as the fallback, a provider is called with micro-batches of
+ * concurrent requests, so a remote implementation should map one call to one model
+ * request. Implementations must be thread-safe: several batches may be in flight.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public interface CodeSuggestionProvider {
+
+    /**
+     * Name selecting this provider in {@code coding.suggestion.provider}.
+     */
+    String getName();
+
+    /**
+     * Suggests codes for every request.
+     *
+     * @return one suggestion per request, in the order of {@code requests}
+     * @throws RuntimeException if the batch could not be answered; its requests then fall
+     *         back to the dictionary
+     */
+    List<CodeSuggestions> suggest(List<CodingRequest> requests);
+}
@@ -0,0 +1,197 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Suggests codes for encounters with the {@link CodeSuggestionProvider} selected by
+ * {@code coding.suggestion.provider}.
+ *
+ * <p>Suggestions are memoized in a {@link CodeSuggestionCache}. On a miss, the
+ * {@code dictionary} provider is called directly; any other provider gets the request in
+ * a micro-batch ({@link SuggestionBatcher}) and has {@code coding.suggestion.timeout} to
+ * answer. A request that times out, is rejected because the provider is saturated, or
+ * fails, is answered by the dictionary instead. A late answer is still cached, so that
+ * a retry of the same encounter does not wait again; fallback answers are not.</p>
+ *
+ * <p>Published meters:</p>
+ * <ul>
+ *   <li>{@code coding.suggestion.cache} - lookups, tagged with {@code result}
+ *       ({@code hit} or {@code miss}), and {@code coding.suggestion.cache.hit.rate},
+ *       {@code coding.suggestion.cache.size} (gauges)</li>
+ *   <li>{@code coding.suggestion.latency} - time to answer a request, tagged with the
+ *       {@code source} of the answer ({@code cache}, {@code provider} or {@code fallback})</li>
+ *   <li>{@code coding.suggestion.fallbacks} - requests answered by the dictionary, tagged
+ *       with the {@code reason} ({@code timeout}, {@code rejected} or {@code error})</li>
+ *   <li>{@code coding.suggestion.provider.latency} and {@code coding.suggestion.batch.size}
+ *       - provider calls and their batch sizes</li>
+ * </ul>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class CodeSuggestionService {
+
+    private final CodeSuggestionProvider provider;
+    private final DictionarySuggestionProvider dictionary;
+    private final SuggestionBatcher batcher;
+    private final CodeSuggestionCache cache;
+    private final long timeoutNanos;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer cacheLatency;
+    private final Timer providerLatency;
+    private final Timer fallbackLatency;
+    private final Counter timeouts;
+    private final Counter rejections;
+    private final Counter errors;
+
+    public CodeSuggestionService(
+            List<CodeSuggestionProvider> providers,
+            DictionarySuggestionProvider dictionary,
+            @Value("${coding.suggestion.provider:dictionary}") String providerName,
+            @Value("${coding.suggestion.timeout:PT2S}") Duration timeout,
+            @Value("${coding.suggestion.batch.max-size:32}") int maxBatchSize,
+            @Value("${coding.suggestion.batch.max-wait:PT0.005S}") Duration maxWait,
+            @Value("${coding.suggestion.batch.max-concurrent-calls:4}") int maxConcurrentCalls,
+            @Value("${coding.suggestion.batch.queue-capacity:1000}") int queueCapacity,
+            @Value("${coding.suggestion.cache.max-size:10000}") int cacheMaxSize,
+            @Value("${coding.suggestion.cache.ttl:PT1H}") Duration cacheTtl,
+            MeterRegistry meterRegistry) {
+        this.provider = providers.stream()
+            .filter(candidate -> candidate.getName().equals(providerName))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("Unknown coding.suggestion.provider " + providerName));
+        this.dictionary = dictionary;
+        this.batcher = provider == dictionary ? null : new SuggestionBatcher(provider, maxBatchSize, maxWait,
+            maxConcurrentCalls, queueCapacity, meterRegistry);
+        this.cache = new CodeSuggestionCache(cacheMaxSize, cacheTtl);
+        this.timeoutNanos = timeout.toNanos();
+
+        this.cacheHits = cacheCounter(meterRegistry, "hit");
+        this.cacheMisses = cacheCounter(meterRegistry, "miss");
+        Gauge.builder("coding.suggestion.cache.hit.rate", cache, CodeSuggestionCache::getHitRate)
+            .description("Ratio of suggestion cache hits to lookups since startup")
+            .register(meterRegistry);
+        Gauge.builder("coding.suggestion.cache.size", cache, CodeSuggestionCache::size)
+            .description("Suggestions held in the memo cache")
+            .register(meterRegistry);
+        this.cacheLatency = latencyTimer(meterRegistry, "cache");
+        this.providerLatency = latencyTimer(meterRegistry, "provider");
+        this.fallbackLatency = latencyTimer(meterRegistry, "fallback");
+        this.timeouts = fallbackCounter(meterRegistry, "timeout");
+        this.rejections = fallbackCounter(meterRegistry, "rejected");
+        this.errors = fallbackCounter(meterRegistry, "error");
+
+        log.info("Code suggestions by provider {} (timeout {}, cache max-size {})",
+            provider.getName(), timeout, cacheMaxSize);
+    }
+
+    /**
+     * Suggests codes for one encounter, waiting at most {@code coding.suggestion.timeout}
+     * for the provider.
+     */
+    public CodeSuggestions suggest(CodingRequest request) {
+        long start = System.nanoTime();
+        String key = CodeSuggestionCache.key(provider.getName(), request);
+        CodeSuggestions cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.increment();
+            cacheLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+        cacheMisses.increment();
+
+        if (batcher == null) {
+            CodeSuggestions suggestions = dictionary.suggest(request);
+            cache.put(key, suggestions);
+            providerLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return suggestions;
+        }
+
+        CompletableFuture<CodeSuggestions> future = batcher.submit(request, start + timeoutNanos);
+        // Caches the answer even if it arrives after the deadline
+        future.thenAccept(suggestions -> cache.put(key, suggestions));
+        try {
+            CodeSuggestions suggestions = future.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+            providerLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return suggestions;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.debug("Suggestion provider {} missed the deadline for {}", provider.getName(), request.getEncounterId());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                timeouts.increment();
+            } else if (e.getCause() instanceof RejectedExecutionException) {
+                rejections.increment();
+            } else {
+                errors.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errors.increment();
+        }
+        CodeSuggestions suggestions = dictionary.suggest(request);
+        fallbackLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return suggestions;
+    }
+
+    /**
+     * Name of the provider in use.
+     */
+    public String getProviderName() {
+        return provider.getName();
+    }
+
+    /**
+     * Drops every memoized suggestion, e.g. after the dictionary or model changed.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+
+    private static Counter cacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("coding.suggestion.cache")
+            .description("Suggestion memo cache lookups")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private static Timer latencyTimer(MeterRegistry meterRegistry, String source) {
+        return Timer.builder("coding.suggestion.latency")
+            .description("Time to answer a code suggestion request")
+            .tag("source", source)
+            .register(meterRegistry);
+    }
+
+    private static Counter fallbackCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("coding.suggestion.fallbacks")
+            .description("Suggestion requests answered by the dictionary instead of the provider")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,72 @@
+package com.hospital.services.coding;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codes suggested for an encounter, best first within each code system, with the
+ * confidence of the suggestion.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class CodeSuggestions {
+
+    /** Confidence at or above which the codes are approved without review. */
+    public static final double AUTO_APPROVE_THRESHOLD = 0.95;
+
+    /** Confidence below which the codes get a low-confidence review. */
+    public static final double MANUAL_REVIEW_THRESHOLD = 0.75;
+
+    /** Diagnoses; the first is the principal diagnosis. */
+    List<CodeCandidate> icd10Codes;
+
+    List<CodeCandidate> tussCodes;
+
+    List<CodeCandidate> cbhpmCodes;
+
+    double icd10Confidence;
+
+    double tussConfidence;
+
+    /** Weighted confidence of the diagnoses (60%) and procedures (40%). */
+    double overallConfidence;
+
+    public String getPrimaryDiagnosisCode() {
+        return icd10Codes.isEmpty() ? null : icd10Codes.get(0).getCode();
+    }
+
+    public String getPrimaryProcedureCode() {
+        return tussCodes.isEmpty() ? null : tussCodes.get(0).getCode();
+    }
+
+    /**
+     * The suggested codes of {@code system}, best first.
+     */
+    public List<String> codes(CodeSystem system) {
+        List<CodeCandidate> candidates = system == CodeSystem.ICD10 ? icd10Codes
+            : system == CodeSystem.TUSS ? tussCodes : cbhpmCodes;
+        List<String> codes = new ArrayList<>(candidates.size());
+        for (CodeCandidate candidate : candidates) {
+            codes.add(candidate.getCode());
+        }
+        return codes;
+    }
+
+    public boolean requiresReview() {
+        return overallConfidence < AUTO_APPROVE_THRESHOLD;
+    }
+
+    public String reviewReason() {
+        if (overallConfidence >= AUTO_APPROVE_THRESHOLD) {
+            return "AUTO_APPROVED_HIGH_CONFIDENCE";
+        } else if (overallConfidence >= MANUAL_REVIEW_THRESHOLD) {
+            return "REVIEW_MEDIUM_CONFIDENCE";
+        } else {
+            return "REVIEW_LOW_CONFIDENCE";
+        }
+    }
+}
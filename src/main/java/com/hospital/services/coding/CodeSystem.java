@@ -0,0 +1,19 @@
+package com.hospital.services.coding;
+
+/**
+ * Medical code systems used in billing.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public enum CodeSystem {
+
+    /** CID-10, the Brazilian ICD-10 diagnosis codes. */
+    ICD10,
+
+    /** TUSS procedure codes (ANS standard terminology). */
+    TUSS,
+
+    /** CBHPM, the AMB fee table of medical procedures. */
+    CBHPM
+}
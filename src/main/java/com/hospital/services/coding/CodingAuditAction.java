@@ -0,0 +1,37 @@
+package com.hospital.services.coding;
+
+/**
+ * Steps of a coding execution recorded in the audit trail.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public enum CodingAuditAction {
+
+    /** Clinical data read from the process variables. */
+    INPUT_EXTRACTED,
+
+    /** Required clinical data present. */
+    INPUT_VALIDATED,
+
+    /** Codes suggested for the clinical text. */
+    CODES_SUGGESTED,
+
+    /** Code formats, validity and ICD-10 x TUSS combinations checked. */
+    CODES_VALIDATED,
+
+    /** Encounter grouped with the current DRG tables. */
+    DRG_CLASSIFIED,
+
+    /** Auto-approval or manual review decided from the confidence. */
+    CONFIDENCE_ASSESSED,
+
+    /** {@code validateCoding} decision table evaluated. */
+    DMN_EVALUATED,
+
+    /** Coding failed on the clinical data or the codes. */
+    CODING_ERROR,
+
+    /** Coding failed on an unexpected error. */
+    SYSTEM_ERROR
+}
@@ -0,0 +1,111 @@
+package com.hospital.services.coding;
+
+import java.util.Arrays;
+
+/**
+ * Audit entries of one coding execution, kept in preallocated arrays until the execution
+ * ends and {@link CodingAuditSink#submit} hands them to the writer.
+ *
+ * <p>Recording an entry stores its action, the wall-clock time and the detail object as
+ * given: the detail is turned into text by the writer thread, so it must not change after
+ * it is recorded. A buffer is filled by the thread running the execution and is not
+ * thread-safe; once submitted, further entries are rejected.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public final class CodingAuditBuffer {
+
+    private final String auditId;
+    private final String processInstanceId;
+    private final String activityId;
+
+    private long[] recordedAt;
+    private CodingAuditAction[] actions;
+    private Object[] details;
+    private int size;
+    private boolean submitted;
+
+    CodingAuditBuffer(String auditId, String processInstanceId, String activityId, int capacity) {
+        this.auditId = auditId;
+        this.processInstanceId = processInstanceId;
+        this.activityId = activityId;
+        this.recordedAt = new long[capacity];
+        this.actions = new CodingAuditAction[capacity];
+        this.details = new Object[capacity];
+    }
+
+    /**
+     * Records a step of the execution.
+     *
+     * @param detail step data, rendered with {@link String#valueOf(Object)} when written; may be null
+     * @throws IllegalStateException if the buffer was already submitted
+     */
+    public void add(CodingAuditAction action, Object detail) {
+        if (submitted) {
+            throw new IllegalStateException("Audit trail " + auditId + " was already submitted");
+        }
+        if (size == actions.length) {
+            int capacity = Math.max(8, size * 2);
+            recordedAt = Arrays.copyOf(recordedAt, capacity);
+            actions = Arrays.copyOf(actions, capacity);
+            details = Arrays.copyOf(details, capacity);
+        }
+        recordedAt[size] = System.currentTimeMillis();
+        actions[size] = action;
+        details[size] = detail;
+        size++;
+    }
+
+    /**
+     * Reference of the trail in {@code coding_audit_entries}, kept by the process instead
+     * of the entries.
+     */
+    public String getAuditId() {
+        return auditId;
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public String getActivityId() {
+        return activityId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Epoch milliseconds the {@code index}-th entry was recorded at. */
+    long recordedAt(int index) {
+        return recordedAt[index];
+    }
+
+    CodingAuditAction action(int index) {
+        return actions[index];
+    }
+
+    Object detail(int index) {
+        return details[index];
+    }
+
+    /**
+     * Marks the buffer submitted.
+     *
+     * @return false if it already was
+     */
+    boolean markSubmitted() {
+        if (submitted) {
+            return false;
+        }
+        submitted = true;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "CodingAuditBuffer[auditId=" + auditId + ", process=" + processInstanceId
+            + ", activity=" + activityId + ", entries=" + size + "]";
+    }
+}
@@ -0,0 +1,64 @@
+package com.hospital.services.coding;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * JPA Entity representing one step of the audit trail of a coding execution.
+ *
+ * <p>The table is append-only. Entries are written in JDBC batches by the
+ * {@link CodingAuditSink} and read back by {@code auditId}, the reference the process
+ * keeps, through {@link CodingAuditJdbcRepository}.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Entity
+@Table(
+    name = "coding_audit_entries",
+    indexes = {
+        @Index(name = "idx_coding_audit_entries_audit_id", columnList = "audit_id"),
+        @Index(name = "idx_coding_audit_entries_process", columnList = "process_instance_id")
+    }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "id")
+public class CodingAuditEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Trail the entry belongs to, kept by the process as {@code codingAuditId}.
+     */
+    @Column(name = "audit_id", nullable = false, length = 36)
+    private String auditId;
+
+    @Column(name = "process_instance_id", length = 64)
+    private String processInstanceId;
+
+    @Column(name = "activity_id", length = 255)
+    private String activityId;
+
+    /**
+     * Position of the entry in its trail, from 0.
+     */
+    @Column(name = "seq", nullable = false)
+    private int sequence;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "action", nullable = false, length = 32)
+    private CodingAuditAction action;
+
+    @Column(name = "detail", length = CodingAuditJdbcRepository.MAX_DETAIL_LENGTH)
+    private String detail;
+
+    @Column(name = "recorded_at", nullable = false)
+    private LocalDateTime recordedAt;
+}
@@ -0,0 +1,87 @@
+package com.hospital.services.coding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain JDBC access to the append-only {@code coding_audit_entries} table.
+ *
+ * <p>Entries are only ever inserted, the trails of several executions in one JDBC batch
+ * ({@link #appendAll}), and read back by the audit id the process keeps.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Repository
+public class CodingAuditJdbcRepository {
+
+    /** Width of the {@code detail} column; longer details are truncated. */
+    static final int MAX_DETAIL_LENGTH = 1024;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO coding_audit_entries (audit_id, process_instance_id, activity_id, seq, action,"
+            + " detail, recorded_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String FIND_BY_AUDIT_ID_SQL =
+        "SELECT id, audit_id, process_instance_id, activity_id, seq, action, detail, recorded_at"
+            + " FROM coding_audit_entries WHERE audit_id = ? ORDER BY seq";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CodingAuditJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts every entry of {@code trails} with one JDBC batch.
+     *
+     * @return the number of entries inserted
+     */
+    public int appendAll(List<CodingAuditBuffer> trails) {
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (CodingAuditBuffer trail : trails) {
+            for (int i = 0; i < trail.size(); i++) {
+                batchArgs.add(new Object[]{
+                    trail.getAuditId(), trail.getProcessInstanceId(), trail.getActivityId(), i,
+                    trail.action(i).name(), detail(trail.detail(i)), new Timestamp(trail.recordedAt(i))
+                });
+            }
+        }
+        if (batchArgs.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
+        return batchArgs.size();
+    }
+
+    /**
+     * The entries of one trail, in the order they were recorded.
+     */
+    public List<CodingAuditEntry> findByAuditId(String auditId) {
+        return jdbcTemplate.query(FIND_BY_AUDIT_ID_SQL, ROW_MAPPER, auditId);
+    }
+
+    static String detail(Object detail) {
+        if (detail == null) {
+            return null;
+        }
+        String text = String.valueOf(detail);
+        return text.length() > MAX_DETAIL_LENGTH ? text.substring(0, MAX_DETAIL_LENGTH) : text;
+    }
+
+    private static final RowMapper<CodingAuditEntry> ROW_MAPPER = (rs, rowNum) -> CodingAuditEntry.builder()
+        .id(rs.getLong("id"))
+        .auditId(rs.getString("audit_id"))
+        .processInstanceId(rs.getString("process_instance_id"))
+        .activityId(rs.getString("activity_id"))
+        .sequence(rs.getInt("seq"))
+        .action(CodingAuditAction.valueOf(rs.getString("action")))
+        .detail(rs.getString("detail"))
+        .recordedAt(rs.getTimestamp("recorded_at").toLocalDateTime())
+        .build();
+}
@@ -0,0 +1,224 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the audit trails of coding executions to {@code coding_audit_entries}, off the
+ * thread running the process.
+ *
+ * <p>An execution records its steps in a {@link CodingAuditBuffer} from {@link #open},
+ * preallocated for {@code coding.audit.buffer-capacity} entries, and hands it over with
+ * {@link #submit} when it ends; the process keeps only the buffer's audit id. A writer
+ * thread drains the submitted trails, up to {@code coding.audit.batch-size} at a time, and
+ * inserts their entries with one JDBC batch. Once {@code coding.audit.queue-capacity}
+ * trails are waiting, or after shutdown, a trail is written on the submitting thread
+ * instead, so trails are never dropped for lack of room.</p>
+ *
+ * <p>Trails the database rejects (e.g. the table is missing or unreachable) are kept and
+ * retried every {@code coding.audit.retry-interval}. Beyond {@code queue-capacity} kept
+ * trails, and at shutdown, a trail that still cannot be written is logged in full at
+ * ERROR level instead, so that it can be recovered from the logs.</p>
+ *
+ * <p>Published meters: {@code coding.audit.entries} (tagged with {@code result}:
+ * {@code written}, {@code failed} for failed write attempts, or {@code logged} for entries
+ * given up on and logged), {@code coding.audit.inline.writes}, and the gauges
+ * {@code coding.audit.queue.size} and {@code coding.audit.retry.size}.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class CodingAuditSink {
+
+    private static final long POLL_MILLIS = 100;
+
+    private final CodingAuditJdbcRepository repository;
+    private final int bufferCapacity;
+    private final int batchSize;
+    private final int retryCapacity;
+    private final long retryIntervalNanos;
+    private final BlockingQueue<CodingAuditBuffer> queue;
+    private final Queue<CodingAuditBuffer> retries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger retrySize = new AtomicInteger();
+    private final Thread writer;
+    private final Counter written;
+    private final Counter failed;
+    private final Counter logged;
+    private final Counter inlineWrites;
+
+    private volatile boolean running = true;
+    private volatile long nextRetry = System.nanoTime();
+
+    public CodingAuditSink(
+            CodingAuditJdbcRepository repository,
+            @Value("${coding.audit.buffer-capacity:16}") int bufferCapacity,
+            @Value("${coding.audit.queue-capacity:10000}") int queueCapacity,
+            @Value("${coding.audit.batch-size:200}") int batchSize,
+            @Value("${coding.audit.retry-interval:PT10S}") Duration retryInterval,
+            MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.bufferCapacity = bufferCapacity;
+        this.batchSize = batchSize;
+        this.retryCapacity = queueCapacity;
+        this.retryIntervalNanos = retryInterval.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.written = entriesCounter(meterRegistry, "written");
+        this.failed = entriesCounter(meterRegistry, "failed");
+        this.logged = entriesCounter(meterRegistry, "logged");
+        this.inlineWrites = Counter.builder("coding.audit.inline.writes")
+            .description("Audit trails written on the submitting thread because the queue was full")
+            .register(meterRegistry);
+        Gauge.builder("coding.audit.queue.size", queue, BlockingQueue::size)
+            .description("Audit trails waiting for the writer")
+            .register(meterRegistry);
+        Gauge.builder("coding.audit.retry.size", retrySize, AtomicInteger::get)
+            .description("Audit trails kept for another write attempt after a database error")
+            .register(meterRegistry);
+        this.writer = new Thread(this::writeSubmitted, "coding-audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * A new, empty trail for one execution of a coding activity.
+     */
+    public CodingAuditBuffer open(String processInstanceId, String activityId) {
+        return new CodingAuditBuffer(UUID.randomUUID().toString(), processInstanceId, activityId, bufferCapacity);
+    }
+
+    /**
+     * Queues {@code trail} for writing. Submitting a trail again has no effect.
+     */
+    public void submit(CodingAuditBuffer trail) {
+        if (!trail.markSubmitted()) {
+            return;
+        }
+        if (!running || !queue.offer(trail)) {
+            inlineWrites.increment();
+            write(List.of(trail));
+        }
+    }
+
+    /**
+     * Stops the writer once the trails already queued are written, and makes a last
+     * attempt at the trails kept after database errors.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever the writer did not get to, e.g. submitted while it was stopping
+        List<CodingAuditBuffer> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            write(remaining);
+            remaining.clear();
+        }
+        // Not running any more: what fails again is logged
+        while (!retries.isEmpty()) {
+            write(takeRetries());
+        }
+    }
+
+    private void writeSubmitted() {
+        List<CodingAuditBuffer> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                if (!retries.isEmpty() && System.nanoTime() - nextRetry >= 0) {
+                    write(takeRetries());
+                }
+                CodingAuditBuffer first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Audit writer failed on {} trails", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private List<CodingAuditBuffer> takeRetries() {
+        List<CodingAuditBuffer> trails = new ArrayList<>(batchSize);
+        CodingAuditBuffer trail;
+        while (trails.size() < batchSize && (trail = retries.poll()) != null) {
+            retrySize.decrementAndGet();
+            trails.add(trail);
+        }
+        return trails;
+    }
+
+    private void write(List<CodingAuditBuffer> trails) {
+        try {
+            written.increment(repository.appendAll(trails));
+        } catch (DataAccessException e) {
+            int entries = 0;
+            for (CodingAuditBuffer trail : trails) {
+                entries += trail.size();
+            }
+            failed.increment(entries);
+            log.error("Could not write {} coding audit entries of {} trails: {}", entries, trails.size(),
+                e.getMessage());
+            nextRetry = System.nanoTime() + retryIntervalNanos;
+            for (CodingAuditBuffer trail : trails) {
+                retryLater(trail);
+            }
+        }
+    }
+
+    private void retryLater(CodingAuditBuffer trail) {
+        if (running && retrySize.incrementAndGet() <= retryCapacity) {
+            retries.add(trail);
+            return;
+        }
+        if (running) {
+            retrySize.decrementAndGet();
+        }
+        logged.increment(trail.size());
+        StringBuilder entries = new StringBuilder();
+        for (int i = 0; i < trail.size(); i++) {
+            entries.append(System.lineSeparator()).append("  ").append(i).append(' ')
+                .append(Instant.ofEpochMilli(trail.recordedAt(i))).append(' ').append(trail.action(i))
+                .append(": ").append(CodingAuditJdbcRepository.detail(trail.detail(i)));
+        }
+        log.error("Coding audit trail {} of process {}, activity {} could not be written:{}",
+            trail.getAuditId(), trail.getProcessInstanceId(), trail.getActivityId(), entries);
+    }
+
+    private static Counter entriesCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("coding.audit.entries")
+            .description("Coding audit entries by outcome of their write to coding_audit_entries")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,172 @@
+package com.hospital.services.coding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Codes an encounter: suggests ICD-10, TUSS and CBHPM codes from its clinical text
+ * ({@link CodeSuggestionService}), validates them against the code catalog and the
+ * compatibility rules, and groups it with the current DRG tables.
+ *
+ * <p>Used by the {@code AssignCodesDelegate} one encounter at a time, step by step, and
+ * by the {@link BatchCodingService} for whole lots through {@link #code}. The pipeline is
+ * stateless and safe to call from several threads. Nothing is recorded here: callers
+ * persist the {@link CodingResult#getCoding() grouping} themselves.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class CodingPipeline {
+
+    // Code validation patterns (Brazilian ICD-10)
+    private static final Pattern ICD10_PATTERN = Pattern.compile("^[A-Z][0-9]{2}(\\.[0-9]{1,2})?$");
+    private static final Pattern TUSS_PATTERN = Pattern.compile("^[0-9]{8}$");
+
+    private final CodeSuggestionService suggestionService;
+    private final CodeCatalogService catalogService;
+    private final CodeCompatibilityService compatibilityService;
+    private final DrgGrouperService drgGrouperService;
+
+    public CodingPipeline(CodeSuggestionService suggestionService,
+                          CodeCatalogService catalogService,
+                          CodeCompatibilityService compatibilityService,
+                          DrgGrouperService drgGrouperService) {
+        this.suggestionService = suggestionService;
+        this.catalogService = catalogService;
+        this.compatibilityService = compatibilityService;
+        this.drgGrouperService = drgGrouperService;
+    }
+
+    /**
+     * Runs every step on one encounter, against one code catalog version.
+     */
+    public CodingResult code(CodingRequest request) {
+        List<String> missing = missingFields(request);
+        if (!missing.isEmpty()) {
+            return CodingResult.failed(request, null, CodingResult.INPUT_VALIDATION_ERROR, missing);
+        }
+        CodeCatalog catalog = catalogService.getCatalog();
+        CodeSuggestions suggestions = suggest(request);
+        List<String> errors = validate(suggestions, serviceDate(request), catalog);
+        if (!errors.isEmpty()) {
+            return CodingResult.failed(request, suggestions, CodingResult.CODE_COMBINATION_ERROR, errors);
+        }
+        return classify(request, suggestions, catalog);
+    }
+
+    /**
+     * The required clinical data missing from {@code request}, as messages.
+     */
+    public List<String> missingFields(CodingRequest request) {
+        List<String> errors = new ArrayList<>();
+        if (isBlank(request.getEncounterId())) {
+            errors.add("Medical record ID is required");
+        }
+        if (isBlank(request.getProcedureDescription())) {
+            errors.add("Procedure description is required");
+        }
+        if (isBlank(request.getDiagnosisDescription())) {
+            errors.add("Diagnosis description is required");
+        }
+        return errors;
+    }
+
+    /**
+     * Suggests codes for the encounter with the configured {@link CodeSuggestionProvider}.
+     */
+    public CodeSuggestions suggest(CodingRequest request) {
+        return suggestionService.suggest(request);
+    }
+
+    /**
+     * Checks the code formats, that the codes are billable on {@code serviceDate}, and
+     * every ICD-10 x TUSS pair.
+     *
+     * @return the errors found, empty if the codes may be billed
+     */
+    public List<String> validate(CodeSuggestions suggestions, LocalDate serviceDate) {
+        return validate(suggestions, serviceDate, catalogService.getCatalog());
+    }
+
+    /**
+     * Groups the encounter with the current DRG tables.
+     */
+    public CodingResult classify(CodingRequest request, CodeSuggestions suggestions) {
+        return classify(request, suggestions, catalogService.getCatalog());
+    }
+
+    /**
+     * Date the codes must be valid on: the procedure date (ISO), or today if absent.
+     */
+    public static LocalDate serviceDate(CodingRequest request) {
+        String procedureDate = request.getProcedureDate();
+        if (procedureDate != null && procedureDate.length() >= 10) {
+            try {
+                return LocalDate.parse(procedureDate.substring(0, 10));
+            } catch (DateTimeParseException e) {
+                log.warn("Invalid procedure date {} of {}, validating codes for today",
+                    procedureDate, request.getEncounterId());
+            }
+        }
+        return LocalDate.now();
+    }
+
+    private List<String> validate(CodeSuggestions suggestions, LocalDate serviceDate, CodeCatalog catalog) {
+        List<String> errors = new ArrayList<>();
+
+        List<String> icd10 = suggestions.codes(CodeSystem.ICD10);
+        List<String> tuss = suggestions.codes(CodeSystem.TUSS);
+        for (CompatibilityViolation violation : compatibilityService.getIndex(catalog).violations(icd10, tuss)) {
+            errors.add(String.format("ICD-10 code %s incompatible with TUSS code %s (%s)",
+                violation.getIcd10Code(), violation.getTussCode(),
+                violation.getViolatedEffect() == CompatibilityRule.Effect.DENY
+                    ? "forbidden diagnosis" : "no diagnosis justifies the procedure"));
+        }
+
+        validateCodes(errors, catalog, CodeSystem.ICD10, "ICD-10", ICD10_PATTERN, icd10, serviceDate);
+        validateCodes(errors, catalog, CodeSystem.TUSS, "TUSS", TUSS_PATTERN, tuss, serviceDate);
+        return errors;
+    }
+
+    private static void validateCodes(List<String> errors, CodeCatalog catalog, CodeSystem system, String name,
+                                      Pattern format, List<String> codes, LocalDate serviceDate) {
+        for (String code : codes) {
+            if (!format.matcher(code).matches()) {
+                errors.add("Invalid " + name + " format: " + code);
+                continue;
+            }
+            int ordinal = catalog.ordinal(system, code);
+            if (ordinal < 0) {
+                errors.add("Unknown " + name + " code: " + code);
+            } else if (!catalog.isValid(ordinal, serviceDate)) {
+                errors.add(name + " code " + code + " not valid on " + serviceDate);
+            }
+        }
+    }
+
+    private CodingResult classify(CodingRequest request, CodeSuggestions suggestions, CodeCatalog catalog) {
+        DrgGrouper grouper = drgGrouperService.getGrouper(catalog);
+        List<String> diagnoses = suggestions.codes(CodeSystem.ICD10);
+        List<String> secondaryDiagnoses = diagnoses.subList(Math.min(1, diagnoses.size()), diagnoses.size());
+        List<String> procedures = suggestions.codes(CodeSystem.TUSS);
+        int result = grouper.group(suggestions.getPrimaryDiagnosisCode(), secondaryDiagnoses, procedures);
+
+        EncounterCoding coding = drgGrouperService.grouping(request.getEncounterId(), request.getPatientId(),
+            suggestions.getPrimaryDiagnosisCode(), secondaryDiagnoses, procedures, grouper, result,
+            LocalDateTime.now());
+        return CodingResult.coded(request, suggestions, coding, grouper.drgDescription(result));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
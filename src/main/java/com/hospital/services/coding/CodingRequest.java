@@ -0,0 +1,33 @@
+package com.hospital.services.coding;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Clinical data of one encounter to be coded by the {@link CodingPipeline}.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+@Builder
+public class CodingRequest {
+
+    /** Medical record (encounter) identifier. */
+    String encounterId;
+
+    String patientId;
+
+    String diagnosisDescription;
+
+    String procedureDescription;
+
+    /** Free-text comorbidities, coded as secondary diagnoses. */
+    @Builder.Default
+    List<String> comorbidities = List.of();
+
+    /** ISO procedure date; the codes must be valid on it (today if absent). */
+    String procedureDate;
+}
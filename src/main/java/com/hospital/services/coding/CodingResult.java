@@ -0,0 +1,54 @@
+package com.hospital.services.coding;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Outcome of coding one encounter with the {@link CodingPipeline}: either the DRG
+ * grouping to record, or the reason the encounter could not be coded.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class CodingResult {
+
+    /** Required clinical data is missing. */
+    public static final String INPUT_VALIDATION_ERROR = "INPUT_VALIDATION_ERROR";
+
+    /** A suggested code is unknown, not valid on the service date or incompatible. */
+    public static final String CODE_COMBINATION_ERROR = "CODE_COMBINATION_ERROR";
+
+    /** Coding failed unexpectedly. */
+    public static final String SYSTEM_ERROR = "SYSTEM_ERROR";
+
+    CodingRequest request;
+
+    /** {@code null} when the input was invalid. */
+    CodeSuggestions suggestions;
+
+    /** Grouping to record, {@code null} when the encounter could not be coded. */
+    EncounterCoding coding;
+
+    String drgDescription;
+
+    /** {@code null} when coded. */
+    String errorCode;
+
+    List<String> errors;
+
+    public static CodingResult coded(CodingRequest request, CodeSuggestions suggestions,
+                                     EncounterCoding coding, String drgDescription) {
+        return new CodingResult(request, suggestions, coding, drgDescription, null, List.of());
+    }
+
+    public static CodingResult failed(CodingRequest request, CodeSuggestions suggestions,
+                                      String errorCode, List<String> errors) {
+        return new CodingResult(request, suggestions, null, null, errorCode, List.copyOf(errors));
+    }
+
+    public boolean isCoded() {
+        return coding != null;
+    }
+}
@@ -0,0 +1,261 @@
+package com.hospital.services.coding;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ICD-10 x TUSS compatibility matrix over the ordinals of one {@link CodeCatalog}.
+ *
+ * <p>Every TUSS code is mapped to the diagnoses it may not be billed with, as
+ * {@link CompressedBitSet}s over ICD-10 ordinals (relative to the first ICD-10 ordinal):
+ * the union of the {@link CompatibilityRule.Effect#DENY DENY} rules that apply to it,
+ * and, if any {@link CompatibilityRule.Effect#ALLOW ALLOW} rule applies, the union of
+ * the allowed diagnoses. TUSS codes to which the same rules apply share their sets.</p>
+ *
+ * <p>A guide is checked by turning its diagnoses into one set ({@link #diagnoses}) and
+ * combining it with the sets of each procedure, word by word: {@code diagnoses AND denied}
+ * are the forbidden pairs, and a procedure with allowed diagnoses is unjustified if
+ * {@code diagnoses} does not intersect them. Since catalog ordinals follow code order, a
+ * code prefix or range in a rule is a run of consecutive ordinals.</p>
+ *
+ * <p>The rules file is tab-separated, one rule per line: {@code tussPattern, ALLOW|DENY,
+ * icd10Patterns} (comma-separated), see {@link CodePatterns}; blank lines and lines
+ * starting with {@code #} are skipped.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public final class CompatibilityIndex {
+
+    private final CodeCatalog catalog;
+    private final int icd10First;
+    private final int tussFirst;
+
+    /** Constraint of each TUSS code (by relative ordinal), -1 if unconstrained. */
+    private final int[] constraintOf;
+    private final CompressedBitSet[] denied;
+    /** {@code null} where no ALLOW rule applies. */
+    private final CompressedBitSet[] allowed;
+
+    private CompatibilityIndex(CodeCatalog catalog, int[] constraintOf,
+                               CompressedBitSet[] denied, CompressedBitSet[] allowed) {
+        this.catalog = catalog;
+        this.icd10First = catalog.firstOrdinal(CodeSystem.ICD10);
+        this.tussFirst = catalog.firstOrdinal(CodeSystem.TUSS);
+        this.constraintOf = constraintOf;
+        this.denied = denied;
+        this.allowed = allowed;
+    }
+
+    /**
+     * Builds the matrix of {@code rules} over the codes of {@code catalog}. Patterns that
+     * match no code of the catalog match nothing.
+     */
+    public static CompatibilityIndex build(CodeCatalog catalog, List<CompatibilityRule> rules) {
+        int tussCount = catalog.count(CodeSystem.TUSS);
+        int[] tussFrom = new int[rules.size()];
+        int[] tussTo = new int[rules.size()];
+        CompressedBitSet[] ruleDiagnoses = new CompressedBitSet[rules.size()];
+        for (int r = 0; r < rules.size(); r++) {
+            CompatibilityRule rule = rules.get(r);
+            int[] tussRange = CodePatterns.range(catalog, CodeSystem.TUSS, rule.getTussPattern());
+            tussFrom[r] = tussRange[0];
+            tussTo[r] = tussRange[1];
+            CompressedBitSet diagnoses = CompressedBitSet.EMPTY;
+            for (String pattern : rule.getIcd10Patterns()) {
+                int[] icd10Range = CodePatterns.range(catalog, CodeSystem.ICD10, pattern);
+                diagnoses = diagnoses.or(CompressedBitSet.range(icd10Range[0], icd10Range[1]));
+            }
+            ruleDiagnoses[r] = diagnoses;
+        }
+
+        int[] constraintOf = new int[tussCount];
+        Map<BitSet, Integer> constraintIds = new HashMap<>();
+        List<CompressedBitSet> denied = new ArrayList<>();
+        List<CompressedBitSet> allowed = new ArrayList<>();
+        for (int tuss = 0; tuss < tussCount; tuss++) {
+            BitSet applicable = new BitSet(rules.size());
+            for (int r = 0; r < rules.size(); r++) {
+                if (tuss >= tussFrom[r] && tuss < tussTo[r]) {
+                    applicable.set(r);
+                }
+            }
+            if (applicable.isEmpty()) {
+                constraintOf[tuss] = -1;
+                continue;
+            }
+            constraintOf[tuss] = constraintIds.computeIfAbsent(applicable, key -> {
+                CompressedBitSet deny = CompressedBitSet.EMPTY;
+                CompressedBitSet allow = null;
+                for (int r = key.nextSetBit(0); r >= 0; r = key.nextSetBit(r + 1)) {
+                    if (rules.get(r).getEffect() == CompatibilityRule.Effect.DENY) {
+                        deny = deny.or(ruleDiagnoses[r]);
+                    } else {
+                        allow = allow == null ? ruleDiagnoses[r] : allow.or(ruleDiagnoses[r]);
+                    }
+                }
+                denied.add(deny);
+                allowed.add(allow);
+                return denied.size() - 1;
+            });
+        }
+        return new CompatibilityIndex(catalog, constraintOf,
+            denied.toArray(new CompressedBitSet[0]), allowed.toArray(new CompressedBitSet[0]));
+    }
+
+    /**
+     * Reads rules from the tab-separated format described above.
+     *
+     * @throws IllegalArgumentException on a malformed line
+     */
+    public static List<CompatibilityRule> readRules(Reader source) throws IOException {
+        List<CompatibilityRule> rules = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            if (columns.length != 3) {
+                throw new IllegalArgumentException("Compatibility rules line " + lineNumber
+                    + " must have 3 tab-separated columns: " + line);
+            }
+            String tussPattern = columns[0].trim();
+            if (!CodePatterns.isValid(CodeSystem.TUSS, tussPattern)) {
+                throw new IllegalArgumentException("Compatibility rules line " + lineNumber
+                    + " has an invalid TUSS pattern: " + tussPattern);
+            }
+            CompatibilityRule.Effect effect;
+            try {
+                effect = CompatibilityRule.Effect.valueOf(columns[1].trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Compatibility rules line " + lineNumber
+                    + " must be ALLOW or DENY: " + columns[1]);
+            }
+            List<String> icd10Patterns = new ArrayList<>();
+            for (String pattern : columns[2].split(",")) {
+                pattern = pattern.trim();
+                if (!CodePatterns.isValid(CodeSystem.ICD10, pattern)) {
+                    throw new IllegalArgumentException("Compatibility rules line " + lineNumber
+                        + " has an invalid ICD-10 pattern: " + pattern);
+                }
+                icd10Patterns.add(pattern);
+            }
+            rules.add(new CompatibilityRule(tussPattern, effect, List.copyOf(icd10Patterns)));
+        }
+        return rules;
+    }
+
+    public CodeCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Number of distinct diagnosis constraints, each shared by the TUSS codes to which
+     * the same rules apply.
+     */
+    public int constraintCount() {
+        return denied.length;
+    }
+
+    /**
+     * Whether two catalog codes may be billed together; codes missing from the catalog
+     * are not constrained.
+     */
+    public boolean isCompatible(String icd10, String tuss) {
+        int diagnosis = catalog.ordinal(CodeSystem.ICD10, icd10);
+        int procedure = catalog.ordinal(CodeSystem.TUSS, tuss);
+        return diagnosis < 0 || procedure < 0 || isCompatible(diagnosis, procedure);
+    }
+
+    /**
+     * Whether an ICD-10 and a TUSS code, given by catalog ordinal, may be billed together:
+     * the diagnosis is not forbidden and, if the procedure has allowed diagnoses, is one
+     * of them.
+     */
+    public boolean isCompatible(int icd10Ordinal, int tussOrdinal) {
+        int constraint = constraintOf[tussOrdinal - tussFirst];
+        if (constraint < 0) {
+            return true;
+        }
+        int bit = icd10Ordinal - icd10First;
+        return !denied[constraint].get(bit) && (allowed[constraint] == null || allowed[constraint].get(bit));
+    }
+
+    /**
+     * The set of the ICD-10 codes found in the catalog, for {@link #forbidden} and
+     * {@link #isJustified}.
+     */
+    public CompressedBitSet diagnoses(Collection<String> icd10Codes) {
+        int[] bits = new int[icd10Codes.size()];
+        int count = 0;
+        for (String code : icd10Codes) {
+            int ordinal = catalog.ordinal(CodeSystem.ICD10, code);
+            if (ordinal >= 0) {
+                bits[count++] = ordinal - icd10First;
+            }
+        }
+        return CompressedBitSet.of(Arrays.copyOf(bits, count));
+    }
+
+    /**
+     * The diagnoses, from {@link #diagnoses}, that a DENY rule forbids for the procedure.
+     */
+    public CompressedBitSet forbidden(CompressedBitSet diagnoses, int tussOrdinal) {
+        int constraint = constraintOf[tussOrdinal - tussFirst];
+        return constraint < 0 ? CompressedBitSet.EMPTY : diagnoses.and(denied[constraint]);
+    }
+
+    /**
+     * Whether the diagnoses, from {@link #diagnoses}, include one that an ALLOW rule
+     * requires for the procedure; procedures without ALLOW rules always are.
+     */
+    public boolean isJustified(CompressedBitSet diagnoses, int tussOrdinal) {
+        int constraint = constraintOf[tussOrdinal - tussFirst];
+        return constraint < 0 || allowed[constraint] == null || diagnoses.intersects(allowed[constraint]);
+    }
+
+    /**
+     * Checks every diagnosis against every procedure. Codes missing from the catalog are
+     * skipped. A procedure none of the diagnoses justifies is reported with each of them.
+     *
+     * @return the incompatible pairs, by procedure, then diagnosis in code order
+     */
+    public List<CompatibilityViolation> violations(Collection<String> icd10Codes, Collection<String> tussCodes) {
+        List<CompatibilityViolation> violations = new ArrayList<>();
+        CompressedBitSet diagnoses = diagnoses(icd10Codes);
+        if (diagnoses.isEmpty()) {
+            return violations;
+        }
+        for (String tuss : tussCodes) {
+            int procedure = catalog.ordinal(CodeSystem.TUSS, tuss);
+            if (procedure < 0) {
+                continue;
+            }
+            addViolations(violations, forbidden(diagnoses, procedure), tuss, CompatibilityRule.Effect.DENY);
+            if (!isJustified(diagnoses, procedure)) {
+                addViolations(violations, diagnoses, tuss, CompatibilityRule.Effect.ALLOW);
+            }
+        }
+        return violations;
+    }
+
+    private void addViolations(List<CompatibilityViolation> violations, CompressedBitSet diagnoses,
+                               String tuss, CompatibilityRule.Effect effect) {
+        for (int bit = diagnoses.nextSetBit(0); bit >= 0; bit = diagnoses.nextSetBit(bit + 1)) {
+            violations.add(new CompatibilityViolation(catalog.code(icd10First + bit), tuss, effect));
+        }
+    }
+}
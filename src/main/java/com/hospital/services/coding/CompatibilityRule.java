@@ -0,0 +1,32 @@
+package com.hospital.services.coding;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One line of the ICD-10 x TUSS compatibility rules read by the {@link CompatibilityIndex}.
+ *
+ * <p>Patterns are a code ({@code I10}), a code prefix ({@code Z*}) or an inclusive range
+ * of code prefixes ({@code I20-I25}, which includes {@code I25.9}).</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class CompatibilityRule {
+
+    public enum Effect {
+        /** The procedure must be justified by at least one of the diagnoses. */
+        ALLOW,
+        /** The procedure must not be billed with any of the diagnoses. */
+        DENY
+    }
+
+    /** TUSS code or prefix the rule applies to. */
+    String tussPattern;
+
+    Effect effect;
+
+    List<String> icd10Patterns;
+}
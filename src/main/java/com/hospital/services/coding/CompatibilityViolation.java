@@ -0,0 +1,24 @@
+package com.hospital.services.coding;
+
+import lombok.Value;
+
+/**
+ * A diagnosis that must not be billed together with a procedure.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class CompatibilityViolation {
+
+    String icd10Code;
+
+    String tussCode;
+
+    /**
+     * {@link CompatibilityRule.Effect#DENY} if the diagnosis is forbidden for the procedure,
+     * {@link CompatibilityRule.Effect#ALLOW} if none of the diagnoses billed with the
+     * procedure is among the allowed ones (reported for each of them).
+     */
+    CompatibilityRule.Effect violatedEffect;
+}
@@ -0,0 +1,245 @@
+package com.hospital.services.coding;
+
+import java.util.Arrays;
+
+/**
+ * Immutable bit set that stores only its non-zero 64-bit words, with their word index.
+ *
+ * <p>Sets over catalog ordinals are sparse (a diagnosis list, one ICD-10 chapter), so
+ * the few words that carry bits are kept in two parallel arrays sorted by word index.
+ * {@link #and}, {@link #andNot}, {@link #or} and {@link #intersects} merge those arrays
+ * and combine matching words with one bit operation each; {@link #get} is a binary search.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public final class CompressedBitSet {
+
+    public static final CompressedBitSet EMPTY = new CompressedBitSet(new int[0], new long[0], 0);
+
+    private final int[] keys;
+    private final long[] words;
+    private final int length;
+
+    private CompressedBitSet(int[] keys, long[] words, int length) {
+        this.keys = keys;
+        this.words = words;
+        this.length = length;
+    }
+
+    /**
+     * Set of the given non-negative bits, in any order.
+     */
+    public static CompressedBitSet of(int... bits) {
+        int[] sorted = bits.clone();
+        Arrays.sort(sorted);
+        int[] keys = new int[sorted.length];
+        long[] words = new long[sorted.length];
+        int length = 0;
+        for (int bit : sorted) {
+            if (bit < 0) {
+                throw new IllegalArgumentException("Negative bit " + bit);
+            }
+            int key = bit >>> 6;
+            if (length == 0 || keys[length - 1] != key) {
+                keys[length++] = key;
+            }
+            words[length - 1] |= 1L << bit;
+        }
+        return create(keys, words, length);
+    }
+
+    /**
+     * Set of the bits from {@code from} (inclusive) to {@code to} (exclusive).
+     */
+    public static CompressedBitSet range(int from, int to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ")");
+        }
+        if (from == to) {
+            return EMPTY;
+        }
+        int firstKey = from >>> 6;
+        int lastKey = (to - 1) >>> 6;
+        int length = lastKey - firstKey + 1;
+        int[] keys = new int[length];
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) {
+            keys[i] = firstKey + i;
+            words[i] = -1L;
+        }
+        words[0] &= -1L << from;
+        words[length - 1] &= -1L >>> -to;
+        return new CompressedBitSet(keys, words, length);
+    }
+
+    public boolean get(int bit) {
+        if (bit < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, length, bit >>> 6);
+        return index >= 0 && (words[index] & (1L << bit)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < length; i++) {
+            cardinality += Long.bitCount(words[i]);
+        }
+        return cardinality;
+    }
+
+    /**
+     * Lowest set bit at or above {@code from}, -1 if there is none.
+     */
+    public int nextSetBit(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int index = Arrays.binarySearch(keys, 0, length, from >>> 6);
+        if (index >= 0) {
+            long word = words[index] & (-1L << from);
+            if (word != 0) {
+                return (keys[index] << 6) + Long.numberOfTrailingZeros(word);
+            }
+            index++;
+        } else {
+            index = -index - 1;
+        }
+        return index < length ? (keys[index] << 6) + Long.numberOfTrailingZeros(words[index]) : -1;
+    }
+
+    public boolean intersects(CompressedBitSet other) {
+        int i = 0;
+        int j = 0;
+        while (i < length && j < other.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else if ((words[i++] & other.words[j++]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public CompressedBitSet and(CompressedBitSet other) {
+        int[] resultKeys = new int[Math.min(length, other.length)];
+        long[] resultWords = new long[resultKeys.length];
+        int resultLength = 0;
+        int i = 0;
+        int j = 0;
+        while (i < length && j < other.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                long word = words[i] & other.words[j];
+                if (word != 0) {
+                    resultKeys[resultLength] = keys[i];
+                    resultWords[resultLength++] = word;
+                }
+                i++;
+                j++;
+            }
+        }
+        return create(resultKeys, resultWords, resultLength);
+    }
+
+    /**
+     * Bits of this set that are not in {@code other}.
+     */
+    public CompressedBitSet andNot(CompressedBitSet other) {
+        int[] resultKeys = new int[length];
+        long[] resultWords = new long[length];
+        int resultLength = 0;
+        int j = 0;
+        for (int i = 0; i < length; i++) {
+            while (j < other.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            long word = j < other.length && other.keys[j] == keys[i] ? words[i] & ~other.words[j] : words[i];
+            if (word != 0) {
+                resultKeys[resultLength] = keys[i];
+                resultWords[resultLength++] = word;
+            }
+        }
+        return create(resultKeys, resultWords, resultLength);
+    }
+
+    public CompressedBitSet or(CompressedBitSet other) {
+        int[] resultKeys = new int[length + other.length];
+        long[] resultWords = new long[resultKeys.length];
+        int resultLength = 0;
+        int i = 0;
+        int j = 0;
+        while (i < length || j < other.length) {
+            if (j == other.length || (i < length && keys[i] < other.keys[j])) {
+                resultKeys[resultLength] = keys[i];
+                resultWords[resultLength++] = words[i++];
+            } else if (i == length || keys[i] > other.keys[j]) {
+                resultKeys[resultLength] = other.keys[j];
+                resultWords[resultLength++] = other.words[j++];
+            } else {
+                resultKeys[resultLength] = keys[i];
+                resultWords[resultLength++] = words[i++] | other.words[j++];
+            }
+        }
+        return create(resultKeys, resultWords, resultLength);
+    }
+
+    /**
+     * Heap footprint of the stored words and their indexes, in bytes.
+     */
+    public long sizeInBytes() {
+        return 4L * keys.length + 8L * words.length;
+    }
+
+    private static CompressedBitSet create(int[] keys, long[] words, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        return length == keys.length
+            ? new CompressedBitSet(keys, words, length)
+            : new CompressedBitSet(Arrays.copyOf(keys, length), Arrays.copyOf(words, length), length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompressedBitSet other) || length != other.length) {
+            return false;
+        }
+        return Arrays.equals(keys, 0, length, other.keys, 0, length)
+            && Arrays.equals(words, 0, length, other.words, 0, length);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * (31 * hash + keys[i]) + Long.hashCode(words[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (int bit = nextSetBit(0); bit >= 0; bit = nextSetBit(bit + 1)) {
+            if (text.length() > 1) {
+                text.append(", ");
+            }
+            text.append(bit);
+        }
+        return text.append('}').toString();
+    }
+}
@@ -0,0 +1,106 @@
+package com.hospital.services.coding;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Suggests codes from the clinical text with the {@link ClinicalTextMatcher} synonym
+ * dictionary. The best-scored diagnosis is the principal diagnosis; comorbidities follow
+ * as secondary diagnoses. Unrecognized text falls back to {@code R69} and the outpatient
+ * visit {@code 10101012}.
+ *
+ * <p>Answers in microseconds on the calling thread, so it is called directly rather than
+ * in batches, and is the fallback of the other providers.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Component
+public class DictionarySuggestionProvider implements CodeSuggestionProvider {
+
+    public static final String NAME = "dictionary";
+
+    /** Principal diagnosis when none is recognized in the diagnosis description. */
+    static final String FALLBACK_DIAGNOSIS = "R69";
+
+    /** Procedure when none is recognized in the procedure description. */
+    static final String FALLBACK_PROCEDURE = "10101012";
+
+    /** Comorbidity not recognized in the dictionary. */
+    static final String FALLBACK_COMORBIDITY = "Z99.9";
+
+    private static final double COMORBIDITY_CONFIDENCE = 0.85;
+
+    private final ClinicalTextMatcher textMatcher;
+
+    public DictionarySuggestionProvider(ClinicalTextMatcher textMatcher) {
+        this.textMatcher = textMatcher;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<CodeSuggestions> suggest(List<CodingRequest> requests) {
+        List<CodeSuggestions> suggestions = new ArrayList<>(requests.size());
+        for (CodingRequest request : requests) {
+            suggestions.add(suggest(request));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Suggests codes for one request.
+     */
+    public CodeSuggestions suggest(CodingRequest request) {
+        List<CodeCandidate> icd10Codes = new ArrayList<>(
+            textMatcher.match(CodeSystem.ICD10, request.getDiagnosisDescription()));
+        if (icd10Codes.isEmpty()) {
+            icd10Codes.add(candidate(CodeSystem.ICD10, FALLBACK_DIAGNOSIS,
+                "Causas desconhecidas e não especificadas de morbidade", 0.50));
+        }
+        for (String comorbidity : request.getComorbidities()) {
+            CodeCandidate match = textMatcher.bestMatch(CodeSystem.ICD10, comorbidity);
+            icd10Codes.add(candidate(CodeSystem.ICD10,
+                match != null ? match.getCode() : FALLBACK_COMORBIDITY, comorbidity, COMORBIDITY_CONFIDENCE));
+        }
+
+        List<CodeCandidate> tussCodes = new ArrayList<>(
+            textMatcher.match(CodeSystem.TUSS, request.getProcedureDescription()));
+        if (tussCodes.isEmpty()) {
+            tussCodes.add(candidate(CodeSystem.TUSS, FALLBACK_PROCEDURE, "Procedimento ambulatorial", 0.70));
+        }
+
+        List<CodeCandidate> cbhpmCodes = textMatcher.match(CodeSystem.CBHPM, request.getProcedureDescription());
+
+        double icd10Confidence = confidence(icd10Codes);
+        double tussConfidence = confidence(tussCodes);
+        return new CodeSuggestions(List.copyOf(icd10Codes), List.copyOf(tussCodes), cbhpmCodes,
+            icd10Confidence, tussConfidence, icd10Confidence * 0.6 + tussConfidence * 0.4);
+    }
+
+    /**
+     * Weighted average of the code scores; the first (primary) code weighs most.
+     */
+    private static double confidence(List<CodeCandidate> codes) {
+        if (codes.isEmpty()) {
+            return 0.0;
+        }
+        double totalConfidence = 0.0;
+        double totalWeight = 0.0;
+        for (int i = 0; i < codes.size(); i++) {
+            double weight = 1.0 / (i + 1);
+            totalConfidence += codes.get(i).getScore() * weight;
+            totalWeight += weight;
+        }
+        return totalConfidence / totalWeight;
+    }
+
+    private static CodeCandidate candidate(CodeSystem system, String code, String description, double score) {
+        return new CodeCandidate(system, code, description, score, 0, -1);
+    }
+}
@@ -0,0 +1,366 @@
+package com.hospital.services.coding;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table-driven DRG grouper over the ordinals of one {@link CodeCatalog}.
+ *
+ * <p>A {@link DrgTables} version is compiled into flat primitive arrays indexed by catalog
+ * ordinal: the MDC of each ICD-10 code as principal diagnosis, the CC/MCC level of each
+ * ICD-10 code as secondary diagnosis and the operating-room flag of each TUSS code; the
+ * DRG of each MDC and partition (medical, surgical); and the relative weight and expected
+ * length of stay of each DRG and {@link DrgSeverity}. Grouping an encounter is a few array
+ * reads per code and does not allocate.</p>
+ *
+ * <p>{@link #group} returns the grouping as an {@code int} (DRG index and severity), read
+ * with {@link #drgCode}, {@link #severity}, {@link #relativeWeight} and
+ * {@link #expectedLos}. Encounters whose principal diagnosis is missing or in no MDC are
+ * {@linkplain #UNGROUPABLE ungroupable} (DRG {@value #UNGROUPABLE_CODE}).</p>
+ *
+ * <p>The tables file is tab-separated, one record per line, blank lines and lines starting
+ * with {@code #} skipped; patterns are comma-separated, see {@link CodePatterns}:</p>
+ * <pre>
+ * VERSION  version
+ * MDC      code  icd10Patterns  description          (the first matching MDC applies)
+ * DRG      code  mdc  MED|SURG  weightLow,weightMedium,weightHigh  losLow,losMedium,losHigh  description
+ * CC       icd10Patterns
+ * MCC      icd10Patterns
+ * OR       tussPatterns                              (operating-room procedures)
+ * </pre>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public final class DrgGrouper {
+
+    public static final String UNGROUPABLE_CODE = "999";
+    /** Result of {@link #group} for ungroupable encounters. */
+    public static final int UNGROUPABLE = 0;
+
+    private static final DrgSeverity[] SEVERITIES = DrgSeverity.values();
+    private static final int SEVERITY_BITS = 2;
+    private static final int SEVERITY_MASK = (1 << SEVERITY_BITS) - 1;
+
+    private final CodeCatalog catalog;
+    private final long version;
+    private final int icd10First;
+    private final int tussFirst;
+
+    /** MDC index of each ICD-10 code, -1 if none. */
+    private final short[] diagnosisMdc;
+    /** Severity ordinal each ICD-10 code adds as a secondary diagnosis. */
+    private final byte[] diagnosisSeverity;
+    private final boolean[] operatingRoom;
+    /** DRG index per MDC index * 2 + surgical, 0 if none. */
+    private final int[] mdcDrg;
+    private final String[] drgCodes;
+    private final String[] drgDescriptions;
+    /** Per DRG index * 3 + severity ordinal. */
+    private final double[] relativeWeights;
+    private final int[] expectedLos;
+
+    private DrgGrouper(CodeCatalog catalog, DrgTables tables) {
+        this.catalog = catalog;
+        this.version = tables.getVersion();
+        this.icd10First = catalog.firstOrdinal(CodeSystem.ICD10);
+        this.tussFirst = catalog.firstOrdinal(CodeSystem.TUSS);
+
+        List<DrgTables.Mdc> mdcs = tables.getMdcs();
+        Map<String, Integer> mdcIndex = new HashMap<>();
+        diagnosisMdc = new short[catalog.count(CodeSystem.ICD10)];
+        Arrays.fill(diagnosisMdc, (short) -1);
+        for (int m = 0; m < mdcs.size(); m++) {
+            DrgTables.Mdc mdc = mdcs.get(m);
+            if (mdcIndex.putIfAbsent(mdc.getCode(), m) != null) {
+                throw new IllegalArgumentException("Duplicate MDC " + mdc.getCode());
+            }
+            for (String pattern : mdc.getIcd10Patterns()) {
+                int[] range = CodePatterns.range(catalog, CodeSystem.ICD10, pattern);
+                for (int i = range[0]; i < range[1]; i++) {
+                    if (diagnosisMdc[i] < 0) {
+                        diagnosisMdc[i] = (short) m;
+                    }
+                }
+            }
+        }
+
+        diagnosisSeverity = new byte[catalog.count(CodeSystem.ICD10)];
+        mark(catalog, tables.getCcPatterns(), DrgSeverity.MEDIUM);
+        mark(catalog, tables.getMccPatterns(), DrgSeverity.HIGH);
+
+        operatingRoom = new boolean[catalog.count(CodeSystem.TUSS)];
+        for (String pattern : tables.getOperatingRoomPatterns()) {
+            int[] range = CodePatterns.range(catalog, CodeSystem.TUSS, pattern);
+            Arrays.fill(operatingRoom, range[0], range[1], true);
+        }
+
+        List<DrgTables.Drg> drgs = tables.getDrgs();
+        int drgCount = drgs.size() + 1;
+        mdcDrg = new int[2 * mdcs.size()];
+        drgCodes = new String[drgCount];
+        drgDescriptions = new String[drgCount];
+        relativeWeights = new double[SEVERITIES.length * drgCount];
+        expectedLos = new int[SEVERITIES.length * drgCount];
+        drgCodes[UNGROUPABLE] = UNGROUPABLE_CODE;
+        drgDescriptions[UNGROUPABLE] = "Ungroupable";
+        for (int d = 1; d < drgCount; d++) {
+            DrgTables.Drg drg = drgs.get(d - 1);
+            Integer mdc = mdcIndex.get(drg.getMdc());
+            if (mdc == null) {
+                throw new IllegalArgumentException("DRG " + drg.getCode() + " refers to unknown MDC " + drg.getMdc());
+            }
+            int slot = 2 * mdc + (drg.isSurgical() ? 1 : 0);
+            if (mdcDrg[slot] != 0) {
+                throw new IllegalArgumentException("DRGs " + drgCodes[mdcDrg[slot]] + " and " + drg.getCode()
+                    + " both group MDC " + drg.getMdc() + (drg.isSurgical() ? " surgical" : " medical") + " cases");
+            }
+            mdcDrg[slot] = d;
+            drgCodes[d] = drg.getCode();
+            drgDescriptions[d] = drg.getDescription();
+            System.arraycopy(drg.getRelativeWeights(), 0, relativeWeights, SEVERITIES.length * d, SEVERITIES.length);
+            System.arraycopy(drg.getExpectedLos(), 0, expectedLos, SEVERITIES.length * d, SEVERITIES.length);
+        }
+    }
+
+    /**
+     * Compiles {@code tables} over the codes of {@code catalog}. Patterns that match no
+     * code of the catalog match nothing.
+     *
+     * @throws IllegalArgumentException if the tables are inconsistent
+     */
+    public static DrgGrouper build(DrgTables tables, CodeCatalog catalog) {
+        return new DrgGrouper(catalog, tables);
+    }
+
+    /**
+     * Reads DRG tables from the format described above.
+     *
+     * @throws IllegalArgumentException on a malformed line
+     */
+    public static DrgTables readTables(Reader source) throws IOException {
+        Long version = null;
+        List<DrgTables.Mdc> mdcs = new ArrayList<>();
+        List<DrgTables.Drg> drgs = new ArrayList<>();
+        List<String> cc = new ArrayList<>();
+        List<String> mcc = new ArrayList<>();
+        List<String> operatingRoom = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            try {
+                switch (columns[0].trim()) {
+                    case "VERSION":
+                        columns(columns, 2);
+                        version = Long.parseLong(columns[1].trim());
+                        break;
+                    case "MDC":
+                        columns(columns, 4);
+                        mdcs.add(new DrgTables.Mdc(columns[1].trim(), columns[3].trim(),
+                            patterns(CodeSystem.ICD10, columns[2])));
+                        break;
+                    case "DRG":
+                        columns(columns, 7);
+                        drgs.add(new DrgTables.Drg(columns[1].trim(), columns[2].trim(),
+                            partition(columns[3].trim()), columns[6].trim(),
+                            Arrays.stream(perSeverity(columns[4])).mapToDouble(Double::parseDouble).toArray(),
+                            Arrays.stream(perSeverity(columns[5])).mapToInt(Integer::parseInt).toArray()));
+                        break;
+                    case "CC":
+                        columns(columns, 2);
+                        cc.addAll(patterns(CodeSystem.ICD10, columns[1]));
+                        break;
+                    case "MCC":
+                        columns(columns, 2);
+                        mcc.addAll(patterns(CodeSystem.ICD10, columns[1]));
+                        break;
+                    case "OR":
+                        columns(columns, 2);
+                        operatingRoom.addAll(patterns(CodeSystem.TUSS, columns[1]));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown record type " + columns[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("DRG tables line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        if (version == null) {
+            throw new IllegalArgumentException("DRG tables have no VERSION line");
+        }
+        return new DrgTables(version, List.copyOf(mdcs), List.copyOf(drgs),
+            List.copyOf(cc), List.copyOf(mcc), List.copyOf(operatingRoom));
+    }
+
+    public CodeCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Version of the DRG tables.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Groups an encounter given by catalog ordinals; negative ordinals (codes missing from
+     * the catalog) are ignored. Does not allocate.
+     *
+     * @param principal         ICD-10 ordinal of the principal diagnosis
+     * @param secondaries       ICD-10 ordinals of the secondary diagnoses, in the first
+     *                          {@code secondaryCount} elements
+     * @param procedures        TUSS ordinals of the procedures, in the first
+     *                          {@code procedureCount} elements
+     * @return the grouping, or {@link #UNGROUPABLE}
+     */
+    public int group(int principal, int[] secondaries, int secondaryCount, int[] procedures, int procedureCount) {
+        int mdc = mdc(principal);
+        if (mdc < 0) {
+            return UNGROUPABLE;
+        }
+        int severity = 0;
+        for (int i = 0; i < secondaryCount; i++) {
+            severity = Math.max(severity, severity(principal, secondaries[i]));
+        }
+        boolean surgical = false;
+        for (int i = 0; i < procedureCount && !surgical; i++) {
+            surgical = isOperatingRoom(procedures[i]);
+        }
+        return result(mdc, surgical, severity);
+    }
+
+    /**
+     * Groups an encounter given by code; codes missing from the catalog are ignored.
+     *
+     * @return the grouping, or {@link #UNGROUPABLE}
+     */
+    public int group(String principal, List<String> secondaries, List<String> procedures) {
+        int principalOrdinal = principal == null ? -1 : catalog.ordinal(CodeSystem.ICD10, principal);
+        int mdc = mdc(principalOrdinal);
+        if (mdc < 0) {
+            return UNGROUPABLE;
+        }
+        int severity = 0;
+        for (int i = 0; i < secondaries.size(); i++) {
+            severity = Math.max(severity,
+                severity(principalOrdinal, catalog.ordinal(CodeSystem.ICD10, secondaries.get(i))));
+        }
+        boolean surgical = false;
+        for (int i = 0; i < procedures.size() && !surgical; i++) {
+            surgical = isOperatingRoom(catalog.ordinal(CodeSystem.TUSS, procedures.get(i)));
+        }
+        return result(mdc, surgical, severity);
+    }
+
+    public static boolean isGrouped(int result) {
+        return result >>> SEVERITY_BITS != UNGROUPABLE;
+    }
+
+    public String drgCode(int result) {
+        return drgCodes[result >>> SEVERITY_BITS];
+    }
+
+    public String drgDescription(int result) {
+        return drgDescriptions[result >>> SEVERITY_BITS];
+    }
+
+    public DrgSeverity severity(int result) {
+        return SEVERITIES[result & SEVERITY_MASK];
+    }
+
+    public double relativeWeight(int result) {
+        return relativeWeights[SEVERITIES.length * (result >>> SEVERITY_BITS) + (result & SEVERITY_MASK)];
+    }
+
+    /**
+     * Expected length of stay, in days.
+     */
+    public int expectedLos(int result) {
+        return expectedLos[SEVERITIES.length * (result >>> SEVERITY_BITS) + (result & SEVERITY_MASK)];
+    }
+
+    private int mdc(int icd10Ordinal) {
+        int diagnosis = icd10Ordinal - icd10First;
+        return icd10Ordinal >= 0 && diagnosis < diagnosisMdc.length ? diagnosisMdc[diagnosis] : -1;
+    }
+
+    private int severity(int principal, int icd10Ordinal) {
+        int diagnosis = icd10Ordinal - icd10First;
+        return icd10Ordinal >= 0 && icd10Ordinal != principal && diagnosis < diagnosisSeverity.length
+            ? diagnosisSeverity[diagnosis] : 0;
+    }
+
+    private boolean isOperatingRoom(int tussOrdinal) {
+        int procedure = tussOrdinal - tussFirst;
+        return tussOrdinal >= 0 && procedure >= 0 && procedure < operatingRoom.length && operatingRoom[procedure];
+    }
+
+    private int result(int mdc, boolean surgical, int severity) {
+        int drg = mdcDrg[2 * mdc + (surgical ? 1 : 0)];
+        if (drg == 0) {
+            // No DRG for this partition of the MDC: use the other one
+            drg = mdcDrg[2 * mdc + (surgical ? 0 : 1)];
+        }
+        return drg == 0 ? UNGROUPABLE : drg << SEVERITY_BITS | severity;
+    }
+
+    private void mark(CodeCatalog catalog, List<String> patterns, DrgSeverity severity) {
+        for (String pattern : patterns) {
+            int[] range = CodePatterns.range(catalog, CodeSystem.ICD10, pattern);
+            for (int i = range[0]; i < range[1]; i++) {
+                diagnosisSeverity[i] = (byte) Math.max(diagnosisSeverity[i], severity.ordinal());
+            }
+        }
+    }
+
+    private static void columns(String[] columns, int expected) {
+        if (columns.length != expected) {
+            throw new IllegalArgumentException(columns[0] + " records must have " + expected + " tab-separated columns");
+        }
+    }
+
+    private static List<String> patterns(CodeSystem system, String column) {
+        List<String> patterns = new ArrayList<>();
+        for (String pattern : column.split(",")) {
+            pattern = pattern.trim();
+            if (!CodePatterns.isValid(system, pattern)) {
+                throw new IllegalArgumentException("invalid " + system + " pattern: " + pattern);
+            }
+            patterns.add(pattern);
+        }
+        return patterns;
+    }
+
+    private static boolean partition(String column) {
+        switch (column) {
+            case "MED": return false;
+            case "SURG": return true;
+            default: throw new IllegalArgumentException("partition must be MED or SURG: " + column);
+        }
+    }
+
+    private static String[] perSeverity(String column) {
+        String[] values = column.split(",");
+        if (values.length != SEVERITIES.length) {
+            throw new IllegalArgumentException("expected " + SEVERITIES.length + " comma-separated values: " + column);
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values[i].trim();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,242 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Groups encounters with the newest published DRG tables and regroups the encounters
+ * grouped with older ones.
+ *
+ * <p>The bundled {@code coding/drg-tables.tsv} is loaded at startup. Newer versions are
+ * published as {@code drg-tables-*.tsv} files in {@code coding.drg.directory}, which is
+ * scanned every {@code coding.drg.reload-interval}; the file with the highest
+ * {@code VERSION} above the current one replaces it. The {@link DrgGrouper} is compiled on
+ * first use after a new table version or code catalog version is loaded.</p>
+ *
+ * <p>Coded encounters are recorded in {@code encounter_codings} with the table version
+ * they were grouped with. {@link #regroupStale()} (run by the {@code DrgRegroupScheduler})
+ * regroups every encounter grouped with an older version, a page of
+ * {@code coding.drg.regroup.batch-size} rows at a time.</p>
+ *
+ * <p>Published meters: {@code coding.drg.table.version} (gauge) and
+ * {@code coding.drg.regrouped} (counter).</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class DrgGrouperService {
+
+    static final String FILE_GLOB = "drg-tables-*.tsv";
+
+    private final Resource bundledTables;
+    private final Path directory;
+    private final int regroupBatchSize;
+    private final CodeCatalogService catalogService;
+    private final EncounterCodingJdbcRepository repository;
+    private final Counter regrouped;
+
+    private volatile DrgTables tables;
+    private volatile DrgGrouper grouper;
+
+    public DrgGrouperService(
+            @Value("${coding.drg.tables:classpath:coding/drg-tables.tsv}") Resource bundledTables,
+            @Value("${coding.drg.directory:}") String directory,
+            @Value("${coding.drg.regroup.batch-size:500}") int regroupBatchSize,
+            CodeCatalogService catalogService,
+            EncounterCodingJdbcRepository repository,
+            MeterRegistry meterRegistry) {
+        this.bundledTables = bundledTables;
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+        this.regroupBatchSize = regroupBatchSize;
+        this.catalogService = catalogService;
+        this.repository = repository;
+        this.regrouped = Counter.builder("coding.drg.regrouped")
+            .description("Encounters regrouped with a newer DRG table version")
+            .register(meterRegistry);
+        Gauge.builder("coding.drg.table.version", this, service -> service.tables == null ? -1 : service.tables.getVersion())
+            .description("Version of the DRG tables in use")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        try (Reader reader = new InputStreamReader(bundledTables.getInputStream(), StandardCharsets.UTF_8)) {
+            tables = DrgGrouper.readTables(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read DRG tables " + bundledTables, e);
+        }
+        log.info("Loaded bundled DRG tables version {} from {}", tables.getVersion(), bundledTables.getDescription());
+        reload();
+    }
+
+    /**
+     * Switches to the newest tables file in the directory, if it is newer than the
+     * current tables.
+     */
+    @Scheduled(fixedDelayString = "${coding.drg.reload-interval:PT1M}",
+               initialDelayString = "${coding.drg.reload-interval:PT1M}")
+    public void reload() {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        DrgTables newest = null;
+        Path newestFile = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_GLOB)) {
+            for (Path file : files) {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    DrgTables candidate = DrgGrouper.readTables(reader);
+                    long newestVersion = newest != null ? newest.getVersion() : tables.getVersion();
+                    if (candidate.getVersion() > newestVersion) {
+                        newest = candidate;
+                        newestFile = file;
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    log.warn("Skipping DRG tables file {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list DRG tables directory {}: {}", directory, e.getMessage());
+            return;
+        }
+        if (newest != null) {
+            try {
+                // Compile once to reject inconsistent tables before they replace the current ones
+                DrgGrouper.build(newest, catalogService.getCatalog());
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping DRG tables file {}: {}", newestFile, e.getMessage());
+                return;
+            }
+            log.info("Loaded DRG tables version {} from {} (was version {})",
+                newest.getVersion(), newestFile, tables.getVersion());
+            tables = newest;
+        }
+    }
+
+    /**
+     * The grouper for the current tables and code catalog.
+     */
+    public DrgGrouper getGrouper() {
+        return getGrouper(catalogService.getCatalog());
+    }
+
+    /**
+     * The grouper for the current tables over {@code catalog}, so that its ordinals agree
+     * with lookups already made on that catalog.
+     */
+    public DrgGrouper getGrouper(CodeCatalog catalog) {
+        DrgTables currentTables = tables;
+        DrgGrouper current = grouper;
+        if (current != null && current.getCatalog() == catalog && current.getVersion() == currentTables.getVersion()) {
+            return current;
+        }
+        synchronized (this) {
+            current = grouper;
+            if (current == null || current.getCatalog() != catalog || current.getVersion() != currentTables.getVersion()) {
+                current = DrgGrouper.build(currentTables, catalog);
+                grouper = current;
+                log.debug("Compiled DRG tables version {} for code catalog version {}",
+                    currentTables.getVersion(), catalog.getVersion());
+            }
+            return current;
+        }
+    }
+
+    /**
+     * The row recording the codes and grouping of an encounter.
+     *
+     * @param result grouping returned by {@code grouper}
+     */
+    public EncounterCoding grouping(String encounterId, String patientId, String principalDiagnosis,
+                                    List<String> secondaryDiagnoses, List<String> procedures,
+                                    DrgGrouper grouper, int result, LocalDateTime codedAt) {
+        return EncounterCoding.builder()
+            .encounterId(encounterId)
+            .patientId(patientId)
+            .principalDiagnosis(principalDiagnosis)
+            .secondaryDiagnoses(String.join(",", secondaryDiagnoses))
+            .procedures(String.join(",", procedures))
+            .drgTableVersion(grouper.getVersion())
+            .drgCode(grouper.drgCode(result))
+            .drgSeverity(grouper.severity(result))
+            .relativeWeight(grouper.relativeWeight(result))
+            .expectedLos(grouper.expectedLos(result))
+            .codedAt(codedAt)
+            .build();
+    }
+
+    /**
+     * Records the grouping of an encounter, replacing a previous one.
+     */
+    public void recordGrouping(EncounterCoding coding) {
+        repository.save(coding);
+    }
+
+    /**
+     * Records the groupings of a lot of encounters with JDBC batches.
+     */
+    public void recordGroupings(List<EncounterCoding> codings) {
+        repository.saveAll(codings);
+    }
+
+    /**
+     * Regroups every recorded encounter grouped with an older table version, one JDBC
+     * batch per page. Pages are committed as they are written, so an interrupted run
+     * resumes where it stopped.
+     *
+     * @return the number of encounters regrouped
+     */
+    public int regroupStale() {
+        DrgGrouper current = getGrouper();
+        long version = current.getVersion();
+        long afterId = 0;
+        int total = 0;
+        List<EncounterCoding> page;
+        do {
+            page = repository.findStale(version, afterId, regroupBatchSize);
+            LocalDateTime now = LocalDateTime.now();
+            for (EncounterCoding coding : page) {
+                int result = current.group(coding.getPrincipalDiagnosis(),
+                    EncounterCodingJdbcRepository.codes(coding.getSecondaryDiagnoses()),
+                    EncounterCodingJdbcRepository.codes(coding.getProcedures()));
+                coding.setDrgTableVersion(version);
+                coding.setDrgCode(current.drgCode(result));
+                coding.setDrgSeverity(current.severity(result));
+                coding.setRelativeWeight(current.relativeWeight(result));
+                coding.setExpectedLos(current.expectedLos(result));
+                coding.setRegroupedAt(now);
+                afterId = coding.getId();
+            }
+            int updated = repository.updateGroupings(page);
+            regrouped.increment(updated);
+            total += updated;
+        } while (page.size() == regroupBatchSize);
+        return total;
+    }
+
+    /**
+     * Version of the DRG tables in use.
+     */
+    public long getTableVersion() {
+        return tables.getVersion();
+    }
+}
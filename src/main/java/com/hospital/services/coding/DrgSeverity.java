@@ -0,0 +1,16 @@
+package com.hospital.services.coding;
+
+/**
+ * Severity split of a DRG, from the most severe comorbidity among the secondary diagnoses.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public enum DrgSeverity {
+    /** No complication or comorbidity. */
+    LOW,
+    /** A complication or comorbidity (CC). */
+    MEDIUM,
+    /** A major complication or comorbidity (MCC). */
+    HIGH
+}
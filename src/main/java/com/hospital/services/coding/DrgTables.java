@@ -0,0 +1,53 @@
+package com.hospital.services.coding;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One version of the DRG tables, as read from a tables file by {@link DrgGrouper#readTables}.
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class DrgTables {
+
+    long version;
+
+    List<Mdc> mdcs;
+
+    List<Drg> drgs;
+
+    /** ICD-10 patterns of comorbidities that raise the severity, per {@link DrgSeverity}. */
+    List<String> ccPatterns;
+
+    List<String> mccPatterns;
+
+    /** TUSS patterns of operating-room procedures, which group into surgical DRGs. */
+    List<String> operatingRoomPatterns;
+
+    /**
+     * Major diagnostic category, assigned from the principal diagnosis.
+     */
+    @Value
+    public static class Mdc {
+        String code;
+        String description;
+        List<String> icd10Patterns;
+    }
+
+    /**
+     * Diagnosis related group of an MDC, medical or surgical, with its relative weight and
+     * expected length of stay per {@link DrgSeverity}.
+     */
+    @Value
+    public static class Drg {
+        String code;
+        String mdc;
+        boolean surgical;
+        String description;
+        double[] relativeWeights;
+        int[] expectedLos;
+    }
+}
@@ -0,0 +1,87 @@
+package com.hospital.services.coding;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * JPA Entity representing the codes and DRG grouping of an encounter.
+ *
+ * <p>The codes are kept so that the encounter can be regrouped when a new version of the
+ * DRG tables is published; {@code drgTableVersion} records the version of the current
+ * grouping. Rows are read and written through {@link EncounterCodingJdbcRepository}.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Entity
+@Table(
+    name = "encounter_codings",
+    uniqueConstraints = {
+        @UniqueConstraint(name = "uk_encounter_codings_encounter", columnNames = {"encounter_id"})
+    },
+    indexes = {
+        @Index(name = "idx_encounter_codings_drg_version", columnList = "drg_table_version")
+    }
+)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "encounterId")
+public class EncounterCoding {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Medical record of the encounter.
+     */
+    @Column(name = "encounter_id", nullable = false, length = 64)
+    private String encounterId;
+
+    @Column(name = "patient_id", length = 64)
+    private String patientId;
+
+    @Column(name = "principal_diagnosis", length = 16)
+    private String principalDiagnosis;
+
+    /**
+     * Secondary ICD-10 codes, comma-separated.
+     */
+    @Column(name = "secondary_diagnoses", length = 1024)
+    private String secondaryDiagnoses;
+
+    /**
+     * TUSS codes, comma-separated.
+     */
+    @Column(name = "procedures", length = 1024)
+    private String procedures;
+
+    @Column(name = "drg_table_version", nullable = false)
+    private long drgTableVersion;
+
+    @Column(name = "drg_code", nullable = false, length = 8)
+    private String drgCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "drg_severity", nullable = false, length = 8)
+    private DrgSeverity drgSeverity;
+
+    @Column(name = "relative_weight", nullable = false)
+    private double relativeWeight;
+
+    @Column(name = "expected_los", nullable = false)
+    private int expectedLos;
+
+    @Column(name = "coded_at", nullable = false)
+    private LocalDateTime codedAt;
+
+    /**
+     * When the grouping was last replaced by a newer DRG table version.
+     */
+    @Column(name = "regrouped_at")
+    private LocalDateTime regroupedAt;
+}
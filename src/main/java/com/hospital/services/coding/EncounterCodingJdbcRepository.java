@@ -0,0 +1,177 @@
+package com.hospital.services.coding;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plain JDBC access to the {@code encounter_codings} table.
+ *
+ * <p>{@link #save} writes the grouping of one encounter as it is coded, and
+ * {@link #saveAll} those of a lot coded in batch. Regrouping walks the table in
+ * primary-key order with {@link #findStale} and writes each page back with one JDBC
+ * batch ({@link #updateGroupings}); the version predicate in the update makes a page
+ * applied twice, or by a node still on an older table version, a no-op.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Repository
+public class EncounterCodingJdbcRepository {
+
+    private static final String UPDATE_SQL =
+        "UPDATE encounter_codings SET patient_id = ?, principal_diagnosis = ?, secondary_diagnoses = ?,"
+            + " procedures = ?, drg_table_version = ?, drg_code = ?, drg_severity = ?, relative_weight = ?,"
+            + " expected_los = ?, coded_at = ?, regrouped_at = NULL"
+            + " WHERE encounter_id = ?";
+
+    private static final String INSERT_SQL =
+        "INSERT INTO encounter_codings (patient_id, principal_diagnosis, secondary_diagnoses, procedures,"
+            + " drg_table_version, drg_code, drg_severity, relative_weight, expected_los, coded_at, encounter_id)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String FIND_STALE_SQL =
+        "SELECT id, encounter_id, patient_id, principal_diagnosis, secondary_diagnoses, procedures,"
+            + " drg_table_version, drg_code, drg_severity, relative_weight, expected_los, coded_at, regrouped_at"
+            + " FROM encounter_codings WHERE id > ? AND drg_table_version < ? ORDER BY id LIMIT ?";
+
+    private static final String REGROUP_SQL =
+        "UPDATE encounter_codings SET drg_table_version = ?, drg_code = ?, drg_severity = ?,"
+            + " relative_weight = ?, expected_los = ?, regrouped_at = ?"
+            + " WHERE id = ? AND drg_table_version < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EncounterCodingJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts or replaces the coding of {@code coding.encounterId}.
+     */
+    public void save(EncounterCoding coding) {
+        upsert(saveArgs(coding));
+    }
+
+    /**
+     * Inserts or replaces the codings of a lot of encounters: one JDBC batch of updates,
+     * then one batch inserting the encounters not coded before.
+     */
+    public void saveAll(List<EncounterCoding> codings) {
+        if (codings.isEmpty()) {
+            return;
+        }
+        List<Object[]> batchArgs = new ArrayList<>(codings.size());
+        for (EncounterCoding coding : codings) {
+            batchArgs.add(saveArgs(coding));
+        }
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, batchArgs);
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                inserts.add(batchArgs.get(i));
+            }
+        }
+        if (inserts.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        } catch (DuplicateKeyException e) {
+            // Inserted concurrently since the update, or twice in the lot
+            inserts.forEach(this::upsert);
+        }
+    }
+
+    /**
+     * Up to {@code limit} codings grouped with a table version below {@code version},
+     * with an id above {@code afterId}, in id order.
+     */
+    public List<EncounterCoding> findStale(long version, long afterId, int limit) {
+        return jdbcTemplate.query(FIND_STALE_SQL, ROW_MAPPER, afterId, version, limit);
+    }
+
+    /**
+     * Writes the regrouped DRG columns of {@code codings} in one batch, skipping rows
+     * already grouped with their version or a newer one.
+     *
+     * @return the number of rows updated
+     */
+    public int updateGroupings(List<EncounterCoding> codings) {
+        if (codings.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> batchArgs = new ArrayList<>(codings.size());
+        for (EncounterCoding coding : codings) {
+            batchArgs.add(new Object[]{
+                coding.getDrgTableVersion(), coding.getDrgCode(), coding.getDrgSeverity().name(),
+                coding.getRelativeWeight(), coding.getExpectedLos(), Timestamp.valueOf(coding.getRegroupedAt()),
+                coding.getId(), coding.getDrgTableVersion()
+            });
+        }
+        int updated = 0;
+        for (int count : jdbcTemplate.batchUpdate(REGROUP_SQL, batchArgs)) {
+            if (count > 0) {
+                updated += count;
+            } else if (count == Statement.SUCCESS_NO_INFO) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    private void upsert(Object[] args) {
+        if (jdbcTemplate.update(UPDATE_SQL, args) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_SQL, args);
+        } catch (DuplicateKeyException e) {
+            // Inserted concurrently since the update
+            jdbcTemplate.update(UPDATE_SQL, args);
+        }
+    }
+
+    private static Object[] saveArgs(EncounterCoding coding) {
+        return new Object[]{
+            coding.getPatientId(), coding.getPrincipalDiagnosis(), coding.getSecondaryDiagnoses(),
+            coding.getProcedures(), coding.getDrgTableVersion(), coding.getDrgCode(),
+            coding.getDrgSeverity().name(), coding.getRelativeWeight(), coding.getExpectedLos(),
+            Timestamp.valueOf(coding.getCodedAt()), coding.getEncounterId()
+        };
+    }
+
+    /**
+     * Splits a comma-separated code column.
+     */
+    public static List<String> codes(String column) {
+        return column == null || column.isEmpty() ? Collections.emptyList() : Arrays.asList(column.split(","));
+    }
+
+    private static final RowMapper<EncounterCoding> ROW_MAPPER = (rs, rowNum) -> {
+        Timestamp regroupedAt = rs.getTimestamp("regrouped_at");
+        return EncounterCoding.builder()
+            .id(rs.getLong("id"))
+            .encounterId(rs.getString("encounter_id"))
+            .patientId(rs.getString("patient_id"))
+            .principalDiagnosis(rs.getString("principal_diagnosis"))
+            .secondaryDiagnoses(rs.getString("secondary_diagnoses"))
+            .procedures(rs.getString("procedures"))
+            .drgTableVersion(rs.getLong("drg_table_version"))
+            .drgCode(rs.getString("drg_code"))
+            .drgSeverity(DrgSeverity.valueOf(rs.getString("drg_severity")))
+            .relativeWeight(rs.getDouble("relative_weight"))
+            .expectedLos(rs.getInt("expected_los"))
+            .codedAt(rs.getTimestamp("coded_at").toLocalDateTime())
+            .regroupedAt(regroupedAt != null ? regroupedAt.toLocalDateTime() : null)
+            .build();
+    };
+}
@@ -0,0 +1,51 @@
+package com.hospital.services.coding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Deterministic local stand-in for a remote AI/LLM coding model.
+ *
+ * <p>Answers every batch with the dictionary suggestions after a fixed
+ * {@code coding.suggestion.local.latency} per call, so that micro-batching, deadlines and
+ * the memo cache can be exercised - and their metrics watched - before a real model is
+ * plugged in. The same request always gets the same suggestions.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Component
+public class LocalSuggestionProvider implements CodeSuggestionProvider {
+
+    public static final String NAME = "local";
+
+    private final DictionarySuggestionProvider dictionary;
+    private final Duration latency;
+
+    public LocalSuggestionProvider(DictionarySuggestionProvider dictionary,
+                                   @Value("${coding.suggestion.local.latency:PT0S}") Duration latency) {
+        this.dictionary = dictionary;
+        this.latency = latency;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<CodeSuggestions> suggest(List<CodingRequest> requests) {
+        if (!latency.isZero()) {
+            try {
+                Thread.sleep(latency.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while suggesting codes", e);
+            }
+        }
+        return dictionary.suggest(requests);
+    }
+}
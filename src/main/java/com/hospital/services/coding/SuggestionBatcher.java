@@ -0,0 +1,172 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups concurrent suggestion requests into micro-batches for one
+ * {@link CodeSuggestionProvider} call each.
+ *
+ * <p>A dispatcher thread takes the first waiting request and collects more for up to
+ * {@code maxWait} or until {@code maxBatchSize} are waiting, then hands the batch to a
+ * pool of {@code maxConcurrentCalls} threads and starts on the next one. Requests whose
+ * deadline has passed while queued are failed with a {@link TimeoutException} instead of
+ * being sent. When the queue or the pool is full, requests fail at once rather than
+ * wait.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+final class SuggestionBatcher {
+
+    private final CodeSuggestionProvider provider;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Pending> queue;
+    private final ThreadPoolExecutor calls;
+    private final Thread dispatcher;
+    private final Timer callLatency;
+    private final DistributionSummary batchSize;
+
+    private volatile boolean running = true;
+
+    SuggestionBatcher(CodeSuggestionProvider provider, int maxBatchSize, Duration maxWait,
+                      int maxConcurrentCalls, int queueCapacity, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.calls = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(maxConcurrentCalls),
+            runnable -> {
+                Thread thread = new Thread(runnable, "coding-suggestion-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        this.calls.allowCoreThreadTimeOut(true);
+        this.callLatency = Timer.builder("coding.suggestion.provider.latency")
+            .description("Duration of suggestion provider calls, one per micro-batch")
+            .tag("provider", provider.getName())
+            .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("coding.suggestion.batch.size")
+            .description("Requests per suggestion provider call")
+            .tag("provider", provider.getName())
+            .register(meterRegistry);
+        this.dispatcher = new Thread(this::dispatch, "coding-suggestion-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queues a request for the next batch.
+     *
+     * @param deadline {@link System#nanoTime()} after which the request is not sent
+     * @return the suggestions, completed when the provider answers, even after the deadline
+     */
+    CompletableFuture<CodeSuggestions> submit(CodingRequest request, long deadline) {
+        Pending pending = new Pending(request, deadline);
+        if (!queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Suggestion queue is full"));
+        }
+        return pending.future;
+    }
+
+    void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        calls.shutdownNow();
+        List<Pending> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(pending -> pending.future.cancel(false));
+    }
+
+    private void dispatch() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                batch.forEach(pending -> pending.future.cancel(false));
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long now = System.nanoTime();
+            batch.removeIf(pending -> {
+                if (now - pending.deadline >= 0) {
+                    pending.future.completeExceptionally(new TimeoutException("Deadline passed in the queue"));
+                }
+                return pending.future.isDone();
+            });
+            if (!batch.isEmpty()) {
+                List<Pending> call = List.copyOf(batch);
+                try {
+                    calls.execute(() -> call(call));
+                } catch (RejectedExecutionException e) {
+                    call.forEach(pending -> pending.future.completeExceptionally(e));
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void call(List<Pending> batch) {
+        List<CodingRequest> requests = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            requests.add(pending.request);
+        }
+        batchSize.record(requests.size());
+        long start = System.nanoTime();
+        try {
+            List<CodeSuggestions> suggestions = provider.suggest(requests);
+            if (suggestions.size() != requests.size()) {
+                throw new IllegalStateException("Provider " + provider.getName() + " answered "
+                    + suggestions.size() + " of " + requests.size() + " requests");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(suggestions.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Suggestion provider {} failed on a batch of {}: {}",
+                provider.getName(), requests.size(), e.toString());
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        } finally {
+            callLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class Pending {
+        private final CodingRequest request;
+        private final long deadline;
+        private final CompletableFuture<CodeSuggestions> future = new CompletableFuture<>();
+
+        private Pending(CodingRequest request, long deadline) {
+            this.request = request;
+            this.deadline = deadline;
+        }
+    }
+}
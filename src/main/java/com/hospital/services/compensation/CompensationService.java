@@ -1,9 +1,12 @@
 package com.hospital.services.compensation;
 
+import com.hospital.services.idempotency.TimingWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -13,6 +16,12 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * Provides centralized compensation tracking, history, and idempotency management
  * for SAGA pattern implementation across all revenue cycle processes.
+ *
+ * Records are kept for compensation.history.retention after they were recorded; their
+ * expiries are tracked in a timing wheel that is advanced on each call, so expired records
+ * are dropped without scanning the history. A compensation recorded longer ago than the
+ * retention is no longer reported as performed, so the retention must outlast any retry
+ * or replay of the compensated process.
  */
 @Service
 public class CompensationService {
@@ -20,17 +29,28 @@ public class CompensationService {
     private static final Logger LOGGER = LoggerFactory.getLogger(CompensationService.class);
 
     // In-memory compensation tracking (should be replaced with database in production)
-    private final Map<String, CompensationRecord> compensationHistory = new ConcurrentHashMap<>();
+    // Each record is held by its expiry in the wheel, so it can be cancelled when cleared
+    private final Map<String, TimingWheel.Timeout<CompensationRecord>> compensationHistory = new ConcurrentHashMap<>();
     private final Map<String, Set<String>> processCompensations = new ConcurrentHashMap<>();
 
+    private final Duration retention;
+    private final TimingWheel<CompensationRecord> expiries;
+
+    public CompensationService(@Value("${compensation.history.retention:P30D}") Duration retention) {
+        this.retention = retention;
+        this.expiries = new TimingWheel<>(Duration.ofMinutes(1), 64, 4, System.currentTimeMillis());
+    }
+
     /**
-     * Checks if a specific compensation has already been performed
+     * Checks if a specific compensation has already been performed within the retention
      *
      * @param processInstanceId Process instance identifier
      * @param compensationType Type of compensation (CODING, ELIGIBILITY, CLAIM, ALLOCATION)
-     * @return true if compensation already performed, false otherwise
+     * @return true if compensation already performed, false otherwise, including when it
+     *         was recorded longer ago than compensation.history.retention
      */
     public boolean isCompensationPerformed(String processInstanceId, String compensationType) {
+        expireRecords();
         String key = generateCompensationKey(processInstanceId, compensationType);
         boolean performed = compensationHistory.containsKey(key);
 
@@ -53,6 +73,7 @@ public class CompensationService {
      */
     public void recordCompensation(String processInstanceId, String compensationType,
                                    String entityId, String reason, boolean success) {
+        expireRecords();
         String key = generateCompensationKey(processInstanceId, compensationType);
 
         CompensationRecord record = new CompensationRecord(
@@ -64,7 +85,11 @@ public class CompensationService {
             LocalDateTime.now()
         );
 
-        compensationHistory.put(key, record);
+        TimingWheel.Timeout<CompensationRecord> previous = compensationHistory.put(key,
+            expiries.schedule(record, System.currentTimeMillis() + retention.toMillis()));
+        if (previous != null) {
+            expiries.cancel(previous);
+        }
 
         // Track all compensations for this process
         processCompensations.computeIfAbsent(processInstanceId, k -> new HashSet<>())
@@ -81,15 +106,16 @@ public class CompensationService {
      * @return List of compensation records for the process
      */
     public List<CompensationRecord> getProcessCompensationHistory(String processInstanceId) {
+        expireRecords();
         List<CompensationRecord> history = new ArrayList<>();
 
         Set<String> compensationTypes = processCompensations.get(processInstanceId);
         if (compensationTypes != null) {
             for (String type : compensationTypes) {
                 String key = generateCompensationKey(processInstanceId, type);
-                CompensationRecord record = compensationHistory.get(key);
-                if (record != null) {
-                    history.add(record);
+                TimingWheel.Timeout<CompensationRecord> entry = compensationHistory.get(key);
+                if (entry != null) {
+                    history.add(entry.getPayload());
                 }
             }
         }
@@ -104,11 +130,12 @@ public class CompensationService {
      * @return List of compensation records of that type
      */
     public List<CompensationRecord> getCompensationsByType(String compensationType) {
+        expireRecords();
         List<CompensationRecord> records = new ArrayList<>();
 
-        for (CompensationRecord record : compensationHistory.values()) {
-            if (record.getCompensationType().equals(compensationType)) {
-                records.add(record);
+        for (TimingWheel.Timeout<CompensationRecord> entry : compensationHistory.values()) {
+            if (entry.getPayload().getCompensationType().equals(compensationType)) {
+                records.add(entry.getPayload());
             }
         }
 
@@ -126,7 +153,10 @@ public class CompensationService {
         if (types != null) {
             for (String type : types) {
                 String key = generateCompensationKey(processInstanceId, type);
-                compensationHistory.remove(key);
+                TimingWheel.Timeout<CompensationRecord> entry = compensationHistory.remove(key);
+                if (entry != null) {
+                    expiries.cancel(entry);
+                }
             }
         }
 
@@ -139,6 +169,7 @@ public class CompensationService {
      * @return Map of compensation statistics
      */
     public Map<String, Object> getCompensationStatistics() {
+        expireRecords();
         Map<String, Object> stats = new HashMap<>();
 
         stats.put("totalCompensations", compensationHistory.size());
@@ -146,13 +177,14 @@ public class CompensationService {
 
         // Count by type
         Map<String, Long> typeCount = new HashMap<>();
-        for (CompensationRecord record : compensationHistory.values()) {
-            typeCount.merge(record.getCompensationType(), 1L, Long::sum);
+        for (TimingWheel.Timeout<CompensationRecord> entry : compensationHistory.values()) {
+            typeCount.merge(entry.getPayload().getCompensationType(), 1L, Long::sum);
         }
         stats.put("compensationsByType", typeCount);
 
         // Count successful vs failed
         long successful = compensationHistory.values().stream()
+            .map(TimingWheel.Timeout::getPayload)
             .filter(CompensationRecord::isSuccess)
             .count();
         stats.put("successfulCompensations", successful);
@@ -161,6 +193,41 @@ public class CompensationService {
         return stats;
     }
 
+    private void expireRecords() {
+        expireRecords(System.currentTimeMillis());
+    }
+
+    /**
+     * Drops the records whose retention has elapsed by {@code nowMillis}
+     *
+     * @param nowMillis the current time, in epoch milliseconds
+     * @return the number of dropped records
+     */
+    int expireRecords(long nowMillis) {
+        List<CompensationRecord> expired = expiries.advance(nowMillis);
+        for (CompensationRecord record : expired) {
+            String key = generateCompensationKey(record.getProcessInstanceId(), record.getCompensationType());
+            TimingWheel.Timeout<CompensationRecord> current = compensationHistory.get(key);
+            if (current != null && current.getPayload() == record && compensationHistory.remove(key, current)) {
+                processCompensations.computeIfPresent(record.getProcessInstanceId(), (processInstanceId, types) -> {
+                    types.remove(record.getCompensationType());
+                    return types.isEmpty() ? null : types;
+                });
+            }
+        }
+        if (!expired.isEmpty()) {
+            LOGGER.debug("Expired {} compensation records older than {}", expired.size(), retention);
+        }
+        return expired.size();
+    }
+
+    /**
+     * Number of records whose retention is still tracked
+     */
+    public int getTrackedCount() {
+        return expiries.size();
+    }
+
     /**
      * Generates unique key for compensation tracking
      */
@@ -0,0 +1,75 @@
+package com.hospital.services.idempotency;
+
+import lombok.Value;
+
+/**
+ * A stored operation result as it is persisted in the idempotency store.
+ *
+ * <p>Results written by {@link IdempotencyResultCodec} carry the Java type they were
+ * produced as and a compact binary payload. Rows written before the codec existed,
+ * or through {@link IdempotencyService#storeResult(String, String, String)}, only
+ * have a JSON string in {@link #getLegacyJson()}.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class EncodedResult {
+
+    /**
+     * An operation that returned {@code null}.
+     */
+    public static final EncodedResult NULL = new EncodedResult(null, null, null);
+
+    /**
+     * Fully qualified class name of the result, or {@code null} for a null/legacy result.
+     */
+    String resultType;
+
+    /**
+     * Codec payload (format header followed by Smile, optionally deflated).
+     */
+    byte[] data;
+
+    /**
+     * JSON text of results stored without the codec.
+     */
+    String legacyJson;
+
+    /**
+     * Extracts the stored result of an idempotency key row.
+     *
+     * @param key the idempotency key
+     * @return the encoded result
+     */
+    public static EncodedResult of(IdempotencyKey key) {
+        if (key.getResultData() == null && key.getResult() == null) {
+            return NULL;
+        }
+        return new EncodedResult(key.getResultType(), key.getResultData(), key.getResult());
+    }
+
+    /**
+     * Creates a legacy JSON result.
+     */
+    public static EncodedResult ofJson(String json) {
+        return json == null ? NULL : new EncodedResult(null, null, json);
+    }
+
+    /**
+     * Whether this is the result of an operation that returned {@code null}.
+     */
+    public boolean isNull() {
+        return data == null && legacyJson == null;
+    }
+
+    /**
+     * Stored size in bytes (payload or legacy JSON characters).
+     */
+    public int size() {
+        if (data != null) {
+            return data.length;
+        }
+        return legacyJson != null ? legacyJson.length() : 0;
+    }
+}
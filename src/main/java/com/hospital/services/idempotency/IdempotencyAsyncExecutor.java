@@ -0,0 +1,111 @@
+package com.hospital.services.idempotency;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link IdempotencyService#executeIdempotentAsync} operations off the caller's thread.
+ *
+ * <p>Idempotent operations mostly wait on outbound calls (payment gateway, claim
+ * submission, payer web services), so on a runtime with virtual threads (Java 21+) each
+ * operation gets its own virtual thread. The application targets Java 17, so the
+ * virtual-thread executor is looked up reflectively; on older runtimes, or with
+ * {@code idempotency.async.virtual-threads=false}, a bounded pool of
+ * {@code idempotency.async.max-threads} platform threads is used instead, rejecting work
+ * once {@code idempotency.async.queue-capacity} operations are waiting.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyAsyncExecutor {
+
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timeouts;
+    private final Duration defaultTimeout;
+    private final boolean virtual;
+
+    public IdempotencyAsyncExecutor(
+            @Value("${idempotency.async.virtual-threads:true}") boolean virtualThreads,
+            @Value("${idempotency.async.max-threads:64}") int maxThreads,
+            @Value("${idempotency.async.queue-capacity:1000}") int queueCapacity,
+            @Value("${idempotency.async.timeout:PT30S}") Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : newBoundedExecutor(maxThreads, queueCapacity);
+        this.timeouts = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-async-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("Async idempotent operations run on {} (timeout {})",
+            virtual ? "virtual threads" : "a pool of " + maxThreads + " threads", defaultTimeout);
+    }
+
+    /**
+     * Starts a task.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the bounded pool is saturated
+     */
+    Future<?> submit(Runnable task) {
+        return executor.submit(task);
+    }
+
+    ScheduledFuture<?> schedule(Runnable task, Duration delay) {
+        return timeouts.schedule(task, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeouts.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("Virtual threads are not available on this runtime: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static ExecutorService newBoundedExecutor(int maxThreads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "idempotency-async-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
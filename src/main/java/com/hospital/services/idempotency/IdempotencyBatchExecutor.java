@@ -0,0 +1,84 @@
+package com.hospital.services.idempotency;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the new operations of an idempotent batch, optionally in parallel.
+ *
+ * <p>With {@code idempotency.batch.parallelism} of 1 (the default) operations run one
+ * after another on the calling thread. Higher values run them on a fixed pool of that
+ * many threads with a bounded queue of {@code idempotency.batch.queue-capacity}; when
+ * the queue is full the submitting thread runs the operation itself, which throttles
+ * large lots instead of rejecting them.</p>
+ *
+ * <p>Parallel operations do not run on the caller's thread, so they must not rely on
+ * thread-bound state such as the caller's transaction or Camunda execution context.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyBatchExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    public IdempotencyBatchExecutor(
+            @Value("${idempotency.batch.parallelism:1}") int parallelism,
+            @Value("${idempotency.batch.queue-capacity:256}") int queueCapacity) {
+        if (parallelism <= 1) {
+            this.executor = null;
+            return;
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "idempotency-batch-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        log.info("Idempotent batches run with parallelism {} (queue capacity {})", parallelism, queueCapacity);
+    }
+
+    /**
+     * Runs all tasks and waits for them to finish. Tasks are expected to handle their
+     * own exceptions.
+     */
+    public void runAll(List<Runnable> tasks) {
+        if (executor == null || tasks.size() <= 1) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = CompletableFuture.runAsync(tasks.get(i), executor);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    public boolean isParallel() {
+        return executor != null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
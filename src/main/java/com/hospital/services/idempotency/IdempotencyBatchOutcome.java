@@ -0,0 +1,54 @@
+package com.hospital.services.idempotency;
+
+import lombok.Value;
+
+/**
+ * Outcome of one item of {@link IdempotencyService#executeIdempotentBatch}.
+ *
+ * @param <T> the result type of the operations in the batch
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class IdempotencyBatchOutcome<T> {
+
+    /**
+     * How the item was resolved.
+     */
+    public enum Status {
+        /** The operation was executed by this batch. */
+        NEW,
+        /** The operation had already completed; its stored result is returned. */
+        REPLAYED,
+        /** The operation failed, or is being executed by another caller. */
+        FAILED
+    }
+
+    Status status;
+
+    /**
+     * The new or replayed result ({@code null} when failed).
+     */
+    T result;
+
+    /**
+     * Why the item failed ({@code null} otherwise).
+     */
+    IdempotencyException error;
+
+    public static <T> IdempotencyBatchOutcome<T> executed(T result) {
+        return new IdempotencyBatchOutcome<>(Status.NEW, result, null);
+    }
+
+    public static <T> IdempotencyBatchOutcome<T> replayed(T result) {
+        return new IdempotencyBatchOutcome<>(Status.REPLAYED, result, null);
+    }
+
+    public static <T> IdempotencyBatchOutcome<T> failed(IdempotencyException error) {
+        return new IdempotencyBatchOutcome<>(Status.FAILED, null, error);
+    }
+
+    public boolean isFailed() {
+        return status == Status.FAILED;
+    }
+}
@@ -0,0 +1,35 @@
+package com.hospital.services.idempotency;
+
+import lombok.Value;
+
+/**
+ * Outcome of an atomic claim attempt on an idempotency key.
+ *
+ * <p>Either the caller inserted the PROCESSING row and now owns the operation
+ * ({@link #isClaimed()} is true), or the row already existed and is returned
+ * as it was stored, so the caller can replay or reject without another lookup.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class IdempotencyClaim {
+
+    /**
+     * Whether this caller created (or took over) the PROCESSING row.
+     */
+    boolean claimed;
+
+    /**
+     * The row as seen by the claim statement.
+     */
+    IdempotencyKey key;
+
+    public static IdempotencyClaim claimed(IdempotencyKey key) {
+        return new IdempotencyClaim(true, key);
+    }
+
+    public static IdempotencyClaim existing(IdempotencyKey key) {
+        return new IdempotencyClaim(false, key);
+    }
+}
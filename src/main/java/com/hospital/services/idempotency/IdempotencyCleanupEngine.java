@@ -0,0 +1,314 @@
+package com.hospital.services.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes expired idempotency keys in bounded, throttled chunks.
+ *
+ * <p>A single {@code DELETE ... WHERE expires_at < ?} over the whole table holds row locks
+ * and generates WAL for its entire duration. This engine instead walks the primary key:</p>
+ * <ol>
+ *   <li>find the upper id of the next {@code chunk-size} expired rows after the last
+ *       processed id (keyset pagination, no OFFSET)</li>
+ *   <li>delete expired rows in that id range and commit</li>
+ *   <li>sleep as needed to stay under {@code max-rows-per-second}</li>
+ * </ol>
+ *
+ * <p>A run stops early once {@code max-duration} has elapsed, which must stay below the
+ * ShedLock {@code lockAtMostFor} of the cleanup job, so the lock never expires while a
+ * chunk is still running. The rest of the backlog is picked up by the next run.</p>
+ *
+ * <p>{@link #run(LocalDateTime, int, int)} only deletes the keys of one shard, so that
+ * several nodes can each drain a shard of the backlog at the same time without touching
+ * the same rows. The ids are cut in stripes of {@code shard-stripe-size} consecutive ids,
+ * dealt out to the shards in turn (stripe {@code id / stripeSize} belongs to shard
+ * {@code stripe mod shardCount}). A shard walks its stripes from the lowest expired id,
+ * so every chunk query stays a range scan of the primary key, and the stripes never move
+ * while rows are deleted or inserted.</p>
+ *
+ * <p>Published meters: {@code idempotency.cleanup.deleted} (counter),
+ * {@code idempotency.cleanup.chunk} (timer), {@code idempotency.cleanup.rows_per_second}
+ * and {@code idempotency.cleanup.backlog} (gauges, as of the last run).</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyCleanupEngine {
+
+    private static final String CHUNK_UPPER_BOUND_SQL =
+        "SELECT MAX(id) FROM (SELECT id FROM idempotency_keys"
+            + " WHERE expires_at < ? AND id > ? ORDER BY id LIMIT ?) chunk";
+
+    private static final String DELETE_CHUNK_SQL =
+        "DELETE FROM idempotency_keys WHERE id > ? AND id <= ? AND expires_at < ?";
+
+    private static final String BACKLOG_SQL =
+        "SELECT COUNT(*) FROM idempotency_keys WHERE expires_at < ?";
+
+    private static final String STRIPE_CHUNK_UPPER_BOUND_SQL =
+        "SELECT MAX(id) FROM (SELECT id FROM idempotency_keys"
+            + " WHERE expires_at < ? AND id > ? AND id <= ? ORDER BY id LIMIT ?) chunk";
+
+    private static final String NEXT_EXPIRED_ID_SQL =
+        "SELECT MIN(id) FROM idempotency_keys WHERE expires_at < ? AND id > ?";
+
+    // Only counted when a run stops early; the expires_at index drives it
+    private static final String SHARD_BACKLOG_SQL =
+        "SELECT COUNT(*) FROM idempotency_keys WHERE expires_at < ? AND MOD(id / ?, ?) = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTransaction;
+    private volatile int chunkSize;
+    private final int maxRowsPerSecond;
+    private final Duration maxDuration;
+    private final long stripeSize;
+
+    private final Counter deletedCounter;
+    private final Timer chunkTimer;
+    private final AtomicLong lastRowsPerSecond = new AtomicLong();
+    private final AtomicLong lastBacklog = new AtomicLong();
+    private final AtomicLong lastChunkLatencyNanos = new AtomicLong();
+
+    public IdempotencyCleanupEngine(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${idempotency.cleanup.chunk-size:1000}") int chunkSize,
+            @Value("${idempotency.cleanup.max-rows-per-second:5000}") int maxRowsPerSecond,
+            @Value("${idempotency.cleanup.max-duration:PT3H50M}") Duration maxDuration,
+            @Value("${idempotency.cleanup.shard-stripe-size:10000}") long stripeSize) {
+        if (stripeSize < 1) {
+            throw new IllegalArgumentException("Shard stripe size must be at least 1: " + stripeSize);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.maxDuration = maxDuration;
+        this.stripeSize = stripeSize;
+
+        this.deletedCounter = Counter.builder("idempotency.cleanup.deleted")
+            .description("Expired idempotency keys deleted by chunked cleanup")
+            .register(meterRegistry);
+        this.chunkTimer = Timer.builder("idempotency.cleanup.chunk")
+            .description("Time to delete and commit one cleanup chunk")
+            .register(meterRegistry);
+        Gauge.builder("idempotency.cleanup.rows_per_second", lastRowsPerSecond, AtomicLong::get)
+            .description("Deletion rate of the last cleanup run")
+            .register(meterRegistry);
+        Gauge.builder("idempotency.cleanup.backlog", lastBacklog, AtomicLong::get)
+            .description("Expired idempotency keys left after the last cleanup run")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Deletes keys that expired before {@code cutoff}, chunk by chunk.
+     *
+     * <p>Each chunk commits on its own unless the caller already runs in a transaction,
+     * in which case the chunks join it.</p>
+     *
+     * @param cutoff keys with {@code expiresAt} before this instant are deleted
+     * @return the outcome of the run
+     */
+    public CleanupResult run(LocalDateTime cutoff) {
+        return run(cutoff, 0, 1);
+    }
+
+    /**
+     * Deletes keys of one shard of id stripes that expired before {@code cutoff}, chunk by
+     * chunk.
+     *
+     * @param shard the shard to clean up, from 0 to {@code shardCount - 1}
+     * @param shardCount the number of shards; 1 cleans up every key
+     * @return the outcome of the run
+     */
+    public CleanupResult run(LocalDateTime cutoff, int shard, int shardCount) {
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("Invalid cleanup shard " + shard + " of " + shardCount);
+        }
+        Timestamp cutoffTimestamp = Timestamp.valueOf(cutoff);
+        long start = System.nanoTime();
+        long deadline = start + maxDuration.toNanos();
+
+        int chunkSize = this.chunkSize;
+        long lastId = 0;
+        // Upper id of the stripe being drained; one stripe of every id when not sharded
+        long stripeEnd = shardCount == 1 ? Long.MAX_VALUE : -1;
+        long deleted = 0;
+        int chunks = 0;
+        long chunkNanos = 0;
+        boolean stoppedEarly = false;
+
+        while (true) {
+            if (System.nanoTime() >= deadline || Thread.currentThread().isInterrupted()) {
+                stoppedEarly = true;
+                break;
+            }
+
+            if (lastId >= stripeEnd) {
+                long[] stripe = nextStripe(cutoffTimestamp, lastId, shard, shardCount);
+                if (stripe == null) {
+                    break;
+                }
+                lastId = stripe[0];
+                stripeEnd = stripe[1];
+            }
+
+            long fromId = lastId;
+            long toId = stripeEnd;
+            long chunkStart = System.nanoTime();
+            long[] chunk = chunkTransaction.execute(status ->
+                deleteChunk(cutoffTimestamp, fromId, toId, chunkSize));
+            long chunkElapsed = System.nanoTime() - chunkStart;
+            chunkTimer.record(chunkElapsed, TimeUnit.NANOSECONDS);
+
+            if (chunk == null) {
+                if (shardCount == 1) {
+                    break;
+                }
+                lastId = stripeEnd;
+                continue;
+            }
+            chunkNanos += chunkElapsed;
+            lastId = chunk[0];
+            deleted += chunk[1];
+            deletedCounter.increment(chunk[1]);
+            chunks++;
+
+            throttle(start, deleted);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        long rowsPerSecond = elapsedNanos > 0 ? deleted * 1_000_000_000L / elapsedNanos : 0;
+        long backlog = stoppedEarly ? countBacklog(cutoffTimestamp, shard, shardCount) : 0;
+        lastRowsPerSecond.set(rowsPerSecond);
+        lastBacklog.set(backlog);
+        if (chunks > 0) {
+            lastChunkLatencyNanos.set(chunkNanos / chunks);
+        }
+
+        CleanupResult result = new CleanupResult(deleted, chunks,
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rowsPerSecond, backlog, stoppedEarly);
+        if (stoppedEarly) {
+            log.warn("Idempotency cleanup of shard {}/{} stopped after {} - {}", shard, shardCount,
+                    maxDuration, result);
+        } else {
+            log.debug("Idempotency cleanup of shard {}/{} finished - {}", shard, shardCount, result);
+        }
+        return result;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Changes the number of rows deleted per chunk, from the next run on.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Mean time to delete and commit one chunk in the last run that deleted anything; a
+     * direct measure of how loaded the database is.
+     */
+    public Duration getLastChunkLatency() {
+        return Duration.ofNanos(lastChunkLatencyNanos.get());
+    }
+
+    /**
+     * Finds the next stripe of {@code shard} after {@code fromId} that may hold expired
+     * keys, skipping the stripes before the lowest expired id in one query.
+     *
+     * @return {id before the stripe, last id of the stripe}, or {@code null} when no
+     *         expired key is left after {@code fromId}
+     */
+    private long[] nextStripe(Timestamp cutoff, long fromId, int shard, int shardCount) {
+        Long nextId = jdbcTemplate.queryForObject(NEXT_EXPIRED_ID_SQL, Long.class, cutoff, fromId);
+        if (nextId == null) {
+            return null;
+        }
+        long stripe = nextId / stripeSize;
+        stripe += Math.floorMod(shard - stripe, shardCount);
+        long stripeStart = stripe * stripeSize;
+        return new long[] {Math.max(fromId, stripeStart - 1), stripeStart + stripeSize - 1};
+    }
+
+    /**
+     * Deletes the next chunk after {@code fromId}, up to {@code toId}.
+     *
+     * @return {upper id, deleted rows}, or {@code null} when nothing is left to delete
+     */
+    private long[] deleteChunk(Timestamp cutoff, long fromId, long toId, int chunkSize) {
+        Long upperId = toId == Long.MAX_VALUE
+            ? jdbcTemplate.queryForObject(CHUNK_UPPER_BOUND_SQL, Long.class, cutoff, fromId, chunkSize)
+            : jdbcTemplate.queryForObject(STRIPE_CHUNK_UPPER_BOUND_SQL, Long.class, cutoff, fromId, toId,
+                chunkSize);
+        if (upperId == null) {
+            return null;
+        }
+        int deleted = jdbcTemplate.update(DELETE_CHUNK_SQL, fromId, upperId, cutoff);
+        return new long[] {upperId, deleted};
+    }
+
+    /**
+     * Sleeps until the average rate since {@code start} is back under the limit.
+     */
+    private void throttle(long start, long deleted) {
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+        long earliestNanos = start + deleted * 1_000_000_000L / maxRowsPerSecond;
+        long sleepMillis = TimeUnit.NANOSECONDS.toMillis(earliestNanos - System.nanoTime());
+        if (sleepMillis > 0) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private long countBacklog(Timestamp cutoff, int shard, int shardCount) {
+        Long remaining = shardCount == 1
+            ? jdbcTemplate.queryForObject(BACKLOG_SQL, Long.class, cutoff)
+            : jdbcTemplate.queryForObject(SHARD_BACKLOG_SQL, Long.class, cutoff, stripeSize, shardCount, shard);
+        return remaining != null ? remaining : 0;
+    }
+
+    /**
+     * Outcome of one cleanup run.
+     */
+    @lombok.Value
+    public static class CleanupResult {
+        long deleted;
+        int chunks;
+        long durationMillis;
+        long rowsPerSecond;
+        /** Expired keys left for the next run (0 when the run completed). */
+        long backlog;
+        /** Whether the run hit {@code max-duration} or was interrupted. */
+        boolean stoppedEarly;
+    }
+}
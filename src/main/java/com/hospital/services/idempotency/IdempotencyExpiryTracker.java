@@ -0,0 +1,273 @@
+package com.hospital.services.idempotency;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the deadlines of the idempotency keys this node works on in a {@link TimingWheel},
+ * so they are acted upon within a tick instead of at the next database sweep.
+ *
+ * <ul>
+ *   <li>PROCESSING deadline - a key still executing {@code idempotency.expiry.processing-deadline}
+ *       after it was claimed is marked FAILED under its fencing token. Its lease is renewed
+ *       as long as this node is alive, so lease recovery would never catch an operation
+ *       that hangs.</li>
+ *   <li>cache expiry - a near-cache entry is removed when it stops being valid.</li>
+ *   <li>key expiry - keys claimed by this node are removed when they expire, together
+ *       with the other keys expiring in the same tick (see
+ *       {@link IdempotencyStore#removeExpired(java.util.Collection, LocalDateTime)}).</li>
+ * </ul>
+ *
+ * <p>The wheel lives in memory, so the scheduled sweeps of {@code IdempotencyCleanupScheduler}
+ * remain in place to catch what it cannot: keys of nodes that crashed or restarted, and
+ * key expiries beyond {@code idempotency.expiry.max-tracked}.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyExpiryTracker {
+
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_LEVELS = 4;
+
+    private final IdempotencyStore store;
+    private final IdempotencyResultCache resultCache;
+    private final IdempotencyMetrics metrics;
+    private final Duration processingDeadline;
+    private final int maxTrackedKeys;
+    private final TimingWheel<Deadline> wheel;
+
+    /**
+     * PROCESSING deadlines of the keys executing on this node, by key id.
+     */
+    private final Map<Long, TimingWheel.Timeout<Deadline>> processing = new ConcurrentHashMap<>();
+    private final AtomicInteger trackedKeys = new AtomicInteger();
+
+    private ScheduledExecutorService tickExecutor;
+
+    public IdempotencyExpiryTracker(
+            IdempotencyStore store,
+            IdempotencyResultCache resultCache,
+            IdempotencyMetrics metrics,
+            MeterRegistry meterRegistry,
+            @Value("${idempotency.expiry.tick:PT1S}") Duration tick,
+            @Value("${idempotency.expiry.processing-deadline:PT30M}") Duration processingDeadline,
+            @Value("${idempotency.expiry.max-tracked:100000}") int maxTrackedKeys) {
+        this.store = store;
+        this.resultCache = resultCache;
+        this.metrics = metrics;
+        this.processingDeadline = processingDeadline;
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.wheel = new TimingWheel<>(tick, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+
+        Gauge.builder("idempotency.expiry.tracked", wheel, TimingWheel::size)
+            .description("Deadlines pending in the idempotency expiry timing wheel")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        tickExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-expiry-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tickMillis = wheel.getTick().toMillis();
+        tickExecutor.scheduleAtFixedRate(this::tickSafely, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        log.info("Idempotency expiry wheel started - tick: {}, processing deadline: {}, max tracked keys: {}",
+                wheel.getTick(), processingDeadline, maxTrackedKeys);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (tickExecutor != null) {
+            tickExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts tracking a key claimed by this node: its PROCESSING deadline and its expiry.
+     */
+    public void acquired(IdempotencyKey key) {
+        long now = System.currentTimeMillis();
+        TimingWheel.Timeout<Deadline> previous = processing.put(key.getId(), wheel.schedule(
+            Deadline.processing(key), now + processingDeadline.toMillis()));
+        if (previous != null) {
+            wheel.cancel(previous);
+        }
+
+        if (key.getExpiresAt() != null && trackedKeys.incrementAndGet() <= maxTrackedKeys) {
+            wheel.schedule(Deadline.expiry(key), toEpochMillis(key.getExpiresAt()));
+        } else if (key.getExpiresAt() != null) {
+            // Over the limit: the scheduled sweep removes it
+            trackedKeys.decrementAndGet();
+        }
+    }
+
+    /**
+     * Cancels the PROCESSING deadline of a key once its outcome has been recorded.
+     */
+    public void released(IdempotencyKey key) {
+        TimingWheel.Timeout<Deadline> deadline = processing.remove(key.getId());
+        if (deadline != null) {
+            wheel.cancel(deadline);
+        }
+    }
+
+    /**
+     * Removes a near-cache entry when it stops being valid.
+     *
+     * @param cached the entry returned by {@link IdempotencyResultCache#put}, or {@code null}
+     */
+    public void cached(String operationType, String operationKey, IdempotencyResultCache.CachedResult cached) {
+        if (cached != null) {
+            wheel.schedule(Deadline.cached(operationType, operationKey, cached), cached.getValidUntil());
+        }
+    }
+
+    /**
+     * Number of deadlines currently tracked.
+     */
+    public int getTrackedCount() {
+        return wheel.size();
+    }
+
+    /**
+     * Handles every deadline reached by {@code nowMillis}.
+     *
+     * @param nowMillis the current time, in epoch milliseconds
+     * @return the number of handled deadlines
+     */
+    public int advance(long nowMillis) {
+        List<Deadline> expired = wheel.advance(nowMillis);
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> expiredKeys = new ArrayList<>();
+        int stuck = 0;
+        for (Deadline deadline : expired) {
+            switch (deadline.kind) {
+                case PROCESSING -> {
+                    if (failStuck(deadline)) {
+                        stuck++;
+                    }
+                }
+                case CACHE -> resultCache.evict(deadline.operationType, deadline.operationKey,
+                    deadline.cached);
+                case EXPIRY -> expiredKeys.add(deadline.id);
+            }
+        }
+
+        if (!expiredKeys.isEmpty()) {
+            trackedKeys.addAndGet(-expiredKeys.size());
+            removeExpired(expiredKeys, nowMillis);
+        }
+        if (stuck > 0) {
+            log.warn("Marked {} idempotency keys stuck in PROCESSING for more than {} as failed",
+                    stuck, processingDeadline);
+        }
+        return expired.size();
+    }
+
+    private boolean failStuck(Deadline deadline) {
+        TimingWheel.Timeout<Deadline> current = processing.get(deadline.id);
+        if (current == null || current.getPayload() != deadline || !processing.remove(deadline.id, current)) {
+            // Released in the meantime
+            return false;
+        }
+        if (!store.markFailed(deadline.id, deadline.fencingToken)) {
+            return false;
+        }
+        log.warn("Operation {}:{} still PROCESSING after {}; marked as failed",
+                deadline.operationType, deadline.operationKey, processingDeadline);
+        metrics.forType(deadline.operationType).stuck();
+        return true;
+    }
+
+    private void removeExpired(List<Long> ids, long nowMillis) {
+        try {
+            LocalDateTime now = LocalDateTime.ofInstant(Instant.ofEpochMilli(nowMillis), ZoneId.systemDefault());
+            long removed = store.removeExpired(ids, now);
+            metrics.recordCleanup(removed);
+            log.debug("Removed {} of {} expired idempotency keys tracked by this node", removed, ids.size());
+        } catch (RuntimeException e) {
+            // Left for the scheduled sweep
+            log.warn("Could not remove {} expired idempotency keys: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    private void tickSafely() {
+        try {
+            advance(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.error("Failed to process idempotency deadlines: {}", e.getMessage(), e);
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * A deadline tracked in the wheel.
+     */
+    private static final class Deadline {
+
+        enum Kind {
+            PROCESSING,
+            CACHE,
+            EXPIRY
+        }
+
+        private final Kind kind;
+        private final String operationType;
+        private final String operationKey;
+        private final Long id;
+        private final long fencingToken;
+        private final IdempotencyResultCache.CachedResult cached;
+
+        private Deadline(Kind kind, String operationType, String operationKey, Long id, long fencingToken,
+                         IdempotencyResultCache.CachedResult cached) {
+            this.kind = kind;
+            this.operationType = operationType;
+            this.operationKey = operationKey;
+            this.id = id;
+            this.fencingToken = fencingToken;
+            this.cached = cached;
+        }
+
+        static Deadline processing(IdempotencyKey key) {
+            return new Deadline(Kind.PROCESSING, key.getOperationType(), key.getOperationKey(), key.getId(),
+                key.getFencingToken() != null ? key.getFencingToken() : 0L, null);
+        }
+
+        static Deadline expiry(IdempotencyKey key) {
+            return new Deadline(Kind.EXPIRY, key.getOperationType(), key.getOperationKey(), key.getId(), 0L, null);
+        }
+
+        static Deadline cached(String operationType, String operationKey, IdempotencyResultCache.CachedResult cached) {
+            return new Deadline(Kind.CACHE, operationType, operationKey, null, 0L, cached);
+        }
+    }
+}
@@ -77,6 +77,19 @@ public class IdempotencyKey {
     @Column(name = "result", columnDefinition = "TEXT")
     private String result;
 
+    /**
+     * Java type of the stored result, recorded so replays deserialize into it.
+     */
+    @Column(name = "result_type", length = 255)
+    private String resultType;
+
+    /**
+     * Compact binary result written by {@link IdempotencyResultCodec}
+     * (Smile, deflated above the compression threshold).
+     */
+    @Column(name = "result_data", length = 1048576)
+    private byte[] resultData;
+
     /**
      * Current status of the idempotency key.
      */
@@ -100,6 +113,26 @@ public class IdempotencyKey {
     @Builder.Default
     private LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
 
+    /**
+     * Node currently executing the operation (PROCESSING only).
+     */
+    @Column(name = "lease_owner", length = 128)
+    private String leaseOwner;
+
+    /**
+     * Until when the executing node holds the key; renewed while the operation runs.
+     * A PROCESSING key whose lease has expired is considered abandoned.
+     */
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    /**
+     * Incremented every time ownership of the key changes (claim, takeover, recovery).
+     * Completion is only accepted from the holder of the current token.
+     */
+    @Column(name = "fencing_token")
+    private Long fencingToken;
+
     /**
      * Version field for optimistic locking to handle concurrent updates.
      */
@@ -147,6 +180,20 @@ public class IdempotencyKey {
     public void markCompleted(String result) {
         this.status = IdempotencyStatus.COMPLETED;
         this.result = result;
+        this.resultType = null;
+        this.resultData = null;
+    }
+
+    /**
+     * Marks this idempotency key as completed with an encoded result.
+     *
+     * @param encoded the result produced by {@link IdempotencyResultCodec}
+     */
+    public void markCompleted(EncodedResult encoded) {
+        this.status = IdempotencyStatus.COMPLETED;
+        this.result = encoded.getLegacyJson();
+        this.resultType = encoded.getResultType();
+        this.resultData = encoded.getData();
     }
 
     /**
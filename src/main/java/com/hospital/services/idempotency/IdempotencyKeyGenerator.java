@@ -1,14 +1,12 @@
 package com.hospital.services.idempotency;
 
+import com.hospital.util.KeyHasher;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.SortedMap;
 
 /**
  * Utility class for generating deterministic idempotency keys.
@@ -17,6 +15,9 @@ import java.util.stream.Collectors;
  * using SHA-256 hashing. Keys are designed to be deterministic so that the same input
  * always produces the same key, enabling proper idempotency.</p>
  *
+ * <p>Hashing is delegated to {@link KeyHasher}, which feeds the key material
+ * to a per-thread digest without building the concatenated string.</p>
+ *
  * <p><strong>Usage Example:</strong></p>
  * <pre>
  * String key = IdempotencyKeyGenerator.generateFromVariables(
@@ -35,8 +36,7 @@ import java.util.stream.Collectors;
 @Component
 public class IdempotencyKeyGenerator {
 
-    private static final String HASH_ALGORITHM = "SHA-256";
-    private static final String SEPARATOR = "|";
+    private static final char SEPARATOR = '|';
 
     /**
      * Generates an idempotency key from a map of variables.
@@ -52,13 +52,24 @@ public class IdempotencyKeyGenerator {
             throw new IllegalArgumentException("Variables cannot be null or empty");
         }
 
-        // Sort keys and build deterministic string representation
-        String concatenated = variables.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .map(entry -> entry.getKey() + "=" + String.valueOf(entry.getValue()))
-            .collect(Collectors.joining(SEPARATOR));
+        KeyHasher hasher = KeyHasher.start();
+
+        // Sorted by key for deterministic ordering: name=value|name=value...
+        if (variables instanceof SortedMap && ((SortedMap<String, Object>) variables).comparator() == null) {
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : variables.entrySet()) {
+                appendVariable(hasher, first, entry.getKey(), entry.getValue());
+                first = false;
+            }
+        } else {
+            String[] names = variables.keySet().toArray(new String[0]);
+            Arrays.sort(names);
+            for (int i = 0; i < names.length; i++) {
+                appendVariable(hasher, i == 0, names[i], variables.get(names[i]));
+            }
+        }
 
-        return hashString(concatenated);
+        return hasher.toHex();
     }
 
     /**
@@ -74,8 +85,24 @@ public class IdempotencyKeyGenerator {
             throw new IllegalArgumentException("Components cannot be null or empty");
         }
 
-        String concatenated = String.join(SEPARATOR, components);
-        return hashString(concatenated);
+        return appendComponents(KeyHasher.start(), components).toHex();
+    }
+
+    /**
+     * Generates the raw 32-byte form of {@link #generateFromComponents(String...)}.
+     *
+     * <p>Useful for compact binary storage; the hex key is the lowercase hex encoding
+     * of these bytes.</p>
+     *
+     * @param components the components to include in the key
+     * @return the SHA-256 digest of the components
+     */
+    public static byte[] generateRawFromComponents(String... components) {
+        if (components == null || components.length == 0) {
+            throw new IllegalArgumentException("Components cannot be null or empty");
+        }
+
+        return appendComponents(KeyHasher.start(), components).toBytes();
     }
 
     /**
@@ -185,40 +212,25 @@ public class IdempotencyKeyGenerator {
             throw new IllegalArgumentException("Components cannot be null or empty");
         }
 
-        String[] prefixedComponents = new String[components.length + 1];
-        prefixedComponents[0] = prefix;
-        System.arraycopy(components, 0, prefixedComponents, 1, components.length);
-
-        return generateFromComponents(prefixedComponents);
+        KeyHasher hasher = KeyHasher.start().append(prefix).append(SEPARATOR);
+        return appendComponents(hasher, components).toHex();
     }
 
-    /**
-     * Hashes a string using SHA-256 and returns the hex representation.
-     *
-     * @param input the input string to hash
-     * @return the hexadecimal representation of the hash
-     */
-    private static String hashString(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
-            byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-
-            // Convert to hex string
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
+    private static KeyHasher appendComponents(KeyHasher hasher, String[] components) {
+        for (int i = 0; i < components.length; i++) {
+            if (i > 0) {
+                hasher.append(SEPARATOR);
             }
+            hasher.append(components[i]);
+        }
+        return hasher;
+    }
 
-            return hexString.toString();
-
-        } catch (NoSuchAlgorithmException e) {
-            log.error("SHA-256 algorithm not available", e);
-            throw new RuntimeException("Failed to generate idempotency key", e);
+    private static void appendVariable(KeyHasher hasher, boolean first, String name, Object value) {
+        if (!first) {
+            hasher.append(SEPARATOR);
         }
+        hasher.append(name).append('=').append(value);
     }
 
     /**
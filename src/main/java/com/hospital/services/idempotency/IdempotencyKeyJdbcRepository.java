@@ -0,0 +1,677 @@
+package com.hospital.services.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plain JDBC access to the {@code idempotency_keys} table for the hot claim path.
+ *
+ * <p>The JPA repository needs a lookup, an insert and a flush to claim a key, and
+ * surfaces races as constraint violations that have to be retried. This repository
+ * claims a key with a single "insert if absent" statement on the
+ * {@code uk_operation_type_key} constraint that also returns the existing row when
+ * the insert does not happen:</p>
+ * <ul>
+ *   <li>PostgreSQL: {@code INSERT ... ON CONFLICT DO NOTHING RETURNING} combined with
+ *       a fallback read of the existing row in one CTE statement</li>
+ *   <li>PostgreSQL with the table partitioned by expiry day (migration V6): the unique
+ *       constraint cannot span partitions, so the claim takes a transaction-scoped
+ *       advisory lock on the key and then inserts only if no row exists (two statements
+ *       in one transaction)</li>
+ *   <li>H2 (and other databases): standard {@code MERGE ... USING ... WHEN NOT MATCHED}
+ *       read through {@code FINAL TABLE}; the existing row is read with a second
+ *       statement only when the key was already present</li>
+ * </ul>
+ *
+ * <p>The storage layout is detected from the schema on first use, so the same code runs
+ * against plain and partitioned tables.</p>
+ *
+ * <p>Every statement issued is counted so the number of round-trips per operation
+ * can be observed (see {@link #getStatementCount()}).</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Repository
+public class IdempotencyKeyJdbcRepository {
+
+    /**
+     * Claims of a key tried by {@link #storeCompleted} while its row keeps vanishing.
+     */
+    private static final int MAX_CLAIM_ATTEMPTS = 3;
+
+    private static final String COLUMNS =
+        "id, operation_type, operation_key, process_instance_id, execution_id, result, "
+            + "result_type, result_data, status, created_at, expires_at, lease_owner, lease_expires_at, "
+            + "fencing_token, version";
+
+    private static final String POSTGRES_CLAIM_SQL =
+        "WITH inserted AS ("
+            + " INSERT INTO idempotency_keys (operation_type, operation_key, process_instance_id,"
+            + " execution_id, status, created_at, expires_at, lease_owner, lease_expires_at,"
+            + " fencing_token, version)"
+            + " VALUES (?, ?, ?, ?, 'PROCESSING', ?, ?, ?, ?, 1, 0)"
+            + " ON CONFLICT ON CONSTRAINT uk_operation_type_key DO NOTHING"
+            + " RETURNING " + COLUMNS + ")"
+            + " SELECT " + COLUMNS + ", TRUE AS claimed FROM inserted"
+            + " UNION ALL"
+            + " SELECT " + COLUMNS + ", FALSE AS claimed FROM idempotency_keys"
+            + " WHERE operation_type = ? AND operation_key = ?"
+            + " AND NOT EXISTS (SELECT 1 FROM inserted)";
+
+    private static final String ADVISORY_LOCK_SQL =
+        "SELECT pg_advisory_xact_lock(hashtextextended(? || chr(0) || ?, 0))";
+
+    private static final String PARTITIONED_CLAIM_SQL =
+        "WITH existing AS ("
+            + " SELECT " + COLUMNS + " FROM idempotency_keys"
+            + " WHERE operation_type = ? AND operation_key = ?),"
+            + " inserted AS ("
+            + " INSERT INTO idempotency_keys (operation_type, operation_key, process_instance_id,"
+            + " execution_id, status, created_at, expires_at, lease_owner, lease_expires_at,"
+            + " fencing_token, version)"
+            + " SELECT ?, ?, ?, ?, 'PROCESSING', ?, ?, ?, ?, 1, 0"
+            + " WHERE NOT EXISTS (SELECT 1 FROM existing)"
+            + " RETURNING " + COLUMNS + ")"
+            + " SELECT " + COLUMNS + ", TRUE AS claimed FROM inserted"
+            + " UNION ALL"
+            + " SELECT " + COLUMNS + ", FALSE AS claimed FROM existing";
+
+    private static final String PARTITIONED_TABLE_SQL =
+        "SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass('idempotency_keys')";
+
+    private static final String MERGE_CLAIM_SQL =
+        "SELECT " + COLUMNS + ", TRUE AS claimed FROM FINAL TABLE ("
+            + " MERGE INTO idempotency_keys t"
+            + " USING (VALUES (CAST(? AS VARCHAR(100)), CAST(? AS VARCHAR(255)))) s(operation_type, operation_key)"
+            + " ON t.operation_type = s.operation_type AND t.operation_key = s.operation_key"
+            + " WHEN NOT MATCHED THEN INSERT (operation_type, operation_key, process_instance_id,"
+            + " execution_id, status, created_at, expires_at, lease_owner, lease_expires_at,"
+            + " fencing_token, version)"
+            + " VALUES (s.operation_type, s.operation_key, ?, ?, 'PROCESSING', ?, ?, ?, ?, 1, 0))";
+
+    /**
+     * Multi-row insert of PROCESSING rows; followed by {@code FROM <rows> v(operation_key)}.
+     */
+    private static final String INSERT_ALL_SQL =
+        "INSERT INTO idempotency_keys (operation_type, operation_key, process_instance_id,"
+            + " execution_id, status, created_at, expires_at, lease_owner, lease_expires_at,"
+            + " fencing_token, version)"
+            + " SELECT CAST(? AS VARCHAR(100)), v.operation_key, ?, ?, 'PROCESSING', ?, ?, ?, ?, 1, 0";
+
+    private static final String SELECT_BY_KEY_SQL =
+        "SELECT " + COLUMNS + ", FALSE AS claimed FROM idempotency_keys"
+            + " WHERE operation_type = ? AND operation_key = ?";
+
+    private static final String RECLAIM_SQL =
+        "UPDATE idempotency_keys SET status = 'PROCESSING', result = NULL, result_type = NULL,"
+            + " result_data = NULL, process_instance_id = ?,"
+            + " execution_id = ?, created_at = ?, expires_at = ?, lease_owner = ?, lease_expires_at = ?,"
+            + " fencing_token = COALESCE(fencing_token, 0) + 1, version = version + 1"
+            + " WHERE id = ? AND version = ? AND status IN ('PENDING', 'FAILED')";
+
+    private static final String COMPLETE_SQL =
+        "UPDATE idempotency_keys SET status = 'COMPLETED', result = ?, result_type = ?, result_data = ?,"
+            + " lease_owner = NULL, lease_expires_at = NULL, version = version + 1"
+            + " WHERE id = ? AND status = 'PROCESSING' AND fencing_token = ?";
+
+    private static final String FAIL_SQL =
+        "UPDATE idempotency_keys SET status = 'FAILED', lease_owner = NULL, lease_expires_at = NULL,"
+            + " version = version + 1"
+            + " WHERE id = ? AND status = 'PROCESSING' AND fencing_token = ?";
+
+    private static final String STORE_COMPLETED_SQL =
+        "UPDATE idempotency_keys SET status = 'COMPLETED', result = ?, result_type = ?, result_data = ?,"
+            + " lease_owner = NULL, lease_expires_at = NULL, version = version + 1"
+            + " WHERE id = ?";
+
+    private static final String RENEW_LEASES_SQL =
+        "UPDATE idempotency_keys SET lease_expires_at = ?"
+            + " WHERE lease_owner = ? AND status = 'PROCESSING'";
+
+    private static final String RECOVER_EXPIRED_LEASES_SQL =
+        "UPDATE idempotency_keys SET status = 'FAILED', lease_owner = NULL, lease_expires_at = NULL,"
+            + " fencing_token = COALESCE(fencing_token, 0) + 1, version = version + 1"
+            + " WHERE status = 'PROCESSING'"
+            + " AND (lease_expires_at < ? OR (lease_expires_at IS NULL AND created_at < ?))";
+
+    private static final String COUNT_BY_STATUS_SQL =
+        "SELECT COUNT(*) FROM idempotency_keys WHERE status = ?";
+
+    private static final String COUNT_EXPIRED_SQL =
+        "SELECT COUNT(*) FROM (SELECT 1 FROM idempotency_keys WHERE expires_at < ? LIMIT ?) expired";
+
+    /**
+     * Maximum number of keys claimed by one multi-row statement.
+     */
+    static final int CLAIM_BATCH_SIZE = 500;
+
+    /**
+     * How keys are claimed, detected from the database on first use.
+     */
+    enum StorageLayout {
+        POSTGRES,
+        POSTGRES_PARTITIONED,
+        MERGE
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LongAdder statementCount = new LongAdder();
+    private volatile StorageLayout layout;
+
+    public IdempotencyKeyJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+    }
+
+    @Autowired
+    public IdempotencyKeyJdbcRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Atomically inserts a PROCESSING row for the key, or returns the row that already exists.
+     *
+     * @param operationType the type of operation
+     * @param operationKey the unique key for this operation instance
+     * @param processInstanceId the Camunda process instance ID (optional)
+     * @param executionId the Camunda execution ID (optional)
+     * @param createdAt the claim timestamp
+     * @param expiresAt when the key may be cleaned up
+     * @return the claim outcome, or {@code null} if the row vanished between statements
+     *         (for example removed by cleanup) and the caller should try again
+     */
+    public IdempotencyClaim claim(String operationType, String operationKey,
+                                  String processInstanceId, String executionId,
+                                  LocalDateTime createdAt, LocalDateTime expiresAt) {
+        return claim(operationType, operationKey, processInstanceId, executionId, createdAt, expiresAt,
+            null, null);
+    }
+
+    /**
+     * Atomically inserts a PROCESSING row leased to {@code leaseOwner}, or returns the row
+     * that already exists. New rows start with fencing token 1.
+     *
+     * @param leaseOwner the node that will execute the operation
+     * @param leaseExpiresAt until when the lease is held unless renewed
+     * @return the claim outcome, or {@code null} if the row vanished between statements
+     * @see #claim(String, String, String, String, LocalDateTime, LocalDateTime)
+     */
+    public IdempotencyClaim claim(String operationType, String operationKey,
+                                  String processInstanceId, String executionId,
+                                  LocalDateTime createdAt, LocalDateTime expiresAt,
+                                  String leaseOwner, LocalDateTime leaseExpiresAt) {
+        Timestamp created = Timestamp.valueOf(createdAt);
+        Timestamp expires = Timestamp.valueOf(expiresAt);
+        Timestamp leaseExpires = leaseExpiresAt != null ? Timestamp.valueOf(leaseExpiresAt) : null;
+
+        StorageLayout storageLayout = getStorageLayout();
+        if (storageLayout == StorageLayout.POSTGRES_PARTITIONED) {
+            return transactionTemplate.execute(status -> {
+                statementCount.add(2);
+                jdbcTemplate.query(ADVISORY_LOCK_SQL, rs -> null, operationType, operationKey);
+                List<IdempotencyClaim> rows = jdbcTemplate.query(PARTITIONED_CLAIM_SQL, CLAIM_MAPPER,
+                    operationType, operationKey,
+                    operationType, operationKey, processInstanceId, executionId, created, expires,
+                    leaseOwner, leaseExpires);
+                return rows.isEmpty() ? null : rows.get(0);
+            });
+        }
+
+        if (storageLayout == StorageLayout.POSTGRES) {
+            statementCount.increment();
+            List<IdempotencyClaim> rows = jdbcTemplate.query(POSTGRES_CLAIM_SQL, CLAIM_MAPPER,
+                operationType, operationKey, processInstanceId, executionId, created, expires,
+                leaseOwner, leaseExpires, operationType, operationKey);
+            return rows.isEmpty() ? null : rows.get(0);
+        }
+
+        try {
+            statementCount.increment();
+            List<IdempotencyClaim> inserted = jdbcTemplate.query(MERGE_CLAIM_SQL, CLAIM_MAPPER,
+                operationType, operationKey, processInstanceId, executionId, created, expires,
+                leaseOwner, leaseExpires);
+            if (!inserted.isEmpty()) {
+                return inserted.get(0);
+            }
+        } catch (DuplicateKeyException e) {
+            log.debug("Concurrent claim detected for {}:{}, reading existing row", operationType, operationKey);
+        }
+
+        return find(operationType, operationKey);
+    }
+
+    /**
+     * Claims many keys of one operation type with a multi-row statement per
+     * {@value #CLAIM_BATCH_SIZE} keys.
+     *
+     * <p>Keys that did not exist are inserted as PROCESSING rows and returned as claimed;
+     * existing rows are returned as they are. A key that is missing from the result was
+     * inserted concurrently by another transaction that is not yet visible, and should
+     * be claimed again individually.</p>
+     *
+     * @return claim outcomes by operation key
+     * @see #claim(String, String, String, String, LocalDateTime, LocalDateTime, String, LocalDateTime)
+     */
+    public Map<String, IdempotencyClaim> claimAll(String operationType, Collection<String> operationKeys,
+                                                  String processInstanceId, String executionId,
+                                                  LocalDateTime createdAt, LocalDateTime expiresAt,
+                                                  String leaseOwner, LocalDateTime leaseExpiresAt) {
+        Object[] rowValues = {
+            processInstanceId, executionId, Timestamp.valueOf(createdAt), Timestamp.valueOf(expiresAt),
+            leaseOwner, leaseExpiresAt != null ? Timestamp.valueOf(leaseExpiresAt) : null
+        };
+
+        Map<String, IdempotencyClaim> claims = new HashMap<>(operationKeys.size() * 2);
+        List<String> keys = new ArrayList<>(operationKeys);
+        for (int from = 0; from < keys.size(); from += CLAIM_BATCH_SIZE) {
+            List<String> chunk = keys.subList(from, Math.min(from + CLAIM_BATCH_SIZE, keys.size()));
+            for (IdempotencyClaim claim : claimChunk(operationType, chunk, rowValues)) {
+                claims.put(claim.getKey().getOperationKey(), claim);
+            }
+        }
+        return claims;
+    }
+
+    private List<IdempotencyClaim> claimChunk(String operationType, List<String> operationKeys, Object[] rowValues) {
+        String keyRows = repeat("(CAST(? AS VARCHAR(255)))", operationKeys.size());
+
+        StorageLayout storageLayout = getStorageLayout();
+        if (storageLayout == StorageLayout.POSTGRES_PARTITIONED) {
+            return transactionTemplate.execute(status -> {
+                statementCount.add(2);
+                jdbcTemplate.query(
+                    "SELECT pg_advisory_xact_lock(hashtextextended(CAST(? AS TEXT) || chr(0) || v.operation_key, 0))"
+                        + " FROM (VALUES " + keyRows + ") v(operation_key) ORDER BY v.operation_key",
+                    rs -> null, concat(new Object[] {operationType}, operationKeys.toArray()));
+                return jdbcTemplate.query(
+                    "WITH v(operation_key) AS (VALUES " + keyRows + "),"
+                        + " existing AS (SELECT " + COLUMNS + " FROM idempotency_keys"
+                        + " WHERE operation_type = ? AND operation_key IN (SELECT operation_key FROM v)),"
+                        + " inserted AS (" + INSERT_ALL_SQL + " FROM v"
+                        + " WHERE NOT EXISTS (SELECT 1 FROM existing e WHERE e.operation_key = v.operation_key)"
+                        + " RETURNING " + COLUMNS + ")"
+                        + " SELECT " + COLUMNS + ", TRUE AS claimed FROM inserted"
+                        + " UNION ALL"
+                        + " SELECT " + COLUMNS + ", FALSE AS claimed FROM existing",
+                    CLAIM_MAPPER,
+                    concat(operationKeys.toArray(), new Object[] {operationType, operationType}, rowValues));
+            });
+        }
+
+        if (storageLayout == StorageLayout.POSTGRES) {
+            // The outer SELECT does not see the rows inserted by the CTE, only pre-existing ones
+            statementCount.increment();
+            return jdbcTemplate.query(
+                "WITH inserted AS (" + INSERT_ALL_SQL + " FROM (VALUES " + keyRows + ") v(operation_key)"
+                    + " ON CONFLICT ON CONSTRAINT uk_operation_type_key DO NOTHING"
+                    + " RETURNING " + COLUMNS + ")"
+                    + " SELECT " + COLUMNS + ", TRUE AS claimed FROM inserted"
+                    + " UNION ALL"
+                    + " SELECT " + COLUMNS + ", FALSE AS claimed FROM idempotency_keys"
+                    + " WHERE operation_type = ? AND operation_key IN (" + repeat("?", operationKeys.size()) + ")",
+                CLAIM_MAPPER,
+                concat(new Object[] {operationType}, rowValues, operationKeys.toArray(),
+                    new Object[] {operationType}, operationKeys.toArray()));
+        }
+
+        List<IdempotencyClaim> claims = new ArrayList<>(operationKeys.size());
+        try {
+            statementCount.increment();
+            claims.addAll(jdbcTemplate.query(
+                "SELECT " + COLUMNS + ", TRUE AS claimed FROM FINAL TABLE ("
+                    + " MERGE INTO idempotency_keys t"
+                    + " USING (VALUES " + keyRows + ") s(operation_key)"
+                    + " ON t.operation_type = CAST(? AS VARCHAR(100)) AND t.operation_key = s.operation_key"
+                    + " WHEN NOT MATCHED THEN INSERT (operation_type, operation_key, process_instance_id,"
+                    + " execution_id, status, created_at, expires_at, lease_owner, lease_expires_at,"
+                    + " fencing_token, version)"
+                    + " VALUES (CAST(? AS VARCHAR(100)), s.operation_key, ?, ?, 'PROCESSING', ?, ?, ?, ?, 1, 0))",
+                CLAIM_MAPPER,
+                concat(operationKeys.toArray(), new Object[] {operationType, operationType}, rowValues)));
+        } catch (DuplicateKeyException e) {
+            log.debug("Concurrent claim detected in batch of {} {} keys, reading existing rows",
+                     operationKeys.size(), operationType);
+        }
+        if (claims.size() == operationKeys.size()) {
+            return claims;
+        }
+
+        Set<String> remaining = new HashSet<>(operationKeys);
+        claims.forEach(claim -> remaining.remove(claim.getKey().getOperationKey()));
+        statementCount.increment();
+        claims.addAll(jdbcTemplate.query(
+            "SELECT " + COLUMNS + ", FALSE AS claimed FROM idempotency_keys"
+                + " WHERE operation_type = ? AND operation_key IN (" + repeat("?", remaining.size()) + ")",
+            CLAIM_MAPPER,
+            concat(new Object[] {operationType}, remaining.toArray())));
+        return claims;
+    }
+
+    /**
+     * Reads the current row for a key.
+     *
+     * @return the existing row wrapped as an unclaimed outcome, or {@code null} if absent
+     */
+    public IdempotencyClaim find(String operationType, String operationKey) {
+        statementCount.increment();
+        List<IdempotencyClaim> rows = jdbcTemplate.query(SELECT_BY_KEY_SQL, CLAIM_MAPPER,
+            operationType, operationKey);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Takes over a PENDING or FAILED row, guarded by its version so only one caller wins.
+     *
+     * <p>On success the fencing token is incremented and {@code existing} is updated to the
+     * new PROCESSING state, lease and token.</p>
+     *
+     * @param leaseOwner the node that will execute the operation (optional)
+     * @param leaseExpiresAt until when the lease is held unless renewed (optional)
+     * @return true if this caller now owns the PROCESSING row
+     */
+    public boolean reclaim(IdempotencyKey existing, String processInstanceId, String executionId,
+                           LocalDateTime createdAt, LocalDateTime expiresAt,
+                           String leaseOwner, LocalDateTime leaseExpiresAt) {
+        statementCount.increment();
+        int updated = jdbcTemplate.update(RECLAIM_SQL,
+            processInstanceId, executionId, Timestamp.valueOf(createdAt), Timestamp.valueOf(expiresAt),
+            leaseOwner, leaseExpiresAt != null ? Timestamp.valueOf(leaseExpiresAt) : null,
+            existing.getId(), existing.getVersion());
+        if (updated != 1) {
+            return false;
+        }
+
+        long previousToken = existing.getFencingToken() != null ? existing.getFencingToken() : 0L;
+        existing.markProcessing();
+        existing.setProcessInstanceId(processInstanceId);
+        existing.setExecutionId(executionId);
+        existing.setCreatedAt(createdAt);
+        existing.setExpiresAt(expiresAt);
+        existing.setLeaseOwner(leaseOwner);
+        existing.setLeaseExpiresAt(leaseExpiresAt);
+        existing.setFencingToken(previousToken + 1);
+        existing.setVersion(existing.getVersion() + 1);
+        return true;
+    }
+
+    /**
+     * Marks a PROCESSING row as COMPLETED with its encoded result.
+     *
+     * @param fencingToken the token obtained when the row was claimed
+     * @return true if the row was still PROCESSING under this token and has been updated;
+     *         false if the lease was recovered or the key taken over in the meantime
+     */
+    public boolean markCompleted(Long id, long fencingToken, EncodedResult result) {
+        statementCount.increment();
+        return jdbcTemplate.update(COMPLETE_SQL,
+            result.getLegacyJson(), result.getResultType(), result.getData(), id, fencingToken) == 1;
+    }
+
+    /**
+     * Marks a PROCESSING row as FAILED.
+     *
+     * @param fencingToken the token obtained when the row was claimed
+     * @return true if the row was still PROCESSING under this token and has been updated
+     */
+    public boolean markFailed(Long id, long fencingToken) {
+        statementCount.increment();
+        return jdbcTemplate.update(FAIL_SQL, id, fencingToken) == 1;
+    }
+
+    /**
+     * Marks many PROCESSING rows as COMPLETED in one JDBC batch.
+     *
+     * @param keys the claimed keys, each with the fencing token obtained when it was claimed
+     * @param results the results, in the same order as {@code keys}
+     * @return for each key, whether it was still PROCESSING under its token and has been updated
+     */
+    public boolean[] markCompletedAll(List<IdempotencyKey> keys, List<EncodedResult> results) {
+        List<Object[]> batchArgs = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            EncodedResult result = results.get(i);
+            batchArgs.add(new Object[] {
+                result.getLegacyJson(), result.getResultType(), result.getData(),
+                keys.get(i).getId(), keys.get(i).getFencingToken()
+            });
+        }
+        return executeBatch(COMPLETE_SQL, batchArgs);
+    }
+
+    /**
+     * Marks many PROCESSING rows as FAILED in one JDBC batch.
+     *
+     * @return for each key, whether it was still PROCESSING under its token and has been updated
+     */
+    public boolean[] markFailedAll(List<IdempotencyKey> keys) {
+        List<Object[]> batchArgs = new ArrayList<>(keys.size());
+        for (IdempotencyKey key : keys) {
+            batchArgs.add(new Object[] {key.getId(), key.getFencingToken()});
+        }
+        return executeBatch(FAIL_SQL, batchArgs);
+    }
+
+    private boolean[] executeBatch(String sql, List<Object[]> batchArgs) {
+        if (batchArgs.isEmpty()) {
+            return new boolean[0];
+        }
+        statementCount.increment();
+        int[] counts = jdbcTemplate.batchUpdate(sql, batchArgs);
+        boolean[] applied = new boolean[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            applied[i] = counts[i] == 1 || counts[i] == Statement.SUCCESS_NO_INFO;
+        }
+        return applied;
+    }
+
+    /**
+     * Stores a COMPLETED result for a key whatever its current status, inserting the row
+     * first if it does not exist yet.
+     *
+     * @throws IdempotencyException if the row vanished between statements on each of
+     *         {@value #MAX_CLAIM_ATTEMPTS} attempts (e.g. deleted by the cleanup every time)
+     */
+    public void storeCompleted(String operationType, String operationKey, EncodedResult result,
+                               LocalDateTime createdAt, LocalDateTime expiresAt) {
+        IdempotencyClaim claim = null;
+        for (int attempt = 1; claim == null; attempt++) {
+            if (attempt > MAX_CLAIM_ATTEMPTS) {
+                log.error("Could not store the result of idempotency key {}:{} after {} attempts",
+                         operationType, operationKey, MAX_CLAIM_ATTEMPTS);
+                throw new IdempotencyException(
+                    "Failed to store completed result after " + MAX_CLAIM_ATTEMPTS + " attempts",
+                    operationType,
+                    operationKey,
+                    null
+                );
+            }
+            claim = claim(operationType, operationKey, null, null, createdAt, expiresAt);
+        }
+        statementCount.increment();
+        jdbcTemplate.update(STORE_COMPLETED_SQL,
+            result.getLegacyJson(), result.getResultType(), result.getData(), claim.getKey().getId());
+    }
+
+    /**
+     * Extends every PROCESSING lease held by {@code leaseOwner} in one statement.
+     *
+     * @return the number of renewed leases
+     */
+    public int renewLeases(String leaseOwner, LocalDateTime leaseExpiresAt) {
+        statementCount.increment();
+        return jdbcTemplate.update(RENEW_LEASES_SQL, Timestamp.valueOf(leaseExpiresAt), leaseOwner);
+    }
+
+    /**
+     * Fails every PROCESSING key whose lease has expired, in one set-based statement.
+     *
+     * <p>The fencing token of each recovered key is incremented, so the node that
+     * abandoned it can no longer complete it. Keys claimed without a lease (before the
+     * lease columns existed) are recovered once they were created before
+     * {@code unleasedCutoff}.</p>
+     *
+     * @param now keys whose lease expired before this instant are recovered
+     * @param unleasedCutoff creation cutoff for keys without a lease
+     * @return the number of recovered keys
+     */
+    public int recoverExpiredLeases(LocalDateTime now, LocalDateTime unleasedCutoff) {
+        statementCount.increment();
+        return jdbcTemplate.update(RECOVER_EXPIRED_LEASES_SQL,
+            Timestamp.valueOf(now), Timestamp.valueOf(unleasedCutoff));
+    }
+
+    /**
+     * Counts the keys in a status, using the status index.
+     *
+     * @param status the status to count
+     * @return the number of keys
+     */
+    public long countByStatus(IdempotencyKey.IdempotencyStatus status) {
+        statementCount.increment();
+        Long count = jdbcTemplate.queryForObject(COUNT_BY_STATUS_SQL, Long.class, status.name());
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Counts the keys that expired before {@code now}, up to {@code limit}: an index range
+     * scan of at most {@code limit} entries of {@code idx_expires_at}.
+     */
+    public long countExpired(LocalDateTime now, int limit) {
+        statementCount.increment();
+        Long count = jdbcTemplate.queryForObject(COUNT_EXPIRED_SQL, Long.class, Timestamp.valueOf(now), limit);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Deletes the given keys if they expired before {@code now}, with one statement per
+     * {@value #CLAIM_BATCH_SIZE} ids.
+     *
+     * @return the number of deleted keys
+     */
+    public long deleteExpired(Collection<Long> ids, LocalDateTime now) {
+        List<Long> idList = new ArrayList<>(ids);
+        long deleted = 0;
+        for (int from = 0; from < idList.size(); from += CLAIM_BATCH_SIZE) {
+            List<Long> chunk = idList.subList(from, Math.min(from + CLAIM_BATCH_SIZE, idList.size()));
+            statementCount.increment();
+            deleted += jdbcTemplate.update(
+                "DELETE FROM idempotency_keys WHERE expires_at < ? AND id IN (" + repeat("?", chunk.size()) + ")",
+                concat(new Object[] {Timestamp.valueOf(now)}, chunk.toArray()));
+        }
+        return deleted;
+    }
+
+    /**
+     * Total number of SQL statements issued by this repository since startup.
+     *
+     * @return the statement count
+     */
+    public long getStatementCount() {
+        return statementCount.sum();
+    }
+
+    /**
+     * Whether {@code idempotency_keys} is range-partitioned by expiry (PostgreSQL, migration V6).
+     */
+    public boolean isPartitioned() {
+        return getStorageLayout() == StorageLayout.POSTGRES_PARTITIONED;
+    }
+
+    StorageLayout getStorageLayout() {
+        StorageLayout result = layout;
+        if (result == null) {
+            result = detectStorageLayout();
+            log.info("Idempotency key storage layout: {}", result);
+            layout = result;
+        }
+        return result;
+    }
+
+    private StorageLayout detectStorageLayout() {
+        String product;
+        try {
+            product = JdbcUtils.extractDatabaseMetaData(
+                jdbcTemplate.getDataSource(), DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            log.warn("Could not determine database product, using MERGE-based claim: {}", e.getMessage());
+            return StorageLayout.MERGE;
+        }
+
+        if (!"PostgreSQL".equalsIgnoreCase(product)) {
+            return StorageLayout.MERGE;
+        }
+        Long partitioned = jdbcTemplate.queryForObject(PARTITIONED_TABLE_SQL, Long.class);
+        return partitioned != null && partitioned > 0 ? StorageLayout.POSTGRES_PARTITIONED : StorageLayout.POSTGRES;
+    }
+
+    private static String repeat(String placeholder, int count) {
+        return String.join(", ", Collections.nCopies(count, placeholder));
+    }
+
+    private static Object[] concat(Object[]... parts) {
+        int length = 0;
+        for (Object[] part : parts) {
+            length += part.length;
+        }
+        Object[] args = new Object[length];
+        int position = 0;
+        for (Object[] part : parts) {
+            System.arraycopy(part, 0, args, position, part.length);
+            position += part.length;
+        }
+        return args;
+    }
+
+    private static final RowMapper<IdempotencyClaim> CLAIM_MAPPER = (rs, rowNum) -> {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        Timestamp expiresAt = rs.getTimestamp("expires_at");
+        Timestamp leaseExpiresAt = rs.getTimestamp("lease_expires_at");
+        long fencingToken = rs.getLong("fencing_token");
+        boolean hasFencingToken = !rs.wasNull();
+
+        IdempotencyKey key = IdempotencyKey.builder()
+            .id(rs.getLong("id"))
+            .operationType(rs.getString("operation_type"))
+            .operationKey(rs.getString("operation_key"))
+            .processInstanceId(rs.getString("process_instance_id"))
+            .executionId(rs.getString("execution_id"))
+            .result(rs.getString("result"))
+            .resultType(rs.getString("result_type"))
+            .resultData(rs.getBytes("result_data"))
+            .status(IdempotencyKey.IdempotencyStatus.valueOf(rs.getString("status")))
+            .createdAt(createdAt != null ? createdAt.toLocalDateTime() : null)
+            .expiresAt(expiresAt != null ? expiresAt.toLocalDateTime() : null)
+            .leaseOwner(rs.getString("lease_owner"))
+            .leaseExpiresAt(leaseExpiresAt != null ? leaseExpiresAt.toLocalDateTime() : null)
+            .fencingToken(hasFencingToken ? fencingToken : null)
+            .version(rs.getLong("version"))
+            .build();
+
+        return rs.getBoolean("claimed") ? IdempotencyClaim.claimed(key) : IdempotencyClaim.existing(key);
+    };
+}
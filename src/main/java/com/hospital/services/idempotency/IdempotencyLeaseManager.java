@@ -0,0 +1,165 @@
+package com.hospital.services.idempotency;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leases for idempotency keys executed by this node.
+ *
+ * <p>A claimed key is leased to this node for {@code idempotency.lease.duration}. While
+ * operations are running, all of this node's leases are extended together with a single
+ * UPDATE every {@code idempotency.lease.renew-interval}. If the node dies, its leases
+ * simply run out and {@link #recoverExpiredLeases()} fails the keys in one set-based
+ * statement, bumping their fencing token so a late finisher cannot overwrite them.</p>
+ *
+ * <p>Renewal runs on a dedicated thread rather than the shared {@code @Scheduled} pool,
+ * so that a long-running scheduled job can never starve it and cause live operations
+ * to be recovered.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyLeaseManager {
+
+    private final IdempotencyStore store;
+    private final Duration leaseDuration;
+    private final Duration renewInterval;
+    private final Duration unleasedTimeout;
+    private final String nodeId;
+
+    /**
+     * Ids of keys currently executing on this node; renewal is skipped when empty.
+     */
+    private final Set<Long> activeKeys = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService renewalExecutor;
+
+    public IdempotencyLeaseManager(
+            IdempotencyStore store,
+            @Value("${idempotency.lease.duration:PT2M}") Duration leaseDuration,
+            @Value("${idempotency.lease.renew-interval:PT30S}") Duration renewInterval,
+            @Value("${idempotency.lease.unleased-timeout:PT30M}") Duration unleasedTimeout,
+            @Value("${idempotency.lease.node-id:}") String nodeId) {
+        this.store = store;
+        this.leaseDuration = leaseDuration;
+        this.renewInterval = renewInterval;
+        this.unleasedTimeout = unleasedTimeout;
+        this.nodeId = nodeId.isEmpty() ? defaultNodeId() : nodeId;
+
+        if (renewInterval.compareTo(leaseDuration.dividedBy(2)) > 0) {
+            log.warn("Idempotency lease renew-interval {} is more than half the lease duration {}; "
+                    + "live operations may be recovered", renewInterval, leaseDuration);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        renewalExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-lease-renewal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = renewInterval.toMillis();
+        renewalExecutor.scheduleAtFixedRate(this::renewLeasesSafely,
+            intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Idempotency leases for node {} - duration: {}, renew every: {}",
+                nodeId, leaseDuration, renewInterval);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (renewalExecutor != null) {
+            renewalExecutor.shutdownNow();
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Lease expiry for a key claimed at {@code now}.
+     */
+    public LocalDateTime leaseExpiry(LocalDateTime now) {
+        return now.plus(leaseDuration);
+    }
+
+    /**
+     * Registers a key claimed by this node so its lease is renewed while it executes.
+     */
+    public void acquired(IdempotencyKey key) {
+        activeKeys.add(key.getId());
+    }
+
+    /**
+     * Stops renewing a key once its outcome has been recorded.
+     */
+    public void released(IdempotencyKey key) {
+        activeKeys.remove(key.getId());
+    }
+
+    public int getActiveLeaseCount() {
+        return activeKeys.size();
+    }
+
+    /**
+     * Extends all leases held by this node.
+     *
+     * @return the number of renewed leases
+     */
+    public int renewLeases() {
+        if (activeKeys.isEmpty()) {
+            return 0;
+        }
+        int renewed = store.renewLeases(nodeId, leaseExpiry(LocalDateTime.now()));
+        log.debug("Renewed {} idempotency leases for node {}", renewed, nodeId);
+        return renewed;
+    }
+
+    /**
+     * Fails all PROCESSING keys whose lease has expired (cluster-wide).
+     *
+     * @return the number of recovered keys
+     */
+    public int recoverExpiredLeases() {
+        LocalDateTime now = LocalDateTime.now();
+        return store.recoverExpiredLeases(now, now.minus(unleasedTimeout));
+    }
+
+    private void renewLeasesSafely() {
+        try {
+            renewLeases();
+        } catch (RuntimeException e) {
+            log.error("Failed to renew idempotency leases for node {}: {}", nodeId, e.getMessage(), e);
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        if (host.length() > 100) {
+            host = host.substring(0, 100);
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
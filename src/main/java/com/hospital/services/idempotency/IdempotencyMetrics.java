@@ -0,0 +1,262 @@
+package com.hospital.services.idempotency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer meters of the idempotency subsystem, exported to Prometheus.
+ *
+ * <p>Per-operation meters are tagged with {@code operationType} and resolved once per
+ * type, so recording on the hot path is a map lookup and an increment:</p>
+ * <ul>
+ *   <li>{@code idempotency.executions} - idempotent calls</li>
+ *   <li>{@code idempotency.replays} - calls answered with a stored result, tagged with
+ *       {@code source} ({@code cache}, {@code store} or {@code in_flight})</li>
+ *   <li>{@code idempotency.conflicts} - claims that found the key PROCESSING by another caller</li>
+ *   <li>{@code idempotency.retries} - extra claim rounds after losing a race</li>
+ *   <li>{@code idempotency.failures} - operations that threw</li>
+ *   <li>{@code idempotency.timeouts} - asynchronous operations failed by their timeout</li>
+ *   <li>{@code idempotency.stuck} - keys failed by {@link IdempotencyExpiryTracker} after
+ *       exceeding the PROCESSING deadline</li>
+ *   <li>{@code idempotency.store.latency} - store round-trips, tagged with {@code operation}
+ *       ({@code claim}, {@code reclaim}, {@code lookup}, {@code complete}, {@code fail})</li>
+ *   <li>{@code idempotency.processing.duration} - time keys spent PROCESSING, tagged with {@code outcome}</li>
+ *   <li>{@code idempotency.result.size} - encoded result payloads, in bytes</li>
+ * </ul>
+ *
+ * <p>Recoveries and cleanup are set-based and span all operation types, so
+ * {@code idempotency.recoveries} and {@code idempotency.cleanup.removed} are untagged.
+ * {@code idempotency.processing.backlog} is the number of PROCESSING keys in the store,
+ * refreshed every {@code idempotency.metrics.backlog-refresh-interval} rather than
+ * counted on every scrape.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyMetrics {
+
+    static final String REPLAY_SOURCE_CACHE = "cache";
+    static final String REPLAY_SOURCE_STORE = "store";
+    static final String REPLAY_SOURCE_IN_FLIGHT = "in_flight";
+
+    private final MeterRegistry meterRegistry;
+    private final IdempotencyStore store;
+    private final Map<String, OperationMeters> meters = new ConcurrentHashMap<>();
+
+    private final Counter recoveries;
+    private final Counter cleanupRemoved;
+    private final AtomicLong processingBacklog = new AtomicLong();
+
+    public IdempotencyMetrics(MeterRegistry meterRegistry, IdempotencyStore store) {
+        this.meterRegistry = meterRegistry;
+        this.store = store;
+
+        this.recoveries = Counter.builder("idempotency.recoveries")
+            .description("PROCESSING keys failed because their lease expired or they were stuck")
+            .register(meterRegistry);
+        this.cleanupRemoved = Counter.builder("idempotency.cleanup.removed")
+            .description("Expired idempotency keys removed, by chunked deletes or partition drops")
+            .register(meterRegistry);
+        Gauge.builder("idempotency.processing.backlog", processingBacklog, AtomicLong::get)
+            .description("Idempotency keys in PROCESSING status at the last refresh")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Meters of one operation type.
+     */
+    OperationMeters forType(String operationType) {
+        return meters.computeIfAbsent(operationType, type -> new OperationMeters(meterRegistry, type));
+    }
+
+    void recordRecoveries(long recovered) {
+        recoveries.increment(recovered);
+    }
+
+    void recordCleanup(long removed) {
+        cleanupRemoved.increment(removed);
+    }
+
+    /**
+     * Refreshes the PROCESSING backlog gauge in the background.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.metrics.backlog-refresh-interval:PT30S}")
+    public void refreshBacklog() {
+        try {
+            processingBacklog.set(store.countByStatus(IdempotencyKey.IdempotencyStatus.PROCESSING));
+        } catch (RuntimeException e) {
+            // Keep the last value; a failing count must not break the scheduler thread
+            log.warn("Could not refresh the idempotency PROCESSING backlog: {}", e.getMessage());
+        }
+    }
+
+    long getProcessingBacklog() {
+        return processingBacklog.get();
+    }
+
+    /**
+     * The meters of one operation type, registered on first use.
+     */
+    static final class OperationMeters {
+
+        private final Counter executions;
+        private final Counter cacheReplays;
+        private final Counter storeReplays;
+        private final Counter inFlightReplays;
+        private final Counter conflicts;
+        private final Counter retries;
+        private final Counter failures;
+        private final Counter timeouts;
+        private final Counter stuck;
+        private final Timer claimLatency;
+        private final Timer reclaimLatency;
+        private final Timer lookupLatency;
+        private final Timer completeLatency;
+        private final Timer failLatency;
+        private final Timer processingCompleted;
+        private final Timer processingFailed;
+        private final DistributionSummary resultSize;
+
+        private OperationMeters(MeterRegistry registry, String operationType) {
+            executions = Counter.builder("idempotency.executions")
+                .description("Idempotent operation calls")
+                .tag("operationType", operationType)
+                .register(registry);
+            cacheReplays = replays(registry, operationType, REPLAY_SOURCE_CACHE);
+            storeReplays = replays(registry, operationType, REPLAY_SOURCE_STORE);
+            inFlightReplays = replays(registry, operationType, REPLAY_SOURCE_IN_FLIGHT);
+            conflicts = Counter.builder("idempotency.conflicts")
+                .description("Claims that found the key being processed by another caller")
+                .tag("operationType", operationType)
+                .register(registry);
+            retries = Counter.builder("idempotency.retries")
+                .description("Extra claim rounds after losing a race with a concurrent claim or cleanup")
+                .tag("operationType", operationType)
+                .register(registry);
+            failures = Counter.builder("idempotency.failures")
+                .description("Idempotent operations that failed")
+                .tag("operationType", operationType)
+                .register(registry);
+            timeouts = Counter.builder("idempotency.timeouts")
+                .description("Asynchronous idempotent operations failed by their timeout")
+                .tag("operationType", operationType)
+                .register(registry);
+            stuck = Counter.builder("idempotency.stuck")
+                .description("Keys failed after exceeding the PROCESSING deadline on this node")
+                .tag("operationType", operationType)
+                .register(registry);
+            claimLatency = storeLatency(registry, operationType, "claim");
+            reclaimLatency = storeLatency(registry, operationType, "reclaim");
+            lookupLatency = storeLatency(registry, operationType, "lookup");
+            completeLatency = storeLatency(registry, operationType, "complete");
+            failLatency = storeLatency(registry, operationType, "fail");
+            processingCompleted = processing(registry, operationType, "completed");
+            processingFailed = processing(registry, operationType, "failed");
+            resultSize = DistributionSummary.builder("idempotency.result.size")
+                .description("Size of encoded idempotent operation results")
+                .baseUnit("bytes")
+                .tag("operationType", operationType)
+                .publishPercentileHistogram()
+                .register(registry);
+        }
+
+        void execution() {
+            executions.increment();
+        }
+
+        void executions(int count) {
+            executions.increment(count);
+        }
+
+        void replay(String source) {
+            switch (source) {
+                case REPLAY_SOURCE_CACHE -> cacheReplays.increment();
+                case REPLAY_SOURCE_IN_FLIGHT -> inFlightReplays.increment();
+                default -> storeReplays.increment();
+            }
+        }
+
+        void conflict() {
+            conflicts.increment();
+        }
+
+        void retry() {
+            retries.increment();
+        }
+
+        void failure() {
+            failures.increment();
+        }
+
+        void timeout() {
+            timeouts.increment();
+        }
+
+        void stuck() {
+            stuck.increment();
+        }
+
+        void claimed(long startNanos) {
+            claimLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void reclaimed(long startNanos) {
+            reclaimLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void lookedUp(long startNanos) {
+            lookupLatency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void completed(long startNanos, long processingStartNanos, EncodedResult result) {
+            long now = System.nanoTime();
+            completeLatency.record(now - startNanos, TimeUnit.NANOSECONDS);
+            processingCompleted.record(now - processingStartNanos, TimeUnit.NANOSECONDS);
+            resultSize.record(result.size());
+        }
+
+        void failed(long startNanos, long processingStartNanos) {
+            long now = System.nanoTime();
+            failLatency.record(now - startNanos, TimeUnit.NANOSECONDS);
+            processingFailed.record(now - processingStartNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private static Counter replays(MeterRegistry registry, String operationType, String source) {
+            return Counter.builder("idempotency.replays")
+                .description("Idempotent calls answered with a stored result")
+                .tag("operationType", operationType)
+                .tag("source", source)
+                .register(registry);
+        }
+
+        private static Timer storeLatency(MeterRegistry registry, String operationType, String operation) {
+            return Timer.builder("idempotency.store.latency")
+                .description("Latency of idempotency store round-trips")
+                .tag("operationType", operationType)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+        }
+
+        private static Timer processing(MeterRegistry registry, String operationType, String outcome) {
+            return Timer.builder("idempotency.processing.duration")
+                .description("Time idempotency keys spent in PROCESSING status")
+                .tag("operationType", operationType)
+                .tag("outcome", outcome)
+                .register(registry);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.hospital.services.idempotency;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Result of {@link IdempotencyService#executeWithOutcome} together with how it was obtained.
+ *
+ * <p>Everything here is known from the claim itself, so callers that need to tell a new
+ * execution from a duplicate (for example to flag a duplicate claim) do not have to
+ * look the key up again.</p>
+ *
+ * @param <T> the result type of the operation
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Value
+public class IdempotencyOutcome<T> {
+
+    /**
+     * How the result was obtained.
+     */
+    public enum Status {
+        /** The operation was executed by this caller for a key that did not exist yet. */
+        NEW,
+        /** The operation had already completed (or was completed by a concurrent caller); its stored result is returned. */
+        REPLAYED,
+        /** The operation was executed by this caller after taking over a key left FAILED or PENDING by an earlier attempt. */
+        RECOVERED_AFTER_CONFLICT
+    }
+
+    /**
+     * The new or replayed result of the operation.
+     */
+    T value;
+
+    Status status;
+
+    /**
+     * Number of claim attempts needed; above 1 when a concurrent claim or cleanup was lost against.
+     * Results served from the near-cache or a local in-flight leader take no attempt (0).
+     */
+    int attempts;
+
+    /**
+     * When the key holding the result was claimed: the original execution for replays,
+     * this execution otherwise.
+     */
+    LocalDateTime storedAt;
+
+    /**
+     * Whether the result comes from an earlier or concurrent execution rather than this caller.
+     */
+    public boolean isReplayed() {
+        return status == Status.REPLAYED;
+    }
+}
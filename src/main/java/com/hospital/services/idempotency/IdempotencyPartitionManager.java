@@ -0,0 +1,280 @@
+package com.hospital.services.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Maintains the daily expiry partitions of the idempotency tables (PostgreSQL, migration V6).
+ *
+ * <p>When {@code idempotency_keys} is range-partitioned by {@code expires_at}, expiry no
+ * longer deletes rows: a partition whose whole day lies in the past only holds expired
+ * rows and is detached and dropped (or only detached, for archiving) as a unit. Each
+ * partition is handled in its own short transaction. Partitions for the next
+ * {@code idempotency.partitions.precreate-days} days are created ahead of time so new
+ * rows rarely land in the DEFAULT partition.</p>
+ *
+ * <p>Rows still end up there when their expiry lies beyond the pre-created days, or when
+ * their day's partition was not created in time. PostgreSQL refuses to create a partition
+ * for a day the DEFAULT partition holds rows of, so those rows are moved into the new
+ * partition as it is created. Expired rows left in the DEFAULT partition are deleted in
+ * chunks of {@code idempotency.cleanup.chunk-size}, each in its own transaction.</p>
+ *
+ * <p>Expired keys therefore stay replayable until their day's partition is dropped,
+ * i.e. for up to one extra day. On H2 and on plain (unpartitioned) PostgreSQL tables
+ * this component does nothing and expired rows are deleted instead.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyPartitionManager {
+
+    static final List<String> PARTITIONED_TABLES = List.of("idempotency_keys", "idempotency_records");
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final String IS_PARTITIONED_SQL =
+        "SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass(?)";
+
+    private static final String LIST_PARTITIONS_SQL =
+        "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+            + " WHERE i.inhparent = to_regclass(?)";
+
+    private static final String DELETE_EXPIRED_DEFAULT_SQL =
+        "DELETE FROM %1$s WHERE ctid IN (SELECT ctid FROM %1$s WHERE expires_at < ? LIMIT ?)";
+
+    private static final String ESTIMATED_ROWS_SQL =
+        "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE oid = to_regclass(?)";
+
+    /**
+     * What to do with a partition whose rows have all expired.
+     */
+    public enum ExpiredPartitionAction {
+        /** Detach and drop the partition. */
+        DROP,
+        /** Only detach it, leaving a standalone table for archiving. */
+        DETACH
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdempotencyKeyJdbcRepository claimRepository;
+    private final TransactionTemplate partitionTransaction;
+    private final int precreateDays;
+    private final ExpiredPartitionAction expiredAction;
+    private final int chunkSize;
+
+    public IdempotencyPartitionManager(
+            JdbcTemplate jdbcTemplate,
+            IdempotencyKeyJdbcRepository claimRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${idempotency.partitions.precreate-days:7}") int precreateDays,
+            @Value("${idempotency.partitions.expired-action:DROP}") ExpiredPartitionAction expiredAction,
+            @Value("${idempotency.cleanup.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.claimRepository = claimRepository;
+        this.partitionTransaction = new TransactionTemplate(transactionManager);
+        this.partitionTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.precreateDays = precreateDays;
+        this.expiredAction = expiredAction;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Whether expiry is handled by dropping partitions instead of deleting rows.
+     */
+    public boolean isEnabled() {
+        return claimRepository.isPartitioned();
+    }
+
+    /**
+     * Creates upcoming partitions once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (isEnabled()) {
+            createUpcomingPartitions(LocalDate.now());
+        }
+    }
+
+    /**
+     * Creates missing partitions from {@code today} up to the pre-creation horizon.
+     *
+     * @param today the current day
+     * @return the number of partitions created
+     */
+    public int createUpcomingPartitions(LocalDate today) {
+        int created = 0;
+        for (String table : partitionedTables()) {
+            Set<LocalDate> existing = partitionDays(table);
+            for (LocalDate day = today; !day.isAfter(today.plusDays(precreateDays)); day = day.plusDays(1)) {
+                if (!existing.contains(day) && createPartition(table, day)) {
+                    created++;
+                }
+            }
+        }
+        if (created > 0) {
+            log.info("Created {} idempotency partitions up to {}", created, today.plusDays(precreateDays));
+        }
+        return created;
+    }
+
+    /**
+     * Drops (or detaches) every partition whose day ended before {@code today}.
+     *
+     * @param today the current day; partitions for earlier days only hold expired rows
+     * @return the estimated number of rows removed with the partitions
+     */
+    public long removeExpiredPartitions(LocalDate today) {
+        long rows = 0;
+        for (String table : partitionedTables()) {
+            for (LocalDate day : partitionDays(table)) {
+                if (day.isBefore(today)) {
+                    rows += removePartition(table, day);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Deletes the rows of the DEFAULT partitions that expired before {@code now}, a chunk
+     * per transaction.
+     *
+     * @return the number of rows deleted
+     */
+    public long removeExpiredDefaultRows(LocalDateTime now) {
+        long deleted = 0;
+        for (String table : partitionedTables()) {
+            String defaultPartition = defaultPartitionName(table);
+            if (!partitionNames(table).contains(defaultPartition)) {
+                continue;
+            }
+            String sql = String.format(DELETE_EXPIRED_DEFAULT_SQL, defaultPartition);
+            int chunk;
+            do {
+                Integer rows = partitionTransaction.execute(status ->
+                    jdbcTemplate.update(sql, Timestamp.valueOf(now), chunkSize));
+                chunk = rows != null ? rows : 0;
+                deleted += chunk;
+            } while (chunk == chunkSize);
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} expired idempotency rows from the DEFAULT partitions", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Runs a full maintenance cycle: pre-create upcoming partitions, remove expired ones,
+     * then delete the expired rows of the DEFAULT partitions.
+     *
+     * @return the estimated number of expired rows removed
+     */
+    public long maintain() {
+        LocalDate today = LocalDate.now();
+        createUpcomingPartitions(today);
+        return removeExpiredPartitions(today) + removeExpiredDefaultRows(LocalDateTime.now());
+    }
+
+    private List<String> partitionedTables() {
+        if (!isEnabled()) {
+            return List.of();
+        }
+        return PARTITIONED_TABLES.stream()
+            .filter(table -> {
+                Long count = jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Long.class, table);
+                return count != null && count > 0;
+            })
+            .toList();
+    }
+
+    private List<String> partitionNames(String table) {
+        return jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, table);
+    }
+
+    private Set<LocalDate> partitionDays(String table) {
+        Set<LocalDate> days = new TreeSet<>();
+        String prefix = table + "_p";
+        for (String name : partitionNames(table)) {
+            if (name.startsWith(prefix)) {
+                try {
+                    days.add(LocalDate.parse(name.substring(prefix.length()), PARTITION_SUFFIX));
+                } catch (DateTimeParseException e) {
+                    log.debug("Ignoring partition {} of {} with unexpected name", name, table);
+                }
+            }
+        }
+        return days;
+    }
+
+    private boolean createPartition(String table, LocalDate day) {
+        String partition = partitionName(table, day);
+        String defaultPartition = defaultPartitionName(table);
+        String dayRange = "expires_at >= '" + day + "' AND expires_at < '" + day.plusDays(1) + "'";
+        try {
+            partitionTransaction.executeWithoutResult(status -> {
+                Boolean inDefault = partitionNames(table).contains(defaultPartition)
+                    ? jdbcTemplate.queryForObject(
+                        "SELECT EXISTS (SELECT 1 FROM " + defaultPartition + " WHERE " + dayRange + ")", Boolean.class)
+                    : Boolean.FALSE;
+                if (Boolean.TRUE.equals(inDefault)) {
+                    // The partition cannot be created while the DEFAULT partition holds rows of its day
+                    jdbcTemplate.execute("CREATE TEMPORARY TABLE idempotency_partition_rows ON COMMIT DROP AS"
+                        + " SELECT * FROM " + defaultPartition + " WHERE " + dayRange);
+                    jdbcTemplate.execute("DELETE FROM " + defaultPartition + " WHERE " + dayRange);
+                }
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + table
+                    + " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+                if (Boolean.TRUE.equals(inDefault)) {
+                    jdbcTemplate.execute("INSERT INTO " + table + " SELECT * FROM idempotency_partition_rows");
+                    log.info("Moved rows expiring on {} from {} into {}", day, defaultPartition, partition);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Could not create partition {}: {}", partition, e.getMessage());
+            return false;
+        }
+    }
+
+    private long removePartition(String table, LocalDate day) {
+        String partition = partitionName(table, day);
+        Long estimatedRows = partitionTransaction.execute(status -> {
+            Long rows = jdbcTemplate.queryForObject(ESTIMATED_ROWS_SQL, Long.class, partition);
+            jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+            if (expiredAction == ExpiredPartitionAction.DROP) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            }
+            return rows;
+        });
+
+        log.info("{} expired idempotency partition {} (~{} rows)",
+                expiredAction == ExpiredPartitionAction.DROP ? "Dropped" : "Detached", partition, estimatedRows);
+        return estimatedRows != null ? estimatedRows : 0;
+    }
+
+    static String partitionName(String table, LocalDate day) {
+        return table + "_p" + PARTITION_SUFFIX.format(day);
+    }
+
+    static String defaultPartitionName(String table) {
+        return table + "_default";
+    }
+}
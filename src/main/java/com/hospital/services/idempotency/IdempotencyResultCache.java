@@ -0,0 +1,218 @@
+package com.hospital.services.idempotency;
+
+import com.hospital.util.BoundedCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Bounded in-memory near-cache of COMPLETED idempotency results.
+ *
+ * <p>A COMPLETED key never changes until it expires, so replays (for example Camunda
+ * job retries, or the duplicate check right after a claim is generated) can be
+ * answered without a database round-trip. Entries are keyed by
+ * (operationType, operationKey) and are bounded by:</p>
+ * <ul>
+ *   <li>size: least-recently-used entries are evicted beyond {@code idempotency.cache.max-size}</li>
+ *   <li>age: entries live at most {@code idempotency.cache.ttl}</li>
+ *   <li>the key's own {@code expiresAt}, after which the row may be cleaned up</li>
+ * </ul>
+ *
+ * <p>Setting {@code idempotency.cache.max-size} to 0 disables the cache. The entries are
+ * held in a {@link BoundedCache}.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyResultCache {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final long ttlMillis;
+    private final BoundedCache<String, CachedResult> entries;
+
+    public IdempotencyResultCache(
+            @Value("${idempotency.cache.max-size:10000}") int maxSize,
+            @Value("${idempotency.cache.ttl:PT10M}") Duration ttl) {
+        this.ttlMillis = ttl.toMillis();
+        this.entries = new BoundedCache<>(maxSize);
+        log.info("Idempotency result cache configured - maxSize: {}, ttl: {}", maxSize, ttl);
+    }
+
+    /**
+     * Looks up a cached COMPLETED result.
+     *
+     * @param operationType the type of operation
+     * @param operationKey the unique key for this operation instance
+     * @return the cached entry, or {@code null} on a miss
+     */
+    public CachedResult get(String operationType, String operationKey) {
+        return entries.get(cacheKey(operationType, operationKey));
+    }
+
+    /**
+     * Caches a COMPLETED key; keys in any other status are ignored.
+     *
+     * @param key the completed idempotency key
+     * @return the cached entry, or {@code null} if nothing was cached
+     */
+    public CachedResult put(IdempotencyKey key) {
+        if (!key.isCompleted()) {
+            return null;
+        }
+        return put(key.getOperationType(), key.getOperationKey(), EncodedResult.of(key), key.getCreatedAt(),
+            key.getExpiresAt());
+    }
+
+    /**
+     * Caches a completed result until the earlier of the TTL and the key's expiry.
+     *
+     * @param operationType the type of operation
+     * @param operationKey the unique key for this operation instance
+     * @param result the stored result
+     * @param expiresAt when the idempotency key expires
+     * @return the cached entry, or {@code null} if nothing was cached
+     */
+    public CachedResult put(String operationType, String operationKey, EncodedResult result,
+                            LocalDateTime expiresAt) {
+        return put(operationType, operationKey, result, LocalDateTime.now(), expiresAt);
+    }
+
+    /**
+     * Caches a completed result until the earlier of the TTL and the key's expiry.
+     *
+     * @param operationType the type of operation
+     * @param operationKey the unique key for this operation instance
+     * @param result the stored result
+     * @param storedAt when the key holding the result was claimed
+     * @param expiresAt when the idempotency key expires
+     * @return the cached entry, or {@code null} if nothing was cached
+     */
+    public CachedResult put(String operationType, String operationKey, EncodedResult result,
+                            LocalDateTime storedAt, LocalDateTime expiresAt) {
+        if (!entries.isEnabled()) {
+            return null;
+        }
+
+        long validUntil = System.currentTimeMillis() + ttlMillis;
+        if (expiresAt != null) {
+            validUntil = Math.min(validUntil, toEpochMillis(expiresAt));
+        }
+        CachedResult cached = new CachedResult(result, storedAt, expiresAt, validUntil);
+        return entries.put(cacheKey(operationType, operationKey), cached, validUntil) ? cached : null;
+    }
+
+    /**
+     * Removes a single entry, e.g. when its result is overwritten.
+     */
+    public void invalidate(String operationType, String operationKey) {
+        entries.remove(cacheKey(operationType, operationKey));
+    }
+
+    /**
+     * Removes an entry at the end of its validity, unless it has been replaced since.
+     *
+     * <p>Called by {@link IdempotencyExpiryTracker} when the entry's deadline is reached,
+     * so expired results do not linger until the next lookup or cleanup.</p>
+     *
+     * @param expected the entry returned when it was cached
+     * @return true if the entry was removed
+     */
+    public boolean evict(String operationType, String operationKey, CachedResult expected) {
+        return entries.evict(cacheKey(operationType, operationKey), expected);
+    }
+
+    /**
+     * Removes every entry whose key has expired or whose TTL has elapsed.
+     *
+     * <p>Called by expired-key cleanup so that the cache never outlives the rows it mirrors.</p>
+     *
+     * @return the number of removed entries
+     */
+    public int evictExpired() {
+        return entries.evictExpired();
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return entries.getHitCount();
+    }
+
+    public long getMissCount() {
+        return entries.getMissCount();
+    }
+
+    public long getEvictionCount() {
+        return entries.getEvictionCount();
+    }
+
+    /**
+     * Ratio of hits to lookups since startup.
+     *
+     * @return hit ratio between 0 and 1, or 0 if nothing was looked up
+     */
+    public double getHitRate() {
+        return entries.getHitRate();
+    }
+
+    private static String cacheKey(String operationType, String operationKey) {
+        return operationType + KEY_SEPARATOR + operationKey;
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * A cached COMPLETED result.
+     */
+    public static final class CachedResult {
+
+        private final EncodedResult result;
+        private final LocalDateTime storedAt;
+        private final LocalDateTime expiresAt;
+        private final long validUntil;
+
+        CachedResult(EncodedResult result, LocalDateTime storedAt, LocalDateTime expiresAt, long validUntil) {
+            this.result = result;
+            this.storedAt = storedAt;
+            this.expiresAt = expiresAt;
+            this.validUntil = validUntil;
+        }
+
+        public EncodedResult getResult() {
+            return result;
+        }
+
+        public LocalDateTime getStoredAt() {
+            return storedAt;
+        }
+
+        public LocalDateTime getExpiresAt() {
+            return expiresAt;
+        }
+
+        /**
+         * Epoch millisecond at which the entry stops being served.
+         */
+        long getValidUntil() {
+            return validUntil;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.hospital.services.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Type-aware, compact encoding of idempotent operation results.
+ *
+ * <p>Results used to be written as JSON text and read back into {@code Object.class},
+ * so replays returned a {@code LinkedHashMap} instead of the original type. This codec:</p>
+ * <ul>
+ *   <li>records the result's class so replays deserialize straight into it</li>
+ *   <li>encodes with Jackson Smile (binary JSON) using the application's mapper
+ *       configuration</li>
+ *   <li>deflates payloads above {@code idempotency.result.compression-threshold} bytes</li>
+ * </ul>
+ *
+ * <p>Payload layout: one format byte ({@link #FORMAT_SMILE} or {@link #FORMAT_SMILE_DEFLATED})
+ * followed by the Smile document, deflated for the latter. Results are only ever decoded
+ * from the application's own idempotency store, which is why the recorded type name is
+ * trusted.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencyResultCodec {
+
+    static final byte FORMAT_SMILE = 1;
+    static final byte FORMAT_SMILE_DEFLATED = 2;
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final int compressionThreshold;
+
+    public IdempotencyResultCodec(
+            ObjectMapper objectMapper,
+            @Value("${idempotency.result.compression-threshold:1024}") int compressionThreshold) {
+        this.jsonMapper = objectMapper;
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Encodes an operation result together with its type.
+     *
+     * @param result the result to encode (may be {@code null})
+     * @return the encoded result
+     * @throws IdempotencyException if the result cannot be serialized
+     */
+    public EncodedResult encode(Object result) {
+        if (result == null) {
+            return EncodedResult.NULL;
+        }
+
+        try {
+            byte[] smile = smileMapper.writeValueAsBytes(result);
+            byte[] payload = smile.length > compressionThreshold
+                ? withHeader(FORMAT_SMILE_DEFLATED, deflate(smile))
+                : withHeader(FORMAT_SMILE, smile);
+
+            return new EncodedResult(result.getClass().getName(), payload, null);
+
+        } catch (IOException e) {
+            log.error("Failed to serialize result of type {}", result.getClass().getName(), e);
+            throw new IdempotencyException("Failed to serialize operation result", e);
+        }
+    }
+
+    /**
+     * Decodes a stored result.
+     *
+     * @param <T> the expected result type
+     * @param encoded the stored result
+     * @param expectedType the type to decode into, or {@code null} to use the recorded type
+     * @return the decoded result
+     * @throws IdempotencyException if the result cannot be deserialized
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T decode(EncodedResult encoded, Class<T> expectedType) {
+        if (encoded == null || encoded.isNull()) {
+            return null;
+        }
+
+        try {
+            if (encoded.getData() == null) {
+                Class<?> targetType = expectedType != null ? expectedType : Object.class;
+                return (T) jsonMapper.readValue(encoded.getLegacyJson(), targetType);
+            }
+
+            Class<?> targetType = expectedType != null ? expectedType : resolveType(encoded.getResultType());
+            return (T) smileMapper.readValue(smilePayload(encoded.getData()), targetType);
+
+        } catch (IOException | DataFormatException | ClassNotFoundException e) {
+            log.error("Failed to deserialize stored result of type {}", encoded.getResultType(), e);
+            throw new IdempotencyException("Failed to deserialize stored result", e);
+        }
+    }
+
+    /**
+     * Renders a stored result as JSON text, for callers of the string-based API.
+     *
+     * @param encoded the stored result
+     * @return JSON text, or {@code null} for a null result
+     */
+    public String toJson(EncodedResult encoded) {
+        if (encoded == null || encoded.isNull()) {
+            return null;
+        }
+        if (encoded.getData() == null) {
+            return encoded.getLegacyJson();
+        }
+
+        try {
+            return jsonMapper.writeValueAsString(smileMapper.readTree(smilePayload(encoded.getData())));
+        } catch (IOException | DataFormatException e) {
+            throw new IdempotencyException("Failed to render stored result as JSON", e);
+        }
+    }
+
+    private static Class<?> resolveType(String resultType) throws ClassNotFoundException {
+        if (resultType == null) {
+            return Object.class;
+        }
+        return ClassUtils.forName(resultType, IdempotencyResultCodec.class.getClassLoader());
+    }
+
+    private static byte[] smilePayload(byte[] data) throws DataFormatException {
+        switch (data[0]) {
+            case FORMAT_SMILE:
+                return Arrays.copyOfRange(data, 1, data.length);
+            case FORMAT_SMILE_DEFLATED:
+                return inflate(data);
+            default:
+                throw new DataFormatException("Unknown result format: " + data[0]);
+        }
+    }
+
+    private static byte[] withHeader(byte format, byte[] body) {
+        byte[] payload = new byte[body.length + 1];
+        payload[0] = format;
+        System.arraycopy(body, 0, payload, 1, body.length);
+        return payload;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 1, data.length - 1);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated compressed result");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,25 +1,32 @@
 package com.hospital.services.idempotency;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 /**
  * Service for managing idempotent operations in the Hospital Revenue Cycle system.
  *
  * <p>This service ensures that operations are executed exactly once, even if the same
- * request is made multiple times. It uses a database-backed idempotency key store
- * with optimistic locking to handle concurrent requests safely.</p>
+ * request is made multiple times. Keys are claimed atomically in a pluggable
+ * {@link IdempotencyStore} (by default the database, see {@link JdbcIdempotencyStore}),
+ * so that concurrent requests are resolved by the store in a single round-trip.</p>
  *
  * <p><strong>Usage Example:</strong></p>
  * <pre>
@@ -38,13 +45,25 @@ import java.util.function.Supplier;
 @RequiredArgsConstructor
 public class IdempotencyService {
 
-    private final IdempotencyKeyRepository repository;
-    private final ObjectMapper objectMapper;
+    private final IdempotencyStore store;
+    private final IdempotencyResultCache resultCache;
+    private final IdempotencySingleFlight singleFlight;
+    private final IdempotencyResultCodec resultCodec;
+    private final IdempotencyLeaseManager leaseManager;
+    private final IdempotencyBatchExecutor batchExecutor;
+    private final IdempotencyMetrics metrics;
+    private final IdempotencyAsyncExecutor asyncExecutor;
+    private final IdempotencyExpiryTracker expiryTracker;
 
     /**
-     * Maximum number of retry attempts for handling optimistic locking failures.
+     * Number of idempotent executions, used to derive statements per operation.
      */
-    private static final int MAX_RETRY_ATTEMPTS = 3;
+    private final LongAdder executionCount = new LongAdder();
+
+    /**
+     * Maximum number of claim rounds when racing with concurrent takeovers or cleanup.
+     */
+    private static final int MAX_CLAIM_ATTEMPTS = 3;
 
     /**
      * Default expiration time for idempotency keys (24 hours).
@@ -52,10 +71,11 @@ public class IdempotencyService {
     private static final int DEFAULT_EXPIRATION_HOURS = 24;
 
     /**
-     * Executes an operation idempotently with automatic retry on conflicts.
+     * Executes an operation idempotently, claiming its key atomically.
      *
      * <p>If the operation has already been executed, returns the stored result.
-     * Otherwise, executes the operation and stores the result for future requests.</p>
+     * Otherwise, executes the operation and stores the result for future requests.
+     * Replays are decoded into the type the result was originally stored as.</p>
      *
      * @param <T> the return type of the operation
      * @param operationType the type of operation (e.g., "REGISTER_PATIENT")
@@ -68,6 +88,22 @@ public class IdempotencyService {
         return executeIdempotent(operationType, operationKey, operation, null, null);
     }
 
+    /**
+     * Executes an operation idempotently, decoding replays into the given type.
+     *
+     * @param <T> the return type of the operation
+     * @param operationType the type of operation (e.g., "GENERATE_CLAIM")
+     * @param operationKey the unique key for this operation instance
+     * @param resultType the type stored results are decoded into on replay
+     * @param operation the operation to execute
+     * @return the result of the operation (either newly computed or previously stored)
+     * @throws IdempotencyException if the operation cannot be completed
+     */
+    public <T> T executeIdempotent(String operationType, String operationKey,
+                                   Class<T> resultType, Supplier<T> operation) {
+        return execute(operationType, operationKey, resultType, operation, null, null, null).getValue();
+    }
+
     /**
      * Executes an operation idempotently with process context.
      *
@@ -86,121 +122,457 @@ public class IdempotencyService {
             Supplier<T> operation,
             String processInstanceId,
             String executionId) {
+        return execute(operationType, operationKey, null, operation, processInstanceId, executionId, null).getValue();
+    }
 
-        log.debug("Executing idempotent operation: type={}, key={}, processInstance={}",
-                  operationType, operationKey, processInstanceId);
+    /**
+     * Executes an operation idempotently and reports whether it was executed or replayed.
+     *
+     * <p>Same as {@link #executeIdempotent(String, String, Class, Supplier)}, but the
+     * outcome, claim attempts and stored timestamp come from the claim itself, so no
+     * second lookup is needed to detect duplicates.</p>
+     *
+     * @param <T> the return type of the operation
+     * @param operationType the type of operation (e.g., "GENERATE_CLAIM")
+     * @param operationKey the unique key for this operation instance
+     * @param resultType the type stored results are decoded into on replay
+     * @param operation the operation to execute
+     * @return the result of the operation with its outcome
+     * @throws IdempotencyException if the operation cannot be completed
+     */
+    public <T> IdempotencyOutcome<T> executeWithOutcome(String operationType, String operationKey,
+                                                        Class<T> resultType, Supplier<T> operation) {
+        return execute(operationType, operationKey, resultType, operation, null, null, null);
+    }
 
-        int attempt = 0;
-        while (attempt < MAX_RETRY_ATTEMPTS) {
-            try {
-                return executeIdempotentInternal(operationType, operationKey, operation,
-                                                 processInstanceId, executionId);
-            } catch (ObjectOptimisticLockingFailureException | DataIntegrityViolationException e) {
-                attempt++;
-                log.warn("Concurrent modification detected for operation {}:{}, attempt {}/{}",
-                        operationType, operationKey, attempt, MAX_RETRY_ATTEMPTS);
-
-                if (attempt >= MAX_RETRY_ATTEMPTS) {
-                    log.error("Max retry attempts exceeded for operation {}:{}",
-                             operationType, operationKey);
-                    throw new IdempotencyException(
-                        "Failed to execute idempotent operation after " + MAX_RETRY_ATTEMPTS + " attempts",
-                        operationType,
-                        operationKey,
-                        null
-                    );
-                }
+    /**
+     * Executes an operation idempotently with process context and reports whether it was
+     * executed or replayed.
+     *
+     * @param <T> the return type of the operation
+     * @param operationType the type of operation
+     * @param operationKey the unique key for this operation instance
+     * @param resultType the type stored results are decoded into on replay
+     * @param operation the operation to execute
+     * @param processInstanceId the Camunda process instance ID (optional)
+     * @param executionId the Camunda execution ID (optional)
+     * @return the result of the operation with its outcome
+     * @throws IdempotencyException if the operation cannot be completed
+     */
+    public <T> IdempotencyOutcome<T> executeWithOutcome(
+            String operationType,
+            String operationKey,
+            Class<T> resultType,
+            Supplier<T> operation,
+            String processInstanceId,
+            String executionId) {
+        return execute(operationType, operationKey, resultType, operation, processInstanceId, executionId, null);
+    }
+
+    /**
+     * Executes an operation idempotently without blocking the calling thread, with the
+     * default timeout ({@code idempotency.async.timeout}).
+     *
+     * @see #executeIdempotentAsync(String, String, Class, Supplier, Duration)
+     */
+    public <T> CompletableFuture<T> executeIdempotentAsync(String operationType, String operationKey,
+                                                           Class<T> resultType, Supplier<T> operation) {
+        return executeIdempotentAsync(operationType, operationKey, resultType, operation,
+            asyncExecutor.getDefaultTimeout());
+    }
 
-                // Brief pause before retry
+    /**
+     * Executes an operation idempotently without blocking the calling thread.
+     *
+     * <p>The whole idempotent flow - near-cache, claim, execution and recording the
+     * outcome - runs on an {@link IdempotencyAsyncExecutor} thread (a virtual thread
+     * where available), so the future completes with exactly what
+     * {@link #executeIdempotent(String, String, Class, Supplier)} would have returned or
+     * thrown.</p>
+     *
+     * <p>If the operation has not finished within {@code timeout}, its key is marked
+     * FAILED under the fencing token of the claim, the operation's thread is interrupted
+     * and the future fails with an {@link IdempotencyException}. The key can then be
+     * retried; a late result of the timed-out execution is rejected by the fencing token.
+     * If the operation had already finished when the timeout fired, its outcome is
+     * delivered instead.</p>
+     *
+     * @param <T> the return type of the operation
+     * @param operationType the type of operation
+     * @param operationKey the unique key for this operation instance
+     * @param resultType the type stored results are decoded into on replay
+     * @param operation the operation to execute
+     * @param timeout how long the operation may take, measured from this call
+     * @return a future of the new or replayed result
+     */
+    public <T> CompletableFuture<T> executeIdempotentAsync(
+            String operationType,
+            String operationKey,
+            Class<T> resultType,
+            Supplier<T> operation,
+            Duration timeout) {
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        AsyncExecution async = new AsyncExecution(operationType, operationKey, timeout);
+
+        Future<?> worker;
+        try {
+            worker = asyncExecutor.submit(() -> {
                 try {
-                    Thread.sleep(50 * attempt);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new IdempotencyException(
-                        "Interrupted during retry",
-                        operationType,
-                        operationKey,
-                        null
-                    );
+                    future.complete(execute(operationType, operationKey, resultType, operation,
+                        null, null, async).getValue());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new IdempotencyException(
+                "Too many async idempotent operations waiting to run", operationType, operationKey, null, e));
+            return future;
+        }
+
+        ScheduledFuture<?> deadline = asyncExecutor.schedule(() -> timeOut(async, future, worker), timeout);
+        future.whenComplete((result, error) -> deadline.cancel(false));
+        return future;
+    }
+
+    /**
+     * Executes a lot of operations of one type idempotently (e.g. the items of a TISS lot
+     * or a CNAB file).
+     *
+     * @param <T> the result type of the operations
+     * @param operationType the type of operation
+     * @param operations the operations to execute, by operation key
+     * @return the outcome of every operation, in the iteration order of {@code operations}
+     * @see #executeIdempotentBatch(String, Class, Map)
+     */
+    public <T> Map<String, IdempotencyBatchOutcome<T>> executeIdempotentBatch(
+            String operationType, Map<String, Supplier<T>> operations) {
+        return executeIdempotentBatch(operationType, null, operations);
+    }
+
+    /**
+     * Executes a lot of operations of one type idempotently, decoding replays into the given type.
+     *
+     * <p>Instead of one claim and one update per item, all keys are claimed with a single
+     * multi-row statement (per {@value IdempotencyKeyJdbcRepository#CLAIM_BATCH_SIZE}
+     * keys with the JDBC store). Only keys that are new, or whose previous execution
+     * failed, are executed - in parallel when {@code idempotency.batch.parallelism} is
+     * above 1 - and their outcomes are written back with one JDBC batch for the results
+     * and one for the failures.</p>
+     *
+     * <p>Items never throw: each one is reported as {@link IdempotencyBatchOutcome.Status#NEW},
+     * {@link IdempotencyBatchOutcome.Status#REPLAYED} or {@link IdempotencyBatchOutcome.Status#FAILED}.
+     * Keys being executed by another caller are reported as failed without waiting for
+     * them, even when single-flight is enabled.</p>
+     *
+     * @param <T> the result type of the operations
+     * @param operationType the type of operation
+     * @param resultType the type stored results are decoded into on replay, or {@code null}
+     *        for the recorded type
+     * @param operations the operations to execute, by operation key
+     * @return the outcome of every operation, in the iteration order of {@code operations}
+     */
+    public <T> Map<String, IdempotencyBatchOutcome<T>> executeIdempotentBatch(
+            String operationType, Class<T> resultType, Map<String, Supplier<T>> operations) {
+
+        log.debug("Executing idempotent batch: type={}, size={}", operationType, operations.size());
+        executionCount.add(operations.size());
+        IdempotencyMetrics.OperationMeters meters = metrics.forType(operationType);
+        meters.executions(operations.size());
+
+        Map<String, IdempotencyBatchOutcome<T>> outcomes = new HashMap<>(operations.size() * 2);
+        List<String> uncached = new ArrayList<>(operations.size());
+        for (String operationKey : operations.keySet()) {
+            IdempotencyResultCache.CachedResult cached = resultCache.get(operationType, operationKey);
+            if (cached != null) {
+                meters.replay(IdempotencyMetrics.REPLAY_SOURCE_CACHE);
+                outcomes.put(operationKey,
+                    IdempotencyBatchOutcome.replayed(resultCodec.decode(cached.getResult(), resultType)));
+            } else {
+                uncached.add(operationKey);
             }
         }
 
-        throw new IdempotencyException(
-            "Unexpected error in idempotent execution",
-            operationType,
-            operationKey,
-            null
-        );
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusHours(DEFAULT_EXPIRATION_HOURS);
+        LocalDateTime leaseExpiresAt = leaseManager.leaseExpiry(now);
+        Map<String, IdempotencyClaim> claims = uncached.isEmpty() ? Map.of()
+            : store.claimAll(operationType, uncached, null, null, now, expiresAt,
+                leaseManager.getNodeId(), leaseExpiresAt);
+
+        List<IdempotencyKey> owned = new ArrayList<>();
+        for (String operationKey : uncached) {
+            IdempotencyKey key = resolveBatchClaim(operationType, operationKey, claims.get(operationKey),
+                resultType, now, expiresAt, leaseExpiresAt, outcomes, meters);
+            if (key != null) {
+                owned.add(key);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            executeOwned(operationType, operations, owned, outcomes, meters);
+        }
+
+        Map<String, IdempotencyBatchOutcome<T>> ordered = new LinkedHashMap<>(operations.size() * 2);
+        for (String operationKey : operations.keySet()) {
+            ordered.put(operationKey, outcomes.get(operationKey));
+        }
+        log.info("Idempotent batch {} completed: {} items, {} executed", operationType, operations.size(), owned.size());
+        return ordered;
     }
 
     /**
-     * Internal method that performs the actual idempotent execution with transaction control.
+     * Turns the claim of one batch item into an owned key, or records its replay/failure.
+     *
+     * @return the PROCESSING key now owned by the batch, or {@code null} if the outcome is decided
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    protected <T> T executeIdempotentInternal(
+    private <T> IdempotencyKey resolveBatchClaim(
             String operationType,
             String operationKey,
+            IdempotencyClaim claim,
+            Class<T> resultType,
+            LocalDateTime now,
+            LocalDateTime expiresAt,
+            LocalDateTime leaseExpiresAt,
+            Map<String, IdempotencyBatchOutcome<T>> outcomes,
+            IdempotencyMetrics.OperationMeters meters) {
+
+        if (claim == null) {
+            claim = store.claim(operationType, operationKey, null, null, now, expiresAt,
+                leaseManager.getNodeId(), leaseExpiresAt);
+        }
+        if (claim == null) {
+            outcomes.put(operationKey, IdempotencyBatchOutcome.failed(new IdempotencyException(
+                "Could not claim idempotency key", operationType, operationKey, null)));
+            return null;
+        }
+
+        IdempotencyKey key = claim.getKey();
+        if (claim.isClaimed()) {
+            return key;
+        }
+        if (key.isCompleted()) {
+            meters.replay(IdempotencyMetrics.REPLAY_SOURCE_STORE);
+            cacheResult(key);
+            outcomes.put(operationKey,
+                IdempotencyBatchOutcome.replayed(resultCodec.decode(EncodedResult.of(key), resultType)));
+            return null;
+        }
+        if (key.getStatus() != IdempotencyKey.IdempotencyStatus.PROCESSING
+                && store.reclaim(key, null, null, now, expiresAt, leaseManager.getNodeId(), leaseExpiresAt)) {
+            return key;
+        }
+
+        meters.conflict();
+        outcomes.put(operationKey, IdempotencyBatchOutcome.failed(new IdempotencyException(
+            "Operation is already being processed", operationType, operationKey, null)));
+        return null;
+    }
+
+    /**
+     * Executes the owned keys of a batch and records their outcomes with one batch each
+     * for completions and failures.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void executeOwned(
+            String operationType,
+            Map<String, Supplier<T>> operations,
+            List<IdempotencyKey> owned,
+            Map<String, IdempotencyBatchOutcome<T>> outcomes,
+            IdempotencyMetrics.OperationMeters meters) {
+
+        int size = owned.size();
+        Object[] results = new Object[size];
+        EncodedResult[] encoded = new EncodedResult[size];
+        Exception[] errors = new Exception[size];
+
+        owned.forEach(leaseManager::acquired);
+        owned.forEach(expiryTracker::acquired);
+        try {
+            List<Runnable> tasks = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int index = i;
+                Supplier<T> operation = operations.get(owned.get(i).getOperationKey());
+                tasks.add(() -> {
+                    try {
+                        results[index] = operation.get();
+                        encoded[index] = resultCodec.encode(results[index]);
+                    } catch (Exception e) {
+                        errors[index] = e;
+                    }
+                });
+            }
+            batchExecutor.runAll(tasks);
+
+            List<IdempotencyKey> completedKeys = new ArrayList<>(size);
+            List<EncodedResult> completedResults = new ArrayList<>(size);
+            List<IdempotencyKey> failedKeys = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                IdempotencyKey key = owned.get(i);
+                if (errors[i] == null) {
+                    completedKeys.add(key);
+                    completedResults.add(encoded[i]);
+                    outcomes.put(key.getOperationKey(), IdempotencyBatchOutcome.executed((T) results[i]));
+                } else {
+                    log.error("Operation failed: {}:{}", operationType, key.getOperationKey(), errors[i]);
+                    meters.failure();
+                    failedKeys.add(key);
+                    outcomes.put(key.getOperationKey(), IdempotencyBatchOutcome.failed(new IdempotencyException(
+                        "Operation execution failed: " + errors[i].getMessage(),
+                        operationType, key.getOperationKey(), null, errors[i])));
+                }
+            }
+
+            boolean[] stored = store.markCompletedAll(completedKeys, completedResults);
+            for (int i = 0; i < stored.length; i++) {
+                IdempotencyKey key = completedKeys.get(i);
+                if (stored[i]) {
+                    cacheResult(key, completedResults.get(i));
+                } else {
+                    meters.failure();
+                    outcomes.put(key.getOperationKey(),
+                        IdempotencyBatchOutcome.failed(leaseLost(operationType, key.getOperationKey())));
+                }
+            }
+            store.markFailedAll(failedKeys);
+
+        } finally {
+            owned.forEach(leaseManager::released);
+            owned.forEach(expiryTracker::released);
+        }
+    }
+
+    /**
+     * Serves a replay from the near-cache or a local in-flight leader, or claims and executes.
+     *
+     * @param resultType the type replays are decoded into, or {@code null} for the recorded type
+     */
+    private <T> IdempotencyOutcome<T> execute(
+            String operationType,
+            String operationKey,
+            Class<T> resultType,
             Supplier<T> operation,
             String processInstanceId,
-            String executionId) {
+            String executionId,
+            AsyncExecution async) {
 
-        // Check if operation already executed
-        Optional<IdempotencyKey> existingKey = repository.findByOperationTypeAndOperationKey(
-            operationType, operationKey);
+        log.debug("Executing idempotent operation: type={}, key={}, processInstance={}",
+                  operationType, operationKey, processInstanceId);
 
-        if (existingKey.isPresent()) {
-            IdempotencyKey key = existingKey.get();
+        executionCount.increment();
+        IdempotencyMetrics.OperationMeters meters = metrics.forType(operationType);
+        meters.execution();
+
+        IdempotencyResultCache.CachedResult cached = resultCache.get(operationType, operationKey);
+        if (cached != null) {
+            meters.replay(IdempotencyMetrics.REPLAY_SOURCE_CACHE);
+            log.info("Operation already completed: {}:{}, returning cached result",
+                    operationType, operationKey);
+            return new IdempotencyOutcome<>(resultCodec.decode(cached.getResult(), resultType),
+                IdempotencyOutcome.Status.REPLAYED, 0, cached.getStoredAt());
+        }
 
-            if (key.isCompleted()) {
-                log.info("Operation already completed: {}:{}, returning stored result",
-                        operationType, operationKey);
-                return deserializeResult(key.getResult());
-            }
+        if (!singleFlight.isEnabled()) {
+            return executeClaimed(operationType, operationKey, resultType, operation,
+                processInstanceId, executionId, null, meters, async);
+        }
 
-            if (key.getStatus() == IdempotencyKey.IdempotencyStatus.PROCESSING) {
-                log.warn("Operation already in progress: {}:{}, waiting for completion",
-                        operationType, operationKey);
-                // In a real system, you might want to poll or use a lock here
-                throw new IdempotencyException(
-                    "Operation is already being processed",
-                    operationType,
-                    operationKey,
-                    null
-                );
+        IdempotencySingleFlight.Flight flight = singleFlight.join(operationType, operationKey);
+        if (!flight.isLeader()) {
+            log.info("Operation {}:{} already in flight on this node, waiting for its result",
+                    operationType, operationKey);
+            IdempotencySingleFlight.SharedResult shared = singleFlight.await(flight);
+            meters.replay(IdempotencyMetrics.REPLAY_SOURCE_IN_FLIGHT);
+            return new IdempotencyOutcome<>(resultCodec.decode(shared.getResult(), resultType),
+                IdempotencyOutcome.Status.REPLAYED, 0, shared.getStoredAt());
+        }
+
+        try {
+            return executeClaimed(operationType, operationKey, resultType, operation,
+                processInstanceId, executionId, flight, meters, async);
+        } finally {
+            singleFlight.release(flight);
+        }
+    }
+
+    /**
+     * Claims the key and either replays the stored result or executes the operation.
+     *
+     * @param flight the single-flight leader to publish the outcome to, or {@code null}
+     * @param meters the meters of the operation type
+     * @param async the asynchronous execution this runs for, or {@code null}
+     */
+    private <T> IdempotencyOutcome<T> executeClaimed(
+            String operationType,
+            String operationKey,
+            Class<T> resultType,
+            Supplier<T> operation,
+            String processInstanceId,
+            String executionId,
+            IdempotencySingleFlight.Flight flight,
+            IdempotencyMetrics.OperationMeters meters,
+            AsyncExecution async) {
+
+        ClaimedKey claimed;
+        try {
+            claimed = claimKey(operationType, operationKey, processInstanceId, executionId, meters);
+        } catch (IdempotencyException e) {
+            if (flight != null) {
+                flight.fail(e);
             }
+            throw e;
         }
 
-        // Create new idempotency key
-        IdempotencyKey key = IdempotencyKey.builder()
-            .operationType(operationType)
-            .operationKey(operationKey)
-            .processInstanceId(processInstanceId)
-            .executionId(executionId)
-            .status(IdempotencyKey.IdempotencyStatus.PROCESSING)
-            .createdAt(LocalDateTime.now())
-            .expiresAt(LocalDateTime.now().plusHours(DEFAULT_EXPIRATION_HOURS))
-            .build();
+        IdempotencyKey key = claimed.getKey();
+        if (key.isCompleted()) {
+            log.info("Operation already completed: {}:{}, returning stored result",
+                    operationType, operationKey);
+            meters.replay(IdempotencyMetrics.REPLAY_SOURCE_STORE);
+            EncodedResult stored = EncodedResult.of(key);
+            cacheResult(key);
+            if (flight != null) {
+                flight.complete(stored, key.getCreatedAt());
+            }
+            return new IdempotencyOutcome<>(resultCodec.decode(stored, resultType),
+                IdempotencyOutcome.Status.REPLAYED, claimed.getAttempts(), key.getCreatedAt());
+        }
 
-        repository.save(key);
-        repository.flush(); // Force immediate persistence to detect conflicts
+        if (async != null && !async.claimed(key)) {
+            // The caller has already timed out: give the key back instead of executing
+            store.markFailed(key.getId(), key.getFencingToken());
+            IdempotencyException timeout = async.timeoutException();
+            if (flight != null) {
+                flight.fail(timeout);
+            }
+            throw timeout;
+        }
 
+        long processingStart = System.nanoTime();
+        leaseManager.acquired(key);
+        expiryTracker.acquired(key);
+        T result;
+        EncodedResult encoded;
+        boolean stored;
         try {
             // Execute the operation
-            T result = operation.get();
-
-            // Store the result
-            String serializedResult = serializeResult(result);
-            key.markCompleted(serializedResult);
-            repository.save(key);
+            result = operation.get();
 
-            log.info("Operation completed successfully: {}:{}", operationType, operationKey);
-            return result;
+            // Store the result, unless our lease was recovered in the meantime
+            encoded = resultCodec.encode(result);
+            long completeStart = System.nanoTime();
+            stored = store.markCompleted(key.getId(), key.getFencingToken(), encoded);
+            meters.completed(completeStart, processingStart, encoded);
 
         } catch (Exception e) {
             log.error("Operation failed: {}:{}", operationType, operationKey, e);
-            key.markFailed();
-            repository.save(key);
+            meters.failure();
+            long failStart = System.nanoTime();
+            store.markFailed(key.getId(), key.getFencingToken());
+            meters.failed(failStart, processingStart);
+            if (flight != null) {
+                flight.fail(e);
+            }
             throw new IdempotencyException(
                 "Operation execution failed: " + e.getMessage(),
                 operationType,
@@ -208,12 +580,174 @@ public class IdempotencyService {
                 null,
                 e
             );
+        } finally {
+            leaseManager.released(key);
+            expiryTracker.released(key);
+        }
+
+        if (!stored) {
+            // The key was recovered, taken over or timed out: nothing replays this result
+            meters.failure();
+            IdempotencyException lost = leaseLost(operationType, operationKey);
+            if (flight != null) {
+                flight.fail(lost);
+            }
+            throw lost;
+        }
+        cacheResult(key, encoded);
+        if (flight != null) {
+            flight.complete(encoded, key.getCreatedAt());
+        }
+
+        log.info("Operation completed successfully: {}:{}", operationType, operationKey);
+        return new IdempotencyOutcome<>(result, claimed.getStatus(), claimed.getAttempts(), key.getCreatedAt());
+    }
+
+    /**
+     * The failure of an operation that ran, but whose key was no longer held by this caller
+     * when its result was to be stored, so the result was not stored.
+     */
+    private static IdempotencyException leaseLost(String operationType, String operationKey) {
+        log.warn("Lease on {}:{} was lost before completion; result not stored", operationType, operationKey);
+        return new IdempotencyException(
+            "Lease on the idempotency key was lost before completion; result not stored",
+            operationType,
+            operationKey,
+            null
+        );
+    }
+
+    /**
+     * Claims the key for this caller, or returns the COMPLETED row to replay.
+     *
+     * <p>The common cases cost a single statement: the insert-if-absent either creates the
+     * PROCESSING row or hands back the existing one. A FAILED or PENDING row is taken over
+     * with one version-guarded update. Losing any race simply re-reads the current state,
+     * so no sleeping or exception-driven retry is needed.</p>
+     *
+     * @return the PROCESSING row now owned by the caller, or the COMPLETED row to replay
+     * @throws IdempotencyException if another caller is currently processing the key
+     *         (after waiting for it when single-flight is enabled)
+     */
+    private ClaimedKey claimKey(
+            String operationType,
+            String operationKey,
+            String processInstanceId,
+            String executionId,
+            IdempotencyMetrics.OperationMeters meters) {
+
+        for (int attempt = 1; attempt <= MAX_CLAIM_ATTEMPTS; attempt++) {
+            if (attempt > 1) {
+                meters.retry();
+            }
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiresAt = now.plusHours(DEFAULT_EXPIRATION_HOURS);
+
+            LocalDateTime leaseExpiresAt = leaseManager.leaseExpiry(now);
+
+            long claimStart = System.nanoTime();
+            IdempotencyClaim claim = store.claim(
+                operationType, operationKey, processInstanceId, executionId, now, expiresAt,
+                leaseManager.getNodeId(), leaseExpiresAt);
+            meters.claimed(claimStart);
+
+            if (claim == null) {
+                log.debug("Idempotency key {}:{} disappeared during claim, attempt {}/{}",
+                         operationType, operationKey, attempt, MAX_CLAIM_ATTEMPTS);
+                continue;
+            }
+
+            IdempotencyKey key = claim.getKey();
+            if (claim.isClaimed()) {
+                return new ClaimedKey(key, attempt, IdempotencyOutcome.Status.NEW);
+            }
+            if (key.isCompleted()) {
+                return new ClaimedKey(key, attempt, IdempotencyOutcome.Status.REPLAYED);
+            }
+
+            if (key.getStatus() == IdempotencyKey.IdempotencyStatus.PROCESSING) {
+                meters.conflict();
+                if (singleFlight.isEnabled()) {
+                    log.info("Operation {}:{} in progress on another node, waiting for its result",
+                            operationType, operationKey);
+                    IdempotencyKey completed = singleFlight.awaitRemote(operationType, operationKey,
+                        () -> store.find(operationType, operationKey));
+                    if (completed != null) {
+                        return new ClaimedKey(completed, attempt, IdempotencyOutcome.Status.REPLAYED);
+                    }
+                    continue;
+                }
+
+                log.warn("Operation already in progress: {}:{}", operationType, operationKey);
+                throw new IdempotencyException(
+                    "Operation is already being processed",
+                    operationType,
+                    operationKey,
+                    null
+                );
+            }
+
+            // PENDING or FAILED: take over the existing row for a new execution
+            IdempotencyKey.IdempotencyStatus previousStatus = key.getStatus();
+            long reclaimStart = System.nanoTime();
+            boolean reclaimed = store.reclaim(key, processInstanceId, executionId, now, expiresAt,
+                leaseManager.getNodeId(), leaseExpiresAt);
+            meters.reclaimed(reclaimStart);
+            if (reclaimed) {
+                log.info("Re-executing previously {} operation: {}:{}",
+                        previousStatus, operationType, operationKey);
+                return new ClaimedKey(key, attempt, IdempotencyOutcome.Status.RECOVERED_AFTER_CONFLICT);
+            }
+
+            log.debug("Lost takeover race for {}:{}, attempt {}/{}",
+                     operationType, operationKey, attempt, MAX_CLAIM_ATTEMPTS);
         }
+
+        log.error("Could not claim idempotency key {}:{} after {} attempts",
+                 operationType, operationKey, MAX_CLAIM_ATTEMPTS);
+        throw new IdempotencyException(
+            "Failed to execute idempotent operation after " + MAX_CLAIM_ATTEMPTS + " attempts",
+            operationType,
+            operationKey,
+            null
+        );
+    }
+
+    /**
+     * Caches a COMPLETED key read from the store and tracks the expiry of the entry.
+     */
+    private void cacheResult(IdempotencyKey key) {
+        expiryTracker.cached(key.getOperationType(), key.getOperationKey(), resultCache.put(key));
+    }
+
+    /**
+     * Caches the result just recorded for a key and tracks the expiry of the entry.
+     */
+    private void cacheResult(IdempotencyKey key, EncodedResult result) {
+        expiryTracker.cached(key.getOperationType(), key.getOperationKey(),
+            resultCache.put(key.getOperationType(), key.getOperationKey(), result,
+                key.getCreatedAt(), key.getExpiresAt()));
+    }
+
+    /**
+     * Average number of SQL statements issued by the claim path per idempotent execution.
+     *
+     * <p>A fresh or replayed key costs one statement to claim plus one to record the
+     * outcome of a new execution; higher values indicate contention or takeovers.</p>
+     *
+     * @return statements per execution, or 0 if nothing has been executed yet
+     */
+    public double getStatementsPerOperation() {
+        long executions = executionCount.sum();
+        return executions == 0 ? 0.0 : (double) store.getStatementCount() / executions;
     }
 
     /**
      * Retrieves a previously stored result for an operation.
      *
+     * <p>COMPLETED results are served from the near-cache when possible. Results stored
+     * by the codec are rendered back as JSON text.</p>
+     *
      * @param operationType the type of operation
      * @param operationKey the unique key for this operation instance
      * @return an Optional containing the stored result if available
@@ -221,9 +755,21 @@ public class IdempotencyService {
     public Optional<String> getStoredResult(String operationType, String operationKey) {
         log.debug("Retrieving stored result for operation: {}:{}", operationType, operationKey);
 
-        return repository.findByOperationTypeAndOperationKey(operationType, operationKey)
-            .filter(IdempotencyKey::isCompleted)
-            .map(IdempotencyKey::getResult);
+        IdempotencyResultCache.CachedResult cached = resultCache.get(operationType, operationKey);
+        if (cached != null) {
+            return Optional.ofNullable(resultCodec.toJson(cached.getResult()));
+        }
+
+        long lookupStart = System.nanoTime();
+        IdempotencyClaim found = store.find(operationType, operationKey);
+        metrics.forType(operationType).lookedUp(lookupStart);
+
+        Optional<IdempotencyKey> completed = Optional.ofNullable(found)
+            .map(IdempotencyClaim::getKey)
+            .filter(IdempotencyKey::isCompleted);
+        completed.ifPresent(this::cacheResult);
+
+        return completed.map(key -> resultCodec.toJson(EncodedResult.of(key)));
     }
 
     /**
@@ -236,109 +782,174 @@ public class IdempotencyService {
      * @param operationKey the unique key for this operation instance
      * @param result the result to store
      */
-    @Transactional
     public void storeResult(String operationType, String operationKey, String result) {
         log.debug("Manually storing result for operation: {}:{}", operationType, operationKey);
 
-        Optional<IdempotencyKey> existingKey = repository.findByOperationTypeAndOperationKey(
-            operationType, operationKey);
-
-        if (existingKey.isPresent()) {
-            IdempotencyKey key = existingKey.get();
-            key.markCompleted(result);
-            repository.save(key);
-        } else {
-            IdempotencyKey key = IdempotencyKey.builder()
-                .operationType(operationType)
-                .operationKey(operationKey)
-                .status(IdempotencyKey.IdempotencyStatus.COMPLETED)
-                .result(result)
-                .createdAt(LocalDateTime.now())
-                .expiresAt(LocalDateTime.now().plusHours(DEFAULT_EXPIRATION_HOURS))
-                .build();
-            repository.save(key);
-        }
+        LocalDateTime now = LocalDateTime.now();
+        store.storeCompleted(operationType, operationKey, EncodedResult.ofJson(result),
+            now, now.plusHours(DEFAULT_EXPIRATION_HOURS));
+        resultCache.invalidate(operationType, operationKey);
     }
 
     /**
      * Cleans up expired idempotency keys.
      *
      * <p>This method should be called periodically (e.g., via a scheduled task)
-     * to prevent unbounded database growth.</p>
+     * to prevent unbounded growth of the store. With the JDBC store, whole expired
+     * partitions are dropped when the tables are partitioned by expiry
+     * (see {@link IdempotencyPartitionManager}); otherwise expired keys are deleted in
+     * committed, throttled chunks (see {@link IdempotencyCleanupEngine}).</p>
      *
-     * @return the number of deleted keys
+     * @return the number of deleted keys (estimated when partitions are dropped)
      */
-    @Transactional
     public int cleanupExpiredKeys() {
-        LocalDateTime cutoff = LocalDateTime.now();
-        int deleted = repository.deleteByExpiresAtBefore(cutoff);
-        log.info("Cleaned up {} expired idempotency keys", deleted);
-        return deleted;
+        long deleted = store.removeExpired(LocalDateTime.now());
+        metrics.recordCleanup(deleted);
+        int evicted = resultCache.evictExpired();
+        log.info("Cleaned up {} expired idempotency keys ({} cached results evicted)", deleted, evicted);
+        return (int) Math.min(deleted, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Counts the expired keys waiting for cleanup, up to {@code limit}.
+     *
+     * @return the expired-key backlog, at most {@code limit}
+     */
+    public long sampleExpiredBacklog(int limit) {
+        return store.countExpired(LocalDateTime.now(), limit);
+    }
+
+    /**
+     * Cleans up the expired idempotency keys of one shard of the store; see
+     * {@link IdempotencyStore#removeExpired(LocalDateTime, int, int)}.
+     *
+     * @return the number of deleted keys (estimated when partitions are dropped)
+     */
+    public int cleanupExpiredKeys(int shard, int shardCount) {
+        long deleted = store.removeExpired(LocalDateTime.now(), shard, shardCount);
+        metrics.recordCleanup(deleted);
+        int evicted = resultCache.evictExpired();
+        log.info("Cleaned up {} expired idempotency keys of shard {}/{} ({} cached results evicted)",
+                deleted, shard, shardCount, evicted);
+        return (int) Math.min(deleted, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Fails PROCESSING keys whose lease has expired, e.g. because their node died.
+     *
+     * <p>Recovery is a single set-based UPDATE that also bumps each key's fencing token,
+     * so an owner that comes back late can no longer record an outcome for it.</p>
+     *
+     * @return the number of recovered keys
+     */
+    public int recoverExpiredLeases() {
+        int recovered = leaseManager.recoverExpiredLeases();
+        metrics.recordRecoveries(recovered);
+        if (recovered > 0) {
+            log.warn("Recovered {} idempotency keys with expired leases", recovered);
+        }
+        return recovered;
     }
 
     /**
      * Finds and cleans up idempotency keys that are stuck in PROCESSING status.
      *
-     * @param timeoutMinutes the timeout in minutes for PROCESSING status
+     * <p>Keys whose lease has expired are recovered, as are unleased keys created more
+     * than {@code timeoutMinutes} ago. Everything is done in one UPDATE statement.</p>
+     *
+     * @param timeoutMinutes the timeout in minutes for unleased PROCESSING keys
      * @return the number of cleaned up keys
      */
-    @Transactional
     public int cleanupStuckKeys(int timeoutMinutes) {
-        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(timeoutMinutes);
-        var stuckKeys = repository.findStuckProcessingKeys(cutoff);
-
-        stuckKeys.forEach(key -> {
-            log.warn("Found stuck idempotency key: {}:{}, marking as failed",
-                    key.getOperationType(), key.getOperationKey());
-            key.markFailed();
-            repository.save(key);
-        });
-
-        return stuckKeys.size();
+        LocalDateTime now = LocalDateTime.now();
+        int recovered = store.recoverExpiredLeases(now, now.minusMinutes(timeoutMinutes));
+        metrics.recordRecoveries(recovered);
+        if (recovered > 0) {
+            log.warn("Marked {} stuck idempotency keys as failed", recovered);
+        }
+        return recovered;
     }
 
     /**
-     * Serializes a result object to JSON string.
+     * Fails an asynchronous execution that exceeded its timeout.
+     *
+     * <p>A key still PROCESSING under the execution's token is marked FAILED before the
+     * future fails, so a retry can take it over at once. If the key is no longer
+     * PROCESSING, the operation has already finished and its own outcome completes the
+     * future.</p>
      */
-    private String serializeResult(Object result) {
-        if (result == null) {
-            return null;
+    private <T> void timeOut(AsyncExecution async, CompletableFuture<T> future, Future<?> worker) {
+        if (future.isDone()) {
+            return;
         }
 
-        try {
-            return objectMapper.writeValueAsString(result);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to serialize result", e);
-            throw new IdempotencyException(
-                "Failed to serialize operation result",
-                null,
-                null,
-                null,
-                e
-            );
+        IdempotencyKey key = async.timeOut();
+        if (key != null && !store.markFailed(key.getId(), key.getFencingToken())) {
+            return;
+        }
+
+        log.warn("Operation {}:{} timed out after {}", async.operationType, async.operationKey, async.timeout);
+        metrics.forType(async.operationType).timeout();
+        future.completeExceptionally(async.timeoutException());
+        if (key != null) {
+            // Interrupt the operation; its late outcome is rejected by the fencing token
+            worker.cancel(true);
         }
     }
 
     /**
-     * Deserializes a result from JSON string.
+     * State shared by an asynchronous execution and its timeout.
      */
-    @SuppressWarnings("unchecked")
-    private <T> T deserializeResult(String serializedResult) {
-        if (serializedResult == null) {
-            return null;
+    private static final class AsyncExecution {
+
+        private final String operationType;
+        private final String operationKey;
+        private final Duration timeout;
+        private IdempotencyKey key;
+        private boolean timedOut;
+
+        private AsyncExecution(String operationType, String operationKey, Duration timeout) {
+            this.operationType = operationType;
+            this.operationKey = operationKey;
+            this.timeout = timeout;
         }
 
-        try {
-            return (T) objectMapper.readValue(serializedResult, Object.class);
-        } catch (JsonProcessingException e) {
-            log.error("Failed to deserialize result", e);
-            throw new IdempotencyException(
-                "Failed to deserialize stored result",
-                null,
-                null,
-                serializedResult,
-                e
-            );
+        /**
+         * Records the claimed key before it is executed.
+         *
+         * @return false if the execution has already timed out and must not run
+         */
+        synchronized boolean claimed(IdempotencyKey claimedKey) {
+            if (timedOut) {
+                return false;
+            }
+            key = claimedKey;
+            return true;
         }
+
+        /**
+         * Marks the execution as timed out.
+         *
+         * @return the key being executed, or {@code null} if none was claimed yet
+         */
+        synchronized IdempotencyKey timeOut() {
+            timedOut = true;
+            return key;
+        }
+
+        IdempotencyException timeoutException() {
+            return new IdempotencyException("Operation timed out after " + timeout,
+                operationType, operationKey, null);
+        }
+    }
+
+    /**
+     * A key returned by {@link #claimKey}, with how and after how many attempts it was obtained.
+     */
+    @Value
+    private static class ClaimedKey {
+        IdempotencyKey key;
+        int attempts;
+        IdempotencyOutcome.Status status;
     }
 }
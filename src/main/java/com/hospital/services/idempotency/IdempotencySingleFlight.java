@@ -0,0 +1,317 @@
+package com.hospital.services.idempotency;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent callers of the same idempotent operation (opt-in).
+ *
+ * <p>Without single-flight, a duplicate that arrives while the key is PROCESSING fails
+ * immediately and is retried later by the job executor. When
+ * {@code idempotency.single-flight.enabled} is true, duplicates wait instead and
+ * receive the first caller's result:</p>
+ * <ul>
+ *   <li><strong>Same node:</strong> followers wait on the leader's in-JVM future, so the
+ *       database is not touched at all.</li>
+ *   <li><strong>Other nodes:</strong> the caller polls the key row with bounded
+ *       exponential backoff (with jitter) until it leaves PROCESSING.</li>
+ * </ul>
+ *
+ * <p>Both waits are capped by {@code idempotency.single-flight.max-wait}. Wait times
+ * are published as the {@code idempotency.single_flight.wait} timer, tagged by
+ * operation type, mode ({@code local}/{@code remote}) and outcome.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+public class IdempotencySingleFlight {
+
+    private static final String WAIT_TIMER = "idempotency.single_flight.wait";
+
+    private final boolean enabled;
+    private final Duration maxWait;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencySingleFlight(
+            @Value("${idempotency.single-flight.enabled:false}") boolean enabled,
+            @Value("${idempotency.single-flight.max-wait:PT30S}") Duration maxWait,
+            @Value("${idempotency.single-flight.initial-backoff:PT0.05S}") Duration initialBackoff,
+            @Value("${idempotency.single-flight.max-backoff:PT2S}") Duration maxBackoff,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxWait = maxWait;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("idempotency.single_flight.in_flight", inFlight, Map::size)
+            .description("Idempotent operations currently led by this node with single-flight enabled")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Joins the flight for a key, becoming its leader if no local caller is executing it.
+     *
+     * <p>The leader must complete or fail the flight and always {@link #release(Flight)} it.</p>
+     *
+     * @param operationType the type of operation
+     * @param operationKey the unique key for this operation instance
+     * @return the flight; {@link Flight#isLeader()} tells whether the caller must execute
+     */
+    public Flight join(String operationType, String operationKey) {
+        String flightKey = operationType + '\u0000' + operationKey;
+        Flight candidate = new Flight(operationType, operationKey, flightKey, true);
+        Flight existing = inFlight.putIfAbsent(flightKey, candidate);
+
+        if (existing == null) {
+            return candidate;
+        }
+        return new Flight(operationType, operationKey, flightKey, false, existing.result);
+    }
+
+    /**
+     * Waits for the local leader's stored result.
+     *
+     * @param flight a follower flight returned by {@link #join(String, String)}
+     * @return the result stored by the leader, with the time its key was claimed
+     * @throws IdempotencyException if the leader failed or the wait exceeded the maximum
+     */
+    public SharedResult await(Flight flight) {
+        long start = System.nanoTime();
+
+        try {
+            SharedResult result = flight.result.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            recordWait(flight.operationType, "local", "completed", start);
+            return result;
+
+        } catch (TimeoutException e) {
+            recordWait(flight.operationType, "local", "timeout", start);
+            throw new IdempotencyException(
+                "Timed out after " + maxWait + " waiting for in-flight operation",
+                flight.operationType,
+                flight.operationKey,
+                null
+            );
+
+        } catch (ExecutionException e) {
+            recordWait(flight.operationType, "local", "failed", start);
+            throw new IdempotencyException(
+                "In-flight operation failed: " + e.getCause().getMessage(),
+                flight.operationType,
+                flight.operationKey,
+                null,
+                e.getCause()
+            );
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recordWait(flight.operationType, "local", "interrupted", start);
+            throw new IdempotencyException(
+                "Interrupted while waiting for in-flight operation",
+                flight.operationType,
+                flight.operationKey,
+                null
+            );
+        }
+    }
+
+    /**
+     * Waits for a key that another node is processing, polling its row with backoff.
+     *
+     * @param operationType the type of operation
+     * @param operationKey the unique key for this operation instance
+     * @param poll reads the current row; returns {@code null} if the row no longer exists
+     * @return the COMPLETED row, or {@code null} if the row disappeared and should be claimed again
+     * @throws IdempotencyException if the operation failed or the wait exceeded the maximum
+     */
+    public IdempotencyKey awaitRemote(String operationType, String operationKey,
+                                      Supplier<IdempotencyClaim> poll) {
+        long start = System.nanoTime();
+        long deadline = start + maxWait.toNanos();
+        long backoffMillis = Math.max(1, initialBackoff.toMillis());
+
+        while (true) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                recordWait(operationType, "remote", "timeout", start);
+                throw new IdempotencyException(
+                    "Timed out after " + maxWait + " waiting for operation processed by another node",
+                    operationType,
+                    operationKey,
+                    null
+                );
+            }
+
+            sleep(Math.min(remainingMillis, jitter(backoffMillis)), operationType, operationKey);
+            backoffMillis = Math.min(backoffMillis * 2, maxBackoff.toMillis());
+
+            IdempotencyClaim current = poll.get();
+            if (current == null) {
+                recordWait(operationType, "remote", "vanished", start);
+                return null;
+            }
+
+            IdempotencyKey key = current.getKey();
+            if (key.isCompleted()) {
+                recordWait(operationType, "remote", "completed", start);
+                return key;
+            }
+
+            if (key.getStatus() != IdempotencyKey.IdempotencyStatus.PROCESSING) {
+                recordWait(operationType, "remote", "failed", start);
+                throw new IdempotencyException(
+                    "Operation processed by another node ended with status " + key.getStatus(),
+                    operationType,
+                    operationKey,
+                    null
+                );
+            }
+        }
+    }
+
+    /**
+     * Ends a flight. Followers are released with a failure if the leader never completed it.
+     *
+     * @param flight the flight to end; ignored for followers
+     */
+    public void release(Flight flight) {
+        if (!flight.leader) {
+            return;
+        }
+        inFlight.remove(flight.flightKey, flight);
+        if (!flight.result.isDone()) {
+            flight.result.completeExceptionally(new IdempotencyException(
+                "Leader finished without a result",
+                flight.operationType,
+                flight.operationKey,
+                null
+            ));
+        }
+    }
+
+    private void recordWait(String operationType, String mode, String outcome, long startNanos) {
+        Timer.builder(WAIT_TIMER)
+            .description("Time callers spent waiting for an in-progress idempotent operation")
+            .tag("operationType", operationType)
+            .tag("mode", mode)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+        log.debug("Single-flight {} wait for {} ended with {}", mode, operationType, outcome);
+    }
+
+    private static long jitter(long backoffMillis) {
+        return backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+    }
+
+    private static void sleep(long millis, String operationType, String operationKey) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyException(
+                "Interrupted while waiting for operation processed by another node",
+                operationType,
+                operationKey,
+                null
+            );
+        }
+    }
+
+    /**
+     * Participation of one caller in a single-flight execution.
+     */
+    public static final class Flight {
+
+        private final String operationType;
+        private final String operationKey;
+        private final String flightKey;
+        private final boolean leader;
+        private final CompletableFuture<SharedResult> result;
+
+        private Flight(String operationType, String operationKey, String flightKey, boolean leader) {
+            this(operationType, operationKey, flightKey, leader, new CompletableFuture<>());
+        }
+
+        private Flight(String operationType, String operationKey, String flightKey, boolean leader,
+                       CompletableFuture<SharedResult> result) {
+            this.operationType = operationType;
+            this.operationKey = operationKey;
+            this.flightKey = flightKey;
+            this.leader = leader;
+            this.result = result;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * Publishes the leader's stored result to waiting followers.
+         *
+         * @param storedResult the result stored for the key
+         * @param storedAt when the key holding the result was claimed
+         */
+        public void complete(EncodedResult storedResult, LocalDateTime storedAt) {
+            result.complete(new SharedResult(storedResult, storedAt));
+        }
+
+        /**
+         * Propagates the leader's failure to waiting followers.
+         */
+        public void fail(Throwable cause) {
+            result.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * A result published by a leader to its followers.
+     */
+    public static final class SharedResult {
+
+        private final EncodedResult result;
+        private final LocalDateTime storedAt;
+
+        private SharedResult(EncodedResult result, LocalDateTime storedAt) {
+            this.result = result;
+            this.storedAt = storedAt;
+        }
+
+        public EncodedResult getResult() {
+            return result;
+        }
+
+        /**
+         * When the key holding the result was claimed by the original execution.
+         */
+        public LocalDateTime getStoredAt() {
+            return storedAt;
+        }
+    }
+}
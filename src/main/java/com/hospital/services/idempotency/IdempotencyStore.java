@@ -0,0 +1,219 @@
+package com.hospital.services.idempotency;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage backend for idempotency keys used by {@link IdempotencyService}.
+ *
+ * <p>A store owns the lifecycle of a key: the atomic claim, takeover of FAILED keys,
+ * recording the outcome under the fencing token obtained with the claim, lease renewal
+ * and recovery, and removal of expired keys. Every implementation must behave the same
+ * way for these operations; {@code IdempotencyStoreContractTest} is the executable
+ * specification.</p>
+ *
+ * <p>Available backends, selected with {@code idempotency.store.type}:</p>
+ * <ul>
+ *   <li>{@code jdbc} (default) - {@link JdbcIdempotencyStore}, the shared
+ *       {@code idempotency_keys} table accessed with plain SQL</li>
+ *   <li>{@code off-heap} - {@link OffHeapIdempotencyStore}, keys held in direct memory
+ *       of this JVM, for single-node and test deployments</li>
+ * </ul>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Atomically creates a PROCESSING key leased to {@code leaseOwner}, or returns the key
+     * that already exists. New keys start with fencing token 1.
+     *
+     * @param operationType the type of operation
+     * @param operationKey the unique key for this operation instance
+     * @param processInstanceId the Camunda process instance ID (optional)
+     * @param executionId the Camunda execution ID (optional)
+     * @param createdAt the claim timestamp
+     * @param expiresAt when the key may be removed
+     * @param leaseOwner the node that will execute the operation (optional)
+     * @param leaseExpiresAt until when the lease is held unless renewed (optional)
+     * @return the claim outcome, or {@code null} if the key vanished while claiming
+     *         (for example removed by cleanup) and the caller should try again
+     */
+    IdempotencyClaim claim(String operationType, String operationKey,
+                           String processInstanceId, String executionId,
+                           LocalDateTime createdAt, LocalDateTime expiresAt,
+                           String leaseOwner, LocalDateTime leaseExpiresAt);
+
+    /**
+     * Claims many keys of one operation type at once.
+     *
+     * <p>Backends should do this in as few round-trips as possible; the default claims
+     * the keys one by one. A key missing from the result vanished or was created
+     * concurrently while claiming and should be claimed again individually.</p>
+     *
+     * @return claim outcomes by operation key
+     * @see #claim(String, String, String, String, LocalDateTime, LocalDateTime, String, LocalDateTime)
+     */
+    default Map<String, IdempotencyClaim> claimAll(String operationType, Collection<String> operationKeys,
+                                                   String processInstanceId, String executionId,
+                                                   LocalDateTime createdAt, LocalDateTime expiresAt,
+                                                   String leaseOwner, LocalDateTime leaseExpiresAt) {
+        Map<String, IdempotencyClaim> claims = new HashMap<>(operationKeys.size() * 2);
+        for (String operationKey : operationKeys) {
+            IdempotencyClaim claim = claim(operationType, operationKey, processInstanceId, executionId,
+                createdAt, expiresAt, leaseOwner, leaseExpiresAt);
+            if (claim != null) {
+                claims.put(operationKey, claim);
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Reads the current state of a key.
+     *
+     * @return the key wrapped as an unclaimed outcome, or {@code null} if absent
+     */
+    IdempotencyClaim find(String operationType, String operationKey);
+
+    /**
+     * Takes over a PENDING or FAILED key, guarded by its version so only one caller wins.
+     *
+     * <p>On success the fencing token is incremented and {@code existing} is updated to the
+     * new PROCESSING state, lease and token.</p>
+     *
+     * @return true if this caller now owns the PROCESSING key
+     */
+    boolean reclaim(IdempotencyKey existing, String processInstanceId, String executionId,
+                    LocalDateTime createdAt, LocalDateTime expiresAt,
+                    String leaseOwner, LocalDateTime leaseExpiresAt);
+
+    /**
+     * Records the result of a PROCESSING key and releases its lease.
+     *
+     * @param fencingToken the token obtained when the key was claimed
+     * @return true if the key was still PROCESSING under this token and has been updated;
+     *         false if the lease was recovered or the key taken over in the meantime
+     */
+    boolean markCompleted(Long id, long fencingToken, EncodedResult result);
+
+    /**
+     * Marks a PROCESSING key as FAILED and releases its lease.
+     *
+     * @param fencingToken the token obtained when the key was claimed
+     * @return true if the key was still PROCESSING under this token and has been updated
+     */
+    boolean markFailed(Long id, long fencingToken);
+
+    /**
+     * Records the results of many PROCESSING keys, each under its own fencing token.
+     *
+     * @param keys the claimed keys
+     * @param results the results, in the same order as {@code keys}
+     * @return for each key, whether the result was recorded
+     * @see #markCompleted(Long, long, EncodedResult)
+     */
+    default boolean[] markCompletedAll(List<IdempotencyKey> keys, List<EncodedResult> results) {
+        boolean[] applied = new boolean[keys.size()];
+        for (int i = 0; i < applied.length; i++) {
+            applied[i] = markCompleted(keys.get(i).getId(), keys.get(i).getFencingToken(), results.get(i));
+        }
+        return applied;
+    }
+
+    /**
+     * Marks many PROCESSING keys as FAILED, each under its own fencing token.
+     *
+     * @return for each key, whether it was marked as failed
+     * @see #markFailed(Long, long)
+     */
+    default boolean[] markFailedAll(List<IdempotencyKey> keys) {
+        boolean[] applied = new boolean[keys.size()];
+        for (int i = 0; i < applied.length; i++) {
+            applied[i] = markFailed(keys.get(i).getId(), keys.get(i).getFencingToken());
+        }
+        return applied;
+    }
+
+    /**
+     * Stores a COMPLETED result for a key regardless of its current state, creating the
+     * key if needed. Used for operations executed outside the idempotent flow.
+     */
+    void storeCompleted(String operationType, String operationKey, EncodedResult result,
+                        LocalDateTime createdAt, LocalDateTime expiresAt);
+
+    /**
+     * Extends every PROCESSING lease held by {@code leaseOwner}.
+     *
+     * @return the number of renewed leases
+     */
+    int renewLeases(String leaseOwner, LocalDateTime leaseExpiresAt);
+
+    /**
+     * Fails every PROCESSING key whose lease has expired, incrementing its fencing token.
+     *
+     * @param now keys whose lease expired before this instant are recovered
+     * @param unleasedCutoff creation cutoff for keys without a lease
+     * @return the number of recovered keys
+     */
+    int recoverExpiredLeases(LocalDateTime now, LocalDateTime unleasedCutoff);
+
+    /**
+     * Counts the keys currently in a status (for example the PROCESSING backlog).
+     *
+     * @return the number of keys
+     */
+    long countByStatus(IdempotencyKey.IdempotencyStatus status);
+
+    /**
+     * Counts the keys that expired before {@code now}, stopping at {@code limit} so that
+     * sampling a large backlog stays cheap.
+     *
+     * @return the number of expired keys, at most {@code limit}
+     */
+    long countExpired(LocalDateTime now, int limit);
+
+    /**
+     * Removes keys that expired before {@code now}.
+     *
+     * @return the number of removed keys (may be an estimate)
+     */
+    long removeExpired(LocalDateTime now);
+
+    /**
+     * Removes keys of one shard that expired before {@code now}, so several nodes can clean
+     * up disjoint parts of the store at once. How keys are split between shards is up to
+     * the backend, but a key always belongs to the same shard.
+     *
+     * <p>Backends that cannot split their cleanup may do all of it for shard 0 and return
+     * 0 for the others.</p>
+     *
+     * @param shard the shard to clean up, from 0 to {@code shardCount - 1}
+     * @param shardCount the number of shards
+     * @return the number of removed keys (may be an estimate)
+     */
+    long removeExpired(LocalDateTime now, int shard, int shardCount);
+
+    /**
+     * Removes the given keys if they expired before {@code now}; keys whose expiry was
+     * extended since (for example by a takeover) are kept. Used to remove the keys a node
+     * created as they expire, instead of waiting for {@link #removeExpired(LocalDateTime)}.
+     *
+     * <p>Backends that remove expired keys more cheaply in bulk may leave them to
+     * {@link #removeExpired(LocalDateTime)} and return 0.</p>
+     *
+     * @param ids ids of keys whose expiry has passed
+     * @return the number of removed keys
+     */
+    long removeExpired(Collection<Long> ids, LocalDateTime now);
+
+    /**
+     * Number of round-trips (SQL statements or in-memory operations) issued so far,
+     * used to derive the cost per idempotent operation.
+     */
+    long getStatementCount();
+}
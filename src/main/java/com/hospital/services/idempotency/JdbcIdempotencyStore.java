@@ -0,0 +1,144 @@
+package com.hospital.services.idempotency;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link IdempotencyStore} backed by the shared {@code idempotency_keys} table.
+ *
+ * <p>All key operations are single SQL statements issued by
+ * {@link IdempotencyKeyJdbcRepository}, without the entity loading, dirty checking and
+ * flushes of the JPA repository; batches of keys are claimed with multi-row statements and
+ * their outcomes written with JDBC batches. Expired keys are removed by dropping expiry partitions
+ * when the table is partitioned ({@link IdempotencyPartitionManager}) and by chunked
+ * deletes otherwise ({@link IdempotencyCleanupEngine}).</p>
+ *
+ * <p>This is the default backend and the only one suitable for multi-node deployments.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Component
+@ConditionalOnProperty(name = "idempotency.store.type", havingValue = "jdbc", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private final IdempotencyKeyJdbcRepository claimRepository;
+    private final IdempotencyPartitionManager partitionManager;
+    private final IdempotencyCleanupEngine cleanupEngine;
+
+    @Override
+    public IdempotencyClaim claim(String operationType, String operationKey,
+                                  String processInstanceId, String executionId,
+                                  LocalDateTime createdAt, LocalDateTime expiresAt,
+                                  String leaseOwner, LocalDateTime leaseExpiresAt) {
+        return claimRepository.claim(operationType, operationKey, processInstanceId, executionId,
+            createdAt, expiresAt, leaseOwner, leaseExpiresAt);
+    }
+
+    @Override
+    public Map<String, IdempotencyClaim> claimAll(String operationType, Collection<String> operationKeys,
+                                                  String processInstanceId, String executionId,
+                                                  LocalDateTime createdAt, LocalDateTime expiresAt,
+                                                  String leaseOwner, LocalDateTime leaseExpiresAt) {
+        return claimRepository.claimAll(operationType, operationKeys, processInstanceId, executionId,
+            createdAt, expiresAt, leaseOwner, leaseExpiresAt);
+    }
+
+    @Override
+    public IdempotencyClaim find(String operationType, String operationKey) {
+        return claimRepository.find(operationType, operationKey);
+    }
+
+    @Override
+    public boolean reclaim(IdempotencyKey existing, String processInstanceId, String executionId,
+                           LocalDateTime createdAt, LocalDateTime expiresAt,
+                           String leaseOwner, LocalDateTime leaseExpiresAt) {
+        return claimRepository.reclaim(existing, processInstanceId, executionId, createdAt, expiresAt,
+            leaseOwner, leaseExpiresAt);
+    }
+
+    @Override
+    public boolean markCompleted(Long id, long fencingToken, EncodedResult result) {
+        return claimRepository.markCompleted(id, fencingToken, result);
+    }
+
+    @Override
+    public boolean markFailed(Long id, long fencingToken) {
+        return claimRepository.markFailed(id, fencingToken);
+    }
+
+    @Override
+    public boolean[] markCompletedAll(List<IdempotencyKey> keys, List<EncodedResult> results) {
+        return claimRepository.markCompletedAll(keys, results);
+    }
+
+    @Override
+    public boolean[] markFailedAll(List<IdempotencyKey> keys) {
+        return claimRepository.markFailedAll(keys);
+    }
+
+    @Override
+    public void storeCompleted(String operationType, String operationKey, EncodedResult result,
+                               LocalDateTime createdAt, LocalDateTime expiresAt) {
+        claimRepository.storeCompleted(operationType, operationKey, result, createdAt, expiresAt);
+    }
+
+    @Override
+    public int renewLeases(String leaseOwner, LocalDateTime leaseExpiresAt) {
+        return claimRepository.renewLeases(leaseOwner, leaseExpiresAt);
+    }
+
+    @Override
+    public int recoverExpiredLeases(LocalDateTime now, LocalDateTime unleasedCutoff) {
+        return claimRepository.recoverExpiredLeases(now, unleasedCutoff);
+    }
+
+    @Override
+    public long countByStatus(IdempotencyKey.IdempotencyStatus status) {
+        return claimRepository.countByStatus(status);
+    }
+
+    @Override
+    public long countExpired(LocalDateTime now, int limit) {
+        return claimRepository.countExpired(now, limit);
+    }
+
+    @Override
+    public long removeExpired(LocalDateTime now) {
+        if (partitionManager.isEnabled()) {
+            return partitionManager.maintain();
+        }
+        return cleanupEngine.run(now).getDeleted();
+    }
+
+    @Override
+    public long removeExpired(LocalDateTime now, int shard, int shardCount) {
+        if (partitionManager.isEnabled()) {
+            // Dropping a partition removes every shard at once
+            return shard == 0 ? partitionManager.maintain() : 0;
+        }
+        return cleanupEngine.run(now, shard, shardCount).getDeleted();
+    }
+
+    @Override
+    public long removeExpired(Collection<Long> ids, LocalDateTime now) {
+        if (partitionManager.isEnabled()) {
+            // Left to the partition manager: dated partitions are dropped whole, and expired
+            // rows of the DEFAULT partition deleted in chunks
+            return 0;
+        }
+        return claimRepository.deleteExpired(ids, now);
+    }
+
+    @Override
+    public long getStatementCount() {
+        return claimRepository.getStatementCount();
+    }
+}
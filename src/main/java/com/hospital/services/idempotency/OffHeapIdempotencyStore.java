@@ -0,0 +1,647 @@
+package com.hospital.services.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link IdempotencyStore} that keeps keys in direct (off-heap) memory of this JVM.
+ *
+ * <p>Intended for single-node deployments and tests: keys are not shared between
+ * instances and do not survive a restart. Keys and stored results are serialized into
+ * {@code idempotency.store.off-heap.max-size} of direct memory, split into 16 segments
+ * with their own lock, so large result payloads add no garbage-collection pressure.
+ * Only a small index (composite key to id, id to record offset) lives on the heap.</p>
+ *
+ * <p>Each segment is an append-only arena. A record is rewritten in place when the new
+ * version fits, otherwise it is appended and the old copy becomes dead space; live
+ * records are slid together once the arena fills up. Claims fail with an
+ * {@link IllegalStateException} when a segment is full of live records.</p>
+ *
+ * <p>Record layout: {@code capacity:int, id:long, version:long, fencingToken:long,
+ * status:byte, createdAt:long, expiresAt:long, leaseExpiresAt:long} (timestamps as UTC
+ * epoch nanoseconds), followed by length-prefixed UTF-8 fields {@code leaseOwner,
+ * operationType, operationKey, processInstanceId, executionId, resultType, result}
+ * and the length-prefixed {@code resultData}.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "idempotency.store.type", havingValue = "off-heap")
+public class OffHeapIdempotencyStore implements IdempotencyStore {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private static final int CAPACITY_OFFSET = 0;
+    private static final int ID_OFFSET = 4;
+    private static final int VERSION_OFFSET = 12;
+    private static final int TOKEN_OFFSET = 20;
+    private static final int STATUS_OFFSET = 28;
+    private static final int CREATED_OFFSET = 29;
+    private static final int EXPIRES_OFFSET = 37;
+    private static final int LEASE_EXPIRES_OFFSET = 45;
+    private static final int LEASE_OWNER_OFFSET = 53;
+
+    /**
+     * Encodes an absent timestamp or fencing token.
+     */
+    private static final long NONE = Long.MIN_VALUE;
+
+    private static final IdempotencyKey.IdempotencyStatus[] STATUSES = IdempotencyKey.IdempotencyStatus.values();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder operationCount = new LongAdder();
+
+    public OffHeapIdempotencyStore(@Value("${idempotency.store.off-heap.max-size:64MB}") DataSize maxSize) {
+        long segmentBytes = maxSize.toBytes() / SEGMENTS;
+        if (segmentBytes < 1024 || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("idempotency.store.off-heap.max-size out of range: " + maxSize);
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(i, (int) segmentBytes);
+        }
+        log.info("Off-heap idempotency store allocated {} in {} segments", maxSize, SEGMENTS);
+    }
+
+    @Override
+    public IdempotencyClaim claim(String operationType, String operationKey,
+                                  String processInstanceId, String executionId,
+                                  LocalDateTime createdAt, LocalDateTime expiresAt,
+                                  String leaseOwner, LocalDateTime leaseExpiresAt) {
+        String indexKey = indexKey(operationType, operationKey);
+        Segment segment = segmentFor(indexKey);
+        operationCount.increment();
+        segment.lock.lock();
+        try {
+            Long id = segment.idsByKey.get(indexKey);
+            if (id != null) {
+                return IdempotencyClaim.existing(segment.read(segment.offsetsById.get(id)));
+            }
+
+            IdempotencyKey key = IdempotencyKey.builder()
+                .id(nextId(segment))
+                .operationType(operationType)
+                .operationKey(operationKey)
+                .processInstanceId(processInstanceId)
+                .executionId(executionId)
+                .status(IdempotencyKey.IdempotencyStatus.PROCESSING)
+                .createdAt(createdAt)
+                .expiresAt(expiresAt)
+                .leaseOwner(leaseOwner)
+                .leaseExpiresAt(leaseExpiresAt)
+                .fencingToken(1L)
+                .version(0L)
+                .build();
+            segment.write(key, null);
+            segment.idsByKey.put(indexKey, key.getId());
+            return IdempotencyClaim.claimed(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public IdempotencyClaim find(String operationType, String operationKey) {
+        String indexKey = indexKey(operationType, operationKey);
+        Segment segment = segmentFor(indexKey);
+        operationCount.increment();
+        segment.lock.lock();
+        try {
+            Long id = segment.idsByKey.get(indexKey);
+            return id != null ? IdempotencyClaim.existing(segment.read(segment.offsetsById.get(id))) : null;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean reclaim(IdempotencyKey existing, String processInstanceId, String executionId,
+                           LocalDateTime createdAt, LocalDateTime expiresAt,
+                           String leaseOwner, LocalDateTime leaseExpiresAt) {
+        Segment segment = segmentFor(existing.getId());
+        operationCount.increment();
+        segment.lock.lock();
+        try {
+            Integer offset = segment.offsetsById.get(existing.getId());
+            if (offset == null || segment.arena.getLong(offset + VERSION_OFFSET) != version(existing)) {
+                return false;
+            }
+            IdempotencyKey.IdempotencyStatus status = segment.status(offset);
+            if (status != IdempotencyKey.IdempotencyStatus.PENDING
+                    && status != IdempotencyKey.IdempotencyStatus.FAILED) {
+                return false;
+            }
+
+            IdempotencyKey key = segment.read(offset);
+            long fencingToken = (key.getFencingToken() != null ? key.getFencingToken() : 0L) + 1;
+            key.markProcessing();
+            key.setResult(null);
+            key.setResultType(null);
+            key.setResultData(null);
+            key.setProcessInstanceId(processInstanceId);
+            key.setExecutionId(executionId);
+            key.setCreatedAt(createdAt);
+            key.setExpiresAt(expiresAt);
+            key.setLeaseOwner(leaseOwner);
+            key.setLeaseExpiresAt(leaseExpiresAt);
+            key.setFencingToken(fencingToken);
+            key.setVersion(key.getVersion() + 1);
+            segment.write(key, offset);
+
+            existing.markProcessing();
+            existing.setProcessInstanceId(processInstanceId);
+            existing.setExecutionId(executionId);
+            existing.setCreatedAt(createdAt);
+            existing.setExpiresAt(expiresAt);
+            existing.setLeaseOwner(leaseOwner);
+            existing.setLeaseExpiresAt(leaseExpiresAt);
+            existing.setFencingToken(fencingToken);
+            existing.setVersion(key.getVersion());
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean markCompleted(Long id, long fencingToken, EncodedResult result) {
+        Segment segment = segmentFor(id);
+        operationCount.increment();
+        segment.lock.lock();
+        try {
+            Integer offset = segment.offsetsById.get(id);
+            if (!segment.isProcessingUnder(offset, fencingToken)) {
+                return false;
+            }
+            IdempotencyKey key = segment.read(offset);
+            key.markCompleted(result);
+            key.setLeaseOwner(null);
+            key.setLeaseExpiresAt(null);
+            key.setVersion(key.getVersion() + 1);
+            segment.write(key, offset);
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean markFailed(Long id, long fencingToken) {
+        Segment segment = segmentFor(id);
+        operationCount.increment();
+        segment.lock.lock();
+        try {
+            Integer offset = segment.offsetsById.get(id);
+            if (!segment.isProcessingUnder(offset, fencingToken)) {
+                return false;
+            }
+            IdempotencyKey key = segment.read(offset);
+            key.markFailed();
+            key.setLeaseOwner(null);
+            key.setLeaseExpiresAt(null);
+            key.setVersion(key.getVersion() + 1);
+            segment.write(key, offset);
+            return true;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void storeCompleted(String operationType, String operationKey, EncodedResult result,
+                               LocalDateTime createdAt, LocalDateTime expiresAt) {
+        String indexKey = indexKey(operationType, operationKey);
+        Segment segment = segmentFor(indexKey);
+        operationCount.increment();
+        segment.lock.lock();
+        try {
+            Long id = segment.idsByKey.get(indexKey);
+            if (id != null) {
+                Integer offset = segment.offsetsById.get(id);
+                IdempotencyKey key = segment.read(offset);
+                key.markCompleted(result);
+                key.setLeaseOwner(null);
+                key.setLeaseExpiresAt(null);
+                key.setVersion(key.getVersion() + 1);
+                segment.write(key, offset);
+                return;
+            }
+
+            IdempotencyKey key = IdempotencyKey.builder()
+                .id(nextId(segment))
+                .operationType(operationType)
+                .operationKey(operationKey)
+                .createdAt(createdAt)
+                .expiresAt(expiresAt)
+                .fencingToken(1L)
+                .version(0L)
+                .build();
+            key.markCompleted(result);
+            segment.write(key, null);
+            segment.idsByKey.put(indexKey, key.getId());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public int renewLeases(String leaseOwner, LocalDateTime leaseExpiresAt) {
+        byte[] owner = leaseOwner.getBytes(StandardCharsets.UTF_8);
+        long expiry = toNanos(leaseExpiresAt);
+        operationCount.increment();
+        int renewed = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                for (int offset : segment.offsetsById.values()) {
+                    if (segment.status(offset) == IdempotencyKey.IdempotencyStatus.PROCESSING
+                            && segment.leaseOwnerEquals(offset, owner)) {
+                        segment.arena.putLong(offset + LEASE_EXPIRES_OFFSET, expiry);
+                        renewed++;
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return renewed;
+    }
+
+    @Override
+    public int recoverExpiredLeases(LocalDateTime now, LocalDateTime unleasedCutoff) {
+        long nowNanos = toNanos(now);
+        long cutoffNanos = toNanos(unleasedCutoff);
+        operationCount.increment();
+        int recovered = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                for (Integer offset : segment.offsetsById.values().toArray(new Integer[0])) {
+                    if (segment.status(offset) != IdempotencyKey.IdempotencyStatus.PROCESSING) {
+                        continue;
+                    }
+                    long leaseExpiry = segment.arena.getLong(offset + LEASE_EXPIRES_OFFSET);
+                    boolean expired = leaseExpiry != NONE
+                        ? leaseExpiry < nowNanos
+                        : segment.arena.getLong(offset + CREATED_OFFSET) < cutoffNanos;
+                    if (expired) {
+                        IdempotencyKey key = segment.read(offset);
+                        key.markFailed();
+                        key.setLeaseOwner(null);
+                        key.setLeaseExpiresAt(null);
+                        key.setFencingToken((key.getFencingToken() != null ? key.getFencingToken() : 0L) + 1);
+                        key.setVersion(key.getVersion() + 1);
+                        segment.write(key, offset);
+                        recovered++;
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return recovered;
+    }
+
+    @Override
+    public long countByStatus(IdempotencyKey.IdempotencyStatus status) {
+        operationCount.increment();
+        long count = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                for (Integer offset : segment.offsetsById.values()) {
+                    if (segment.status(offset) == status) {
+                        count++;
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long countExpired(LocalDateTime now, int limit) {
+        long nowNanos = toNanos(now);
+        operationCount.increment();
+        long count = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                for (Integer offset : segment.offsetsById.values()) {
+                    if (count >= limit) {
+                        return count;
+                    }
+                    if (segment.arena.getLong(offset + EXPIRES_OFFSET) < nowNanos) {
+                        count++;
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long removeExpired(LocalDateTime now) {
+        return removeExpired(now, 0, 1);
+    }
+
+    @Override
+    public long removeExpired(LocalDateTime now, int shard, int shardCount) {
+        long nowNanos = toNanos(now);
+        operationCount.increment();
+        long removed = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                Iterator<Map.Entry<Long, Integer>> entries = segment.offsetsById.entrySet().iterator();
+                while (entries.hasNext()) {
+                    Map.Entry<Long, Integer> entry = entries.next();
+                    int offset = entry.getValue();
+                    if (Math.floorMod(entry.getKey(), shardCount) == shard
+                            && segment.arena.getLong(offset + EXPIRES_OFFSET) < nowNanos) {
+                        IdempotencyKey key = segment.read(offset);
+                        segment.idsByKey.remove(indexKey(key.getOperationType(), key.getOperationKey()));
+                        segment.deadBytes += 4 + segment.arena.getInt(offset + CAPACITY_OFFSET);
+                        entries.remove();
+                        removed++;
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public long removeExpired(Collection<Long> ids, LocalDateTime now) {
+        long nowNanos = toNanos(now);
+        operationCount.increment();
+        long removed = 0;
+        for (Long id : ids) {
+            Segment segment = segmentFor(id);
+            segment.lock.lock();
+            try {
+                Integer offset = segment.offsetsById.get(id);
+                if (offset != null && segment.arena.getLong(offset + EXPIRES_OFFSET) < nowNanos) {
+                    IdempotencyKey key = segment.read(offset);
+                    segment.idsByKey.remove(indexKey(key.getOperationType(), key.getOperationKey()));
+                    segment.deadBytes += 4 + segment.arena.getInt(offset + CAPACITY_OFFSET);
+                    segment.offsetsById.remove(id);
+                    removed++;
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public long getStatementCount() {
+        return operationCount.sum();
+    }
+
+    /**
+     * Number of keys currently held.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.offsetsById.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private long nextId(Segment segment) {
+        return (sequence.incrementAndGet() << SEGMENT_BITS) | segment.index;
+    }
+
+    private Segment segmentFor(String indexKey) {
+        int hash = indexKey.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private Segment segmentFor(Long id) {
+        return segments[(int) (id & (SEGMENTS - 1))];
+    }
+
+    private static String indexKey(String operationType, String operationKey) {
+        return operationType + '\u0000' + operationKey;
+    }
+
+    private static long version(IdempotencyKey key) {
+        return key.getVersion() != null ? key.getVersion() : 0L;
+    }
+
+    private static long toNanos(LocalDateTime time) {
+        return time == null ? NONE : time.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + time.getNano();
+    }
+
+    private static LocalDateTime fromNanos(long nanos) {
+        if (nanos == NONE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+            (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    /**
+     * One lock-protected arena of records plus its heap index.
+     */
+    private static final class Segment {
+
+        final int index;
+        final ReentrantLock lock = new ReentrantLock();
+        final ByteBuffer arena;
+        final Map<String, Long> idsByKey = new HashMap<>();
+        final Map<Long, Integer> offsetsById = new HashMap<>();
+        int writePosition;
+        int deadBytes;
+
+        Segment(int index, int capacity) {
+            this.index = index;
+            this.arena = ByteBuffer.allocateDirect(capacity);
+        }
+
+        IdempotencyKey.IdempotencyStatus status(int offset) {
+            return STATUSES[arena.get(offset + STATUS_OFFSET)];
+        }
+
+        boolean isProcessingUnder(Integer offset, long fencingToken) {
+            return offset != null
+                && status(offset) == IdempotencyKey.IdempotencyStatus.PROCESSING
+                && arena.getLong(offset + TOKEN_OFFSET) == fencingToken;
+        }
+
+        boolean leaseOwnerEquals(int offset, byte[] owner) {
+            int length = arena.getInt(offset + LEASE_OWNER_OFFSET);
+            if (length != owner.length) {
+                return false;
+            }
+            int start = offset + LEASE_OWNER_OFFSET + 4;
+            for (int i = 0; i < length; i++) {
+                if (arena.get(start + i) != owner[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        IdempotencyKey read(int offset) {
+            long fencingToken = arena.getLong(offset + TOKEN_OFFSET);
+            ByteBuffer fields = arena.duplicate();
+            fields.position(offset + LEASE_OWNER_OFFSET);
+            String leaseOwner = readString(fields);
+
+            return IdempotencyKey.builder()
+                .id(arena.getLong(offset + ID_OFFSET))
+                .version(arena.getLong(offset + VERSION_OFFSET))
+                .fencingToken(fencingToken != NONE ? fencingToken : null)
+                .status(status(offset))
+                .createdAt(fromNanos(arena.getLong(offset + CREATED_OFFSET)))
+                .expiresAt(fromNanos(arena.getLong(offset + EXPIRES_OFFSET)))
+                .leaseExpiresAt(fromNanos(arena.getLong(offset + LEASE_EXPIRES_OFFSET)))
+                .leaseOwner(leaseOwner)
+                .operationType(readString(fields))
+                .operationKey(readString(fields))
+                .processInstanceId(readString(fields))
+                .executionId(readString(fields))
+                .resultType(readString(fields))
+                .result(readString(fields))
+                .resultData(readBytes(fields))
+                .build();
+        }
+
+        /**
+         * Writes a record, in place over {@code currentOffset} when it fits.
+         */
+        void write(IdempotencyKey key, Integer currentOffset) {
+            byte[] record = encode(key);
+            if (currentOffset != null) {
+                int capacity = arena.getInt(currentOffset + CAPACITY_OFFSET);
+                if (record.length - 4 <= capacity) {
+                    arena.put(currentOffset + 4, record, 4, record.length - 4);
+                    return;
+                }
+            }
+
+            int released = currentOffset != null ? 4 + arena.getInt(currentOffset + CAPACITY_OFFSET) : 0;
+            if (writePosition + record.length > arena.capacity()) {
+                if (writePosition - deadBytes - released + record.length > arena.capacity()) {
+                    throw new IllegalStateException("Off-heap idempotency store segment " + index
+                        + " is full (" + arena.capacity() + " bytes); increase idempotency.store.off-heap.max-size");
+                }
+                if (currentOffset != null) {
+                    offsetsById.remove(key.getId());
+                    released = 0;
+                }
+                compact();
+            }
+
+            arena.put(writePosition, record);
+            offsetsById.put(key.getId(), writePosition);
+            writePosition += record.length;
+            deadBytes += released;
+        }
+
+        /**
+         * Slides live records to the start of the arena, in offset order.
+         */
+        private void compact() {
+            int[] offsets = offsetsById.values().stream().mapToInt(Integer::intValue).toArray();
+            Arrays.sort(offsets);
+            int target = 0;
+            for (int offset : offsets) {
+                int length = 4 + arena.getInt(offset + CAPACITY_OFFSET);
+                if (offset != target) {
+                    byte[] copy = new byte[length];
+                    arena.get(offset, copy);
+                    arena.put(target, copy);
+                    offsetsById.put(arena.getLong(target + ID_OFFSET), target);
+                }
+                target += length;
+            }
+            writePosition = target;
+            deadBytes = 0;
+        }
+
+        private static byte[] encode(IdempotencyKey key) {
+            byte[][] strings = {
+                utf8(key.getLeaseOwner()), utf8(key.getOperationType()), utf8(key.getOperationKey()),
+                utf8(key.getProcessInstanceId()), utf8(key.getExecutionId()), utf8(key.getResultType()),
+                utf8(key.getResult()), key.getResultData()
+            };
+            int length = LEASE_OWNER_OFFSET;
+            for (byte[] field : strings) {
+                length += 4 + (field != null ? field.length : 0);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            buffer.putInt(length - 4)
+                .putLong(key.getId())
+                .putLong(version(key))
+                .putLong(key.getFencingToken() != null ? key.getFencingToken() : NONE)
+                .put((byte) Objects.requireNonNull(key.getStatus()).ordinal())
+                .putLong(toNanos(key.getCreatedAt()))
+                .putLong(toNanos(key.getExpiresAt()))
+                .putLong(toNanos(key.getLeaseExpiresAt()));
+            for (byte[] field : strings) {
+                if (field == null) {
+                    buffer.putInt(-1);
+                } else {
+                    buffer.putInt(field.length).put(field);
+                }
+            }
+            return buffer.array();
+        }
+
+        private static byte[] utf8(String value) {
+            return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+        }
+
+        private static String readString(ByteBuffer fields) {
+            byte[] bytes = readBytes(fields);
+            return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+        }
+
+        private static byte[] readBytes(ByteBuffer fields) {
+            int length = fields.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            fields.get(bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.hospital.services.idempotency;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel of deadlines.
+ *
+ * <p>Deadlines are kept in {@code levels} wheels of {@code wheelSize} buckets. A bucket
+ * of level 0 spans one tick, a bucket of level {@code n} spans {@code wheelSize^n} ticks;
+ * a deadline is placed in the lowest level whose range covers it and moves down a level
+ * each time the wheel above it turns over. Scheduling and cancelling are O(1), and each
+ * tick only touches the entries that are due, however many deadlines are pending - unlike
+ * a sorted queue or a periodic range scan.</p>
+ *
+ * <p>Entries never fire early; they fire on the first {@link #advance(long)} at least one
+ * tick past their deadline. Deadlines beyond the range of the top level are parked in it
+ * and re-placed each time their bucket turns over.</p>
+ *
+ * <p>The wheel does not run a thread: its owner calls {@link #advance(long)}, typically
+ * once per tick. All methods are thread-safe.</p>
+ *
+ * @param <T> the payload of a deadline
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public final class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final Bucket<T>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tick the resolution of the wheel
+     * @param wheelSize buckets per level, rounded up to a power of two
+     * @param levels number of levels; the range of the wheel is {@code tick * wheelSize^levels}
+     * @param startMillis the current time, in epoch milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(Duration tick, int wheelSize, int levels, long startMillis) {
+        if (tick.toMillis() <= 0 || wheelSize < 2 || levels < 1) {
+            throw new IllegalArgumentException("Invalid timing wheel: tick=" + tick
+                + ", wheelSize=" + wheelSize + ", levels=" + levels);
+        }
+        this.tickMillis = tick.toMillis();
+        this.bits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+        if ((long) bits * levels >= 63) {
+            throw new IllegalArgumentException("Timing wheel range overflows: wheelSize=" + wheelSize
+                + ", levels=" + levels);
+        }
+        this.mask = (1 << bits) - 1;
+        this.wheels = new Bucket[levels][1 << bits];
+        for (Bucket<T>[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Bucket<>();
+            }
+        }
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * Schedules a deadline. A deadline that has already passed fires on the next tick.
+     *
+     * @param payload what to hand back when the deadline is reached
+     * @param deadlineMillis the deadline, in epoch milliseconds
+     * @return a handle to cancel the deadline
+     */
+    public synchronized Timeout<T> schedule(T payload, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(payload, deadlineMillis, -Math.floorDiv(-deadlineMillis, tickMillis));
+        place(timeout, currentTick + 1);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancels a pending deadline.
+     *
+     * @return true if the deadline was pending; false if it already fired or was cancelled
+     */
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.bucket == null) {
+            return false;
+        }
+        timeout.bucket.remove(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMillis} and removes the deadlines reached.
+     *
+     * @param nowMillis the current time, in epoch milliseconds
+     * @return the payloads of the expired deadlines, in deadline order by tick
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        List<T> expired = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            Bucket<T> bucket = wheels[0][(int) (currentTick & mask)];
+            for (Timeout<T> timeout = bucket.detach(); timeout != null; ) {
+                Timeout<T> next = timeout.next;
+                timeout.next = null;
+                if (timeout.deadlineTick <= currentTick) {
+                    expired.add(timeout.payload);
+                    size--;
+                } else {
+                    // Parked beyond the range of the wheel
+                    place(timeout, currentTick + 1);
+                }
+                timeout = next;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Number of pending deadlines.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Time covered by one bucket of the lowest level.
+     */
+    public Duration getTick() {
+        return Duration.ofMillis(tickMillis);
+    }
+
+    /**
+     * Re-places the entries of every upper-level bucket whose window starts at the
+     * current tick, highest level first so that entries cascading through several levels
+     * reach level 0 in the same tick.
+     */
+    private void cascade() {
+        for (int level = wheels.length - 1; level >= 1; level--) {
+            long shift = (long) bits * level;
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                continue;
+            }
+            Bucket<T> bucket = wheels[level][(int) ((currentTick >>> shift) & mask)];
+            for (Timeout<T> timeout = bucket.detach(); timeout != null; ) {
+                Timeout<T> next = timeout.next;
+                timeout.next = null;
+                place(timeout, currentTick);
+                timeout = next;
+            }
+        }
+    }
+
+    private void place(Timeout<T> timeout, long earliestTick) {
+        long tick = Math.max(timeout.deadlineTick, earliestTick);
+        long distance = tick - currentTick;
+        int level = 0;
+        while (level < wheels.length - 1 && distance >= 1L << ((long) bits * (level + 1))) {
+            level++;
+        }
+        wheels[level][(int) ((tick >>> ((long) bits * level)) & mask)].add(timeout);
+    }
+
+    /**
+     * A scheduled deadline.
+     */
+    public static final class Timeout<T> {
+
+        private final T payload;
+        private final long deadlineMillis;
+        private final long deadlineTick;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T payload, long deadlineMillis, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+    }
+
+    /**
+     * Doubly-linked list of the deadlines in one bucket.
+     */
+    private static final class Bucket<T> {
+
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        /**
+         * Empties the bucket, returning its former head; entries keep their {@code next} links.
+         */
+        Timeout<T> detach() {
+            Timeout<T> first = head;
+            for (Timeout<T> timeout = first; timeout != null; timeout = timeout.next) {
+                timeout.bucket = null;
+                timeout.prev = null;
+            }
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.hospital.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache with least-recently-used eviction and a deadline per entry.
+ *
+ * <p>Least-recently-used entries are evicted beyond {@code maxSize}, and an entry is no
+ * longer served once its {@code validUntil} (epoch millisecond) has passed; expired
+ * entries are removed when looked up, or all at once by {@link #evictExpired()}. A
+ * {@code maxSize} of 0 disables the cache: nothing is stored and every lookup misses
+ * without being counted.</p>
+ *
+ * <p>All operations synchronize on one access-ordered map, which is cheap next to the
+ * database round-trips or remote calls the callers save. Hits, misses and evictions are
+ * counted without locking.</p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public final class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Whether entries are stored at all, i.e. {@code maxSize} is above 0.
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * The cached value, or {@code null} on a miss.
+     */
+    public V get(K key) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.validUntil <= now) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * Caches {@code value} until {@code validUntil}, replacing any entry of {@code key}.
+     *
+     * @param validUntil epoch millisecond at which the entry stops being served
+     * @return true if the value was cached, false if the cache is disabled or
+     *         {@code validUntil} has already passed
+     */
+    public boolean put(K key, V value, long validUntil) {
+        if (maxSize <= 0 || validUntil <= System.currentTimeMillis()) {
+            return false;
+        }
+        Entry<V> entry = new Entry<>(value, validUntil);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the entry of {@code key}, if any.
+     */
+    public void remove(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Evicts the entry of {@code key} if it still holds {@code expected}, e.g. at the end
+     * of its validity, unless it has been replaced since.
+     *
+     * @return true if the entry was evicted
+     */
+    public boolean evict(K key, V expected) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null || !Objects.equals(entry.value, expected)) {
+                return false;
+            }
+            entries.remove(key);
+        }
+        evictions.increment();
+        return true;
+    }
+
+    /**
+     * Evicts every entry whose validity has passed.
+     *
+     * @return the number of evicted entries
+     */
+    public int evictExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Entry<V>> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().validUntil <= now) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        evictions.add(removed);
+        return removed;
+    }
+
+    /**
+     * Evicts all entries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            evictions.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Ratio of hits to lookups since startup.
+     *
+     * @return hit ratio between 0 and 1, or 0 if nothing was looked up
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long validUntil;
+
+        private Entry(V value, long validUntil) {
+            this.value = value;
+            this.validUntil = validUntil;
+        }
+    }
+}
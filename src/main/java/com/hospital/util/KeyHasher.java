@@ -0,0 +1,253 @@
+package com.hospital.util;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Allocation-lean SHA-256 key derivation, shared by the idempotency keys and the cache keys
+ * of the coding services.
+ *
+ * <p>Key material is fed straight into a per-thread {@link MessageDigest} instead of being
+ * concatenated into an intermediate string first. Strings are UTF-8 encoded into a small
+ * reusable buffer, integers are written digit by digit, and the digest is hex-encoded
+ * through a lookup table. The bytes hashed are exactly the UTF-8 bytes of the equivalent
+ * concatenated string, so keys are identical to those produced by hashing that string.</p>
+ *
+ * <p><strong>Usage Example:</strong></p>
+ * <pre>
+ * String key = KeyHasher.start()
+ *     .append("patient:").append(patientId)
+ *     .append("|auth:").append(authorizationNumber)
+ *     .toHex();
+ * </pre>
+ *
+ * <p>An instance is bound to the calling thread between {@link #start()} and
+ * {@link #toHex()}/{@link #toBytes()} and must not be shared. {@link #start()} always
+ * resets the thread's instance, so a key abandoned by an exception leaves nothing behind;
+ * the inputs of a key must therefore be computed before it is started. The one nesting
+ * allowed is a {@code toString()} reached through {@link #append(Object)} that derives a
+ * key itself, which gets a fresh instance.</p>
+ *
+ * @author Hospital Revenue Cycle System
+ * @version 1.0
+ */
+public final class KeyHasher {
+
+    /**
+     * Length in bytes of a raw (binary) key.
+     */
+    public static final int KEY_BYTES = 32;
+
+    /**
+     * Length in characters of a hex-encoded key.
+     */
+    public static final int KEY_HEX_LENGTH = KEY_BYTES * 2;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 512;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<KeyHasher> CURRENT =
+        ThreadLocal.withInitial(KeyHasher::new);
+
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] hash = new byte[KEY_BYTES];
+    private int position;
+    private boolean inUse;
+    private int callouts;
+
+    private KeyHasher() {
+        try {
+            this.digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 algorithm not available", e);
+        }
+    }
+
+    /**
+     * Starts a new key on the calling thread.
+     *
+     * @return a reset hasher; finish it with {@link #toHex()} or {@link #toBytes()}
+     */
+    public static KeyHasher start() {
+        KeyHasher hasher = CURRENT.get();
+        if (hasher.callouts > 0) {
+            // Key derived inside a toString() of a value being appended to this one
+            hasher = new KeyHasher();
+        }
+        hasher.inUse = true;
+        hasher.position = 0;
+        hasher.digest.reset();
+        return hasher;
+    }
+
+    /**
+     * Hashes a complete string, equivalent to {@code start().append(input).toHex()}.
+     *
+     * @param input the input string to hash
+     * @return the hexadecimal representation of the hash
+     */
+    public static String hashToHex(String input) {
+        return start().append(input).toHex();
+    }
+
+    /**
+     * Appends the UTF-8 bytes of a string; {@code null} is appended as {@code "null"}.
+     */
+    public KeyHasher append(String value) {
+        if (value == null) {
+            return appendAscii("null");
+        }
+
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (position > BUFFER_SIZE - 4) {
+                flush();
+            }
+
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate: replaced like String.getBytes(UTF_8) does
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends a single character.
+     */
+    public KeyHasher append(char value) {
+        if (value < 0x80) {
+            if (position == BUFFER_SIZE) {
+                flush();
+            }
+            buffer[position++] = (byte) value;
+            return this;
+        }
+        return append(String.valueOf(value));
+    }
+
+    /**
+     * Appends the decimal representation of a long, as {@link Long#toString(long)} would.
+     */
+    public KeyHasher append(long value) {
+        if (position > BUFFER_SIZE - 20) {
+            flush();
+        }
+        if (value == Long.MIN_VALUE) {
+            return appendAscii("-9223372036854775808");
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long remaining = value / 10; remaining != 0; remaining /= 10) {
+            digits++;
+        }
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        position = end;
+        return this;
+    }
+
+    /**
+     * Appends the representation of a double, as {@link Double#toString(double)} would.
+     */
+    public KeyHasher append(double value) {
+        return appendAscii(Double.toString(value));
+    }
+
+    /**
+     * Appends a value the way {@link String#valueOf(Object)} renders it, without
+     * intermediate strings for the common {@code String}, integral and {@code null} cases.
+     */
+    public KeyHasher append(Object value) {
+        if (value == null || value instanceof String) {
+            return append((String) value);
+        }
+        if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            return append(((Number) value).longValue());
+        }
+        String text;
+        callouts++;
+        try {
+            text = value.toString();
+        } finally {
+            callouts--;
+        }
+        return append(text);
+    }
+
+    /**
+     * Finishes the key and returns it as 64 lowercase hex characters.
+     */
+    public String toHex() {
+        finish();
+        char[] hex = new char[KEY_HEX_LENGTH];
+        for (int i = 0; i < KEY_BYTES; i++) {
+            int b = hash[i] & 0xFF;
+            hex[i * 2] = HEX[b >>> 4];
+            hex[i * 2 + 1] = HEX[b & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Finishes the key and returns its raw 32 bytes, e.g. for binary storage.
+     */
+    public byte[] toBytes() {
+        finish();
+        return hash.clone();
+    }
+
+    private KeyHasher appendAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            append(value.charAt(i));
+        }
+        return this;
+    }
+
+    private void flush() {
+        digest.update(buffer, 0, position);
+        position = 0;
+    }
+
+    private void finish() {
+        if (!inUse) {
+            throw new IllegalStateException("Key already finished; call start() for a new key");
+        }
+        flush();
+        try {
+            digest.digest(hash, 0, KEY_BYTES);
+        } catch (DigestException e) {
+            throw new IllegalStateException("Failed to finish key", e);
+        } finally {
+            inUse = false;
+        }
+    }
+}
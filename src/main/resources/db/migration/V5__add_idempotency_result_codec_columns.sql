@@ -0,0 +1,7 @@
+-- Typed, compact storage of idempotent operation results.
+-- result_type records the Java type of the result so replays decode into it;
+-- result_data holds the codec payload (Smile, deflated above the configured threshold).
+-- The legacy result column is kept for rows written before these columns existed.
+ALTER TABLE IF EXISTS idempotency_keys
+    ADD COLUMN IF NOT EXISTS result_type VARCHAR(255),
+    ADD COLUMN IF NOT EXISTS result_data BYTEA;
@@ -0,0 +1,141 @@
+-- Range-partition the idempotency tables by expiry day (PostgreSQL only).
+--
+-- Expired rows are removed by dropping whole daily partitions
+-- (IdempotencyPartitionManager) instead of bulk DELETEs, which avoids table
+-- bloat, long row locks and WAL spikes. Partitions are named
+-- <table>_pYYYYMMDD and cover [day, day + 1) of expires_at; a DEFAULT partition
+-- catches rows outside the pre-created range.
+--
+-- PostgreSQL cannot enforce a UNIQUE constraint that does not include the
+-- partition key, so (operation_type, operation_key) uniqueness of
+-- idempotency_keys is enforced by the claim statement under a transaction-level
+-- advisory lock (see IdempotencyKeyJdbcRepository). Existing rows are copied
+-- into the new tables. H2 (dev/test) keeps the plain tables.
+
+CREATE OR REPLACE FUNCTION create_daily_partitions(parent TEXT, first_day DATE, last_day DATE)
+RETURNS VOID AS $$
+DECLARE
+    day DATE := first_day;
+BEGIN
+    WHILE day <= last_day LOOP
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+            parent || '_p' || to_char(day, 'YYYYMMDD'), parent, day, day + 1);
+        day := day + 1;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- ============================================================================
+-- idempotency_keys
+-- ============================================================================
+
+ALTER TABLE IF EXISTS idempotency_keys RENAME TO idempotency_keys_unpartitioned;
+
+CREATE SEQUENCE IF NOT EXISTS idempotency_keys_partitioned_id_seq;
+
+CREATE TABLE idempotency_keys (
+    id BIGINT NOT NULL DEFAULT nextval('idempotency_keys_partitioned_id_seq'),
+    operation_type VARCHAR(100) NOT NULL,
+    operation_key VARCHAR(255) NOT NULL,
+    process_instance_id VARCHAR(64),
+    execution_id VARCHAR(64),
+    result TEXT,
+    result_type VARCHAR(255),
+    result_data BYTEA,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    version BIGINT,
+    PRIMARY KEY (id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+ALTER SEQUENCE idempotency_keys_partitioned_id_seq OWNED BY idempotency_keys.id;
+
+CREATE TABLE idempotency_keys_default PARTITION OF idempotency_keys DEFAULT;
+
+CREATE INDEX idx_idempotency_keys_p_operation ON idempotency_keys (operation_type, operation_key);
+CREATE INDEX idx_idempotency_keys_p_process_instance ON idempotency_keys (process_instance_id);
+CREATE INDEX idx_idempotency_keys_p_status_created ON idempotency_keys (status, created_at);
+
+DO $$
+DECLARE
+    first_day DATE := CURRENT_DATE;
+BEGIN
+    IF to_regclass('idempotency_keys_unpartitioned') IS NOT NULL THEN
+        EXECUTE 'SELECT COALESCE(MIN(expires_at)::date, CURRENT_DATE) FROM idempotency_keys_unpartitioned'
+            INTO first_day;
+        first_day := LEAST(first_day, CURRENT_DATE);
+    END IF;
+
+    PERFORM create_daily_partitions('idempotency_keys', first_day, CURRENT_DATE + 7);
+
+    IF to_regclass('idempotency_keys_unpartitioned') IS NOT NULL THEN
+        INSERT INTO idempotency_keys (id, operation_type, operation_key, process_instance_id,
+                                      execution_id, result, result_type, result_data, status,
+                                      created_at, expires_at, version)
+        SELECT id, operation_type, operation_key, process_instance_id,
+               execution_id, result, result_type, result_data, status,
+               created_at, expires_at, version
+        FROM idempotency_keys_unpartitioned;
+
+        PERFORM setval('idempotency_keys_partitioned_id_seq',
+                       (SELECT COALESCE(MAX(id), 0) + 1 FROM idempotency_keys), false);
+
+        DROP TABLE idempotency_keys_unpartitioned;
+    END IF;
+END;
+$$;
+
+COMMENT ON TABLE idempotency_keys IS 'Idempotency keys, range-partitioned by expiry day; expired days are dropped as whole partitions';
+
+-- ============================================================================
+-- idempotency_records
+-- ============================================================================
+
+ALTER TABLE idempotency_records RENAME TO idempotency_records_unpartitioned;
+ALTER TABLE idempotency_records_unpartitioned RENAME CONSTRAINT chk_status TO chk_status_unpartitioned;
+
+CREATE TABLE idempotency_records (
+    id BIGINT NOT NULL DEFAULT nextval('idempotency_records_id_seq'),
+    idempotency_key VARCHAR(255) NOT NULL,
+    operation_type VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    request_payload TEXT,
+    response_payload TEXT,
+    error_message TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    process_instance_id VARCHAR(100),
+    retry_count INTEGER DEFAULT 0,
+    PRIMARY KEY (id, expires_at),
+    CONSTRAINT chk_status CHECK (status IN ('PROCESSING', 'COMPLETED', 'FAILED'))
+) PARTITION BY RANGE (expires_at);
+
+CREATE TABLE idempotency_records_default PARTITION OF idempotency_records DEFAULT;
+
+-- Not unique: a unique index must include the partition key
+CREATE INDEX idx_idempotency_records_p_key ON idempotency_records (idempotency_key);
+CREATE INDEX idx_idempotency_records_p_operation_type ON idempotency_records (operation_type);
+CREATE INDEX idx_idempotency_records_p_status ON idempotency_records (status);
+CREATE INDEX idx_idempotency_records_p_process_instance_id ON idempotency_records (process_instance_id);
+
+DO $$
+DECLARE
+    first_day DATE;
+BEGIN
+    SELECT LEAST(COALESCE(MIN(expires_at)::date, CURRENT_DATE), CURRENT_DATE)
+        INTO first_day FROM idempotency_records_unpartitioned;
+
+    PERFORM create_daily_partitions('idempotency_records', first_day, CURRENT_DATE + 7);
+END;
+$$;
+
+INSERT INTO idempotency_records SELECT * FROM idempotency_records_unpartitioned;
+
+ALTER SEQUENCE idempotency_records_id_seq OWNED BY idempotency_records.id;
+DROP TABLE idempotency_records_unpartitioned;
+
+COMMENT ON TABLE idempotency_records IS 'Tracks operation idempotency, range-partitioned by expiry day';
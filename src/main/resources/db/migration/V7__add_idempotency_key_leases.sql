@@ -0,0 +1,11 @@
+-- Lease model for PROCESSING idempotency keys.
+-- lease_owner/lease_expires_at identify the node executing an operation and are renewed
+-- while it runs; keys whose lease expired are recovered with one set-based UPDATE.
+-- fencing_token is incremented on every ownership change so that a late finisher can no
+-- longer complete a key that has been recovered or taken over.
+ALTER TABLE IF EXISTS idempotency_keys
+    ADD COLUMN IF NOT EXISTS lease_owner VARCHAR(128),
+    ADD COLUMN IF NOT EXISTS lease_expires_at TIMESTAMP,
+    ADD COLUMN IF NOT EXISTS fencing_token BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_lease ON idempotency_keys (status, lease_expires_at);
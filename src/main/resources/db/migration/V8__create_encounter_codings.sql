@@ -0,0 +1,25 @@
+-- Codes and DRG grouping of each coded encounter.
+-- The codes are kept so encounters can be regrouped when a new DRG table version is
+-- published: the regroup job pages through rows with drg_table_version below the new
+-- version in id order and updates them in JDBC batches.
+CREATE TABLE IF NOT EXISTS encounter_codings (
+    id BIGSERIAL PRIMARY KEY,
+    encounter_id VARCHAR(64) NOT NULL,
+    patient_id VARCHAR(64),
+    principal_diagnosis VARCHAR(16),
+    secondary_diagnoses VARCHAR(1024),
+    procedures VARCHAR(1024),
+    drg_table_version BIGINT NOT NULL,
+    drg_code VARCHAR(8) NOT NULL,
+    drg_severity VARCHAR(8) NOT NULL,
+    relative_weight DOUBLE PRECISION NOT NULL,
+    expected_los INTEGER NOT NULL,
+    coded_at TIMESTAMP NOT NULL,
+    regrouped_at TIMESTAMP,
+    CONSTRAINT uk_encounter_codings_encounter UNIQUE (encounter_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_encounter_codings_drg_version ON encounter_codings (drg_table_version);
+
+COMMENT ON TABLE encounter_codings IS 'Codes and DRG grouping of coded encounters, regrouped on new DRG table versions';
+COMMENT ON COLUMN encounter_codings.drg_table_version IS 'Version of the DRG tables the current grouping was computed with';
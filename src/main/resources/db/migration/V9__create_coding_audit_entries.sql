@@ -0,0 +1,32 @@
+-- Audit trail of coding executions, one row per recorded step.
+-- The process keeps only the audit_id of its trail; the entries are written here in JDBC
+-- batches by the coding audit writer. The table is append-only: updates and deletes are
+-- rejected by a trigger. Mirrors the CodingAuditEntry entity, which Hibernate creates
+-- (create-drop) or validates (validate) against it.
+CREATE TABLE IF NOT EXISTS coding_audit_entries (
+    id BIGSERIAL PRIMARY KEY,
+    audit_id VARCHAR(36) NOT NULL,
+    process_instance_id VARCHAR(64),
+    activity_id VARCHAR(255),
+    seq INTEGER NOT NULL,
+    action VARCHAR(32) NOT NULL,
+    detail VARCHAR(1024),
+    recorded_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_coding_audit_entries_audit_id ON coding_audit_entries (audit_id);
+CREATE INDEX IF NOT EXISTS idx_coding_audit_entries_process ON coding_audit_entries (process_instance_id);
+
+CREATE OR REPLACE FUNCTION reject_coding_audit_change() RETURNS trigger AS $$
+BEGIN
+    RAISE EXCEPTION 'coding_audit_entries is append-only';
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_coding_audit_entries_append_only ON coding_audit_entries;
+CREATE TRIGGER trg_coding_audit_entries_append_only
+    BEFORE UPDATE OR DELETE ON coding_audit_entries
+    FOR EACH ROW EXECUTE FUNCTION reject_coding_audit_change();
+
+COMMENT ON TABLE coding_audit_entries IS 'Append-only audit trail of coding executions, referenced by the codingAuditId process variable';
+COMMENT ON COLUMN coding_audit_entries.seq IS 'Position of the entry in its trail, from 0';
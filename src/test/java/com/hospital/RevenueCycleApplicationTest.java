@@ -0,0 +1,62 @@
+package com.hospital;
+
+import com.hospital.services.coding.CodingAuditAction;
+import com.hospital.services.coding.CodingAuditBuffer;
+import com.hospital.services.coding.CodingAuditJdbcRepository;
+import com.hospital.services.coding.CodingAuditSink;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the application context starts with every auto-configuration on the
+ * classpath, e.g. the actuator together with the Camunda starter.
+ */
+@SpringBootTest(classes = RevenueCycleApplication.class)
+@ActiveProfiles("test")
+@DisplayName("RevenueCycleApplication Tests")
+class RevenueCycleApplicationTest {
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private HealthEndpoint healthEndpoint;
+
+    @Test
+    @DisplayName("Application context should load with the process engine and the health endpoint")
+    void testContextLoads() {
+        // Assert
+        assertThat(context.getBeansOfType(ProcessEngine.class)).isNotEmpty();
+        assertThat(context.containsBean("processEngineHealthIndicator")).isFalse();
+        assertThat(healthEndpoint.health().getStatus()).isNotEqualTo(Status.DOWN);
+    }
+
+    @Test
+    @DisplayName("Coding audit trails should be written to the table created from the entity")
+    void testCodingAuditTableExists() throws InterruptedException {
+        // Arrange
+        CodingAuditSink sink = context.getBean(CodingAuditSink.class);
+        CodingAuditJdbcRepository repository = context.getBean(CodingAuditJdbcRepository.class);
+        CodingAuditBuffer trail = sink.open("proc-1", "Task_AssignCodes");
+        trail.add(CodingAuditAction.INPUT_VALIDATED, null);
+
+        // Act
+        sink.submit(trail);
+
+        // Assert
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.findByAuditId(trail.getAuditId()).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(repository.findByAuditId(trail.getAuditId())).hasSize(1);
+    }
+}
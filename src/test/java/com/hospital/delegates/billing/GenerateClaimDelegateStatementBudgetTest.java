@@ -0,0 +1,64 @@
+package com.hospital.delegates.billing;
+
+import com.hospital.testing.DelegateRunner;
+import com.hospital.testing.DelegateStatementBudgetExtension;
+import com.hospital.testing.IdempotencyTestFixtures;
+import com.hospital.testing.StatementBudget;
+import com.hospital.testing.StatementCountingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SQL statement budgets for {@link GenerateClaimDelegate} on an embedded engine.
+ *
+ * <p>A new claim costs one idempotency claim and one completion; a duplicate costs the
+ * claim (insert attempt plus read of the existing row on H2) and nothing else.</p>
+ */
+@ExtendWith(DelegateStatementBudgetExtension.class)
+@DisplayName("Generate Claim Delegate Statement Budget Tests")
+class GenerateClaimDelegateStatementBudgetTest {
+
+    private GenerateClaimDelegate delegate;
+
+    @BeforeEach
+    void setUp(StatementCountingDataSource dataSource) {
+        delegate = new GenerateClaimDelegate();
+        ReflectionTestUtils.setField(delegate, "idempotencyService",
+            IdempotencyTestFixtures.jdbcIdempotencyService(dataSource));
+    }
+
+    @Test
+    @StatementBudget(selects = 1, inserts = 0, updates = 1, deletes = 0)
+    @DisplayName("New claim should cost one claim and one completion")
+    void testNewClaim(DelegateRunner runner) {
+        // Act
+        runner.run(delegate, claimVariables("AUTH-NEW"));
+    }
+
+    @Test
+    @StatementBudget(selects = 2, inserts = 0, updates = 0, deletes = 0)
+    @DisplayName("Duplicate claim should only cost the claim of the existing key")
+    void testDuplicateClaim(DelegateRunner runner) {
+        // Arrange
+        runner.run(delegate, claimVariables("AUTH-DUP"));
+
+        // Act
+        runner.run(delegate, claimVariables("AUTH-DUP"));
+    }
+
+    private static Map<String, Object> claimVariables(String authorizationNumber) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("patientId", "PAT-001");
+        variables.put("authorizationNumber", authorizationNumber);
+        variables.put("icd10Codes", "J18.9,I10");
+        variables.put("cptCodes", "99223");
+        variables.put("totalCharges", 1500.0);
+        return variables;
+    }
+}
@@ -0,0 +1,47 @@
+package com.hospital.delegates.collection;
+
+import com.hospital.testing.DelegateRunner;
+import com.hospital.testing.DelegateStatementBudgetExtension;
+import com.hospital.testing.IdempotencyTestFixtures;
+import com.hospital.testing.StatementBudget;
+import com.hospital.testing.StatementCountingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SQL statement budgets for {@link ProcessPatientPaymentDelegate} on an embedded engine.
+ */
+@ExtendWith(DelegateStatementBudgetExtension.class)
+@DisplayName("Process Patient Payment Delegate Statement Budget Tests")
+class ProcessPatientPaymentDelegateStatementBudgetTest {
+
+    private ProcessPatientPaymentDelegate delegate;
+
+    @BeforeEach
+    void setUp(StatementCountingDataSource dataSource) {
+        delegate = new ProcessPatientPaymentDelegate();
+        ReflectionTestUtils.setField(delegate, "idempotencyService",
+            IdempotencyTestFixtures.jdbcIdempotencyService(dataSource));
+    }
+
+    @Test
+    @StatementBudget(selects = 1, inserts = 0, updates = 1, deletes = 0)
+    @DisplayName("Payment should cost one claim and one completion")
+    void testPayment(DelegateRunner runner) {
+        // Arrange
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("patientId", "PAT-001");
+        variables.put("patientBalance", 500.0);
+        variables.put("paymentAmount", 200.0);
+        variables.put("paymentMethod", "PIX");
+
+        // Act
+        runner.run(delegate, variables);
+    }
+}
@@ -0,0 +1,179 @@
+package com.hospital.scheduler;
+
+import com.hospital.services.idempotency.IdempotencyCleanupEngine;
+import com.hospital.services.idempotency.IdempotencyService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AdaptiveIdempotencyCleanupScheduler.
+ *
+ * <p>Validates the cadence decisions and their bounds, driving {@link
+ * AdaptiveIdempotencyCleanupScheduler#runOnce()} by hand.</p>
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AdaptiveIdempotencyCleanupScheduler Unit Tests")
+class AdaptiveIdempotencyCleanupSchedulerTest {
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private IdempotencyCleanupEngine cleanupEngine;
+
+    @Mock
+    private IdempotencyCleanupShards cleanupShards;
+
+    @Mock
+    private LockProvider lockProvider;
+
+    @Mock
+    private SimpleLock lock;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveIdempotencyCleanupScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(cleanupEngine.getChunkSize()).thenReturn(1000);
+        lenient().when(cleanupEngine.getLastChunkLatency()).thenReturn(Duration.ofMillis(20));
+        lenient().when(lockProvider.lock(any())).thenReturn(Optional.of(lock));
+        scheduler = new AdaptiveIdempotencyCleanupScheduler(idempotencyService, cleanupEngine, cleanupShards,
+            lockProvider, meterRegistry, true, Duration.ofMinutes(1), Duration.ofHours(6), 200, 10_000,
+            100_000, Duration.ofMillis(500));
+    }
+
+    @Test
+    @DisplayName("Backlog of at least one chunk should shorten the interval and grow the chunk size")
+    void testRunOnce_LargeBacklogAccelerates() {
+        // Arrange
+        relaxToInterval(Duration.ofMinutes(8));
+
+        // Act
+        AdaptiveIdempotencyCleanupScheduler.Decision decision = scheduler.runOnce();
+
+        // Assert
+        assertThat(decision).isEqualTo(AdaptiveIdempotencyCleanupScheduler.Decision.ACCELERATE);
+        assertThat(scheduler.getInterval()).isEqualTo(Duration.ofMinutes(4));
+        assertThat(scheduler.getChunkSize()).isEqualTo(2000);
+        verify(cleanupEngine).setChunkSize(2000);
+        verify(idempotencyService).cleanupExpiredKeys();
+        verify(lock).unlock();
+        assertThat(meterRegistry.get("idempotency.cleanup.adaptive.decisions").tag("decision", "accelerate")
+            .counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("idempotency.cleanup.adaptive.chunk_size").gauge().value()).isEqualTo(2000);
+        assertThat(meterRegistry.get("idempotency.cleanup.adaptive.backlog").gauge().value()).isEqualTo(100_000);
+    }
+
+    @Test
+    @DisplayName("Empty backlog should lengthen the interval without cleaning up")
+    void testRunOnce_EmptyBacklogRelaxes() {
+        // Arrange
+        when(idempotencyService.sampleExpiredBacklog(100_000)).thenReturn(0L);
+
+        // Act
+        AdaptiveIdempotencyCleanupScheduler.Decision decision = scheduler.runOnce();
+
+        // Assert
+        assertThat(decision).isEqualTo(AdaptiveIdempotencyCleanupScheduler.Decision.RELAX);
+        assertThat(scheduler.getInterval()).isEqualTo(Duration.ofMinutes(2));
+        assertThat(meterRegistry.get("idempotency.cleanup.adaptive.interval").gauge().value()).isEqualTo(120);
+        verify(idempotencyService, never()).cleanupExpiredKeys();
+        verify(lockProvider, never()).lock(any());
+    }
+
+    @Test
+    @DisplayName("Slow cleanup chunks should back off even with a large backlog")
+    void testRunOnce_SlowChunksBackOff() {
+        // Arrange
+        when(idempotencyService.sampleExpiredBacklog(100_000)).thenReturn(100_000L);
+        when(cleanupEngine.getLastChunkLatency()).thenReturn(Duration.ofSeconds(2));
+
+        // Act
+        AdaptiveIdempotencyCleanupScheduler.Decision decision = scheduler.runOnce();
+
+        // Assert
+        assertThat(decision).isEqualTo(AdaptiveIdempotencyCleanupScheduler.Decision.BACKOFF);
+        assertThat(scheduler.getInterval()).isEqualTo(Duration.ofMinutes(2));
+        assertThat(scheduler.getChunkSize()).isEqualTo(500);
+        verify(idempotencyService).cleanupExpiredKeys();
+    }
+
+    @Test
+    @DisplayName("Threads waiting for a pooled connection should back off")
+    void testRunOnce_PendingConnectionsBackOff() {
+        // Arrange
+        when(idempotencyService.sampleExpiredBacklog(100_000)).thenReturn(50L);
+        Gauge.builder("hikaricp.connections.pending", () -> 3).tag("pool", "HikariPool-1").register(meterRegistry);
+
+        // Act
+        AdaptiveIdempotencyCleanupScheduler.Decision decision = scheduler.runOnce();
+
+        // Assert
+        assertThat(decision).isEqualTo(AdaptiveIdempotencyCleanupScheduler.Decision.BACKOFF);
+        assertThat(meterRegistry.get("idempotency.cleanup.adaptive.decisions").tag("decision", "backoff")
+            .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Interval and chunk size should stay within their bounds")
+    void testRunOnce_StaysWithinBounds() {
+        // Arrange
+        when(idempotencyService.sampleExpiredBacklog(100_000)).thenReturn(100_000L);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            scheduler.runOnce();
+        }
+
+        // Assert
+        assertThat(scheduler.getInterval()).isEqualTo(Duration.ofMinutes(1));
+        assertThat(scheduler.getChunkSize()).isEqualTo(10_000);
+    }
+
+    @Test
+    @DisplayName("Cleanup should be sharded when the shards are enabled")
+    void testRunOnce_ShardedCleanup() {
+        // Arrange
+        when(idempotencyService.sampleExpiredBacklog(100_000)).thenReturn(10L);
+        when(cleanupShards.isEnabled()).thenReturn(true);
+
+        // Act
+        AdaptiveIdempotencyCleanupScheduler.Decision decision = scheduler.runOnce();
+
+        // Assert
+        assertThat(decision).isEqualTo(AdaptiveIdempotencyCleanupScheduler.Decision.STEADY);
+        verify(cleanupShards).cleanupAll();
+        verify(lockProvider, never()).lock(any());
+        verify(idempotencyService, never()).cleanupExpiredKeys();
+        verify(idempotencyService, never()).cleanupExpiredKeys(anyInt(), anyInt());
+    }
+
+    /**
+     * Runs with an empty backlog until the interval reaches {@code target}.
+     */
+    private void relaxToInterval(Duration target) {
+        when(idempotencyService.sampleExpiredBacklog(100_000)).thenReturn(0L);
+        while (scheduler.getInterval().compareTo(target) < 0) {
+            scheduler.runOnce();
+        }
+        when(idempotencyService.sampleExpiredBacklog(100_000)).thenReturn(100_000L);
+    }
+}
@@ -0,0 +1,167 @@
+package com.hospital.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.impl.cfg.StandaloneProcessEngineConfiguration;
+import org.camunda.bpm.engine.runtime.Job;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link CamundaHistoryCleanupCoordinator} on an embedded Camunda engine with
+ * removal-time-based history cleanup, on H2.
+ */
+@DisplayName("CamundaHistoryCleanupCoordinator Tests")
+class CamundaHistoryCleanupCoordinatorTest {
+
+    private static final int INSTANCES = 30;
+    private static final int BATCH_SIZE = 10;
+
+    private EmbeddedDatabase database;
+    private ProcessEngine processEngine;
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        meterRegistry = new SimpleMeterRegistry();
+
+        StandaloneProcessEngineConfiguration configuration = new StandaloneProcessEngineConfiguration();
+        configuration.setProcessEngineName("history-cleanup-" + System.identityHashCode(this));
+        configuration.setDataSource(database);
+        configuration.setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_CREATE_DROP);
+        configuration.setHistory(ProcessEngineConfiguration.HISTORY_FULL);
+        configuration.setJobExecutorActivate(false);
+        configuration.setHistoryCleanupStrategy(ProcessEngineConfiguration.HISTORY_CLEANUP_STRATEGY_REMOVAL_TIME_BASED);
+        configuration.setHistoryRemovalTimeStrategy(ProcessEngineConfiguration.HISTORY_REMOVAL_TIME_STRATEGY_END);
+        configuration.setHistoryCleanupBatchSize(BATCH_SIZE);
+        processEngine = configuration.buildProcessEngine();
+
+        processEngine.getRepositoryService().createDeployment()
+            .addModelInstance("cleanup.bpmn", Bpmn.createExecutableProcess("cleanup")
+                .camundaHistoryTimeToLive(0)
+                .startEvent()
+                .userTask("review")
+                .endEvent()
+                .done())
+            .deploy();
+        for (int i = 0; i < INSTANCES; i++) {
+            String processInstanceId = processEngine.getRuntimeService()
+                .startProcessInstanceByKey("cleanup", Map.of("amount", i)).getId();
+            processEngine.getTaskService().complete(processEngine.getTaskService().createTaskQuery()
+                .processInstanceId(processInstanceId).singleResult().getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        processEngine.close();
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("Run should remove every history row past its removal time")
+    void testRunCleanup_RemovesHistory() {
+        // Arrange
+        CamundaHistoryCleanupCoordinator coordinator = coordinator("00:00", "00:00", 1000);
+
+        // Act
+        CamundaHistoryCleanupCoordinator.CleanupRun run = coordinator.runCleanup();
+
+        // Assert
+        assertThat(run.isSkipped()).isFalse();
+        assertThat(run.isCompleted()).isTrue();
+        assertThat(run.getRemovedByTable().get("ACT_HI_PROCINST")).isEqualTo(INSTANCES);
+        assertThat(run.getBacklogByTable().values()).allMatch(backlog -> backlog == 0);
+        assertThat(count("ACT_HI_PROCINST")).isZero();
+        assertThat(count("ACT_HI_ACTINST")).isZero();
+        assertThat(count("ACT_HI_VARINST")).isZero();
+        assertThat(meterRegistry.get("camunda.history.cleanup.removed").tag("table", "ACT_HI_ACTINST")
+            .counter().count()).isEqualTo(run.getRemovedByTable().get("ACT_HI_ACTINST").doubleValue());
+        assertThat(meterRegistry.get("camunda.history.cleanup.batches").counter().count())
+            .isEqualTo(run.getBatches());
+    }
+
+    @Test
+    @DisplayName("Run stopped by its budget should leave the job suspended and report the backlog")
+    void testRunCleanup_StopsAtMaxBatches() {
+        // Arrange
+        CamundaHistoryCleanupCoordinator coordinator = coordinator("00:00", "00:00", 1);
+
+        // Act
+        CamundaHistoryCleanupCoordinator.CleanupRun first = coordinator.runCleanup();
+        double backlogGauge = meterRegistry.get("camunda.history.cleanup.backlog").tag("table", "ACT_HI_PROCINST")
+            .gauge().value();
+        CamundaHistoryCleanupCoordinator.CleanupRun second = coordinator("00:00", "00:00", 1000).runCleanup();
+
+        // Assert
+        assertThat(first.isCompleted()).isFalse();
+        assertThat(first.getBatches()).isEqualTo(1);
+        assertThat(first.getRemovedByTable().get("ACT_HI_PROCINST")).isEqualTo(BATCH_SIZE);
+        assertThat(first.getBacklogByTable().get("ACT_HI_PROCINST")).isEqualTo(INSTANCES - BATCH_SIZE);
+        assertThat(backlogGauge).isEqualTo(INSTANCES - BATCH_SIZE);
+        assertThat(second.isCompleted()).isTrue();
+        assertThat(count("ACT_HI_PROCINST")).isZero();
+        assertThat(processEngine.getHistoryService().findHistoryCleanupJobs())
+            .allMatch(Job::isSuspended);
+    }
+
+    @Test
+    @DisplayName("Run outside the maintenance window should do nothing")
+    void testRunCleanup_OutsideWindow() {
+        // Arrange
+        LocalTime now = LocalTime.now();
+        CamundaHistoryCleanupCoordinator coordinator = coordinator(
+            now.plusHours(2).toString(), now.plusHours(3).toString(), 1000);
+
+        // Act
+        CamundaHistoryCleanupCoordinator.CleanupRun run = coordinator.runCleanup();
+
+        // Assert
+        assertThat(run.isSkipped()).isTrue();
+        assertThat(count("ACT_HI_PROCINST")).isEqualTo(INSTANCES);
+        assertThat(processEngine.getHistoryService().findHistoryCleanupJobs()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Maintenance window may span midnight")
+    void testInWindow_SpansMidnight() {
+        // Arrange
+        CamundaHistoryCleanupCoordinator coordinator = coordinator("22:00", "04:00", 1000);
+
+        // Act & Assert
+        assertThat(coordinator.inWindow(LocalTime.of(23, 30))).isTrue();
+        assertThat(coordinator.inWindow(LocalTime.of(3, 59))).isTrue();
+        assertThat(coordinator.inWindow(LocalTime.of(4, 0))).isFalse();
+        assertThat(coordinator.inWindow(LocalTime.of(12, 0))).isFalse();
+    }
+
+    private CamundaHistoryCleanupCoordinator coordinator(String windowStart, String windowEnd, int maxBatches) {
+        return new CamundaHistoryCleanupCoordinator(processEngine.getHistoryService(),
+            processEngine.getManagementService(), jdbcTemplate, meterRegistry, true, windowStart, windowEnd,
+            maxBatches, Duration.ofMinutes(5), 1000);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}
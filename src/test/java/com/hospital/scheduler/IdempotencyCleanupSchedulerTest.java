@@ -26,6 +26,12 @@ class IdempotencyCleanupSchedulerTest {
     @Mock
     private IdempotencyService idempotencyService;
 
+    @Mock
+    private IdempotencyCleanupShards cleanupShards;
+
+    @Mock
+    private AdaptiveIdempotencyCleanupScheduler adaptiveCleanup;
+
     @InjectMocks
     private IdempotencyCleanupScheduler scheduler;
 
@@ -144,4 +150,47 @@ class IdempotencyCleanupSchedulerTest {
         // Assert
         verify(idempotencyService, times(1)).cleanupExpiredKeys();
     }
+
+    @Test
+    @DisplayName("Daily and frequent cleanups should stand down when the cleanup is sharded")
+    void testCleanupExpiredRecords_ShardedModeSkipsSingleLockJobs() {
+        // Arrange
+        when(cleanupShards.isEnabled()).thenReturn(true);
+
+        // Act
+        scheduler.cleanupExpiredRecordsDaily();
+        scheduler.cleanupExpiredRecordsFrequent();
+
+        // Assert
+        verify(idempotencyService, never()).cleanupExpiredKeys();
+    }
+
+    @Test
+    @DisplayName("Sharded cleanup should only run when the cleanup is sharded")
+    void testCleanupExpiredRecordsSharded_OnlyInShardedMode() {
+        // Arrange
+        when(cleanupShards.isEnabled()).thenReturn(false, true);
+        when(cleanupShards.cleanupAll()).thenReturn(new IdempotencyCleanupShards.ShardedCleanupResult(2, 2, 40));
+
+        // Act
+        scheduler.cleanupExpiredRecordsSharded();
+        scheduler.cleanupExpiredRecordsSharded();
+
+        // Assert
+        verify(cleanupShards, times(1)).cleanupAll();
+    }
+
+    @Test
+    @DisplayName("Fixed-cadence cleanups should stand down when the adaptive cleanup is enabled")
+    void testCleanupExpiredRecords_AdaptiveModeSkipsFixedJobs() {
+        // Arrange
+        when(adaptiveCleanup.isEnabled()).thenReturn(true);
+
+        // Act
+        scheduler.cleanupExpiredRecordsDaily();
+        scheduler.cleanupExpiredRecordsFrequent();
+
+        // Assert
+        verify(idempotencyService, never()).cleanupExpiredKeys();
+    }
 }
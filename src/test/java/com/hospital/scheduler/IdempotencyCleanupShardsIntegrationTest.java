@@ -0,0 +1,168 @@
+package com.hospital.scheduler;
+
+import com.hospital.services.idempotency.IdempotencyService;
+import com.hospital.testing.IdempotencyTestFixtures;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.provider.jdbctemplate.JdbcTemplateLockProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the sharded cleanup of several nodes - each with its own idempotency service and
+ * ShedLock lock provider - against one embedded H2 database.
+ */
+@DisplayName("IdempotencyCleanupShards Integration Tests")
+class IdempotencyCleanupShardsIntegrationTest {
+
+    private static final int NODES = 3;
+    private static final int SHARDS = 4;
+    private static final int EXPIRED_KEYS = 200;
+    private static final int LIVE_KEYS = 20;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/idempotency_keys.sql")
+            .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("CREATE TABLE shedlock (name VARCHAR(64) NOT NULL PRIMARY KEY,"
+            + " lock_until TIMESTAMP NOT NULL, locked_at TIMESTAMP NOT NULL, locked_by VARCHAR(255) NOT NULL)");
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < EXPIRED_KEYS + LIVE_KEYS; i++) {
+            LocalDateTime expiresAt = i < EXPIRED_KEYS ? now.minusHours(1) : now.plusDays(1);
+            jdbcTemplate.update("INSERT INTO idempotency_keys (operation_type, operation_key, status,"
+                    + " created_at, expires_at) VALUES ('PAYMENT', ?, 'COMPLETED', ?, ?)",
+                "key-" + i, Timestamp.valueOf(expiresAt.minusDays(1)), Timestamp.valueOf(expiresAt));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("Nodes cleaning up at the same time should clean up each shard exactly once")
+    void testCleanupAll_ConcurrentNodes() throws Exception {
+        // Arrange
+        List<IdempotencyCleanupShards> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(node());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(NODES);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // Act
+        List<Future<IdempotencyCleanupShards.ShardedCleanupResult>> runs = new ArrayList<>();
+        try {
+            for (IdempotencyCleanupShards node : nodes) {
+                runs.add(executor.submit(() -> {
+                    start.await();
+                    return node.cleanupAll();
+                }));
+            }
+            start.countDown();
+
+            int shardsCleaned = 0;
+            long deleted = 0;
+            for (Future<IdempotencyCleanupShards.ShardedCleanupResult> run : runs) {
+                IdempotencyCleanupShards.ShardedCleanupResult result = run.get(30, TimeUnit.SECONDS);
+                assertThat(result.getShardsCleaned() + result.getShardsSkipped()).isEqualTo(SHARDS);
+                shardsCleaned += result.getShardsCleaned();
+                deleted += result.getDeleted();
+            }
+
+            // Assert
+            assertThat(shardsCleaned).isEqualTo(SHARDS);
+            assertThat(deleted).isEqualTo(EXPIRED_KEYS);
+            assertThat(count()).isEqualTo(LIVE_KEYS);
+            assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM shedlock WHERE name LIKE 'idempotencyCleanup-shard-%'", Long.class))
+                .isEqualTo(SHARDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Shards cleaned up less than lockAtLeastFor ago should be skipped by later nodes")
+    void testCleanupAll_RecentlyCleanedShardsSkipped() {
+        // Arrange
+        IdempotencyCleanupShards first = node();
+        IdempotencyCleanupShards second = node();
+
+        // Act
+        IdempotencyCleanupShards.ShardedCleanupResult firstRun = first.cleanupAll();
+        IdempotencyCleanupShards.ShardedCleanupResult secondRun = second.cleanupAll();
+
+        // Assert
+        assertThat(firstRun.getShardsCleaned()).isEqualTo(SHARDS);
+        assertThat(firstRun.getDeleted()).isEqualTo(EXPIRED_KEYS);
+        assertThat(secondRun.getShardsCleaned()).isZero();
+        assertThat(secondRun.getShardsSkipped()).isEqualTo(SHARDS);
+    }
+
+    @Test
+    @DisplayName("Shard held by another node should be left to that node")
+    void testCleanupAll_LockedShardLeftAlone() {
+        // Arrange
+        LockProvider otherNode = lockProvider();
+        otherNode.lock(new LockConfiguration(Instant.now(), IdempotencyCleanupShards.LOCK_NAME_PREFIX + 2,
+            Duration.ofMinutes(10), Duration.ZERO)).orElseThrow();
+
+        // Act
+        IdempotencyCleanupShards.ShardedCleanupResult result = node().cleanupAll();
+
+        // Assert
+        long expiredInShard2 = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM idempotency_keys WHERE MOD(id / ?, ?) = 2 AND expires_at < ?", Long.class,
+            IdempotencyTestFixtures.CLEANUP_STRIPE_SIZE, SHARDS, Timestamp.valueOf(LocalDateTime.now()));
+        assertThat(result.getShardsCleaned()).isEqualTo(SHARDS - 1);
+        assertThat(result.getShardsSkipped()).isEqualTo(1);
+        assertThat(expiredInShard2).isEqualTo(EXPIRED_KEYS / SHARDS);
+        assertThat(result.getDeleted()).isEqualTo(EXPIRED_KEYS - expiredInShard2);
+    }
+
+    private IdempotencyCleanupShards node() {
+        IdempotencyService idempotencyService = IdempotencyTestFixtures.jdbcIdempotencyService(database);
+        return new IdempotencyCleanupShards(idempotencyService, lockProvider(), SHARDS);
+    }
+
+    private LockProvider lockProvider() {
+        return new JdbcTemplateLockProvider(JdbcTemplateLockProvider.Configuration.builder()
+            .withJdbcTemplate(new JdbcTemplate(database))
+            .usingDbTime()
+            .build());
+    }
+
+    private long count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys", Long.class);
+    }
+}
@@ -0,0 +1,129 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link BatchCodingService} on an embedded H2 database.
+ */
+@DisplayName("BatchCodingService Tests")
+class BatchCodingServiceTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private BatchCodingService service;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/encounter_codings.sql")
+            .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        meterRegistry = new SimpleMeterRegistry();
+        CodeCatalogService catalogService = new CodeCatalogService("", new ClassPathResource("coding/catalog.tsv"),
+            meterRegistry);
+        catalogService.load();
+        DrgGrouperService drgGrouperService = new DrgGrouperService(new ClassPathResource("coding/drg-tables.tsv"),
+            "", 500, catalogService, new EncounterCodingJdbcRepository(jdbcTemplate), meterRegistry);
+        drgGrouperService.load();
+        CodingPipeline pipeline = new CodingPipeline(
+            CodeSuggestionServiceTest.dictionarySuggestions(),
+            catalogService,
+            new CodeCompatibilityService(new ClassPathResource("coding/compatibility.tsv"), catalogService),
+            drgGrouperService);
+        service = new BatchCodingService(pipeline, drgGrouperService, 4, 100, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("A lot spanning several chunks should be coded, recorded and summarized")
+    void testCodeAll_SeveralChunks() {
+        // Arrange
+        Stream<CodingRequest> encounters = IntStream.range(0, 250).mapToObj(i -> i % 50 == 7
+            ? request("MR-" + i, "mal-estar", "Apendicectomia")
+            : request("MR-" + i, "Apendicite aguda", "Apendicectomia"));
+
+        // Act
+        BatchCodingSummary summary = service.codeAll(encounters);
+
+        // Assert
+        assertThat(summary.getTotal()).isEqualTo(250);
+        assertThat(summary.getCoded()).isEqualTo(245);
+        assertThat(summary.getFailed()).isEqualTo(5);
+        assertThat(summary.getFailures()).containsOnlyKeys("MR-7", "MR-57", "MR-107", "MR-157", "MR-207");
+        assertThat(summary.getFailures().get("MR-7")).startsWith(CodingResult.CODE_COMBINATION_ERROR);
+        assertThat(summary.getAutoApproved() + summary.getRequiresReview()).isEqualTo(245);
+        assertThat(summary.getReviewEncounterIds()).hasSize(summary.getRequiresReview()).startsWith("MR-0", "MR-1");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM encounter_codings", Integer.class))
+            .isEqualTo(245);
+        assertThat(jdbcTemplate.queryForList("SELECT DISTINCT drg_code FROM encounter_codings", String.class))
+            .containsExactly("051");
+        assertThat(meterRegistry.get("coding.batch.encounters").tag("outcome", "failed").counter().count())
+            .isEqualTo(5.0);
+    }
+
+    @Test
+    @DisplayName("Coding a lot again should replace the recorded groupings")
+    void testCodeAll_Replaces() {
+        // Arrange
+        service.codeAll(Stream.of(request("MR-1", "Pneumonia", "Radiografia de tórax")));
+        CodingRequest recoded = CodingRequest.builder()
+            .encounterId("MR-1")
+            .diagnosisDescription("Pneumonia")
+            .procedureDescription("Radiografia de tórax")
+            .comorbidities(List.of("insuficiência cardíaca"))
+            .build();
+
+        // Act
+        BatchCodingSummary summary = service.codeAll(Stream.of(
+            recoded, request("MR-2", "Pneumonia", "Radiografia de tórax")));
+
+        // Assert
+        assertThat(summary.getCoded()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM encounter_codings", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT drg_severity FROM encounter_codings WHERE encounter_id = 'MR-1'", String.class)).isEqualTo("HIGH");
+    }
+
+    @Test
+    @DisplayName("An empty lot should record nothing")
+    void testCodeAll_Empty() {
+        // Act
+        BatchCodingSummary summary = service.codeAll(Stream.empty());
+
+        // Assert
+        assertThat(summary.getTotal()).isZero();
+        assertThat(summary.getReviewEncounterIds()).isEqualTo(List.of());
+    }
+
+    private static CodingRequest request(String encounterId, String diagnosis, String procedure) {
+        return CodingRequest.builder()
+            .encounterId(encounterId)
+            .patientId("P-1")
+            .diagnosisDescription(diagnosis)
+            .procedureDescription(procedure)
+            .build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.hospital.services.coding;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests {@link ClinicalTextMatcher} against the bundled synonym dictionary and small
+ * dictionaries written for the test.
+ */
+@DisplayName("ClinicalTextMatcher Tests")
+class ClinicalTextMatcherTest {
+
+    @Test
+    @DisplayName("Bundled dictionary should find codes regardless of case and accents")
+    void testMatch_BundledDictionary() {
+        // Arrange
+        ClinicalTextMatcher matcher = new ClinicalTextMatcher(new ClassPathResource("coding/synonyms.tsv"));
+
+        // Act
+        List<CodeCandidate> diagnoses = matcher.match(CodeSystem.ICD10,
+            "Paciente com HIPERTENSAO arterial sistêmica e Diabetes Mellitus, nega febre há 3 dias.");
+        List<CodeCandidate> procedures = matcher.match(CodeSystem.TUSS, "Avaliação em consultório");
+
+        // Assert
+        assertThat(diagnoses).extracting(CodeCandidate::getCode).containsExactly("I10", "E11.9", "R50.9");
+        assertThat(diagnoses.get(0).getScore()).isEqualTo(0.95);
+        assertThat(diagnoses.get(0).getDescription()).isEqualTo("Hipertensão essencial (primária)");
+        assertThat(procedures).extracting(CodeCandidate::getCode).containsExactly("10101012");
+        assertThat(matcher.match(CodeSystem.CBHPM, "Avaliação em consultório")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Terms should match at the start of a word only, but may end inside one")
+    void testMatch_WordStart() {
+        // Arrange
+        ClinicalTextMatcher matcher = matcher("TUSS\t20101015\t0.9\tExames laboratoriais\texame");
+
+        // Act & Assert
+        assertThat(matcher.match(CodeSystem.TUSS, "exames de rotina")).hasSize(1);
+        assertThat(matcher.match(CodeSystem.TUSS, "solicitado (exame) de sangue")).hasSize(1);
+        assertThat(matcher.match(CodeSystem.TUSS, "reexaminado no retorno")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Overlapping and nested terms should all be found in one pass")
+    void testMatch_OverlappingTerms() {
+        // Arrange
+        ClinicalTextMatcher matcher = matcher(
+            "ICD10\tR07.4\t0.80\tDor torácica\tdor toracica",
+            "ICD10\tR52.9\t0.60\tDor não especificada\tdor",
+            "ICD10\tI20.9\t0.90\tAngina pectoris\tdor toracica em aperto|angina",
+            "ICD10\tR06.0\t0.70\tDispneia\ttoracica em aperto e dispneia");
+
+        // Act
+        List<CodeCandidate> candidates = matcher.match(CodeSystem.ICD10,
+            "Refere dor torácica em aperto e dispneia; dor piora ao esforço.");
+
+        // Assert
+        assertThat(candidates).extracting(CodeCandidate::getCode)
+            .containsExactly("I20.9", "R07.4", "R06.0", "R52.9");
+        assertThat(candidates.get(3).getHits()).isEqualTo(2);
+        assertThat(candidates.get(3).getFirstPosition()).isEqualTo("refere ".length());
+    }
+
+    @Test
+    @DisplayName("Score should be the highest weight of the matched terms of a code")
+    void testMatch_ScoreIsHighestWeight() {
+        // Arrange
+        ClinicalTextMatcher matcher = matcher(
+            "ICD10\tJ18.9\t0.70\tPneumonia não especificada\tinfiltrado pulmonar",
+            "ICD10\tJ18.9\t0.88\tPneumonia não especificada\tpneumonia");
+
+        // Act
+        List<CodeCandidate> candidates = matcher.match(CodeSystem.ICD10,
+            "Infiltrado pulmonar à direita, compatível com pneumonia.");
+
+        // Assert
+        assertThat(candidates).hasSize(1);
+        assertThat(candidates.get(0).getScore()).isEqualTo(0.88);
+        assertThat(candidates.get(0).getHits()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Consecutive matches on one thread should not see each other's results")
+    void testMatch_BuffersReset() {
+        // Arrange
+        ClinicalTextMatcher matcher = new ClinicalTextMatcher(new ClassPathResource("coding/synonyms.tsv"));
+        String longNote = "Hipertensão arterial. ".repeat(5_000);
+
+        // Act
+        List<CodeCandidate> first = matcher.match(CodeSystem.ICD10, longNote);
+        List<CodeCandidate> second = matcher.match(CodeSystem.ICD10, "Asma");
+        List<CodeCandidate> third = matcher.match(CodeSystem.ICD10, "sem queixas");
+
+        // Assert
+        assertThat(first).hasSize(1);
+        assertThat(first.get(0).getHits()).isEqualTo(5_000);
+        assertThat(second).extracting(CodeCandidate::getCode).containsExactly("J45.9");
+        assertThat(second.get(0).getHits()).isEqualTo(1);
+        assertThat(third).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Malformed dictionary lines should fail startup")
+    void testLoad_MalformedLine() {
+        // Act & Assert
+        assertThatThrownBy(() -> matcher("ICD10\tI10\t0.95\tHipertensão"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("line 1");
+        assertThatThrownBy(() -> matcher("ICD10\tI10\t1.5\tHipertensão\thipertens"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("weight");
+    }
+
+    private static ClinicalTextMatcher matcher(String... lines) {
+        return new ClinicalTextMatcher(new ByteArrayResource(
+            String.join("\n", lines).getBytes(StandardCharsets.UTF_8), "test dictionary"));
+    }
+}
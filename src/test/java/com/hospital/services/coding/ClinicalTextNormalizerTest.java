@@ -0,0 +1,46 @@
+package com.hospital.services.coding;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link ClinicalTextNormalizer}.
+ */
+@DisplayName("ClinicalTextNormalizer Tests")
+class ClinicalTextNormalizerTest {
+
+    @Test
+    @DisplayName("Accents and case should be folded")
+    void testNormalize_FoldsAccentsAndCase() {
+        // Act & Assert
+        assertThat(ClinicalTextNormalizer.normalize("Pressão ALTA, Infecção Urinária"))
+            .isEqualTo("pressao alta infeccao urinaria");
+        assertThat(ClinicalTextNormalizer.normalize("ÀÉÎÕÜÇ àéîõüç")).isEqualTo("aeiouc aeiouc");
+    }
+
+    @Test
+    @DisplayName("Runs of separators should become a single space, trimmed at both ends")
+    void testNormalize_CollapsesSeparators() {
+        // Act & Assert
+        assertThat(ClinicalTextNormalizer.normalize("  -- DM2 /  HAS;\n\tIMC: 32,5 kg/m²  "))
+            .isEqualTo("dm2 has imc 32 5 kg m");
+        assertThat(ClinicalTextNormalizer.normalize(" ... ")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Buffer should be reusable across texts")
+    void testNormalize_ReusesBuffer() {
+        // Arrange
+        char[] buffer = new char[64];
+
+        // Act
+        int first = ClinicalTextNormalizer.normalize("Hipertensão arterial sistêmica", buffer);
+        int second = ClinicalTextNormalizer.normalize("Asma", buffer);
+
+        // Assert
+        assertThat(first).isEqualTo("hipertensao arterial sistemica".length());
+        assertThat(new String(buffer, 0, second)).isEqualTo("asma");
+    }
+}
@@ -0,0 +1,97 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests loading and hot reload of catalog files by {@link CodeCatalogService}.
+ */
+@DisplayName("CodeCatalogService Tests")
+class CodeCatalogServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Without catalog files the bundled codes should be used")
+    void testLoad_Bundled() {
+        // Arrange
+        CodeCatalogService service = service("");
+
+        // Act
+        service.load();
+
+        // Assert
+        assertThat(service.getCatalog().getVersion()).isZero();
+        assertThat(service.exists(CodeSystem.ICD10, "I10")).isTrue();
+        assertThat(service.exists(CodeSystem.ICD10, "R69")).isTrue();
+        assertThat(service.isValid(CodeSystem.ICD10, "U07.1", LocalDate.of(2019, 12, 1))).isFalse();
+        assertThat(service.description(CodeSystem.TUSS, "10101012")).isEqualTo("Consulta médica em consultório");
+    }
+
+    @Test
+    @DisplayName("A newer table version dropped into the directory should replace the current one")
+    void testReload_NewerVersion() throws Exception {
+        // Arrange
+        write("code-catalog-1.bin", 1, "I10");
+        CodeCatalogService service = service(directory.toString());
+        service.load();
+        CodeCatalog first = service.getCatalog();
+
+        // Act
+        write("code-catalog-0.bin", 0, "J18.9");
+        service.reload();
+        CodeCatalog unchanged = service.getCatalog();
+        write("code-catalog-2.bin", 2, "E11.9");
+        service.reload();
+
+        // Assert
+        assertThat(first.getVersion()).isEqualTo(1);
+        assertThat(unchanged).isSameAs(first);
+        assertThat(service.getCatalog().getVersion()).isEqualTo(2);
+        assertThat(service.exists(CodeSystem.ICD10, "E11.9")).isTrue();
+        assertThat(service.exists(CodeSystem.ICD10, "I10")).isFalse();
+        assertThat(first.contains(CodeSystem.ICD10, "I10")).isTrue();
+        assertThat(meterRegistry.get("coding.catalog.version").gauge().value()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("coding.catalog.reloads").tag("result", "success").counter().count())
+            .isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Unreadable files should be skipped and the current catalog kept")
+    void testReload_CorruptFile() throws Exception {
+        // Arrange
+        write("code-catalog-1.bin", 1, "I10");
+        CodeCatalogService service = service(directory.toString());
+        service.load();
+
+        // Act
+        Files.write(directory.resolve("code-catalog-9.bin"), new byte[]{1, 2, 3});
+        service.reload();
+
+        // Assert
+        assertThat(service.getCatalog().getVersion()).isEqualTo(1);
+        assertThat(service.exists(CodeSystem.ICD10, "I10")).isTrue();
+    }
+
+    private CodeCatalogService service(String catalogDirectory) {
+        return new CodeCatalogService(catalogDirectory, new ClassPathResource("coding/catalog.tsv"), meterRegistry);
+    }
+
+    private void write(String name, long version, String icd10Code) throws Exception {
+        CodeCatalogWriter.write(directory.resolve(name), version,
+            List.of(new CodeCatalogEntry(CodeSystem.ICD10, icd10Code, "Diagnóstico " + icd10Code, null, null)));
+    }
+}
@@ -0,0 +1,118 @@
+package com.hospital.services.coding;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests {@link CodeCatalog} files written by the {@link CodeCatalogWriter}.
+ */
+@DisplayName("CodeCatalog Tests")
+class CodeCatalogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Written codes should be found with their description, validity and system")
+    void testOpen_RoundTrip() throws Exception {
+        // Arrange
+        Path file = directory.resolve("code-catalog-7.bin");
+        CodeCatalogWriter.write(file, 7, List.of(
+            new CodeCatalogEntry(CodeSystem.TUSS, "10101012", "Consulta médica em consultório", null, null),
+            new CodeCatalogEntry(CodeSystem.ICD10, "I10", "Hipertensão essencial (primária)", null, null),
+            new CodeCatalogEntry(CodeSystem.ICD10, "E11.9", "Diabetes mellitus tipo 2", null, null),
+            new CodeCatalogEntry(CodeSystem.CBHPM, "10.01.01.01-4", "Consulta médica", null, null)));
+
+        // Act
+        CodeCatalog catalog = CodeCatalog.open(file);
+
+        // Assert
+        assertThat(catalog.getVersion()).isEqualTo(7);
+        assertThat(catalog.size()).isEqualTo(4);
+        assertThat(catalog.count(CodeSystem.ICD10)).isEqualTo(2);
+        assertThat(catalog.firstOrdinal(CodeSystem.TUSS)).isEqualTo(2);
+        assertThat(catalog.description(CodeSystem.ICD10, "I10")).isEqualTo("Hipertensão essencial (primária)");
+        assertThat(catalog.description(CodeSystem.CBHPM, "10.01.01.01-4")).isEqualTo("Consulta médica");
+        int ordinal = catalog.ordinal(CodeSystem.TUSS, "10101012");
+        assertThat(catalog.code(ordinal)).isEqualTo("10101012");
+        assertThat(catalog.system(ordinal)).isEqualTo(CodeSystem.TUSS);
+        assertThat(catalog.contains(CodeSystem.ICD10, "I11")).isFalse();
+        assertThat(catalog.contains(CodeSystem.TUSS, "I10")).isFalse();
+        assertThat(catalog.description(CodeSystem.ICD10, "X99")).isNull();
+    }
+
+    @Test
+    @DisplayName("Codes should be valid only within their inclusive validity range")
+    void testIsValid_ValidityRange() throws Exception {
+        // Arrange
+        Path file = directory.resolve("code-catalog-1.bin");
+        CodeCatalogWriter.write(file, 1, CodeCatalogWriter.readTsv(new StringReader(
+            "# system\tcode\tvalidFrom\tvalidTo\tdescription\n"
+            + "ICD10\tU07.1\t2020-02-01\t\tCOVID-19, vírus identificado\n"
+            + "TUSS\t40301630\t\t2023-12-31\tGlicose\n")));
+        CodeCatalog catalog = CodeCatalog.open(file);
+
+        // Act & Assert
+        assertThat(catalog.isValid(CodeSystem.ICD10, "U07.1", LocalDate.of(2020, 1, 31))).isFalse();
+        assertThat(catalog.isValid(CodeSystem.ICD10, "U07.1", LocalDate.of(2020, 2, 1))).isTrue();
+        assertThat(catalog.isValid(CodeSystem.TUSS, "40301630", LocalDate.of(2023, 12, 31))).isTrue();
+        assertThat(catalog.isValid(CodeSystem.TUSS, "40301630", LocalDate.of(2024, 1, 1))).isFalse();
+        int ordinal = catalog.ordinal(CodeSystem.ICD10, "U07.1");
+        assertThat(catalog.validFrom(ordinal)).isEqualTo(LocalDate.of(2020, 2, 1));
+        assertThat(catalog.validTo(ordinal)).isNull();
+    }
+
+    @Test
+    @DisplayName("Every code of a large catalog should be found, and no other")
+    void testOrdinal_LargeCatalog() throws Exception {
+        // Arrange
+        Random random = new Random(42);
+        List<CodeCatalogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            entries.add(new CodeCatalogEntry(CodeSystem.TUSS, String.format("%08d", i * 7 + random.nextInt(7)),
+                "Procedimento " + i, null, null));
+        }
+        Path file = directory.resolve("code-catalog-2.bin");
+        CodeCatalogWriter.write(file, 2, entries);
+
+        // Act
+        CodeCatalog catalog = CodeCatalog.open(file);
+
+        // Assert
+        for (CodeCatalogEntry entry : entries) {
+            int ordinal = catalog.ordinal(CodeSystem.TUSS, entry.getCode());
+            assertThat(ordinal).isNotNegative();
+            assertThat(catalog.description(ordinal)).isEqualTo(entry.getDescription());
+        }
+        assertThat(catalog.contains(CodeSystem.TUSS, "99999999")).isFalse();
+        assertThat(catalog.contains(CodeSystem.ICD10, entries.get(0).getCode())).isFalse();
+    }
+
+    @Test
+    @DisplayName("Duplicate codes and files that are not catalogs should be rejected")
+    void testWrite_Rejected() throws Exception {
+        // Arrange
+        CodeCatalogEntry entry = new CodeCatalogEntry(CodeSystem.ICD10, "I10", "Hipertensão", null, null);
+        Path garbage = Files.write(directory.resolve("code-catalog-3.bin"), new byte[64]);
+
+        // Act & Assert
+        assertThatThrownBy(() -> CodeCatalogWriter.write(directory.resolve("x.bin"), 1, List.of(entry, entry)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Duplicate code ICD10 I10");
+        assertThatThrownBy(() -> CodeCatalog.open(garbage))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Not a code catalog");
+    }
+}
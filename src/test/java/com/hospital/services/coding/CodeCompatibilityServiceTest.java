@@ -0,0 +1,69 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Tests {@link CodeCompatibilityService} with the bundled rules and catalog.
+ */
+@DisplayName("CodeCompatibilityService Tests")
+class CodeCompatibilityServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Bundled rules should forbid Z codes with surgery and require a matching diagnosis")
+    void testViolations_BundledRules() {
+        // Arrange
+        CodeCatalogService catalogService = new CodeCatalogService("", new ClassPathResource("coding/catalog.tsv"),
+            new SimpleMeterRegistry());
+        catalogService.load();
+        CodeCompatibilityService service = new CodeCompatibilityService(
+            new ClassPathResource("coding/compatibility.tsv"), catalogService);
+
+        // Act
+        List<CompatibilityViolation> violations = service.violations(
+            List.of("K35.8", "Z99.9"), List.of("31009336", "10101012", "31309054"));
+
+        // Assert
+        assertThat(violations).extracting(CompatibilityViolation::getIcd10Code, CompatibilityViolation::getTussCode)
+            .containsExactly(
+                tuple("Z99.9", "31009336"),
+                tuple("Z99.9", "31309054"),
+                tuple("K35.8", "31309054"),
+                tuple("Z99.9", "31309054"));
+    }
+
+    @Test
+    @DisplayName("The index should be rebuilt when a new catalog version is loaded")
+    void testGetIndex_RebuiltOnNewCatalog() throws Exception {
+        // Arrange
+        CodeCatalogService catalogService = new CodeCatalogService(directory.toString(),
+            new ClassPathResource("coding/catalog.tsv"), new SimpleMeterRegistry());
+        catalogService.load();
+        CodeCompatibilityService service = new CodeCompatibilityService(
+            new ClassPathResource("coding/compatibility.tsv"), catalogService);
+        CompatibilityIndex bundled = service.getIndex();
+
+        // Act
+        CodeCatalogWriter.write(directory.resolve("code-catalog-1.bin"), 1, List.of(
+            new CodeCatalogEntry(CodeSystem.ICD10, "Z00.0", "Exame geral", null, null),
+            new CodeCatalogEntry(CodeSystem.TUSS, "31000001", "Cirurgia", null, null)));
+        catalogService.reload();
+
+        // Assert
+        assertThat(service.getIndex()).isSameAs(service.getIndex()).isNotSameAs(bundled);
+        assertThat(service.getIndex().getCatalog().getVersion()).isEqualTo(1);
+        assertThat(service.getIndex().isCompatible("Z00.0", "31000001")).isFalse();
+    }
+}
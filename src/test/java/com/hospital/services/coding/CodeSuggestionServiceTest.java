@@ -0,0 +1,204 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests {@link CodeSuggestionService}: memoization, micro-batching and the dictionary
+ * fallback on deadlines and failures.
+ */
+@DisplayName("CodeSuggestionService Tests")
+class CodeSuggestionServiceTest {
+
+    private static final DictionarySuggestionProvider DICTIONARY = new DictionarySuggestionProvider(
+        new ClinicalTextMatcher(new ClassPathResource("coding/synonyms.tsv")));
+
+    /** Suggestions a test provider answers with, told apart from the dictionary's by their confidence. */
+    private static final CodeSuggestions MODEL_SUGGESTIONS = new CodeSuggestions(
+        List.of(new CodeCandidate(CodeSystem.ICD10, "J18.9", "Pneumonia", 0.99, 1, 0)),
+        List.of(new CodeCandidate(CodeSystem.TUSS, "40901114", "Radiografia de tórax", 0.99, 1, 0)),
+        List.of(), 0.99, 0.99, 0.99);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CodeSuggestionService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * A service answering from the bundled dictionary, for tests of its callers.
+     */
+    static CodeSuggestionService dictionarySuggestions() {
+        return new CodeSuggestionService(List.of(DICTIONARY), DICTIONARY, DictionarySuggestionProvider.NAME,
+            Duration.ofSeconds(2), 32, Duration.ofMillis(5), 4, 1000, 1000, Duration.ofHours(1),
+            new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("Texts differing only in case, accents and punctuation should share a cache entry")
+    void testSuggest_MemoizedOnNormalizedText() {
+        // Arrange
+        service = service(DICTIONARY, Duration.ofSeconds(2), Duration.ofMillis(5));
+
+        // Act
+        CodeSuggestions first = service.suggest(request("Pneumonia comunitária", "Radiografia de tórax",
+            List.of("diabetes", "hipertensão")));
+        CodeSuggestions second = service.suggest(request("  PNEUMONIA, comunitaria ", "radiografia de torax",
+            List.of("Diabetes", "Hipertensao")));
+        CodeSuggestions reordered = service.suggest(request("Pneumonia comunitária", "Radiografia de tórax",
+            List.of("hipertensão", "diabetes")));
+
+        // Assert
+        assertThat(second).isSameAs(first);
+        assertThat(reordered).isNotSameAs(first);
+        assertThat(reordered.codes(CodeSystem.ICD10)).containsExactly("J18.9", "I10", "E11.9");
+        assertThat(meterRegistry.get("coding.suggestion.cache").tag("result", "hit").counter().count())
+            .isEqualTo(1.0);
+        assertThat(meterRegistry.get("coding.suggestion.cache.hit.rate").gauge().value()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    @DisplayName("Concurrent requests should be answered in micro-batches by the local provider")
+    void testSuggest_MicroBatches() throws Exception {
+        // Arrange
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        CodeSuggestionProvider local = new LocalSuggestionProvider(DICTIONARY, Duration.ofMillis(20)) {
+            @Override
+            public List<CodeSuggestions> suggest(List<CodingRequest> requests) {
+                batchSizes.add(requests.size());
+                return super.suggest(requests);
+            }
+        };
+        service = service(local, Duration.ofSeconds(5), Duration.ofMillis(50));
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+
+        // Act
+        List<CompletableFuture<CodeSuggestions>> answers = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            CodingRequest request = request("Pneumonia " + i, "Radiografia de tórax", List.of());
+            answers.add(CompletableFuture.supplyAsync(() -> service.suggest(request), callers));
+        }
+        CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).join();
+        callers.shutdown();
+
+        // Assert
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(64);
+        assertThat(batchSizes).hasSizeLessThan(64).allSatisfy(size -> assertThat(size).isLessThanOrEqualTo(32));
+        assertThat(answers.get(7).join().codes(CodeSystem.ICD10)).containsExactly("J18.9");
+        assertThat(meterRegistry.get("coding.suggestion.fallbacks").tag("reason", "timeout").counter().count())
+            .isZero();
+    }
+
+    @Test
+    @DisplayName("A provider missing the deadline should be replaced by the dictionary, and its late answer cached")
+    void testSuggest_DeadlineFallback() throws Exception {
+        // Arrange
+        service = service(provider(Duration.ofMillis(300), new AtomicInteger(), false),
+            Duration.ofMillis(50), Duration.ofMillis(1));
+        CodingRequest request = request("Pneumonia", "Radiografia de tórax", List.of());
+
+        // Act
+        long start = System.nanoTime();
+        CodeSuggestions fallback = service.suggest(request);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Thread.sleep(500);
+        CodeSuggestions late = service.suggest(request);
+
+        // Assert
+        assertThat(elapsedMillis).isLessThan(250);
+        assertThat(fallback.getOverallConfidence()).isLessThan(0.99);
+        assertThat(fallback.codes(CodeSystem.ICD10)).containsExactly("J18.9");
+        assertThat(late).isSameAs(MODEL_SUGGESTIONS);
+        assertThat(meterRegistry.get("coding.suggestion.fallbacks").tag("reason", "timeout").counter().count())
+            .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("A failing provider should be replaced by the dictionary without caching the fallback")
+    void testSuggest_ErrorFallback() {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        service = service(provider(Duration.ZERO, calls, true), Duration.ofSeconds(2), Duration.ofMillis(1));
+        CodingRequest request = request("Apendicite", "Apendicectomia", List.of());
+
+        // Act
+        CodeSuggestions first = service.suggest(request);
+        CodeSuggestions second = service.suggest(request);
+
+        // Assert
+        assertThat(first.codes(CodeSystem.TUSS)).containsExactly("31009336");
+        assertThat(second.codes(CodeSystem.TUSS)).containsExactly("31009336");
+        assertThat(calls).hasValue(2);
+        assertThat(meterRegistry.get("coding.suggestion.fallbacks").tag("reason", "error").counter().count())
+            .isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("An unknown provider name should be rejected at startup")
+    void testConstructor_UnknownProvider() {
+        // Act & Assert
+        assertThatThrownBy(() -> new CodeSuggestionService(List.of(DICTIONARY), DICTIONARY, "gpt",
+                Duration.ofSeconds(2), 32, Duration.ofMillis(5), 4, 1000, 1000, Duration.ofHours(1),
+                meterRegistry))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("gpt");
+    }
+
+    private CodeSuggestionService service(CodeSuggestionProvider provider, Duration timeout, Duration maxWait) {
+        return new CodeSuggestionService(List.of(DICTIONARY, provider), DICTIONARY, provider.getName(),
+            timeout, 32, maxWait, 4, 1000, 1000, Duration.ofHours(1), meterRegistry);
+    }
+
+    private static CodeSuggestionProvider provider(Duration latency, AtomicInteger calls, boolean failing) {
+        return new CodeSuggestionProvider() {
+            @Override
+            public String getName() {
+                return "model";
+            }
+
+            @Override
+            public List<CodeSuggestions> suggest(List<CodingRequest> requests) {
+                calls.incrementAndGet();
+                try {
+                    Thread.sleep(latency.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (failing) {
+                    throw new IllegalStateException("Model unavailable");
+                }
+                List<CodeSuggestions> suggestions = new ArrayList<>();
+                requests.forEach(request -> suggestions.add(MODEL_SUGGESTIONS));
+                return suggestions;
+            }
+        };
+    }
+
+    private static CodingRequest request(String diagnosis, String procedure, List<String> comorbidities) {
+        return CodingRequest.builder()
+            .encounterId("MR-1")
+            .diagnosisDescription(diagnosis)
+            .procedureDescription(procedure)
+            .comorbidities(comorbidities)
+            .build();
+    }
+}
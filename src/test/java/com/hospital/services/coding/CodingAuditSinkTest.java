@@ -0,0 +1,208 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests writing coding audit trails with {@link CodingAuditSink} on an embedded H2
+ * database.
+ */
+@DisplayName("CodingAuditSink Tests")
+class CodingAuditSinkTest {
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private CodingAuditJdbcRepository repository;
+    private CodingAuditSink sink;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/coding_audit_entries.sql")
+            .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        repository = new CodingAuditJdbcRepository(jdbcTemplate);
+        sink = new CodingAuditSink(repository, 2, 100, 50, Duration.ofMillis(100), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sink.shutdown();
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("Submitted trails should be written by the writer in order, once")
+    void testSubmit_WrittenAsynchronously() throws Exception {
+        // Arrange
+        CodingAuditBuffer first = sink.open("proc-1", "Task_AssignCodes");
+        first.add(CodingAuditAction.INPUT_VALIDATED, null);
+        first.add(CodingAuditAction.CONFIDENCE_ASSESSED, "AUTO_APPROVED_HIGH_CONFIDENCE");
+        first.add(CodingAuditAction.DMN_EVALUATED, Map.of("validationResult", "PASS"));
+        CodingAuditBuffer second = sink.open("proc-2", "Task_AssignCodes");
+        second.add(CodingAuditAction.CODING_ERROR, "Input validation failed");
+
+        // Act
+        sink.submit(first);
+        sink.submit(second);
+        sink.submit(first);
+        awaitEntries(4);
+
+        // Assert
+        List<CodingAuditEntry> entries = repository.findByAuditId(first.getAuditId());
+        assertThat(entries).extracting(CodingAuditEntry::getAction).containsExactly(
+            CodingAuditAction.INPUT_VALIDATED, CodingAuditAction.CONFIDENCE_ASSESSED, CodingAuditAction.DMN_EVALUATED);
+        assertThat(entries).extracting(CodingAuditEntry::getSequence).containsExactly(0, 1, 2);
+        assertThat(entries.get(0).getDetail()).isNull();
+        assertThat(entries.get(2).getDetail()).isEqualTo("{validationResult=PASS}");
+        assertThat(entries.get(2).getProcessInstanceId()).isEqualTo("proc-1");
+        assertThat(entries.get(2).getRecordedAt()).isNotNull();
+        assertThat(repository.findByAuditId(second.getAuditId())).hasSize(1);
+        assertThat(first.getAuditId()).isNotEqualTo(second.getAuditId());
+    }
+
+    @Test
+    @DisplayName("A trail should grow past its preallocated capacity and be closed once submitted")
+    void testAdd_GrowsAndClosesOnSubmit() {
+        // Arrange
+        CodingAuditBuffer trail = sink.open("proc-1", "Task_AssignCodes");
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            trail.add(CodingAuditAction.CODES_SUGGESTED, i);
+        }
+        sink.submit(trail);
+
+        // Assert
+        assertThat(trail.size()).isEqualTo(5);
+        assertThat(trail.detail(4)).isEqualTo(4);
+        assertThatThrownBy(() -> trail.add(CodingAuditAction.SYSTEM_ERROR, null))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("After shutdown, trails should be written on the submitting thread with long details truncated")
+    void testSubmit_InlineAfterShutdown() {
+        // Arrange
+        sink.shutdown();
+        CodingAuditBuffer trail = sink.open("proc-1", "Task_AssignCodes");
+        trail.add(CodingAuditAction.CODES_SUGGESTED, "x".repeat(5000));
+
+        // Act
+        sink.submit(trail);
+
+        // Assert
+        List<CodingAuditEntry> entries = repository.findByAuditId(trail.getAuditId());
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).getDetail()).hasSize(CodingAuditJdbcRepository.MAX_DETAIL_LENGTH);
+        assertThat(meterRegistry.get("coding.audit.inline.writes").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("A trail rejected by the database should be kept and written once the table exists")
+    void testSubmit_RetriedAfterDatabaseError() throws Exception {
+        // Arrange
+        jdbcTemplate.execute("DROP TABLE coding_audit_entries");
+        CodingAuditBuffer trail = sink.open("proc-1", "Task_AssignCodes");
+        trail.add(CodingAuditAction.INPUT_VALIDATED, null);
+        trail.add(CodingAuditAction.CODES_VALIDATED, null);
+
+        // Act
+        sink.submit(trail);
+        awaitRetrySize(1);
+        new ResourceDatabasePopulator(new ClassPathResource("schema/coding_audit_entries.sql")).execute(database);
+        awaitEntries(2);
+
+        // Assert
+        assertThat(repository.findByAuditId(trail.getAuditId())).hasSize(2);
+        assertThat(meterRegistry.get("coding.audit.retry.size").gauge().value()).isZero();
+        assertThat(meterRegistry.get("coding.audit.entries").tag("result", "failed").counter().count())
+            .isGreaterThanOrEqualTo(2.0);
+        assertThat(meterRegistry.get("coding.audit.entries").tag("result", "logged").counter().count())
+            .isZero();
+    }
+
+    @Test
+    @DisplayName("After shutdown, a trail rejected by the database should be logged without failing the process")
+    void testSubmit_LoggedAfterShutdown() {
+        // Arrange
+        sink.shutdown();
+        jdbcTemplate.execute("DROP TABLE coding_audit_entries");
+        CodingAuditBuffer trail = sink.open("proc-1", "Task_AssignCodes");
+        trail.add(CodingAuditAction.INPUT_VALIDATED, null);
+        trail.add(CodingAuditAction.CODES_VALIDATED, null);
+
+        // Act
+        sink.submit(trail);
+
+        // Assert
+        assertThat(meterRegistry.get("coding.audit.entries").tag("result", "failed").counter().count())
+            .isEqualTo(2.0);
+        assertThat(meterRegistry.get("coding.audit.entries").tag("result", "logged").counter().count())
+            .isEqualTo(2.0);
+        assertThat(meterRegistry.get("coding.audit.retry.size").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Shutdown should make a last attempt at the trails kept after database errors")
+    void testShutdown_RetriesKeptTrails() throws Exception {
+        // Arrange
+        sink.shutdown();
+        meterRegistry = new SimpleMeterRegistry();
+        sink = new CodingAuditSink(repository, 2, 100, 50, Duration.ofHours(1), meterRegistry);
+        jdbcTemplate.execute("DROP TABLE coding_audit_entries");
+        CodingAuditBuffer trail = sink.open("proc-1", "Task_AssignCodes");
+        trail.add(CodingAuditAction.INPUT_VALIDATED, null);
+        sink.submit(trail);
+        awaitRetrySize(1);
+        new ResourceDatabasePopulator(new ClassPathResource("schema/coding_audit_entries.sql")).execute(database);
+
+        // Act
+        sink.shutdown();
+
+        // Assert
+        assertThat(repository.findByAuditId(trail.getAuditId())).hasSize(1);
+    }
+
+    private void awaitEntries(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // Leave the writer time to write anything unexpected
+        Thread.sleep(100);
+        assertThat(count()).isEqualTo(expected);
+    }
+
+    private void awaitRetrySize(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("coding.audit.retry.size").gauge().value() < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.get("coding.audit.retry.size").gauge().value()).isEqualTo(expected);
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM coding_audit_entries", Integer.class);
+    }
+}
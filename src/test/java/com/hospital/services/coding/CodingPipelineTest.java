@@ -0,0 +1,109 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests {@link CodingPipeline} with the bundled dictionary, catalog, rules and DRG tables.
+ */
+@DisplayName("CodingPipeline Tests")
+class CodingPipelineTest {
+
+    private CodingPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        CodeCatalogService catalogService = new CodeCatalogService("", new ClassPathResource("coding/catalog.tsv"),
+            new SimpleMeterRegistry());
+        catalogService.load();
+        DrgGrouperService drgGrouperService = new DrgGrouperService(new ClassPathResource("coding/drg-tables.tsv"),
+            "", 500, catalogService, mock(EncounterCodingJdbcRepository.class), new SimpleMeterRegistry());
+        drgGrouperService.load();
+        pipeline = new CodingPipeline(
+            CodeSuggestionServiceTest.dictionarySuggestions(),
+            catalogService,
+            new CodeCompatibilityService(new ClassPathResource("coding/compatibility.tsv"), catalogService),
+            drgGrouperService);
+    }
+
+    @Test
+    @DisplayName("Encounter should be coded and grouped with its comorbidities as secondary diagnoses")
+    void testCode_Coded() {
+        // Act
+        CodingResult result = pipeline.code(request("MR-1", "Pneumonia comunitária", "Radiografia de tórax",
+            List.of("diabetes tipo 2")));
+
+        // Assert
+        assertThat(result.isCoded()).isTrue();
+        assertThat(result.getSuggestions().codes(CodeSystem.ICD10)).containsExactly("J18.9", "E11.9");
+        assertThat(result.getSuggestions().getPrimaryProcedureCode()).isEqualTo("40901114");
+        assertThat(result.getCoding().getEncounterId()).isEqualTo("MR-1");
+        assertThat(result.getCoding().getSecondaryDiagnoses()).isEqualTo("E11.9");
+        assertThat(result.getCoding().getDrgCode()).isEqualTo("040");
+        assertThat(result.getCoding().getDrgSeverity()).isEqualTo(DrgSeverity.MEDIUM);
+        assertThat(result.getDrgDescription()).isEqualTo("Doenças do Aparelho Respiratório");
+        assertThat(result.getErrors()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Unrecognized text should fall back to R69 and the outpatient visit")
+    void testSuggest_Fallbacks() {
+        // Act
+        CodeSuggestions suggestions = pipeline.suggest(request("MR-2", "mal-estar", "procedimento", List.of("xyz")));
+
+        // Assert
+        assertThat(suggestions.codes(CodeSystem.ICD10)).containsExactly("R69", "Z99.9");
+        assertThat(suggestions.codes(CodeSystem.TUSS)).containsExactly("10101012");
+        assertThat(suggestions.codes(CodeSystem.CBHPM)).isEmpty();
+        assertThat(suggestions.requiresReview()).isTrue();
+        assertThat(suggestions.reviewReason()).isEqualTo("REVIEW_LOW_CONFIDENCE");
+    }
+
+    @Test
+    @DisplayName("Missing data and incompatible codes should fail without a grouping")
+    void testCode_Failed() {
+        // Act
+        CodingResult missing = pipeline.code(request("MR-3", " ", "Apendicectomia", List.of()));
+        CodingResult incompatible = pipeline.code(request("MR-4", "mal-estar", "Apendicectomia", List.of()));
+
+        // Assert
+        assertThat(missing.isCoded()).isFalse();
+        assertThat(missing.getErrorCode()).isEqualTo(CodingResult.INPUT_VALIDATION_ERROR);
+        assertThat(missing.getErrors()).containsExactly("Diagnosis description is required");
+        assertThat(incompatible.isCoded()).isFalse();
+        assertThat(incompatible.getErrorCode()).isEqualTo(CodingResult.CODE_COMBINATION_ERROR);
+        assertThat(incompatible.getErrors()).containsExactly(
+            "ICD-10 code R69 incompatible with TUSS code 31009336 (no diagnosis justifies the procedure)");
+    }
+
+    @Test
+    @DisplayName("Service date should be the procedure date, or today when absent or invalid")
+    void testServiceDate() {
+        // Assert
+        assertThat(CodingPipeline.serviceDate(CodingRequest.builder().procedureDate("2019-12-31T10:00").build()))
+            .isEqualTo(LocalDate.of(2019, 12, 31));
+        assertThat(CodingPipeline.serviceDate(CodingRequest.builder().procedureDate("31/12/2019").build()))
+            .isEqualTo(LocalDate.now());
+        assertThat(CodingPipeline.serviceDate(CodingRequest.builder().build())).isEqualTo(LocalDate.now());
+    }
+
+    private static CodingRequest request(String encounterId, String diagnosis, String procedure,
+                                         List<String> comorbidities) {
+        return CodingRequest.builder()
+            .encounterId(encounterId)
+            .patientId("P-1")
+            .diagnosisDescription(diagnosis)
+            .procedureDescription(procedure)
+            .comorbidities(comorbidities)
+            .build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.hospital.services.coding;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests {@link CompatibilityIndex} over a small catalog.
+ */
+@DisplayName("CompatibilityIndex Tests")
+class CompatibilityIndexTest {
+
+    private static final String RULES = String.join("\n",
+        "# Surgical procedures are not justified by Z codes",
+        "31*\tDENY\tZ*",
+        "31009336\tALLOW\tK35-K38,R10*",
+        "30904021\tALLOW\tI20-I25",
+        "");
+
+    @TempDir
+    Path directory;
+
+    private CodeCatalog catalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        List<CodeCatalogEntry> entries = new ArrayList<>();
+        for (String code : List.of("I10", "I20.0", "I21.9", "I25", "I25.9", "I26.9", "K35.8", "K38.9",
+                                   "K40.9", "R10.4", "Z00.0", "Z99.9")) {
+            entries.add(new CodeCatalogEntry(CodeSystem.ICD10, code, code, null, null));
+        }
+        for (String code : List.of("10101012", "30904021", "31009336", "31009166")) {
+            entries.add(new CodeCatalogEntry(CodeSystem.TUSS, code, code, null, null));
+        }
+        Path file = directory.resolve("code-catalog-1.bin");
+        CodeCatalogWriter.write(file, 1, entries);
+        catalog = CodeCatalog.open(file);
+    }
+
+    @Test
+    @DisplayName("Prefixes and ranges of DENY and ALLOW rules should select the matching codes")
+    void testIsCompatible_Patterns() throws Exception {
+        // Arrange
+        CompatibilityIndex index = CompatibilityIndex.build(catalog, CompatibilityIndex.readRules(new StringReader(RULES)));
+
+        // Act & Assert
+        assertThat(index.isCompatible("Z00.0", "31009166")).isFalse();
+        assertThat(index.isCompatible("K40.9", "31009166")).isTrue();
+        assertThat(index.isCompatible("Z00.0", "10101012")).isTrue();
+        assertThat(index.isCompatible("I25.9", "30904021")).isTrue();
+        assertThat(index.isCompatible("I20.0", "30904021")).isTrue();
+        assertThat(index.isCompatible("I26.9", "30904021")).isFalse();
+        assertThat(index.isCompatible("K38.9", "31009336")).isTrue();
+        assertThat(index.isCompatible("Z99.9", "31009336")).isFalse();
+        assertThat(index.isCompatible("X00", "31009336")).isTrue();
+        assertThat(index.constraintCount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Every pair should be checked and each violation reported")
+    void testViolations_AllPairs() throws Exception {
+        // Arrange
+        CompatibilityIndex index = CompatibilityIndex.build(catalog, CompatibilityIndex.readRules(new StringReader(RULES)));
+
+        // Act
+        List<CompatibilityViolation> justified = index.violations(
+            List.of("I10", "K35.8"), List.of("10101012", "31009336"));
+        List<CompatibilityViolation> violations = index.violations(
+            List.of("Z99.9", "I10", "I21.9"), List.of("10101012", "31009336", "30904021", "31009166"));
+
+        // Assert
+        assertThat(justified).isEmpty();
+        assertThat(violations).containsExactly(
+            new CompatibilityViolation("Z99.9", "31009336", CompatibilityRule.Effect.DENY),
+            new CompatibilityViolation("I10", "31009336", CompatibilityRule.Effect.ALLOW),
+            new CompatibilityViolation("I21.9", "31009336", CompatibilityRule.Effect.ALLOW),
+            new CompatibilityViolation("Z99.9", "31009336", CompatibilityRule.Effect.ALLOW),
+            new CompatibilityViolation("Z99.9", "31009166", CompatibilityRule.Effect.DENY));
+    }
+
+    @Test
+    @DisplayName("Malformed rules should be rejected with their line number")
+    void testReadRules_Malformed() {
+        // Act & Assert
+        assertThatThrownBy(() -> CompatibilityIndex.readRules(new StringReader("31*\tMAYBE\tZ*")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("line 1 must be ALLOW or DENY");
+        assertThatThrownBy(() -> CompatibilityIndex.readRules(new StringReader("\n31*\tDENY\tz00")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("line 2 has an invalid ICD-10 pattern");
+    }
+}
@@ -0,0 +1,86 @@
+package com.hospital.services.coding;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link CompressedBitSet} operations, also against {@link BitSet}.
+ */
+@DisplayName("CompressedBitSet Tests")
+class CompressedBitSetTest {
+
+    @Test
+    @DisplayName("Ranges should include their start and exclude their end across word boundaries")
+    void testRange_WordBoundaries() {
+        // Act
+        CompressedBitSet range = CompressedBitSet.range(60, 130);
+
+        // Assert
+        assertThat(range.cardinality()).isEqualTo(70);
+        assertThat(range.get(59)).isFalse();
+        assertThat(range.get(60)).isTrue();
+        assertThat(range.get(129)).isTrue();
+        assertThat(range.get(130)).isFalse();
+        assertThat(range.nextSetBit(0)).isEqualTo(60);
+        assertThat(CompressedBitSet.range(0, 64).cardinality()).isEqualTo(64);
+        assertThat(CompressedBitSet.range(5, 5).isEmpty()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Set operations should agree with java.util.BitSet")
+    void testOperations_AgreeWithBitSet() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            // Arrange
+            BitSet left = randomBits(random);
+            BitSet right = randomBits(random);
+            CompressedBitSet a = CompressedBitSet.of(left.stream().toArray());
+            CompressedBitSet b = CompressedBitSet.of(right.stream().toArray());
+
+            // Act
+            BitSet and = (BitSet) left.clone();
+            and.and(right);
+            BitSet or = (BitSet) left.clone();
+            or.or(right);
+            BitSet andNot = (BitSet) left.clone();
+            andNot.andNot(right);
+
+            // Assert
+            assertThat(a.and(b)).isEqualTo(CompressedBitSet.of(and.stream().toArray()));
+            assertThat(a.or(b)).isEqualTo(CompressedBitSet.of(or.stream().toArray()));
+            assertThat(a.andNot(b)).isEqualTo(CompressedBitSet.of(andNot.stream().toArray()));
+            assertThat(a.intersects(b)).isEqualTo(left.intersects(right));
+            assertThat(a.cardinality()).isEqualTo(left.cardinality());
+            int probe = random.nextInt(4096);
+            assertThat(a.get(probe)).isEqualTo(left.get(probe));
+            assertThat(a.nextSetBit(probe)).isEqualTo(left.nextSetBit(probe));
+        }
+    }
+
+    @Test
+    @DisplayName("Only non-zero words should be stored")
+    void testSizeInBytes_Sparse() {
+        // Act
+        CompressedBitSet sparse = CompressedBitSet.of(3, 1_000_000, 1_000_001);
+
+        // Assert
+        assertThat(sparse.sizeInBytes()).isEqualTo(2 * (4 + 8));
+        assertThat(sparse.toString()).isEqualTo("{3, 1000000, 1000001}");
+        assertThat(sparse.and(CompressedBitSet.range(0, 10))).isEqualTo(CompressedBitSet.of(3));
+    }
+
+    private static BitSet randomBits(Random random) {
+        BitSet bits = new BitSet();
+        int count = random.nextInt(40);
+        for (int i = 0; i < count; i++) {
+            int start = random.nextInt(4096);
+            bits.set(start, Math.min(4096, start + 1 + random.nextInt(random.nextBoolean() ? 2 : 200)));
+        }
+        return bits;
+    }
+}
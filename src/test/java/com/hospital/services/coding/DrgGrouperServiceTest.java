@@ -0,0 +1,125 @@
+package com.hospital.services.coding;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests publishing DRG table versions and regrouping recorded encounters with
+ * {@link DrgGrouperService} on an embedded H2 database.
+ */
+@DisplayName("DrgGrouperService Tests")
+class DrgGrouperServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private DrgGrouperService service;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/encounter_codings.sql")
+            .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        CodeCatalogService catalogService = new CodeCatalogService("", new ClassPathResource("coding/catalog.tsv"),
+            new SimpleMeterRegistry());
+        catalogService.load();
+        service = new DrgGrouperService(new ClassPathResource("coding/drg-tables.tsv"), directory.toString(), 2,
+            catalogService, new EncounterCodingJdbcRepository(jdbcTemplate), new SimpleMeterRegistry());
+        service.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("Recording an encounter twice should keep one row with the latest grouping")
+    void testRecordGrouping_Replaces() {
+        // Arrange
+        DrgGrouper grouper = service.getGrouper();
+
+        // Act
+        record("MR-1", "J18.9", List.of());
+        record("MR-1", "J18.9", List.of("I50.9"));
+
+        // Assert
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM encounter_codings", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT drg_severity FROM encounter_codings WHERE encounter_id = 'MR-1'", String.class)).isEqualTo("HIGH");
+        assertThat(grouper.getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A newer table version should be loaded and every older grouping regrouped once")
+    void testRegroupStale_NewVersion() throws Exception {
+        // Arrange
+        for (int i = 0; i < 5; i++) {
+            record("MR-" + i, "J18.9", List.of("E11.9"));
+        }
+        String tables;
+        try (InputStream in = new ClassPathResource("coding/drg-tables.tsv").getInputStream()) {
+            tables = new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                .replace("VERSION\t1", "VERSION\t2")
+                .replace("DRG\t040\t08\tMED\t0.90,1.25,1.95", "DRG\t040\t08\tMED\t0.92,1.30,2.00");
+        }
+        Files.writeString(directory.resolve("drg-tables-2.tsv"), tables);
+
+        // Act
+        service.reload();
+        int regrouped = service.regroupStale();
+        int again = service.regroupStale();
+
+        // Assert
+        assertThat(service.getTableVersion()).isEqualTo(2);
+        assertThat(regrouped).isEqualTo(5);
+        assertThat(again).isZero();
+        assertThat(jdbcTemplate.queryForList(
+            "SELECT DISTINCT relative_weight FROM encounter_codings WHERE drg_table_version = 2 AND regrouped_at IS NOT NULL",
+            Double.class)).containsExactly(1.30);
+    }
+
+    @Test
+    @DisplayName("Malformed or older table files should be ignored")
+    void testReload_Ignored() throws Exception {
+        // Arrange
+        Files.writeString(directory.resolve("drg-tables-0.tsv"), "VERSION\t0\n");
+        Files.writeString(directory.resolve("drg-tables-9.tsv"), "VERSION\t9\nMDC\t01\n");
+
+        // Act
+        service.reload();
+
+        // Assert
+        assertThat(service.getTableVersion()).isEqualTo(1);
+    }
+
+    private void record(String encounterId, String principal, List<String> secondaries) {
+        DrgGrouper grouper = service.getGrouper();
+        int result = grouper.group(principal, secondaries, List.of());
+        service.recordGrouping(service.grouping(encounterId, "P-1", principal, secondaries, List.of(), grouper, result,
+            LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,118 @@
+package com.hospital.services.coding;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests {@link DrgGrouper} with the bundled DRG tables and code catalog.
+ */
+@DisplayName("DrgGrouper Tests")
+class DrgGrouperTest {
+
+    @TempDir
+    Path directory;
+
+    private CodeCatalog catalog;
+    private DrgGrouper grouper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = directory.resolve("code-catalog-0.bin");
+        try (Reader reader = reader("coding/catalog.tsv")) {
+            CodeCatalogWriter.write(file, 0, CodeCatalogWriter.readTsv(reader));
+        }
+        catalog = CodeCatalog.open(file);
+        try (Reader reader = reader("coding/drg-tables.tsv")) {
+            grouper = DrgGrouper.build(DrgGrouper.readTables(reader), catalog);
+        }
+    }
+
+    @Test
+    @DisplayName("Principal diagnosis should select the MDC and operating-room procedures the surgical DRG")
+    void testGroup_MedicalAndSurgical() {
+        // Act
+        int medical = grouper.group("J18.9", List.of(), List.of("40901114"));
+        int surgical = grouper.group("K35.8", List.of(), List.of("40302040", "31009336"));
+
+        // Assert
+        assertThat(grouper.drgCode(medical)).isEqualTo("040");
+        assertThat(grouper.severity(medical)).isEqualTo(DrgSeverity.LOW);
+        assertThat(grouper.relativeWeight(medical)).isEqualTo(0.90);
+        assertThat(grouper.expectedLos(medical)).isEqualTo(4);
+        assertThat(grouper.drgCode(surgical)).isEqualTo("051");
+        assertThat(grouper.drgDescription(surgical)).isEqualTo("Procedimentos Cirúrgicos Digestivos");
+    }
+
+    @Test
+    @DisplayName("The most severe secondary diagnosis should select the severity split")
+    void testGroup_SeveritySplits() {
+        // Act
+        int cc = grouper.group("J18.9", List.of("I10", "E11.9"), List.of());
+        int mcc = grouper.group("J18.9", List.of("I10", "I50.9"), List.of());
+        int principalOnly = grouper.group("I50.9", List.of("I50.9"), List.of());
+
+        // Assert
+        assertThat(grouper.severity(cc)).isEqualTo(DrgSeverity.MEDIUM);
+        assertThat(grouper.relativeWeight(cc)).isEqualTo(1.25);
+        assertThat(grouper.severity(mcc)).isEqualTo(DrgSeverity.HIGH);
+        assertThat(grouper.expectedLos(mcc)).isEqualTo(9);
+        assertThat(grouper.severity(principalOnly)).isEqualTo(DrgSeverity.LOW);
+    }
+
+    @Test
+    @DisplayName("Ordinal and code grouping should agree, and unknown principal diagnoses be ungroupable")
+    void testGroup_OrdinalsAndUngroupable() {
+        // Arrange
+        int[] secondaries = {catalog.ordinal(CodeSystem.ICD10, "N18.9"), -1};
+        int[] procedures = {catalog.ordinal(CodeSystem.TUSS, "30904021")};
+
+        // Act
+        int byOrdinal = grouper.group(catalog.ordinal(CodeSystem.ICD10, "I21.9"), secondaries, 2, procedures, 1);
+        int byCode = grouper.group("I21.9", List.of("N18.9", "X99"), List.of("30904021"));
+        int ungroupable = grouper.group("X99", List.of("I50.9"), List.of());
+
+        // Assert
+        assertThat(byOrdinal).isEqualTo(byCode);
+        assertThat(grouper.drgCode(byCode)).isEqualTo("031");
+        assertThat(grouper.severity(byCode)).isEqualTo(DrgSeverity.MEDIUM);
+        assertThat(ungroupable).isEqualTo(DrgGrouper.UNGROUPABLE);
+        assertThat(DrgGrouper.isGrouped(ungroupable)).isFalse();
+        assertThat(grouper.drgCode(ungroupable)).isEqualTo(DrgGrouper.UNGROUPABLE_CODE);
+        assertThat(grouper.relativeWeight(ungroupable)).isZero();
+        assertThat(grouper.group(null, List.of(), List.of())).isEqualTo(DrgGrouper.UNGROUPABLE);
+    }
+
+    @Test
+    @DisplayName("Malformed and inconsistent tables should be rejected")
+    void testReadTables_Rejected() {
+        // Act & Assert
+        assertThatThrownBy(() -> DrgGrouper.readTables(new StringReader("MDC\t01\tA00-B99\tInfecciosas\n")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("no VERSION line");
+        assertThatThrownBy(() -> DrgGrouper.readTables(new StringReader(
+                "VERSION\t2\nDRG\t001\t01\tMED\t0.9,1.2\t4,6,10\tInfecciosas\n")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("DRG tables line 2");
+        assertThatThrownBy(() -> DrgGrouper.build(DrgGrouper.readTables(new StringReader(
+                "VERSION\t2\nDRG\t001\t01\tMED\t0.9,1.2,2.1\t4,6,10\tInfecciosas\n")), catalog))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("unknown MDC 01");
+    }
+
+    private static Reader reader(String resource) {
+        return new InputStreamReader(DrgGrouperTest.class.getClassLoader().getResourceAsStream(resource),
+            StandardCharsets.UTF_8);
+    }
+}
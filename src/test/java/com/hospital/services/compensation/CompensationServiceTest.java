@@ -0,0 +1,84 @@
+package com.hospital.services.compensation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the retention of {@link CompensationService} records.
+ */
+@DisplayName("CompensationService Tests")
+class CompensationServiceTest {
+
+    private static final Duration RETENTION = Duration.ofDays(30);
+
+    private CompensationService compensationService;
+
+    @BeforeEach
+    void setUp() {
+        compensationService = new CompensationService(RETENTION);
+    }
+
+    @Test
+    @DisplayName("A compensation should no longer be detected once the retention has elapsed")
+    void testCompensation_ExpiresAfterRetention() {
+        // Arrange
+        long recordedAt = System.currentTimeMillis();
+        compensationService.recordCompensation("proc-1", "CLAIM", "CLM-1", "claim rejected", true);
+
+        // Act
+        int beforeRetention = compensationService.expireRecords(
+            recordedAt + RETENTION.minusMinutes(5).toMillis());
+        boolean performedBeforeRetention = compensationService.isCompensationPerformed("proc-1", "CLAIM");
+        int afterRetention = compensationService.expireRecords(
+            recordedAt + RETENTION.plusMinutes(5).toMillis());
+
+        // Assert
+        assertThat(beforeRetention).isZero();
+        assertThat(performedBeforeRetention).isTrue();
+        assertThat(afterRetention).isEqualTo(1);
+        assertThat(compensationService.isCompensationPerformed("proc-1", "CLAIM")).isFalse();
+        assertThat(compensationService.getProcessCompensationHistory("proc-1")).isEmpty();
+        assertThat(compensationService.getTrackedCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Clearing a process should cancel the expiries of its records")
+    void testClearProcessHistory_CancelsExpiries() {
+        // Arrange
+        long recordedAt = System.currentTimeMillis();
+        compensationService.recordCompensation("proc-1", "CLAIM", "CLM-1", "claim rejected", true);
+        compensationService.recordCompensation("proc-1", "CODING", "ENC-1", "coding reverted", true);
+        compensationService.recordCompensation("proc-2", "CLAIM", "CLM-2", "claim rejected", false);
+
+        // Act
+        compensationService.clearProcessHistory("proc-1");
+        int expired = compensationService.expireRecords(recordedAt + RETENTION.plusMinutes(5).toMillis());
+
+        // Assert
+        assertThat(compensationService.isCompensationPerformed("proc-1", "CLAIM")).isFalse();
+        assertThat(compensationService.isCompensationPerformed("proc-1", "CODING")).isFalse();
+        assertThat(expired).isEqualTo(1);
+        assertThat(compensationService.getTrackedCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Recording a compensation again should restart its retention")
+    void testRecordCompensation_AgainRestartsRetention() {
+        // Arrange
+        compensationService.recordCompensation("proc-1", "CLAIM", "CLM-1", "claim rejected", false);
+
+        // Act
+        compensationService.recordCompensation("proc-1", "CLAIM", "CLM-1", "claim rejected", true);
+
+        // Assert
+        assertThat(compensationService.getTrackedCount()).isEqualTo(1);
+        assertThat(compensationService.getProcessCompensationHistory("proc-1"))
+            .singleElement()
+            .satisfies(record -> assertThat(record.isSuccess()).isTrue());
+    }
+}
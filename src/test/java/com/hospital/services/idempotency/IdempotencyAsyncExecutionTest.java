@@ -0,0 +1,138 @@
+package com.hospital.services.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests {@link IdempotencyService#executeIdempotentAsync} against an in-memory
+ * {@link OffHeapIdempotencyStore}.
+ */
+@DisplayName("IdempotencyService Async Execution Tests")
+class IdempotencyAsyncExecutionTest {
+
+    private OffHeapIdempotencyStore store;
+    private IdempotencyResultCache resultCache;
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyAsyncExecutor asyncExecutor;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        store = new OffHeapIdempotencyStore(DataSize.ofMegabytes(1));
+        resultCache = new IdempotencyResultCache(100, Duration.ofMinutes(10));
+        meterRegistry = new SimpleMeterRegistry();
+        asyncExecutor = new IdempotencyAsyncExecutor(true, 4, 16, Duration.ofSeconds(30));
+        IdempotencyMetrics metrics = new IdempotencyMetrics(meterRegistry, store);
+        idempotencyService = new IdempotencyService(
+            store,
+            resultCache,
+            new IdempotencySingleFlight(false, Duration.ofSeconds(1), Duration.ofMillis(10),
+                Duration.ofMillis(100), meterRegistry),
+            new IdempotencyResultCodec(new ObjectMapper(), 1024),
+            new IdempotencyLeaseManager(store, Duration.ofMinutes(2), Duration.ofSeconds(30),
+                Duration.ofMinutes(30), "node-a"),
+            new IdempotencyBatchExecutor(1, 16),
+            metrics,
+            asyncExecutor,
+            new IdempotencyExpiryTracker(store, resultCache, metrics, meterRegistry, Duration.ofSeconds(1),
+                Duration.ofMinutes(30), 1000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncExecutor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Async execution should store the result the synchronous path replays")
+    void testExecuteIdempotentAsync_SameResultAsSync() throws Exception {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        String asyncResult = idempotencyService.executeIdempotentAsync("PAYMENT", "key-1", String.class,
+            () -> "PAY-" + executions.incrementAndGet()).get(5, TimeUnit.SECONDS);
+        resultCache.clear();
+        String syncResult = idempotencyService.executeIdempotent("PAYMENT", "key-1", String.class,
+            () -> "PAY-" + executions.incrementAndGet());
+        String asyncReplay = idempotencyService.executeIdempotentAsync("PAYMENT", "key-1", String.class,
+            () -> "PAY-" + executions.incrementAndGet()).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(asyncResult).isEqualTo("PAY-1");
+        assertThat(syncResult).isEqualTo("PAY-1");
+        assertThat(asyncReplay).isEqualTo("PAY-1");
+        assertThat(store.find("PAYMENT", "key-1").getKey().isCompleted()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Failing async operation should fail the future with the synchronous exception")
+    void testExecuteIdempotentAsync_OperationFails() {
+        // Act
+        CompletableFuture<String> future = idempotencyService.executeIdempotentAsync("PAYMENT", "key-1",
+            String.class, () -> {
+                throw new IllegalStateException("gateway down");
+            });
+
+        // Assert
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(IdempotencyException.class)
+            .hasRootCauseMessage("gateway down");
+        assertThat(store.find("PAYMENT", "key-1").getKey().getStatus())
+            .isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+    }
+
+    @Test
+    @DisplayName("Timed out operation should mark its key FAILED so a retry can take it over")
+    void testExecuteIdempotentAsync_TimeoutFailsKey() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        // Act
+        CompletableFuture<String> future = idempotencyService.executeIdempotentAsync("PAYMENT", "key-1",
+            String.class, () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+                return "PAY-LATE";
+            }, Duration.ofMillis(50));
+
+        // Assert
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(IdempotencyException.class)
+            .hasMessageContaining("timed out");
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(store.find("PAYMENT", "key-1").getKey().getStatus())
+            .isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+        assertThat(meterRegistry.get("idempotency.timeouts").tag("operationType", "PAYMENT")
+            .counter().count()).isEqualTo(1);
+
+        IdempotencyOutcome<String> retry = idempotencyService.executeWithOutcome("PAYMENT", "key-1",
+            String.class, () -> "PAY-1");
+        assertThat(retry.getStatus()).isEqualTo(IdempotencyOutcome.Status.RECOVERED_AFTER_CONFLICT);
+        assertThat(retry.getValue()).isEqualTo("PAY-1");
+    }
+}
@@ -0,0 +1,65 @@
+package com.hospital.services.idempotency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link IdempotencyBatchExecutor}.
+ */
+@DisplayName("IdempotencyBatchExecutor Tests")
+class IdempotencyBatchExecutorTest {
+
+    @Test
+    @DisplayName("Sequential executor should run every task on the calling thread")
+    void testRunAll_Sequential() {
+        // Arrange
+        IdempotencyBatchExecutor executor = new IdempotencyBatchExecutor(1, 16);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(() -> threads.add(Thread.currentThread()));
+        }
+
+        // Act
+        executor.runAll(tasks);
+
+        // Assert
+        assertThat(executor.isParallel()).isFalse();
+        assertThat(threads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    @DisplayName("Parallel executor should run every task before returning, even past the queue capacity")
+    void testRunAll_ParallelBoundedQueue() {
+        // Arrange
+        IdempotencyBatchExecutor executor = new IdempotencyBatchExecutor(4, 2);
+        AtomicInteger completed = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tasks.add(() -> {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                completed.incrementAndGet();
+            });
+        }
+
+        // Act
+        executor.runAll(tasks);
+        executor.shutdown();
+
+        // Assert
+        assertThat(executor.isParallel()).isTrue();
+        assertThat(completed.get()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,179 @@
+package com.hospital.services.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link IdempotencyCleanupEngine} against an embedded H2 database.
+ */
+@DisplayName("IdempotencyCleanupEngine Tests")
+class IdempotencyCleanupEngineTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/idempotency_keys.sql")
+            .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("Expired keys should be deleted in chunks, keeping live keys")
+    void testRun_DeletesInChunks() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 25; i++) {
+            insertKey("key-" + i, i % 5 == 0 ? now.plusHours(1) : now.minusHours(1));
+        }
+        IdempotencyCleanupEngine engine = engine(7, 0, Duration.ofMinutes(1));
+
+        // Act
+        IdempotencyCleanupEngine.CleanupResult result = engine.run(now);
+
+        // Assert
+        assertThat(result.getDeleted()).isEqualTo(20);
+        assertThat(result.getChunks()).isEqualTo(3);
+        assertThat(result.isStoppedEarly()).isFalse();
+        assertThat(result.getBacklog()).isZero();
+        assertThat(countKeys()).isEqualTo(5);
+        assertThat(meterRegistry.get("idempotency.cleanup.deleted").counter().count()).isEqualTo(20.0);
+    }
+
+    @Test
+    @DisplayName("Run should stop at the maximum duration and report the backlog")
+    void testRun_StopsAtMaxDuration() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 10; i++) {
+            insertKey("key-" + i, now.minusHours(1));
+        }
+        IdempotencyCleanupEngine engine = engine(5, 0, Duration.ZERO);
+
+        // Act
+        IdempotencyCleanupEngine.CleanupResult result = engine.run(now);
+
+        // Assert
+        assertThat(result.isStoppedEarly()).isTrue();
+        assertThat(result.getDeleted()).isZero();
+        assertThat(result.getBacklog()).isEqualTo(10);
+        assertThat(meterRegistry.get("idempotency.cleanup.backlog").gauge().value()).isEqualTo(10.0);
+    }
+
+    @Test
+    @DisplayName("Deletion rate should be throttled to the configured maximum")
+    void testRun_Throttled() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 20; i++) {
+            insertKey("key-" + i, now.minusHours(1));
+        }
+        IdempotencyCleanupEngine engine = engine(10, 100, Duration.ofMinutes(1));
+
+        // Act
+        IdempotencyCleanupEngine.CleanupResult result = engine.run(now);
+
+        // Assert
+        assertThat(result.getDeleted()).isEqualTo(20);
+        assertThat(result.getDurationMillis()).isGreaterThanOrEqualTo(190);
+        assertThat(result.getRowsPerSecond()).isLessThanOrEqualTo(105);
+    }
+
+    @Test
+    @DisplayName("Shards should take turns over id stripes and delete each expired key once")
+    void testRun_ShardsByIdStripes() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 40; i++) {
+            insertKey("key-" + i, i % 4 == 0 ? now.plusHours(1) : now.minusHours(1));
+        }
+        IdempotencyCleanupEngine engine = engine(2, 0, Duration.ofMinutes(1), 5);
+
+        long[] expected = {expiredInShard(now, 0, 3), expiredInShard(now, 1, 3), expiredInShard(now, 2, 3)};
+
+        // Act
+        long[] deleted = new long[3];
+        for (int shard = 0; shard < 3; shard++) {
+            deleted[shard] = engine.run(now, shard, 3).getDeleted();
+        }
+
+        // Assert
+        assertThat(deleted).containsExactly(expected);
+        assertThat(expected).doesNotContain(0L);
+        assertThat(deleted[0] + deleted[1] + deleted[2]).isEqualTo(30);
+        assertThat(countKeys()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("A shard should only delete the expired keys of its own stripes")
+    void testRun_OneShard() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 20; i++) {
+            insertKey("key-" + i, now.minusHours(1));
+        }
+        long expiredInShard1 = expiredInShard(now, 1, 2);
+        IdempotencyCleanupEngine engine = engine(3, 0, Duration.ofMinutes(1), 5);
+
+        // Act
+        IdempotencyCleanupEngine.CleanupResult result = engine.run(now, 1, 2);
+
+        // Assert
+        assertThat(result.getDeleted()).isEqualTo(expiredInShard1).isPositive();
+        assertThat(expiredInShard(now, 1, 2)).isZero();
+        assertThat(countKeys()).isEqualTo(20 - expiredInShard1);
+    }
+
+    private IdempotencyCleanupEngine engine(int chunkSize, int maxRowsPerSecond, Duration maxDuration) {
+        return engine(chunkSize, maxRowsPerSecond, maxDuration, 10000);
+    }
+
+    private IdempotencyCleanupEngine engine(int chunkSize, int maxRowsPerSecond, Duration maxDuration,
+                                            long stripeSize) {
+        return new IdempotencyCleanupEngine(jdbcTemplate, new DataSourceTransactionManager(database),
+            meterRegistry, chunkSize, maxRowsPerSecond, maxDuration, stripeSize);
+    }
+
+    private void insertKey(String operationKey, LocalDateTime expiresAt) {
+        jdbcTemplate.update("INSERT INTO idempotency_keys (operation_type, operation_key, status, created_at,"
+                + " expires_at, version) VALUES ('PAYMENT', ?, 'COMPLETED', ?, ?, 0)",
+            operationKey, Timestamp.valueOf(LocalDateTime.now()), Timestamp.valueOf(expiresAt));
+    }
+
+    private long expiredInShard(LocalDateTime now, int shard, int shardCount) {
+        // Stripes of 5 ids, dealt out to the shards in turn
+        return jdbcTemplate.queryForList("SELECT id FROM idempotency_keys WHERE expires_at < ?", Long.class,
+                Timestamp.valueOf(now)).stream()
+            .filter(id -> id / 5 % shardCount == shard)
+            .count();
+    }
+
+    private int countKeys() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys", Integer.class);
+    }
+}
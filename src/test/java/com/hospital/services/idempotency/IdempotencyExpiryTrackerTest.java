@@ -0,0 +1,163 @@
+package com.hospital.services.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * Tests {@link IdempotencyExpiryTracker} driven by {@link IdempotencyService} on an
+ * in-memory {@link OffHeapIdempotencyStore}, advancing the wheel by hand.
+ */
+@DisplayName("IdempotencyExpiryTracker Tests")
+class IdempotencyExpiryTrackerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private OffHeapIdempotencyStore store;
+    private IdempotencyResultCache resultCache;
+    private IdempotencyExpiryTracker expiryTracker;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new OffHeapIdempotencyStore(DataSize.ofMegabytes(1));
+        resultCache = new IdempotencyResultCache(100, Duration.ofMinutes(10));
+        IdempotencyMetrics metrics = new IdempotencyMetrics(meterRegistry, store);
+        expiryTracker = new IdempotencyExpiryTracker(store, resultCache, metrics, meterRegistry,
+            Duration.ofSeconds(1), Duration.ofMinutes(5), 1000);
+        idempotencyService = new IdempotencyService(
+            store,
+            resultCache,
+            new IdempotencySingleFlight(false, Duration.ofSeconds(1), Duration.ofMillis(10),
+                Duration.ofMillis(100), meterRegistry),
+            new IdempotencyResultCodec(new ObjectMapper(), 1024),
+            new IdempotencyLeaseManager(store, Duration.ofMinutes(2), Duration.ofSeconds(30),
+                Duration.ofMinutes(30), "node-a"),
+            new IdempotencyBatchExecutor(1, 16),
+            metrics,
+            new IdempotencyAsyncExecutor(true, 4, 16, Duration.ofSeconds(30)),
+            expiryTracker);
+    }
+
+    @Test
+    @DisplayName("Cached result should be evicted when its TTL is reached")
+    void testCachedResultEvictedAtTtl() {
+        // Arrange
+        idempotencyService.executeIdempotent("PAYMENT", "key-1", String.class, () -> "PAY-1");
+        long now = System.currentTimeMillis();
+
+        // Act
+        expiryTracker.advance(now + Duration.ofMinutes(9).toMillis());
+        int sizeBeforeTtl = resultCache.size();
+        expiryTracker.advance(now + Duration.ofMinutes(10).plusSeconds(2).toMillis());
+
+        // Assert
+        assertThat(sizeBeforeTtl).isEqualTo(1);
+        assertThat(resultCache.size()).isZero();
+        assertThat(store.find("PAYMENT", "key-1")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Key claimed by this node should be removed from the store when it expires")
+    void testKeyRemovedAtExpiry() {
+        // Arrange
+        idempotencyService.executeIdempotent("PAYMENT", "key-1", String.class, () -> "PAY-1");
+        LocalDateTime expiresAt = store.find("PAYMENT", "key-1").getKey().getExpiresAt();
+        long expiresAtMillis = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        // Act
+        expiryTracker.advance(expiresAtMillis - 2_000);
+        boolean presentBeforeExpiry = store.find("PAYMENT", "key-1") != null;
+        expiryTracker.advance(expiresAtMillis + 2_000);
+
+        // Assert
+        assertThat(presentBeforeExpiry).isTrue();
+        assertThat(store.find("PAYMENT", "key-1")).isNull();
+        assertThat(meterRegistry.get("idempotency.cleanup.removed").counter().count()).isEqualTo(1);
+        assertThat(expiryTracker.getTrackedCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Key still PROCESSING past its deadline should be marked FAILED")
+    void testStuckKeyFailedAfterDeadline() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> hanging = executor.submit(() -> idempotencyService.executeIdempotent(
+                "PAYMENT", "key-1", String.class, () -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    return "PAY-LATE";
+                }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            long now = System.currentTimeMillis();
+
+            // Act
+            expiryTracker.advance(now + Duration.ofMinutes(4).toMillis());
+            IdempotencyKey.IdempotencyStatus beforeDeadline = store.find("PAYMENT", "key-1").getKey().getStatus();
+            expiryTracker.advance(now + Duration.ofMinutes(5).plusSeconds(2).toMillis());
+            IdempotencyKey.IdempotencyStatus afterDeadline = store.find("PAYMENT", "key-1").getKey().getStatus();
+            release.countDown();
+            Throwable late = catchThrowable(() -> hanging.get(5, TimeUnit.SECONDS));
+
+            // Assert
+            assertThat(late).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IdempotencyException.class)
+                .hasMessageContaining("lost");
+            assertThat(beforeDeadline).isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+            assertThat(afterDeadline).isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+            assertThat(store.find("PAYMENT", "key-1").getKey().getStatus())
+                .isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+            assertThat(meterRegistry.get("idempotency.stuck").tag("operationType", "PAYMENT")
+                .counter().count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Completed and failed keys should not be flagged as stuck")
+    void testSettledKeysNotFlagged() {
+        // Arrange
+        idempotencyService.executeIdempotent("PAYMENT", "key-1", String.class, () -> "PAY-1");
+        assertThatThrownBy(() -> idempotencyService.executeIdempotent("PAYMENT", "key-2", String.class, () -> {
+            throw new IllegalStateException("gateway down");
+        })).isInstanceOf(IdempotencyException.class);
+
+        // Act
+        expiryTracker.advance(System.currentTimeMillis() + Duration.ofMinutes(6).toMillis());
+
+        // Assert
+        assertThat(store.find("PAYMENT", "key-1").getKey().isCompleted()).isTrue();
+        assertThat(meterRegistry.get("idempotency.stuck").tag("operationType", "PAYMENT")
+            .counter().count()).isZero();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
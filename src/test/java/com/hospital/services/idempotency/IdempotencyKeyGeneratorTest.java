@@ -0,0 +1,65 @@
+package com.hospital.services.idempotency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests that {@link IdempotencyKeyGenerator} produces the same keys as hashing the
+ * concatenated UTF-8 string.
+ */
+@DisplayName("IdempotencyKeyGenerator Tests")
+class IdempotencyKeyGeneratorTest {
+
+    @Test
+    @DisplayName("Streamed components should hash like the joined string")
+    void testComponents_MatchJoinedString() throws Exception {
+        // Act
+        String key = IdempotencyKeyGenerator.generateFromComponents("PAYMENT_PROCESSING", "INV-1", "TX-9");
+
+        // Assert
+        assertThat(key).isEqualTo(sha256Hex("PAYMENT_PROCESSING|INV-1|TX-9"));
+        assertThat(IdempotencyKeyGenerator.isValidKey(key)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Variables should be hashed sorted by name as name=value pairs")
+    void testVariables_SortedPairs() throws Exception {
+        // Arrange
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("patientCPF", "12345678900");
+        variables.put("amount", 150.5);
+        variables.put("attempt", -42L);
+        variables.put("doctorId", null);
+
+        // Act
+        String key = IdempotencyKeyGenerator.generateFromVariables(variables);
+
+        // Assert
+        assertThat(key).isEqualTo(sha256Hex("amount=150.5|attempt=-42|doctorId=null|patientCPF=12345678900"));
+    }
+
+    @Test
+    @DisplayName("Raw key should be the binary form of the hex key")
+    void testRawKey() {
+        // Act
+        byte[] raw = IdempotencyKeyGenerator.generateRawFromComponents("A", "B");
+        String hex = IdempotencyKeyGenerator.generateFromComponents("A", "B");
+
+        // Assert
+        assertThat(raw).hasSize(32);
+        assertThat(HexFormat.of().formatHex(raw)).isEqualTo(hex);
+    }
+
+    private static String sha256Hex(String input) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash);
+    }
+}
@@ -0,0 +1,240 @@
+package com.hospital.services.idempotency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for the single-statement claim path of {@link IdempotencyKeyJdbcRepository}
+ * against an embedded H2 database (the MERGE-based fallback).
+ */
+@DisplayName("IdempotencyKeyJdbcRepository Tests")
+class IdempotencyKeyJdbcRepositoryTest {
+
+    private EmbeddedDatabase database;
+    private IdempotencyKeyJdbcRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/idempotency_keys.sql")
+            .build();
+        repository = new IdempotencyKeyJdbcRepository(new JdbcTemplate(database));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("First claim should insert a PROCESSING row in one statement")
+    void testClaim_NewKey() {
+        // Act
+        IdempotencyClaim claim = claim("PAYMENT", "key-1");
+
+        // Assert
+        assertThat(claim.isClaimed()).isTrue();
+        assertThat(claim.getKey().getId()).isNotNull();
+        assertThat(claim.getKey().getStatus()).isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+        assertThat(repository.getStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Second claim should return the existing row without inserting")
+    void testClaim_ExistingKey() {
+        // Arrange
+        IdempotencyClaim first = claim("PAYMENT", "key-1");
+        repository.markCompleted(first.getKey().getId(), first.getKey().getFencingToken(), EncodedResult.ofJson("{\"ok\":true}"));
+
+        // Act
+        IdempotencyClaim second = claim("PAYMENT", "key-1");
+
+        // Assert
+        assertThat(second.isClaimed()).isFalse();
+        assertThat(second.getKey().getId()).isEqualTo(first.getKey().getId());
+        assertThat(second.getKey().isCompleted()).isTrue();
+        assertThat(second.getKey().getResult()).isEqualTo("{\"ok\":true}");
+    }
+
+    @Test
+    @DisplayName("Same key under a different operation type should be claimed independently")
+    void testClaim_DifferentOperationType() {
+        // Arrange
+        claim("PAYMENT", "key-1");
+
+        // Act
+        IdempotencyClaim other = claim("CLAIM_GENERATION", "key-1");
+
+        // Assert
+        assertThat(other.isClaimed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("FAILED row should be taken over exactly once")
+    void testReclaim_FailedKey() {
+        // Arrange
+        IdempotencyClaim first = claim("PAYMENT", "key-1");
+        repository.markFailed(first.getKey().getId(), first.getKey().getFencingToken());
+        IdempotencyKey failed = claim("PAYMENT", "key-1").getKey();
+
+        // Act
+        boolean winner = reclaim(failed);
+        boolean loser = reclaim(failed);
+
+        // Assert
+        assertThat(winner).isTrue();
+        assertThat(loser).isFalse();
+        assertThat(repository.find("PAYMENT", "key-1").getKey().getStatus())
+            .isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+    }
+
+    @Test
+    @DisplayName("Completion should only apply to rows still PROCESSING")
+    void testMarkCompleted_OnlyFromProcessing() {
+        // Arrange
+        IdempotencyClaim claim = claim("PAYMENT", "key-1");
+        repository.markFailed(claim.getKey().getId(), claim.getKey().getFencingToken());
+
+        // Act
+        boolean completed = repository.markCompleted(claim.getKey().getId(), claim.getKey().getFencingToken(),
+            EncodedResult.ofJson("late"));
+
+        // Assert
+        assertThat(completed).isFalse();
+        assertThat(repository.find("PAYMENT", "key-1").getKey().getResult()).isNull();
+    }
+
+    @Test
+    @DisplayName("Claim should lease the key to the claiming node with fencing token 1")
+    void testClaim_LeasesKey() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+
+        // Act
+        IdempotencyClaim claim = repository.claim("PAYMENT", "key-1", null, null,
+            now, now.plusHours(24), "node-a", now.plusMinutes(2));
+
+        // Assert
+        IdempotencyKey stored = repository.find("PAYMENT", "key-1").getKey();
+        assertThat(claim.getKey().getFencingToken()).isEqualTo(1L);
+        assertThat(stored.getLeaseOwner()).isEqualTo("node-a");
+        assertThat(stored.getLeaseExpiresAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Expired leases should be recovered in bulk, fencing out the late owner")
+    void testRecoverExpiredLeases_FencesLateOwner() {
+        // Arrange
+        LocalDateTime past = LocalDateTime.now().minusMinutes(10);
+        IdempotencyClaim abandoned = repository.claim("PAYMENT", "key-1", null, null,
+            past, past.plusHours(24), "node-a", past.plusMinutes(2));
+        repository.claim("PAYMENT", "key-2", null, null,
+            past, past.plusHours(24), "node-a", past.plusMinutes(2));
+        IdempotencyClaim live = repository.claim("PAYMENT", "key-3", null, null,
+            past, past.plusHours(24), "node-b", LocalDateTime.now().plusMinutes(2));
+
+        // Act
+        int recovered = repository.recoverExpiredLeases(LocalDateTime.now(), LocalDateTime.now().minusMinutes(30));
+        boolean lateCompletion = repository.markCompleted(abandoned.getKey().getId(),
+            abandoned.getKey().getFencingToken(), EncodedResult.ofJson("late"));
+
+        // Assert
+        assertThat(recovered).isEqualTo(2);
+        assertThat(lateCompletion).isFalse();
+        IdempotencyKey failed = repository.find("PAYMENT", "key-1").getKey();
+        assertThat(failed.getStatus()).isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+        assertThat(failed.getFencingToken()).isEqualTo(2L);
+        assertThat(failed.getLeaseOwner()).isNull();
+        assertThat(repository.find("PAYMENT", "key-3").getKey().getStatus())
+            .isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+        assertThat(live.isClaimed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Reclaimed key should get a new fencing token that the previous owner cannot use")
+    void testReclaim_BumpsFencingToken() {
+        // Arrange
+        IdempotencyClaim first = claim("PAYMENT", "key-1");
+        long firstToken = first.getKey().getFencingToken();
+        repository.markFailed(first.getKey().getId(), firstToken);
+        IdempotencyKey failed = claim("PAYMENT", "key-1").getKey();
+        reclaim(failed);
+
+        // Act
+        boolean staleCompletion = repository.markCompleted(first.getKey().getId(), firstToken,
+            EncodedResult.ofJson("stale"));
+        boolean currentCompletion = repository.markCompleted(failed.getId(), failed.getFencingToken(),
+            EncodedResult.ofJson("current"));
+
+        // Assert
+        assertThat(failed.getFencingToken()).isEqualTo(firstToken + 1);
+        assertThat(staleCompletion).isFalse();
+        assertThat(currentCompletion).isTrue();
+        assertThat(repository.find("PAYMENT", "key-1").getKey().getResult()).isEqualTo("current");
+    }
+
+    @Test
+    @DisplayName("Renewal should extend all PROCESSING leases of one node in a single statement")
+    void testRenewLeases() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        repository.claim("PAYMENT", "key-1", null, null, now, now.plusHours(24), "node-a", now.plusSeconds(1));
+        repository.claim("PAYMENT", "key-2", null, null, now, now.plusHours(24), "node-a", now.plusSeconds(1));
+        repository.claim("PAYMENT", "key-3", null, null, now, now.plusHours(24), "node-b", now.plusSeconds(1));
+        long statementsBefore = repository.getStatementCount();
+
+        // Act
+        int renewed = repository.renewLeases("node-a", now.plusMinutes(5));
+
+        // Assert
+        assertThat(renewed).isEqualTo(2);
+        assertThat(repository.getStatementCount() - statementsBefore).isEqualTo(1);
+        assertThat(repository.recoverExpiredLeases(now.plusMinutes(1), now.minusMinutes(30))).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Storing a result should give up once the row vanished on every claim attempt")
+    void testStoreCompleted_RowKeepsVanishing() {
+        // Arrange
+        IdempotencyKeyJdbcRepository vanishing = spy(repository);
+        doReturn(null).when(vanishing).claim(eq("PAYMENT"), eq("key-1"), isNull(), isNull(), any(), any());
+        LocalDateTime now = LocalDateTime.now();
+
+        // Act & Assert
+        assertThatThrownBy(() -> vanishing.storeCompleted("PAYMENT", "key-1", EncodedResult.ofJson("\"done\""),
+                now, now.plusHours(24)))
+            .isInstanceOf(IdempotencyException.class)
+            .hasMessageContaining("3 attempts");
+        verify(vanishing, times(3)).claim(eq("PAYMENT"), eq("key-1"), isNull(), isNull(), any(), any());
+    }
+
+    private boolean reclaim(IdempotencyKey key) {
+        LocalDateTime now = LocalDateTime.now();
+        return repository.reclaim(key, null, null, now, now.plusHours(1), "node-a", now.plusMinutes(2));
+    }
+
+    private IdempotencyClaim claim(String operationType, String operationKey) {
+        LocalDateTime now = LocalDateTime.now();
+        return repository.claim(operationType, operationKey, "proc-1", "exec-1", now, now.plusHours(24));
+    }
+}
@@ -0,0 +1,129 @@
+package com.hospital.services.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests the meters published by {@link IdempotencyService} through {@link IdempotencyMetrics}.
+ */
+@DisplayName("IdempotencyMetrics Tests")
+class IdempotencyMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private OffHeapIdempotencyStore store;
+    private IdempotencyResultCache resultCache;
+    private IdempotencyMetrics metrics;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new OffHeapIdempotencyStore(DataSize.ofMegabytes(1));
+        resultCache = new IdempotencyResultCache(100, Duration.ofMinutes(10));
+        metrics = new IdempotencyMetrics(meterRegistry, store);
+        idempotencyService = new IdempotencyService(
+            store,
+            resultCache,
+            new IdempotencySingleFlight(false, Duration.ofSeconds(1), Duration.ofMillis(10),
+                Duration.ofMillis(100), meterRegistry),
+            new IdempotencyResultCodec(new ObjectMapper(), 1024),
+            new IdempotencyLeaseManager(store, Duration.ofMinutes(2), Duration.ofSeconds(30),
+                Duration.ofMinutes(30), "node-a"),
+            new IdempotencyBatchExecutor(1, 16),
+            metrics,
+            new IdempotencyAsyncExecutor(true, 4, 16, Duration.ofSeconds(30)),
+            new IdempotencyExpiryTracker(store, resultCache, metrics, meterRegistry, Duration.ofSeconds(1),
+                Duration.ofMinutes(30), 1000));
+    }
+
+    @Test
+    @DisplayName("Executions, replays by source and failures should be counted per operation type")
+    void testOperationCounters() {
+        // Act
+        idempotencyService.executeIdempotent("PAYMENT", "key-1", String.class, () -> "PAY-1");
+        idempotencyService.executeIdempotent("PAYMENT", "key-1", String.class, () -> "PAY-2");
+        resultCache.clear();
+        idempotencyService.executeIdempotent("PAYMENT", "key-1", String.class, () -> "PAY-3");
+        assertThatThrownBy(() -> idempotencyService.executeIdempotent("CLAIM_GENERATION", "key-1", String.class,
+            () -> {
+                throw new IllegalStateException("gateway down");
+            }))
+            .isInstanceOf(IdempotencyException.class);
+
+        // Assert
+        assertThat(count("idempotency.executions", "PAYMENT")).isEqualTo(3);
+        assertThat(meterRegistry.get("idempotency.replays").tag("operationType", "PAYMENT")
+            .tag("source", "cache").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("idempotency.replays").tag("operationType", "PAYMENT")
+            .tag("source", "store").counter().count()).isEqualTo(1);
+        assertThat(count("idempotency.failures", "CLAIM_GENERATION")).isEqualTo(1);
+        assertThat(count("idempotency.failures", "PAYMENT")).isZero();
+        assertThat(meterRegistry.get("idempotency.store.latency").tag("operationType", "PAYMENT")
+            .tag("operation", "claim").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("idempotency.result.size").tag("operationType", "PAYMENT")
+            .summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Claims of a key processed elsewhere should be counted as conflicts")
+    void testConflictCounter() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        store.claim("PAYMENT", "key-1", null, null, now, now.plusHours(24), "node-b", now.plusMinutes(2));
+
+        // Act
+        assertThatThrownBy(() -> idempotencyService.executeIdempotent("PAYMENT", "key-1", String.class, () -> "PAY-1"))
+            .isInstanceOf(IdempotencyException.class);
+
+        // Assert
+        assertThat(count("idempotency.conflicts", "PAYMENT")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Backlog gauge should only change when refreshed")
+    void testProcessingBacklogGauge() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        store.claim("PAYMENT", "key-1", null, null, now, now.plusHours(24), "node-b", now.plusMinutes(2));
+        store.claim("PAYMENT", "key-2", null, null, now, now.plusHours(24), "node-b", now.plusMinutes(2));
+
+        // Act
+        double beforeRefresh = meterRegistry.get("idempotency.processing.backlog").gauge().value();
+        metrics.refreshBacklog();
+
+        // Assert
+        assertThat(beforeRefresh).isZero();
+        assertThat(meterRegistry.get("idempotency.processing.backlog").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Recovered leases and cleanup removals should be counted")
+    void testRecoveryAndCleanupCounters() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        store.claim("PAYMENT", "abandoned", null, null, now, now.plusHours(24), "node-b", now.minusSeconds(1));
+        store.claim("PAYMENT", "expired", null, null, now.minusDays(2), now.minusDays(1), null, null);
+
+        // Act
+        idempotencyService.recoverExpiredLeases();
+        idempotencyService.cleanupExpiredKeys();
+
+        // Assert
+        assertThat(meterRegistry.get("idempotency.recoveries").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("idempotency.cleanup.removed").counter().count()).isEqualTo(1);
+    }
+
+    private double count(String name, String operationType) {
+        return meterRegistry.get(name).tag("operationType", operationType).counter().count();
+    }
+}
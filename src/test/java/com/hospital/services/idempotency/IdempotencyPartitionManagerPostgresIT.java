@@ -0,0 +1,141 @@
+package com.hospital.services.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link IdempotencyPartitionManager} on the partitioned layout of migration V6, on a
+ * real PostgreSQL server.
+ *
+ * <p>Needs Docker; run with {@code mvn -Ppostgres-it verify}.</p>
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("IdempotencyPartitionManager PostgreSQL Integration Tests")
+class IdempotencyPartitionManagerPostgresIT {
+
+    private static final String[] MIGRATIONS = {
+        "db/migration/V4__create_idempotency_records.sql",
+        "db/migration/V5__add_idempotency_result_codec_columns.sql",
+        "db/migration/V6__partition_idempotency_tables_by_expiry.sql",
+        "db/migration/V7__add_idempotency_key_leases.sql"
+    };
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private JdbcTemplate jdbcTemplate;
+    private IdempotencyPartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP SCHEMA public CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA public");
+
+        // The migrations hold PL/pgSQL bodies, so each file is sent as one statement
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+        for (String migration : MIGRATIONS) {
+            populator.addScript(new ClassPathResource(migration));
+        }
+        populator.execute(dataSource);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        manager = new IdempotencyPartitionManager(jdbcTemplate,
+            new IdempotencyKeyJdbcRepository(jdbcTemplate, transactionManager), transactionManager, 7,
+            IdempotencyPartitionManager.ExpiredPartitionAction.DROP, 2);
+    }
+
+    @Test
+    @DisplayName("Migration V6 should partition both tables by expiry day, with a DEFAULT partition")
+    void testMigrationLayout() {
+        // Assert
+        assertThat(manager.isEnabled()).isTrue();
+        for (String table : IdempotencyPartitionManager.PARTITIONED_TABLES) {
+            assertThat(partitionCount(table)).isEqualTo(9);
+            assertThat(jdbcTemplate.queryForList(
+                    "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+                        + " WHERE i.inhparent = to_regclass(?)", String.class, table))
+                .contains(IdempotencyPartitionManager.defaultPartitionName(table),
+                    IdempotencyPartitionManager.partitionName(table, LocalDate.now()),
+                    IdempotencyPartitionManager.partitionName(table, LocalDate.now().plusDays(7)));
+        }
+    }
+
+    @Test
+    @DisplayName("Rows beyond the pre-created days should move out of the DEFAULT partition with their day")
+    void testCreateUpcomingPartitions_MovesDefaultRows() {
+        // Arrange
+        LocalDate later = LocalDate.now().plusDays(9);
+        insertKey("late-1", later.atTime(8, 0));
+        insertKey("late-2", later.atTime(20, 0));
+        assertThat(partitionOf("idempotency_keys", later.atTime(8, 0))).isEqualTo("idempotency_keys_default");
+
+        // Act
+        int created = manager.createUpcomingPartitions(LocalDate.now().plusDays(2));
+
+        // Assert
+        assertThat(created).isEqualTo(4);
+        assertThat(partitionOf("idempotency_keys", later.atTime(8, 0)))
+            .isEqualTo(IdempotencyPartitionManager.partitionName("idempotency_keys", later));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys", Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM idempotency_keys_default", Long.class)).isZero();
+    }
+
+    @Test
+    @DisplayName("Expired rows of the DEFAULT partition should be deleted by maintenance, with past partitions")
+    void testMaintain_RemovesExpiredDefaultRows() {
+        // Arrange
+        for (int i = 0; i < 5; i++) {
+            insertKey("expired-" + i, LocalDate.now().minusDays(3).atTime(10, i));
+        }
+        insertKey("live", LocalDateTime.now().plusHours(1));
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        jdbcTemplate.execute("CREATE TABLE " + IdempotencyPartitionManager.partitionName("idempotency_keys", yesterday)
+            + " PARTITION OF idempotency_keys FOR VALUES FROM ('" + yesterday + "') TO ('" + LocalDate.now() + "')");
+        insertKey("expired-dated", yesterday.atTime(10, 0));
+
+        // Act
+        long removed = manager.maintain();
+
+        // Assert
+        assertThat(removed).isGreaterThanOrEqualTo(5);
+        assertThat(jdbcTemplate.queryForList("SELECT operation_key FROM idempotency_keys", String.class))
+            .containsExactly("live");
+        assertThat(partitionCount("idempotency_keys")).isEqualTo(9);
+    }
+
+    private void insertKey(String operationKey, LocalDateTime expiresAt) {
+        jdbcTemplate.update("INSERT INTO idempotency_keys (operation_type, operation_key, status, created_at, expires_at)"
+                + " VALUES ('PAYMENT', ?, 'COMPLETED', ?, ?)",
+            operationKey, Timestamp.valueOf(LocalDateTime.now()), Timestamp.valueOf(expiresAt));
+    }
+
+    private String partitionOf(String table, LocalDateTime expiresAt) {
+        return jdbcTemplate.queryForObject("SELECT tableoid::regclass::text FROM " + table + " WHERE expires_at = ?",
+            String.class, Timestamp.valueOf(expiresAt));
+    }
+
+    private long partitionCount(String table) {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM pg_inherits WHERE inhparent = to_regclass(?)", Long.class, table);
+    }
+}
@@ -0,0 +1,148 @@
+package com.hospital.services.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link IdempotencyPartitionManager}.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("IdempotencyPartitionManager Unit Tests")
+class IdempotencyPartitionManagerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 10);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private IdempotencyKeyJdbcRepository claimRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotencyPartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new IdempotencyPartitionManager(jdbcTemplate, claimRepository, transactionManager,
+            2, IdempotencyPartitionManager.ExpiredPartitionAction.DROP, 100);
+
+        when(claimRepository.isPartitioned()).thenReturn(true);
+        when(jdbcTemplate.queryForObject(contains("pg_partitioned_table"), eq(Long.class), eq("idempotency_keys")))
+            .thenReturn(1L);
+        when(jdbcTemplate.queryForObject(contains("pg_partitioned_table"), eq(Long.class), eq("idempotency_records")))
+            .thenReturn(0L);
+        when(jdbcTemplate.queryForList(contains("pg_inherits"), eq(String.class), eq("idempotency_keys")))
+            .thenReturn(List.of("idempotency_keys_default", "idempotency_keys_p20250308",
+                "idempotency_keys_p20250309", "idempotency_keys_p20250310"));
+        when(jdbcTemplate.queryForObject(contains("reltuples"), eq(Long.class), anyString())).thenReturn(500L);
+    }
+
+    @Test
+    @DisplayName("Partitions for past days should be detached and dropped")
+    void testRemoveExpiredPartitions() {
+        // Act
+        long rows = manager.removeExpiredPartitions(TODAY);
+
+        // Assert
+        assertThat(rows).isEqualTo(1000L);
+        verify(jdbcTemplate).execute("ALTER TABLE idempotency_keys DETACH PARTITION idempotency_keys_p20250308");
+        verify(jdbcTemplate).execute("DROP TABLE idempotency_keys_p20250308");
+        verify(jdbcTemplate).execute("DROP TABLE idempotency_keys_p20250309");
+        verify(jdbcTemplate, never()).execute("DROP TABLE idempotency_keys_p20250310");
+    }
+
+    @Test
+    @DisplayName("Missing upcoming partitions should be created")
+    void testCreateUpcomingPartitions() {
+        // Act
+        int created = manager.createUpcomingPartitions(TODAY);
+
+        // Assert
+        assertThat(created).isEqualTo(2);
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS idempotency_keys_p20250311 PARTITION OF "
+            + "idempotency_keys FOR VALUES FROM ('2025-03-11') TO ('2025-03-12')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS idempotency_keys_p20250312 PARTITION OF "
+            + "idempotency_keys FOR VALUES FROM ('2025-03-12') TO ('2025-03-13')");
+    }
+
+    @Test
+    @DisplayName("Rows of a new partition's day should be moved out of the DEFAULT partition")
+    void testCreateUpcomingPartitions_MovesDefaultRows() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(contains("expires_at >= '2025-03-12'"), eq(Boolean.class)))
+            .thenReturn(true);
+
+        // Act
+        int created = manager.createUpcomingPartitions(TODAY);
+
+        // Assert
+        assertThat(created).isEqualTo(2);
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).execute("DELETE FROM idempotency_keys_default"
+            + " WHERE expires_at >= '2025-03-12' AND expires_at < '2025-03-13'");
+        inOrder.verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS idempotency_keys_p20250312 PARTITION OF "
+            + "idempotency_keys FOR VALUES FROM ('2025-03-12') TO ('2025-03-13')");
+        inOrder.verify(jdbcTemplate).execute("INSERT INTO idempotency_keys SELECT * FROM idempotency_partition_rows");
+        verify(jdbcTemplate, never()).execute(contains("DELETE FROM idempotency_keys_default"
+            + " WHERE expires_at >= '2025-03-11'"));
+    }
+
+    @Test
+    @DisplayName("Expired rows of the DEFAULT partition should be deleted in chunks")
+    void testRemoveExpiredDefaultRows() {
+        // Arrange
+        LocalDateTime now = TODAY.atStartOfDay();
+        when(jdbcTemplate.update(contains("DELETE FROM idempotency_keys_default"), any(Timestamp.class), eq(100)))
+            .thenReturn(100, 100, 40);
+
+        // Act
+        long deleted = manager.removeExpiredDefaultRows(now);
+
+        // Assert
+        assertThat(deleted).isEqualTo(240L);
+        verify(jdbcTemplate, times(3)).update(contains("DELETE FROM idempotency_keys_default"),
+            eq(Timestamp.valueOf(now)), eq(100));
+    }
+
+    @Test
+    @DisplayName("Nothing should happen on plain tables")
+    void testDisabledOnPlainTables() {
+        // Arrange
+        when(claimRepository.isPartitioned()).thenReturn(false);
+
+        // Act
+        long rows = manager.maintain();
+
+        // Assert
+        assertThat(rows).isZero();
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+}
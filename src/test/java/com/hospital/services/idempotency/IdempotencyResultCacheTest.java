@@ -0,0 +1,108 @@
+package com.hospital.services.idempotency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link IdempotencyResultCache}.
+ */
+@DisplayName("IdempotencyResultCache Tests")
+class IdempotencyResultCacheTest {
+
+    @Test
+    @DisplayName("Cached completed result should be returned and counted as a hit")
+    void testGet_Hit() {
+        // Arrange
+        IdempotencyResultCache cache = new IdempotencyResultCache(10, Duration.ofMinutes(5));
+        cache.put("PAYMENT", "key-1", EncodedResult.ofJson("{\"ok\":true}"), LocalDateTime.now().plusHours(1));
+
+        // Act
+        IdempotencyResultCache.CachedResult cached = cache.get("PAYMENT", "key-1");
+
+        // Assert
+        assertThat(cached).isNotNull();
+        assertThat(cached.getResult().getLegacyJson()).isEqualTo("{\"ok\":true}");
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Keys should be namespaced by operation type")
+    void testGet_DifferentOperationType() {
+        // Arrange
+        IdempotencyResultCache cache = new IdempotencyResultCache(10, Duration.ofMinutes(5));
+        cache.put("PAYMENT", "key-1", EncodedResult.ofJson("result"), LocalDateTime.now().plusHours(1));
+
+        // Act & Assert
+        assertThat(cache.get("CLAIM_GENERATION", "key-1")).isNull();
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Entries for already expired keys should not be cached")
+    void testPut_ExpiredKey() {
+        // Arrange
+        IdempotencyResultCache cache = new IdempotencyResultCache(10, Duration.ofMinutes(5));
+
+        // Act
+        cache.put("PAYMENT", "key-1", EncodedResult.ofJson("result"), LocalDateTime.now().minusSeconds(1));
+
+        // Assert
+        assertThat(cache.size()).isZero();
+        assertThat(cache.get("PAYMENT", "key-1")).isNull();
+    }
+
+    @Test
+    @DisplayName("Least recently used entry should be evicted beyond max size")
+    void testPut_SizeBound() {
+        // Arrange
+        IdempotencyResultCache cache = new IdempotencyResultCache(2, Duration.ofMinutes(5));
+        LocalDateTime expiresAt = LocalDateTime.now().plusHours(1);
+        cache.put("PAYMENT", "key-1", EncodedResult.ofJson("r1"), expiresAt);
+        cache.put("PAYMENT", "key-2", EncodedResult.ofJson("r2"), expiresAt);
+        cache.get("PAYMENT", "key-1");
+
+        // Act
+        cache.put("PAYMENT", "key-3", EncodedResult.ofJson("r3"), expiresAt);
+
+        // Assert
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("PAYMENT", "key-2")).isNull();
+        assertThat(cache.get("PAYMENT", "key-1")).isNotNull();
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Entries should expire after the configured TTL")
+    void testGet_TtlElapsed() throws InterruptedException {
+        // Arrange
+        IdempotencyResultCache cache = new IdempotencyResultCache(10, Duration.ofMillis(20));
+        cache.put("PAYMENT", "key-1", EncodedResult.ofJson("result"), LocalDateTime.now().plusHours(1));
+
+        // Act
+        Thread.sleep(40);
+
+        // Assert
+        assertThat(cache.evictExpired()).isEqualTo(1);
+        assertThat(cache.get("PAYMENT", "key-1")).isNull();
+    }
+
+    @Test
+    @DisplayName("Zero max size should disable caching")
+    void testDisabled() {
+        // Arrange
+        IdempotencyResultCache cache = new IdempotencyResultCache(0, Duration.ofMinutes(5));
+
+        // Act
+        cache.put("PAYMENT", "key-1", EncodedResult.ofJson("result"), LocalDateTime.now().plusHours(1));
+
+        // Assert
+        assertThat(cache.get("PAYMENT", "key-1")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+}
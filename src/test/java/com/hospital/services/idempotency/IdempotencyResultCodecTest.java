@@ -0,0 +1,102 @@
+package com.hospital.services.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link IdempotencyResultCodec}.
+ */
+@DisplayName("IdempotencyResultCodec Tests")
+class IdempotencyResultCodecTest {
+
+    private final IdempotencyResultCodec codec = new IdempotencyResultCodec(new ObjectMapper(), 64);
+
+    @Test
+    @DisplayName("Replay should decode into the recorded result type")
+    void testRoundTrip_RecordedType() {
+        // Arrange
+        SampleResult original = new SampleResult();
+        original.id = "TX-1";
+        original.amount = 150.0;
+
+        // Act
+        EncodedResult encoded = codec.encode(original);
+        Object decoded = codec.decode(encoded, null);
+
+        // Assert
+        assertThat(encoded.getResultType()).isEqualTo(SampleResult.class.getName());
+        assertThat(encoded.getData()[0]).isEqualTo(IdempotencyResultCodec.FORMAT_SMILE);
+        assertThat(decoded).isInstanceOf(SampleResult.class);
+        assertThat(((SampleResult) decoded).id).isEqualTo("TX-1");
+        assertThat(((SampleResult) decoded).amount).isEqualTo(150.0);
+    }
+
+    @Test
+    @DisplayName("Results above the threshold should be compressed and still round-trip")
+    void testRoundTrip_Compressed() {
+        // Arrange
+        SampleResult original = new SampleResult();
+        original.id = "X".repeat(2000);
+
+        // Act
+        EncodedResult encoded = codec.encode(original);
+        SampleResult decoded = codec.decode(encoded, SampleResult.class);
+
+        // Assert
+        assertThat(encoded.getData()[0]).isEqualTo(IdempotencyResultCodec.FORMAT_SMILE_DEFLATED);
+        assertThat(encoded.size()).isLessThan(200);
+        assertThat(decoded.id).isEqualTo(original.id);
+    }
+
+    @Test
+    @DisplayName("Legacy JSON results should decode into the expected type")
+    void testDecode_LegacyJson() {
+        // Arrange
+        EncodedResult legacy = EncodedResult.ofJson("{\"id\":\"TX-9\",\"amount\":10.5}");
+
+        // Act
+        SampleResult typed = codec.decode(legacy, SampleResult.class);
+        Object untyped = codec.decode(legacy, null);
+
+        // Assert
+        assertThat(typed.id).isEqualTo("TX-9");
+        assertThat(untyped).isInstanceOf(Map.class);
+    }
+
+    @Test
+    @DisplayName("Encoded results should render back as JSON")
+    void testToJson() {
+        // Arrange
+        SampleResult original = new SampleResult();
+        original.id = "TX-2";
+        original.amount = 1.0;
+
+        // Act
+        String json = codec.toJson(codec.encode(original));
+
+        // Assert
+        assertThat(json).isEqualTo("{\"id\":\"TX-2\",\"amount\":1.0}");
+    }
+
+    @Test
+    @DisplayName("Null results should round-trip as null")
+    void testNullResult() {
+        // Act
+        EncodedResult encoded = codec.encode(null);
+
+        // Assert
+        assertThat(encoded.isNull()).isTrue();
+        assertThat(codec.decode(encoded, SampleResult.class)).isNull();
+        assertThat(codec.toJson(encoded)).isNull();
+    }
+
+    public static class SampleResult {
+        public String id;
+        public Double amount;
+    }
+}
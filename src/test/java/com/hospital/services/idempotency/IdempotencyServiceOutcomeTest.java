@@ -0,0 +1,233 @@
+package com.hospital.services.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Tests the outcomes reported by {@link IdempotencyService#executeWithOutcome} against
+ * an in-memory {@link OffHeapIdempotencyStore}.
+ */
+@DisplayName("IdempotencyService Outcome Tests")
+class IdempotencyServiceOutcomeTest {
+
+    private OffHeapIdempotencyStore store;
+    private IdempotencyResultCache resultCache;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        store = new OffHeapIdempotencyStore(DataSize.ofMegabytes(1));
+        resultCache = new IdempotencyResultCache(100, Duration.ofMinutes(10));
+        idempotencyService = service(new IdempotencySingleFlight(false, Duration.ofSeconds(1),
+            Duration.ofMillis(10), Duration.ofMillis(100), new SimpleMeterRegistry()));
+    }
+
+    @Test
+    @DisplayName("First execution should be NEW and the next one REPLAYED with the original timestamp")
+    void testExecuteWithOutcome_NewThenReplayed() {
+        // Arrange
+        AtomicInteger executions = new AtomicInteger();
+
+        // Act
+        IdempotencyOutcome<String> first = idempotencyService.executeWithOutcome(
+            "CLAIM_GENERATION", "key-1", String.class, () -> "claim-" + executions.incrementAndGet());
+        resultCache.clear();
+        IdempotencyOutcome<String> second = idempotencyService.executeWithOutcome(
+            "CLAIM_GENERATION", "key-1", String.class, () -> "claim-" + executions.incrementAndGet());
+        IdempotencyOutcome<String> cached = idempotencyService.executeWithOutcome(
+            "CLAIM_GENERATION", "key-1", String.class, () -> "claim-" + executions.incrementAndGet());
+
+        // Assert
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(first.getStatus()).isEqualTo(IdempotencyOutcome.Status.NEW);
+        assertThat(first.isReplayed()).isFalse();
+        assertThat(first.getAttempts()).isEqualTo(1);
+        assertThat(second.getStatus()).isEqualTo(IdempotencyOutcome.Status.REPLAYED);
+        assertThat(second.getValue()).isEqualTo("claim-1");
+        assertThat(second.getStoredAt()).isEqualTo(first.getStoredAt());
+        assertThat(cached.isReplayed()).isTrue();
+        assertThat(cached.getAttempts()).isZero();
+        assertThat(cached.getStoredAt()).isEqualTo(first.getStoredAt());
+    }
+
+    @Test
+    @DisplayName("Execution taking over a FAILED key should be RECOVERED_AFTER_CONFLICT")
+    void testExecuteWithOutcome_RecoveredAfterFailure() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyClaim abandoned = store.claim("PAYMENT", "key-1", null, null, now, now.plusHours(24),
+            "node-b", now.minusSeconds(1));
+        store.recoverExpiredLeases(now, now.minusMinutes(30));
+
+        // Act
+        IdempotencyOutcome<String> outcome = idempotencyService.executeWithOutcome(
+            "PAYMENT", "key-1", String.class, () -> "PAY-1");
+
+        // Assert
+        assertThat(abandoned.isClaimed()).isTrue();
+        assertThat(outcome.getStatus()).isEqualTo(IdempotencyOutcome.Status.RECOVERED_AFTER_CONFLICT);
+        assertThat(outcome.isReplayed()).isFalse();
+        assertThat(outcome.getValue()).isEqualTo("PAY-1");
+        assertThat(store.find("PAYMENT", "key-1").getKey().isCompleted()).isTrue();
+    }
+
+    @Test
+    @DisplayName("A follower of a local leader should report when the leader claimed the key")
+    void testExecuteWithOutcome_FollowerReportsLeaderStoredAt() throws Exception {
+        // Arrange
+        IdempotencySingleFlight singleFlight = spy(new IdempotencySingleFlight(true, Duration.ofSeconds(5),
+            Duration.ofMillis(10), Duration.ofMillis(100), new SimpleMeterRegistry()));
+        CountDownLatch followerWaiting = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            followerWaiting.countDown();
+            return invocation.callRealMethod();
+        }).when(singleFlight).await(any());
+        IdempotencyService service = service(singleFlight);
+        AtomicInteger executions = new AtomicInteger();
+        AtomicReference<Future<IdempotencyOutcome<String>>> follower = new AtomicReference<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // Act
+            IdempotencyOutcome<String> leader = service.executeWithOutcome(
+                "PAYMENT", "key-1", String.class, () -> {
+                    executions.incrementAndGet();
+                    follower.set(executor.submit(() -> service.executeWithOutcome(
+                        "PAYMENT", "key-1", String.class, () -> "PAY-" + executions.incrementAndGet())));
+                    awaitQuietly(followerWaiting);
+                    return "PAY-1";
+                });
+            IdempotencyOutcome<String> shared = follower.get().get(10, TimeUnit.SECONDS);
+
+            // Assert
+            assertThat(leader.getStatus()).isEqualTo(IdempotencyOutcome.Status.NEW);
+            assertThat(shared.getStatus()).isEqualTo(IdempotencyOutcome.Status.REPLAYED);
+            assertThat(shared.getValue()).isEqualTo("PAY-1");
+            assertThat(shared.getStoredAt()).isEqualTo(leader.getStoredAt());
+            assertThat(executions.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A result whose lease was lost should fail the caller and the waiting followers")
+    void testExecuteWithOutcome_LeaseLostWithFollower() throws Exception {
+        // Arrange
+        IdempotencySingleFlight singleFlight = spy(new IdempotencySingleFlight(true, Duration.ofSeconds(5),
+            Duration.ofMillis(10), Duration.ofMillis(100), new SimpleMeterRegistry()));
+        CountDownLatch followerWaiting = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            followerWaiting.countDown();
+            return invocation.callRealMethod();
+        }).when(singleFlight).await(any());
+        IdempotencyService service = service(singleFlight);
+        AtomicInteger executions = new AtomicInteger();
+        AtomicReference<Future<IdempotencyOutcome<String>>> follower = new AtomicReference<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // Act
+            Throwable leaderFailure = catchThrowable(() -> service.executeWithOutcome(
+                "PAYMENT", "key-1", String.class, () -> {
+                    executions.incrementAndGet();
+                    follower.set(executor.submit(() -> service.executeWithOutcome(
+                        "PAYMENT", "key-1", String.class, () -> "PAY-" + executions.incrementAndGet())));
+                    awaitQuietly(followerWaiting);
+                    // Another node recovers the lease while the payment runs
+                    LocalDateTime later = LocalDateTime.now().plusHours(1);
+                    store.recoverExpiredLeases(later, later);
+                    return "PAY-1";
+                }));
+            Throwable followerFailure = catchThrowable(() -> follower.get().get(10, TimeUnit.SECONDS));
+
+            // Assert
+            assertThat(leaderFailure).isInstanceOf(IdempotencyException.class).hasMessageContaining("lost");
+            assertThat(followerFailure).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IdempotencyException.class)
+                .hasRootCauseMessage(leaderFailure.getMessage());
+            assertThat(executions.get()).isEqualTo(1);
+            assertThat(store.find("PAYMENT", "key-1").getKey().getStatus())
+                .isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+            assertThat(resultCache.get("PAYMENT", "key-1")).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A batch item whose lease was lost should be reported as failed")
+    void testExecuteIdempotentBatch_LeaseLost() {
+        // Arrange
+        Map<String, Supplier<String>> operations = new LinkedHashMap<>();
+        operations.put("key-1", () -> "PAY-1");
+        operations.put("key-2", () -> {
+            // Another node recovers the leases while the batch runs
+            LocalDateTime later = LocalDateTime.now().plusHours(1);
+            store.recoverExpiredLeases(later, later);
+            return "PAY-2";
+        });
+
+        // Act
+        Map<String, IdempotencyBatchOutcome<String>> outcomes =
+            idempotencyService.executeIdempotentBatch("PAYMENT", String.class, operations);
+
+        // Assert
+        assertThat(outcomes.values()).allSatisfy(outcome -> {
+            assertThat(outcome.getStatus()).isEqualTo(IdempotencyBatchOutcome.Status.FAILED);
+            assertThat(outcome.getError()).hasMessageContaining("lost");
+        });
+        assertThat(store.find("PAYMENT", "key-1").getKey().getStatus())
+            .isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+        assertThat(resultCache.get("PAYMENT", "key-2")).isNull();
+    }
+
+    private IdempotencyService service(IdempotencySingleFlight singleFlight) {
+        IdempotencyMetrics metrics = new IdempotencyMetrics(new SimpleMeterRegistry(), store);
+        return new IdempotencyService(
+            store,
+            resultCache,
+            singleFlight,
+            new IdempotencyResultCodec(new ObjectMapper(), 1024),
+            new IdempotencyLeaseManager(store, Duration.ofMinutes(2), Duration.ofSeconds(30),
+                Duration.ofMinutes(30), "node-a"),
+            new IdempotencyBatchExecutor(1, 16),
+            metrics,
+            new IdempotencyAsyncExecutor(true, 4, 16, Duration.ofSeconds(30)),
+            new IdempotencyExpiryTracker(store, resultCache, metrics, new SimpleMeterRegistry(), Duration.ofSeconds(1),
+                Duration.ofMinutes(30), 1000));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.hospital.services.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for {@link IdempotencySingleFlight}.
+ */
+@DisplayName("IdempotencySingleFlight Tests")
+class IdempotencySingleFlightTest {
+
+    private IdempotencySingleFlight singleFlight;
+
+    @BeforeEach
+    void setUp() {
+        singleFlight = new IdempotencySingleFlight(true, Duration.ofMillis(500),
+            Duration.ofMillis(5), Duration.ofMillis(20), new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("Second local caller should follow the leader and receive its result")
+    void testJoin_FollowerReceivesLeaderResult() {
+        // Arrange
+        IdempotencySingleFlight.Flight leader = singleFlight.join("PAYMENT", "key-1");
+        IdempotencySingleFlight.Flight follower = singleFlight.join("PAYMENT", "key-1");
+
+        LocalDateTime claimedAt = LocalDateTime.now().minusSeconds(3);
+
+        // Act
+        leader.complete(EncodedResult.ofJson("{\"ok\":true}"), claimedAt);
+        singleFlight.release(leader);
+        IdempotencySingleFlight.SharedResult shared = singleFlight.await(follower);
+
+        // Assert
+        assertThat(leader.isLeader()).isTrue();
+        assertThat(follower.isLeader()).isFalse();
+        assertThat(shared.getResult().getLegacyJson()).isEqualTo("{\"ok\":true}");
+        assertThat(shared.getStoredAt()).isEqualTo(claimedAt);
+        assertThat(singleFlight.join("PAYMENT", "key-1").isLeader()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Follower should fail when the leader fails")
+    void testAwait_LeaderFailure() {
+        // Arrange
+        IdempotencySingleFlight.Flight leader = singleFlight.join("PAYMENT", "key-1");
+        IdempotencySingleFlight.Flight follower = singleFlight.join("PAYMENT", "key-1");
+
+        // Act
+        leader.fail(new IllegalStateException("gateway down"));
+
+        // Assert
+        assertThatThrownBy(() -> singleFlight.await(follower))
+            .isInstanceOf(IdempotencyException.class)
+            .hasMessageContaining("gateway down");
+    }
+
+    @Test
+    @DisplayName("Follower should time out after the configured maximum wait")
+    void testAwait_Timeout() {
+        // Arrange
+        singleFlight.join("PAYMENT", "key-1");
+        IdempotencySingleFlight.Flight follower = singleFlight.join("PAYMENT", "key-1");
+
+        // Act & Assert
+        assertThatThrownBy(() -> singleFlight.await(follower))
+            .isInstanceOf(IdempotencyException.class)
+            .hasMessageContaining("Timed out");
+    }
+
+    @Test
+    @DisplayName("Remote wait should return the row once another node completes it")
+    void testAwaitRemote_Completes() {
+        // Arrange
+        AtomicInteger polls = new AtomicInteger();
+
+        // Act
+        IdempotencyKey completed = singleFlight.awaitRemote("PAYMENT", "key-1", () ->
+            IdempotencyClaim.existing(row(polls.incrementAndGet() < 3
+                ? IdempotencyKey.IdempotencyStatus.PROCESSING
+                : IdempotencyKey.IdempotencyStatus.COMPLETED)));
+
+        // Assert
+        assertThat(completed.isCompleted()).isTrue();
+        assertThat(polls.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Remote wait should fail when the other node marks the key FAILED")
+    void testAwaitRemote_Failed() {
+        // Act & Assert
+        assertThatThrownBy(() -> singleFlight.awaitRemote("PAYMENT", "key-1", () ->
+                IdempotencyClaim.existing(row(IdempotencyKey.IdempotencyStatus.FAILED))))
+            .isInstanceOf(IdempotencyException.class)
+            .hasMessageContaining("FAILED");
+    }
+
+    private static IdempotencyKey row(IdempotencyKey.IdempotencyStatus status) {
+        return IdempotencyKey.builder()
+            .id(1L)
+            .operationType("PAYMENT")
+            .operationKey("key-1")
+            .status(status)
+            .result("{\"ok\":true}")
+            .expiresAt(LocalDateTime.now().plusHours(1))
+            .build();
+    }
+}
@@ -0,0 +1,468 @@
+package com.hospital.services.idempotency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Behaviour every {@link IdempotencyStore} backend must implement.
+ *
+ * <p>Each backend gets a subclass that only provides a fresh, empty store.</p>
+ */
+abstract class IdempotencyStoreContractTest {
+
+    protected IdempotencyStore store;
+
+    /**
+     * Creates an empty store for one test.
+     */
+    protected abstract IdempotencyStore createStore();
+
+    /**
+     * Releases resources of the store created for the test.
+     */
+    protected void destroyStore() {
+    }
+
+    @BeforeEach
+    void setUpStore() {
+        store = createStore();
+    }
+
+    @AfterEach
+    void tearDownStore() {
+        destroyStore();
+    }
+
+    @Test
+    @DisplayName("First claim should create a PROCESSING key with fencing token 1")
+    void testClaim_NewKey() {
+        // Act
+        IdempotencyClaim claim = claim("PAYMENT", "key-1", "node-a", LocalDateTime.now().plusMinutes(2));
+
+        // Assert
+        assertThat(claim.isClaimed()).isTrue();
+        assertThat(claim.getKey().getId()).isNotNull();
+        assertThat(claim.getKey().getStatus()).isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+        assertThat(claim.getKey().getFencingToken()).isEqualTo(1L);
+        IdempotencyKey stored = store.find("PAYMENT", "key-1").getKey();
+        assertThat(stored.getLeaseOwner()).isEqualTo("node-a");
+        assertThat(stored.getProcessInstanceId()).isEqualTo("proc-1");
+    }
+
+    @Test
+    @DisplayName("Second claim should return the existing key without claiming it")
+    void testClaim_ExistingKey() {
+        // Arrange
+        IdempotencyClaim first = claim("PAYMENT", "key-1");
+
+        // Act
+        IdempotencyClaim second = claim("PAYMENT", "key-1");
+
+        // Assert
+        assertThat(second.isClaimed()).isFalse();
+        assertThat(second.getKey().getId()).isEqualTo(first.getKey().getId());
+        assertThat(second.getKey().getStatus()).isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+    }
+
+    @Test
+    @DisplayName("Same key under a different operation type should be claimed independently")
+    void testClaim_DifferentOperationType() {
+        // Arrange
+        claim("PAYMENT", "key-1");
+
+        // Act
+        IdempotencyClaim other = claim("CLAIM_GENERATION", "key-1");
+
+        // Assert
+        assertThat(other.isClaimed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Finding an unknown key should return null")
+    void testFind_Absent() {
+        // Act & Assert
+        assertThat(store.find("PAYMENT", "missing")).isNull();
+    }
+
+    @Test
+    @DisplayName("Completed result should be returned unchanged on the next claim")
+    void testMarkCompleted_Replay() {
+        // Arrange
+        IdempotencyClaim first = claim("PAYMENT", "key-1");
+        EncodedResult result = new EncodedResult("com.hospital.model.PaymentResult", new byte[] {1, 2, 3}, null);
+
+        // Act
+        boolean completed = store.markCompleted(first.getKey().getId(), first.getKey().getFencingToken(), result);
+        IdempotencyClaim replay = claim("PAYMENT", "key-1");
+
+        // Assert
+        assertThat(completed).isTrue();
+        assertThat(replay.isClaimed()).isFalse();
+        assertThat(replay.getKey().isCompleted()).isTrue();
+        assertThat(EncodedResult.of(replay.getKey()).getResultType()).isEqualTo("com.hospital.model.PaymentResult");
+        assertThat(EncodedResult.of(replay.getKey()).getData()).containsExactly(1, 2, 3);
+        assertThat(replay.getKey().getLeaseOwner()).isNull();
+    }
+
+    @Test
+    @DisplayName("Completion should only apply to keys still PROCESSING")
+    void testMarkCompleted_OnlyFromProcessing() {
+        // Arrange
+        IdempotencyClaim claim = claim("PAYMENT", "key-1");
+        store.markFailed(claim.getKey().getId(), claim.getKey().getFencingToken());
+
+        // Act
+        boolean completed = store.markCompleted(claim.getKey().getId(), claim.getKey().getFencingToken(),
+            EncodedResult.ofJson("late"));
+
+        // Assert
+        assertThat(completed).isFalse();
+        IdempotencyKey stored = store.find("PAYMENT", "key-1").getKey();
+        assertThat(stored.getStatus()).isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+        assertThat(stored.getResult()).isNull();
+    }
+
+    @Test
+    @DisplayName("FAILED key should be taken over exactly once with a new fencing token")
+    void testReclaim_FailedKey() {
+        // Arrange
+        IdempotencyClaim first = claim("PAYMENT", "key-1");
+        long firstToken = first.getKey().getFencingToken();
+        store.markFailed(first.getKey().getId(), firstToken);
+        IdempotencyKey failed = store.find("PAYMENT", "key-1").getKey();
+        IdempotencyKey concurrent = store.find("PAYMENT", "key-1").getKey();
+
+        // Act
+        boolean winner = reclaim(failed);
+        boolean loser = reclaim(concurrent);
+
+        // Assert
+        assertThat(winner).isTrue();
+        assertThat(loser).isFalse();
+        assertThat(failed.getStatus()).isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+        assertThat(failed.getFencingToken()).isEqualTo(firstToken + 1);
+        assertThat(store.markCompleted(failed.getId(), firstToken, EncodedResult.ofJson("stale"))).isFalse();
+        assertThat(store.markCompleted(failed.getId(), failed.getFencingToken(), EncodedResult.ofJson("ok"))).isTrue();
+        assertThat(store.find("PAYMENT", "key-1").getKey().getResult()).isEqualTo("ok");
+    }
+
+    @Test
+    @DisplayName("PROCESSING and COMPLETED keys should not be taken over")
+    void testReclaim_NotFailed() {
+        // Arrange
+        claim("PAYMENT", "key-1");
+        IdempotencyClaim completed = claim("PAYMENT", "key-2");
+        store.markCompleted(completed.getKey().getId(), completed.getKey().getFencingToken(), EncodedResult.NULL);
+
+        // Act & Assert
+        assertThat(reclaim(store.find("PAYMENT", "key-1").getKey())).isFalse();
+        assertThat(reclaim(store.find("PAYMENT", "key-2").getKey())).isFalse();
+        assertThat(store.find("PAYMENT", "key-1").getKey().getFencingToken()).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Renewal should extend only the leases of the given node")
+    void testRenewLeases() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        claim("PAYMENT", "key-1", "node-a", now.plusSeconds(1));
+        claim("PAYMENT", "key-2", "node-a", now.plusSeconds(1));
+        claim("PAYMENT", "key-3", "node-b", now.plusSeconds(1));
+
+        // Act
+        int renewed = store.renewLeases("node-a", now.plusMinutes(5));
+
+        // Assert
+        assertThat(renewed).isEqualTo(2);
+        assertThat(store.recoverExpiredLeases(now.plusMinutes(1), now.minusMinutes(30))).isEqualTo(1);
+        assertThat(store.find("PAYMENT", "key-3").getKey().getStatus())
+            .isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+    }
+
+    @Test
+    @DisplayName("Expired leases should be recovered, fencing out the late owner")
+    void testRecoverExpiredLeases() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyClaim abandoned = claim("PAYMENT", "key-1", "node-a", now.minusMinutes(1));
+        claim("PAYMENT", "key-2", "node-b", now.plusMinutes(2));
+        IdempotencyClaim done = claim("PAYMENT", "key-3", "node-a", now.minusMinutes(1));
+        store.markCompleted(done.getKey().getId(), done.getKey().getFencingToken(), EncodedResult.ofJson("done"));
+
+        // Act
+        int recovered = store.recoverExpiredLeases(now, now.minusMinutes(30));
+
+        // Assert
+        assertThat(recovered).isEqualTo(1);
+        assertThat(store.markCompleted(abandoned.getKey().getId(), abandoned.getKey().getFencingToken(),
+            EncodedResult.ofJson("late"))).isFalse();
+        IdempotencyKey failed = store.find("PAYMENT", "key-1").getKey();
+        assertThat(failed.getStatus()).isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+        assertThat(failed.getFencingToken()).isEqualTo(2L);
+        assertThat(failed.getLeaseOwner()).isNull();
+        assertThat(store.find("PAYMENT", "key-2").getKey().getStatus())
+            .isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+        assertThat(store.find("PAYMENT", "key-3").getKey().isCompleted()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Unleased keys should be recovered once created before the cutoff")
+    void testRecoverExpiredLeases_Unleased() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        store.claim("PAYMENT", "old", null, null, now.minusHours(1), now.plusHours(23), null, null);
+        store.claim("PAYMENT", "new", null, null, now, now.plusHours(24), null, null);
+
+        // Act
+        int recovered = store.recoverExpiredLeases(now, now.minusMinutes(30));
+
+        // Assert
+        assertThat(recovered).isEqualTo(1);
+        assertThat(store.find("PAYMENT", "old").getKey().getStatus())
+            .isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+    }
+
+    @Test
+    @DisplayName("Manually stored result should create or overwrite the key as COMPLETED")
+    void testStoreCompleted() {
+        // Arrange
+        claim("PAYMENT", "key-1");
+        LocalDateTime now = LocalDateTime.now();
+
+        // Act
+        store.storeCompleted("PAYMENT", "key-1", EncodedResult.ofJson("\"overwritten\""), now, now.plusHours(24));
+        store.storeCompleted("PAYMENT", "key-2", EncodedResult.ofJson("\"created\""), now, now.plusHours(24));
+
+        // Assert
+        IdempotencyKey overwritten = store.find("PAYMENT", "key-1").getKey();
+        assertThat(overwritten.isCompleted()).isTrue();
+        assertThat(overwritten.getResult()).isEqualTo("\"overwritten\"");
+        assertThat(store.find("PAYMENT", "key-2").getKey().getResult()).isEqualTo("\"created\"");
+        assertThat(claim("PAYMENT", "key-2").isClaimed()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Expired keys should be removed and become claimable again")
+    void testRemoveExpired() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 10; i++) {
+            LocalDateTime createdAt = i % 2 == 0 ? now.minusDays(2) : now;
+            store.claim("PAYMENT", "key-" + i, null, null, createdAt, createdAt.plusDays(1), null, null);
+        }
+
+        // Act
+        long removed = store.removeExpired(now);
+
+        // Assert
+        assertThat(removed).isEqualTo(5);
+        assertThat(store.find("PAYMENT", "key-0")).isNull();
+        assertThat(store.find("PAYMENT", "key-1")).isNotNull();
+        assertThat(claim("PAYMENT", "key-0").isClaimed()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Expired keys should be counted up to the limit")
+    void testCountExpired() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            store.claim("PAYMENT", "expired-" + i, null, null, now.minusDays(2), now.minusDays(1), null, null);
+        }
+        claim("PAYMENT", "live");
+
+        // Act & Assert
+        assertThat(store.countExpired(now, 100)).isEqualTo(5);
+        assertThat(store.countExpired(now, 3)).isEqualTo(3);
+        assertThat(store.countExpired(now.minusDays(3), 100)).isZero();
+    }
+
+    @Test
+    @DisplayName("Sharded removal should only remove the expired keys of its shard")
+    void testRemoveExpired_Sharded() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        List<IdempotencyKey> expired = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            expired.add(store.claim("PAYMENT", "expired-" + i, null, null, now.minusDays(2),
+                now.minusDays(1), null, null).getKey());
+        }
+        claim("PAYMENT", "live");
+
+        // Act
+        long removedFromShard = store.removeExpired(now, 1, 3);
+        long removedAgain = store.removeExpired(now, 1, 3);
+        long removedFromAll = removedFromShard + store.removeExpired(now, 0, 3) + store.removeExpired(now, 2, 3);
+
+        // Assert
+        assertThat(removedAgain).isZero();
+        assertThat(removedFromAll).isEqualTo(9);
+        assertThat(expired).allSatisfy(key -> assertThat(store.find("PAYMENT", key.getOperationKey())).isNull());
+        assertThat(store.find("PAYMENT", "live")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Removal by id should only remove the given keys that have expired")
+    void testRemoveExpired_ByIds() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyKey expired = store.claim("PAYMENT", "expired", null, null, now.minusDays(2),
+            now.minusDays(1), null, null).getKey();
+        store.claim("PAYMENT", "other-expired", null, null, now.minusDays(2), now.minusDays(1), null, null);
+        IdempotencyKey live = claim("PAYMENT", "live").getKey();
+
+        // Act
+        long removed = store.removeExpired(List.of(expired.getId(), live.getId()), now);
+
+        // Assert
+        assertThat(removed).isEqualTo(1);
+        assertThat(store.find("PAYMENT", "expired")).isNull();
+        assertThat(store.find("PAYMENT", "other-expired")).isNotNull();
+        assertThat(store.find("PAYMENT", "live")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Concurrent claims of one key should have exactly one winner")
+    void testClaim_Concurrent() throws Exception {
+        // Arrange
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<IdempotencyClaim>> claims = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            claims.add(executor.submit(() -> {
+                start.await();
+                return claim("PAYMENT", "contended");
+            }));
+        }
+
+        // Act
+        start.countDown();
+        int winners = 0;
+        for (Future<IdempotencyClaim> claim : claims) {
+            IdempotencyClaim result = claim.get(10, TimeUnit.SECONDS);
+            if (result != null && result.isClaimed()) {
+                winners++;
+            }
+        }
+        executor.shutdown();
+
+        // Assert
+        assertThat(winners).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Every store operation should be counted as a round-trip")
+    void testStatementCount() {
+        // Arrange
+        long before = store.getStatementCount();
+
+        // Act
+        IdempotencyClaim claim = claim("PAYMENT", "key-1");
+        store.markCompleted(claim.getKey().getId(), claim.getKey().getFencingToken(), EncodedResult.NULL);
+
+        // Assert
+        assertThat(store.getStatementCount() - before).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Keys should be counted by status")
+    void testCountByStatus() {
+        // Arrange
+        claim("PAYMENT", "key-1");
+        claim("PAYMENT", "key-2");
+        IdempotencyClaim done = claim("PAYMENT", "key-3");
+        store.markCompleted(done.getKey().getId(), done.getKey().getFencingToken(), EncodedResult.NULL);
+
+        // Act
+        long processing = store.countByStatus(IdempotencyKey.IdempotencyStatus.PROCESSING);
+        long completed = store.countByStatus(IdempotencyKey.IdempotencyStatus.COMPLETED);
+        long failed = store.countByStatus(IdempotencyKey.IdempotencyStatus.FAILED);
+
+        // Assert
+        assertThat(processing).isEqualTo(2);
+        assertThat(completed).isEqualTo(1);
+        assertThat(failed).isZero();
+    }
+
+    @Test
+    @DisplayName("Batch claim should claim new keys and return existing keys unclaimed")
+    void testClaimAll_MixedKeys() {
+        // Arrange
+        IdempotencyClaim existing = claim("PAYMENT", "key-1");
+        store.markCompleted(existing.getKey().getId(), existing.getKey().getFencingToken(),
+            new EncodedResult("java.lang.String", null, "\"done\""));
+        claim("PAYMENT", "key-2");
+        LocalDateTime now = LocalDateTime.now();
+
+        // Act
+        Map<String, IdempotencyClaim> claims = store.claimAll("PAYMENT", List.of("key-1", "key-2", "key-3", "key-4"),
+            null, null, now, now.plusHours(24), "node-a", now.plusMinutes(2));
+
+        // Assert
+        assertThat(claims).containsOnlyKeys("key-1", "key-2", "key-3", "key-4");
+        assertThat(claims.get("key-1").isClaimed()).isFalse();
+        assertThat(claims.get("key-1").getKey().isCompleted()).isTrue();
+        assertThat(claims.get("key-1").getKey().getResult()).isEqualTo("\"done\"");
+        assertThat(claims.get("key-2").isClaimed()).isFalse();
+        assertThat(claims.get("key-2").getKey().getStatus()).isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+        assertThat(claims.get("key-3").isClaimed()).isTrue();
+        assertThat(claims.get("key-3").getKey().getFencingToken()).isEqualTo(1);
+        assertThat(claims.get("key-4").getKey().getLeaseOwner()).isEqualTo("node-a");
+        assertThat(store.find("PAYMENT", "key-4").getKey().getStatus())
+            .isEqualTo(IdempotencyKey.IdempotencyStatus.PROCESSING);
+    }
+
+    @Test
+    @DisplayName("Batch completion should skip keys whose fencing token is stale")
+    void testMarkCompletedAll_StaleToken() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, IdempotencyClaim> claims = store.claimAll("PAYMENT", List.of("key-1", "key-2"),
+            null, null, now, now.plusHours(24), "node-a", now.minusSeconds(1));
+        store.recoverExpiredLeases(now, now.minusMinutes(30));
+        IdempotencyKey fresh = claim("PAYMENT", "key-3").getKey();
+        EncodedResult result = new EncodedResult("java.lang.String", null, "\"ok\"");
+
+        // Act
+        boolean[] applied = store.markCompletedAll(
+            List.of(claims.get("key-1").getKey(), fresh), List.of(result, result));
+        boolean[] failed = store.markFailedAll(List.of(claims.get("key-2").getKey()));
+
+        // Assert
+        assertThat(applied).containsExactly(false, true);
+        assertThat(failed).containsExactly(false);
+        assertThat(store.find("PAYMENT", "key-1").getKey().getStatus()).isEqualTo(IdempotencyKey.IdempotencyStatus.FAILED);
+        assertThat(store.find("PAYMENT", "key-3").getKey().isCompleted()).isTrue();
+    }
+
+    protected IdempotencyClaim claim(String operationType, String operationKey) {
+        return claim(operationType, operationKey, null, null);
+    }
+
+    protected IdempotencyClaim claim(String operationType, String operationKey,
+                                     String leaseOwner, LocalDateTime leaseExpiresAt) {
+        LocalDateTime now = LocalDateTime.now();
+        return store.claim(operationType, operationKey, "proc-1", "exec-1", now, now.plusHours(24),
+            leaseOwner, leaseExpiresAt);
+    }
+
+    private boolean reclaim(IdempotencyKey key) {
+        LocalDateTime now = LocalDateTime.now();
+        return store.reclaim(key, null, null, now, now.plusHours(1), "node-a", now.plusMinutes(2));
+    }
+}
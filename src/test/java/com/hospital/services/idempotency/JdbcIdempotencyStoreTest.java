@@ -0,0 +1,45 @@
+package com.hospital.services.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+
+/**
+ * Runs the {@link IdempotencyStore} contract against {@link JdbcIdempotencyStore}
+ * on an embedded H2 database.
+ */
+@DisplayName("JdbcIdempotencyStore Tests")
+class JdbcIdempotencyStoreTest extends IdempotencyStoreContractTest {
+
+    private EmbeddedDatabase database;
+
+    @Override
+    protected IdempotencyStore createStore() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/idempotency_keys.sql")
+            .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(database);
+
+        IdempotencyKeyJdbcRepository repository = new IdempotencyKeyJdbcRepository(jdbcTemplate, transactionManager);
+        return new JdbcIdempotencyStore(
+            repository,
+            new IdempotencyPartitionManager(jdbcTemplate, repository, transactionManager, 7,
+                IdempotencyPartitionManager.ExpiredPartitionAction.DROP, 1000),
+            new IdempotencyCleanupEngine(jdbcTemplate, transactionManager, new SimpleMeterRegistry(),
+                1000, 0, Duration.ofMinutes(1), 10000));
+    }
+
+    @Override
+    protected void destroyStore() {
+        database.shutdown();
+    }
+}
@@ -0,0 +1,65 @@
+package com.hospital.services.idempotency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the {@link IdempotencyStore} contract against {@link OffHeapIdempotencyStore},
+ * plus arena-specific behaviour.
+ */
+@DisplayName("OffHeapIdempotencyStore Tests")
+class OffHeapIdempotencyStoreTest extends IdempotencyStoreContractTest {
+
+    @Override
+    protected IdempotencyStore createStore() {
+        return new OffHeapIdempotencyStore(DataSize.ofMegabytes(1));
+    }
+
+    @Test
+    @DisplayName("Dead record space should be reclaimed when a segment fills up")
+    void testCompaction_UnderChurn() {
+        // Arrange
+        OffHeapIdempotencyStore smallStore = new OffHeapIdempotencyStore(DataSize.ofKilobytes(64));
+        LocalDateTime now = LocalDateTime.now();
+        byte[] payload = new byte[200];
+
+        // Act - every completion relocates the record, leaving its claimed copy behind
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                IdempotencyClaim claim = smallStore.claim("PAYMENT", "key-" + round + "-" + i, null, null,
+                    now.minusDays(2), now.minusDays(1), null, null);
+                smallStore.markCompleted(claim.getKey().getId(), claim.getKey().getFencingToken(),
+                    new EncodedResult("java.lang.String", payload, null));
+            }
+            smallStore.removeExpired(now);
+        }
+        IdempotencyClaim live = smallStore.claim("PAYMENT", "live", null, null, now, now.plusDays(1), null, null);
+
+        // Assert
+        assertThat(live.isClaimed()).isTrue();
+        assertThat(smallStore.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Claims should fail clearly once a segment is full of live keys")
+    void testClaim_Full() {
+        // Arrange
+        OffHeapIdempotencyStore smallStore = new OffHeapIdempotencyStore(DataSize.ofKilobytes(16));
+        LocalDateTime now = LocalDateTime.now();
+
+        // Act & Assert
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                smallStore.claim("PAYMENT", "key-" + i, null, null, now, now.plusDays(1), null, null);
+            }
+        })
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("idempotency.store.off-heap.max-size");
+    }
+}
@@ -0,0 +1,139 @@
+package com.hospital.services.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link TimingWheel}.
+ */
+@DisplayName("TimingWheel Tests")
+class TimingWheelTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private TimingWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        // 1s ticks, 8 buckets per level, 3 levels: a range of 512s
+        wheel = new TimingWheel<>(Duration.ofSeconds(1), 8, 3, START);
+    }
+
+    @Test
+    @DisplayName("Deadlines should fire on the first tick past them, never before")
+    void testAdvance_FiresOnTime() {
+        // Arrange
+        wheel.schedule("a", START + 1_500);
+        wheel.schedule("b", START + 3_000);
+
+        // Act
+        List<String> atOne = wheel.advance(START + 1_999);
+        List<String> atTwo = wheel.advance(START + 2_000);
+        List<String> atThree = wheel.advance(START + 3_000);
+
+        // Assert
+        assertThat(atOne).isEmpty();
+        assertThat(atTwo).containsExactly("a");
+        assertThat(atThree).containsExactly("b");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deadlines on upper levels should cascade down and fire at their tick")
+    void testAdvance_CascadesUpperLevels() {
+        // Arrange
+        wheel.schedule("level-1", START + 20_000);
+        wheel.schedule("level-2", START + 300_000);
+        wheel.schedule("beyond-range", START + 2_000_000);
+
+        // Act
+        List<String> beforeFirst = wheel.advance(START + 19_999);
+        List<String> first = wheel.advance(START + 20_000);
+        List<String> beforeSecond = wheel.advance(START + 299_999);
+        List<String> second = wheel.advance(START + 300_000);
+        List<String> beforeThird = wheel.advance(START + 1_999_999);
+        List<String> third = wheel.advance(START + 2_000_000);
+
+        // Assert
+        assertThat(beforeFirst).isEmpty();
+        assertThat(first).containsExactly("level-1");
+        assertThat(beforeSecond).isEmpty();
+        assertThat(second).containsExactly("level-2");
+        assertThat(beforeThird).isEmpty();
+        assertThat(third).containsExactly("beyond-range");
+    }
+
+    @Test
+    @DisplayName("Cancelled deadlines should not fire")
+    void testCancel() {
+        // Arrange
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", START + 5_000);
+        wheel.schedule("kept", START + 5_000);
+
+        // Act
+        boolean first = wheel.cancel(cancelled);
+        boolean second = wheel.cancel(cancelled);
+        List<String> expired = wheel.advance(START + 10_000);
+
+        // Assert
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+        assertThat(expired).containsExactly("kept");
+    }
+
+    @Test
+    @DisplayName("Past deadlines should fire on the next tick")
+    void testSchedule_PastDeadline() {
+        // Arrange
+        wheel.advance(START + 10_000);
+        wheel.schedule("late", START);
+
+        // Act
+        List<String> sameTick = wheel.advance(START + 10_999);
+        List<String> nextTick = wheel.advance(START + 11_000);
+
+        // Assert
+        assertThat(sameTick).isEmpty();
+        assertThat(nextTick).containsExactly("late");
+    }
+
+    @Test
+    @DisplayName("Random deadlines should each fire exactly once, at their tick")
+    void testAdvance_RandomDeadlines() {
+        // Arrange
+        Random random = new Random(7);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long deadline = START + 1_000 + random.nextInt(1_500_000);
+            deadlines.add(deadline);
+            wheel.schedule(Long.toString(deadline), deadline);
+        }
+
+        // Act
+        int fired = 0;
+        long previous = START;
+        for (long now = START; now <= START + 1_600_000; now += 1_000 + random.nextInt(20_000)) {
+            for (String expired : wheel.advance(now)) {
+                long deadline = Long.parseLong(expired);
+                // Assert: not early, and not left over from a previous advance
+                assertThat(deadline).isLessThanOrEqualTo(now);
+                assertThat(deadline).isGreaterThan(previous - previous % 1_000);
+                fired++;
+            }
+            previous = now;
+        }
+        fired += wheel.advance(START + 1_600_000).size();
+
+        // Assert
+        assertThat(fired).isEqualTo(deadlines.size());
+        assertThat(wheel.size()).isZero();
+    }
+}
@@ -0,0 +1,120 @@
+package com.hospital.testing;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.delegate.JavaDelegate;
+import org.camunda.bpm.engine.impl.cfg.StandaloneProcessEngineConfiguration;
+import org.camunda.bpm.engine.impl.persistence.StrongUuidGenerator;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs a {@link JavaDelegate} as the only service task of a process on an embedded
+ * Camunda engine and counts the SQL statements it causes.
+ *
+ * <p>The engine and the application tables ({@code idempotency_keys}) share one H2
+ * database behind a {@link StatementCountingDataSource}, so services built on
+ * {@link #getDataSource()} are counted too. The process waits in a receive task after
+ * the delegate, so the variables it sets are flushed like in production. Each run is
+ * compared with the same process and variables around a no-op delegate; the difference
+ * is what the delegate costs.</p>
+ */
+public class DelegateRunner implements ExtensionContext.Store.CloseableResource {
+
+    private static final String PROCESS_KEY = "statementBudget";
+    private static final String DELEGATE_BEAN = "budgetDelegate";
+    private static final JavaDelegate NO_OP = execution -> { };
+
+    private final EmbeddedDatabase database;
+    private final StatementCountingDataSource dataSource;
+    private final ProcessEngine processEngine;
+    private final Map<Object, Object> beans = new HashMap<>();
+
+    private StatementCounts lastRun;
+
+    DelegateRunner() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("schema/idempotency_keys.sql")
+            .build();
+        dataSource = new StatementCountingDataSource(database);
+
+        StandaloneProcessEngineConfiguration configuration = new StandaloneProcessEngineConfiguration();
+        configuration.setProcessEngineName("statement-budget-" + System.identityHashCode(this));
+        configuration.setDataSource(dataSource);
+        configuration.setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_CREATE_DROP);
+        configuration.setHistory(ProcessEngineConfiguration.HISTORY_FULL);
+        configuration.setJobExecutorActivate(false);
+        configuration.setMetricsEnabled(false);
+        configuration.setDbMetricsReporterActivate(false);
+        // The default id generator fetches id blocks from the database every 100 ids
+        configuration.setIdGenerator(new StrongUuidGenerator());
+        configuration.setBeans(beans);
+        processEngine = configuration.buildProcessEngine();
+
+        BpmnModelInstance process = Bpmn.createExecutableProcess(PROCESS_KEY)
+            .camundaHistoryTimeToLive(1)
+            .startEvent()
+            .serviceTask("delegate").camundaDelegateExpression("${" + DELEGATE_BEAN + "}")
+            .receiveTask("wait")
+            .endEvent()
+            .done();
+        processEngine.getRepositoryService().createDeployment()
+            .addModelInstance(PROCESS_KEY + ".bpmn", process)
+            .deploy();
+
+        // Warm up the deployment cache so the first measured run pays nothing extra
+        start(NO_OP, Map.of());
+    }
+
+    /**
+     * Runs the delegate in a new process instance with the given variables.
+     *
+     * @return the statements caused by the delegate
+     */
+    public StatementCounts run(JavaDelegate delegate, Map<String, Object> variables) {
+        StatementCounts baseline = start(NO_OP, variables);
+        lastRun = start(delegate, variables).minus(baseline);
+        return lastRun;
+    }
+
+    /**
+     * The data source of the shared database; statements issued through it are counted.
+     */
+    public StatementCountingDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public ProcessEngine getProcessEngine() {
+        return processEngine;
+    }
+
+    StatementCounts getLastRun() {
+        return lastRun;
+    }
+
+    void reset() {
+        lastRun = null;
+    }
+
+    private StatementCounts start(JavaDelegate delegate, Map<String, Object> variables) {
+        beans.put(DELEGATE_BEAN, delegate);
+        StatementCounts before = dataSource.snapshot();
+        processEngine.getRuntimeService().startProcessInstanceByKey(PROCESS_KEY, variables);
+        return dataSource.snapshot().minus(before);
+    }
+
+    @Override
+    public void close() {
+        processEngine.close();
+        database.shutdown();
+    }
+}
@@ -0,0 +1,93 @@
+package com.hospital.testing;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Provides a {@link DelegateRunner} on an embedded engine and enforces {@link StatementBudget}s.
+ *
+ * <p>Test and lifecycle methods can declare {@link DelegateRunner} or
+ * {@link StatementCountingDataSource} parameters; one engine is shared by all tests of a
+ * class. After each test annotated with {@link StatementBudget}, the statements of the
+ * test's last {@link DelegateRunner#run} are checked against the budget:</p>
+ * <pre>
+ * &#64;ExtendWith(DelegateStatementBudgetExtension.class)
+ * class GenerateClaimDelegateStatementBudgetTest {
+ *
+ *     &#64;Test
+ *     &#64;StatementBudget(selects = 1, updates = 1)
+ *     void newClaim(DelegateRunner runner) {
+ *         runner.run(delegate, variables);
+ *     }
+ * }
+ * </pre>
+ */
+public class DelegateStatementBudgetExtension
+        implements BeforeEachCallback, AfterTestExecutionCallback, ParameterResolver {
+
+    private static final ExtensionContext.Namespace NAMESPACE =
+        ExtensionContext.Namespace.create(DelegateStatementBudgetExtension.class);
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        runner(context).reset();
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        StatementBudget budget = context.getRequiredTestMethod().getAnnotation(StatementBudget.class);
+        if (budget == null || context.getExecutionException().isPresent()) {
+            return;
+        }
+
+        StatementCounts counts = runner(context).getLastRun();
+        if (counts == null) {
+            fail("%s declares a statement budget but did not run a delegate", context.getDisplayName());
+        }
+
+        List<String> exceeded = new ArrayList<>();
+        check(exceeded, "SELECT", counts.getSelects(), budget.selects());
+        check(exceeded, "INSERT", counts.getInserts(), budget.inserts());
+        check(exceeded, "UPDATE", counts.getUpdates(), budget.updates());
+        check(exceeded, "DELETE", counts.getDeletes(), budget.deletes());
+        if (!exceeded.isEmpty()) {
+            fail("Statement budget exceeded: %s (all statements: %s)", String.join(", ", exceeded), counts);
+        }
+    }
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        Class<?> type = parameterContext.getParameter().getType();
+        return type == DelegateRunner.class || type == StatementCountingDataSource.class;
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        DelegateRunner runner = runner(extensionContext);
+        return parameterContext.getParameter().getType() == DelegateRunner.class
+            ? runner
+            : runner.getDataSource();
+    }
+
+    private static void check(List<String> exceeded, String kind, long actual, int budget) {
+        if (budget != StatementBudget.UNLIMITED && actual > budget) {
+            exceeded.add(kind + " " + actual + " > " + budget);
+        }
+    }
+
+    private static DelegateRunner runner(ExtensionContext context) {
+        ExtensionContext classContext = context.getTestClass().isPresent() && context.getTestMethod().isPresent()
+            ? context.getParent().orElse(context)
+            : context;
+        return classContext.getStore(NAMESPACE)
+            .getOrComputeIfAbsent(DelegateRunner.class, type -> new DelegateRunner(), DelegateRunner.class);
+    }
+}
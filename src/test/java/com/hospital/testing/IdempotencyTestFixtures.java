@@ -0,0 +1,75 @@
+package com.hospital.testing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.services.idempotency.IdempotencyAsyncExecutor;
+import com.hospital.services.idempotency.IdempotencyBatchExecutor;
+import com.hospital.services.idempotency.IdempotencyCleanupEngine;
+import com.hospital.services.idempotency.IdempotencyExpiryTracker;
+import com.hospital.services.idempotency.IdempotencyKeyJdbcRepository;
+import com.hospital.services.idempotency.IdempotencyLeaseManager;
+import com.hospital.services.idempotency.IdempotencyMetrics;
+import com.hospital.services.idempotency.IdempotencyPartitionManager;
+import com.hospital.services.idempotency.IdempotencyResultCache;
+import com.hospital.services.idempotency.IdempotencyResultCodec;
+import com.hospital.services.idempotency.IdempotencyService;
+import com.hospital.services.idempotency.IdempotencySingleFlight;
+import com.hospital.services.idempotency.IdempotencyStore;
+import com.hospital.services.idempotency.JdbcIdempotencyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Builds idempotency services for tests without a Spring context.
+ */
+public final class IdempotencyTestFixtures {
+
+    /**
+     * Ids per cleanup shard stripe, small enough for a few hundred test keys to spread over
+     * every shard.
+     */
+    public static final long CLEANUP_STRIPE_SIZE = 10;
+
+    private IdempotencyTestFixtures() {
+    }
+
+    /**
+     * An {@link IdempotencyService} on the JDBC store with the production defaults, except
+     * that the near-cache is disabled so every replay reaches the database (as it does on
+     * another node), and the cleanup shards use stripes of {@link #CLEANUP_STRIPE_SIZE} ids.
+     *
+     * @param dataSource a database with the {@code idempotency_keys} table
+     */
+    public static IdempotencyService jdbcIdempotencyService(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        IdempotencyKeyJdbcRepository repository = new IdempotencyKeyJdbcRepository(jdbcTemplate, transactionManager);
+        IdempotencyStore store = new JdbcIdempotencyStore(
+            repository,
+            new IdempotencyPartitionManager(jdbcTemplate, repository, transactionManager, 7,
+                IdempotencyPartitionManager.ExpiredPartitionAction.DROP, 1000),
+            new IdempotencyCleanupEngine(jdbcTemplate, transactionManager, new SimpleMeterRegistry(),
+                1000, 0, Duration.ofMinutes(1), CLEANUP_STRIPE_SIZE));
+
+        IdempotencyResultCache resultCache = new IdempotencyResultCache(0, Duration.ofMinutes(10));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        IdempotencyMetrics metrics = new IdempotencyMetrics(meterRegistry, store);
+
+        return new IdempotencyService(
+            store,
+            resultCache,
+            new IdempotencySingleFlight(false, Duration.ofSeconds(30), Duration.ofMillis(50),
+                Duration.ofSeconds(2), new SimpleMeterRegistry()),
+            new IdempotencyResultCodec(new ObjectMapper(), 1024),
+            new IdempotencyLeaseManager(store, Duration.ofMinutes(2), Duration.ofSeconds(30),
+                Duration.ofMinutes(30), "test-node"),
+            new IdempotencyBatchExecutor(1, 16),
+            metrics,
+            new IdempotencyAsyncExecutor(true, 4, 16, Duration.ofSeconds(30)),
+            new IdempotencyExpiryTracker(store, resultCache, metrics, meterRegistry, Duration.ofSeconds(1),
+                Duration.ofMinutes(30), 1000));
+    }
+}
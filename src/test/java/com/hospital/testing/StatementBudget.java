@@ -0,0 +1,34 @@
+package com.hospital.testing;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of SQL statements the last delegate run of a test may issue, checked
+ * by {@link DelegateStatementBudgetExtension} after the test.
+ *
+ * <p>Budgets count the statements caused by the delegate itself: its own queries and
+ * the engine writes for the variables it sets, not the cost of starting the process.
+ * Keep them tight; raising a budget should be a deliberate change in review.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface StatementBudget {
+
+    /**
+     * No limit for this kind of statement.
+     */
+    int UNLIMITED = -1;
+
+    int selects() default UNLIMITED;
+
+    int inserts() default UNLIMITED;
+
+    int updates() default UNLIMITED;
+
+    int deletes() default UNLIMITED;
+}
@@ -0,0 +1,170 @@
+package com.hospital.testing;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * {@link DataSource} wrapper that counts the SQL statements executed through it, by kind.
+ *
+ * <p>Every {@code execute*} call on a statement counts as one round-trip, including
+ * {@code executeBatch}, however many rows the batch carries. Statements are classified by
+ * their leading keyword, so a query over a data change (H2 {@code SELECT ... FROM FINAL TABLE
+ * (MERGE ...)}) or a CTE counts as a SELECT and a {@code MERGE} as an INSERT.</p>
+ *
+ * <p>Counters are shared by all connections and threads; take a {@link #snapshot()} before
+ * and after the code under test and compare them.</p>
+ */
+public class StatementCountingDataSource implements DataSource {
+
+    private static final Class<?>[] STATEMENT_TYPES = {
+        Statement.class, PreparedStatement.class, CallableStatement.class
+    };
+
+    private final DataSource target;
+    private final AtomicLongArray counts = new AtomicLongArray(StatementCounts.Kind.values().length);
+
+    public StatementCountingDataSource(DataSource target) {
+        this.target = target;
+    }
+
+    /**
+     * Current totals since this data source was created.
+     */
+    public StatementCounts snapshot() {
+        long[] values = new long[counts.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = counts.get(i);
+        }
+        return new StatementCounts(values);
+    }
+
+    public DataSource getTarget() {
+        return target;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(target.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(target.getConnection(username, password));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return target.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        return type.isInstance(this) ? type.cast(this) : target.unwrap(type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) throws SQLException {
+        return type.isInstance(this) || target.isWrapperFor(type);
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                Object result = invoke(connection, method, args);
+                if (result instanceof Statement statement && method.getName().startsWith("prepare")) {
+                    return wrap(statement, (String) args[0]);
+                }
+                if (result instanceof Statement statement) {
+                    return wrap(statement, null);
+                }
+                return result;
+            });
+    }
+
+    private Statement wrap(Statement statement, String preparedSql) {
+        InvocationHandler handler = new InvocationHandler() {
+            private String batchSql;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("addBatch") && args != null && args.length == 1 && batchSql == null) {
+                    batchSql = (String) args[0];
+                } else if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+                    record(preparedSql != null ? preparedSql : batchSql);
+                    batchSql = null;
+                } else if (name.startsWith("execute")) {
+                    record(args != null && args.length > 0 && args[0] instanceof String sql ? sql : preparedSql);
+                }
+                return StatementCountingDataSource.invoke(statement, method, args);
+            }
+        };
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), STATEMENT_TYPES, handler);
+    }
+
+    private void record(String sql) {
+        counts.incrementAndGet(classify(sql).ordinal());
+    }
+
+    static StatementCounts.Kind classify(String sql) {
+        if (sql == null) {
+            return StatementCounts.Kind.OTHER;
+        }
+        String keyword = sql.stripLeading();
+        while (keyword.startsWith("(")) {
+            keyword = keyword.substring(1).stripLeading();
+        }
+        int end = 0;
+        while (end < keyword.length() && Character.isLetter(keyword.charAt(end))) {
+            end++;
+        }
+        return switch (keyword.substring(0, end).toUpperCase(Locale.ROOT)) {
+            case "SELECT", "WITH", "VALUES" -> StatementCounts.Kind.SELECT;
+            case "INSERT", "MERGE" -> StatementCounts.Kind.INSERT;
+            case "UPDATE" -> StatementCounts.Kind.UPDATE;
+            case "DELETE" -> StatementCounts.Kind.DELETE;
+            default -> StatementCounts.Kind.OTHER;
+        };
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.hospital.testing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link StatementCountingDataSource}.
+ */
+@DisplayName("StatementCountingDataSource Tests")
+class StatementCountingDataSourceTest {
+
+    private EmbeddedDatabase database;
+    private StatementCountingDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+        dataSource = new StatementCountingDataSource(database);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE item (id INT PRIMARY KEY, name VARCHAR(20))");
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("Statements should be counted by their leading keyword")
+    void testCountsByKind() {
+        // Arrange
+        StatementCounts before = dataSource.snapshot();
+
+        // Act
+        jdbcTemplate.update("INSERT INTO item VALUES (?, ?)", 1, "a");
+        jdbcTemplate.update("UPDATE item SET name = ? WHERE id = ?", "b", 1);
+        jdbcTemplate.queryForList("SELECT name FROM item");
+        jdbcTemplate.queryForList("WITH t AS (SELECT id FROM item) SELECT id FROM t");
+        jdbcTemplate.update("DELETE FROM item WHERE id = ?", 1);
+        StatementCounts counts = dataSource.snapshot().minus(before);
+
+        // Assert
+        assertThat(counts.getInserts()).isEqualTo(1);
+        assertThat(counts.getUpdates()).isEqualTo(1);
+        assertThat(counts.getSelects()).isEqualTo(2);
+        assertThat(counts.getDeletes()).isEqualTo(1);
+        assertThat(counts.getTotal()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("A JDBC batch should count as a single round-trip")
+    void testBatchCountsOnce() {
+        // Arrange
+        StatementCounts before = dataSource.snapshot();
+
+        // Act
+        jdbcTemplate.batchUpdate("INSERT INTO item VALUES (?, ?)",
+            List.of(new Object[] {1, "a"}, new Object[] {2, "b"}, new Object[] {3, "c"}));
+        StatementCounts counts = dataSource.snapshot().minus(before);
+
+        // Assert
+        assertThat(counts.getInserts()).isEqualTo(1);
+        assertThat(counts.getTotal()).isEqualTo(1);
+    }
+}
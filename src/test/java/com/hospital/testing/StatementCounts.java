@@ -0,0 +1,71 @@
+package com.hospital.testing;
+
+import java.util.Arrays;
+
+/**
+ * Number of SQL statements executed, by kind.
+ *
+ * @see StatementCountingDataSource
+ */
+public final class StatementCounts {
+
+    /**
+     * Kind of statement, by leading keyword.
+     */
+    public enum Kind {
+        SELECT, INSERT, UPDATE, DELETE, OTHER
+    }
+
+    private final long[] counts;
+
+    StatementCounts(long[] counts) {
+        this.counts = counts;
+    }
+
+    public long get(Kind kind) {
+        return counts[kind.ordinal()];
+    }
+
+    public long getSelects() {
+        return get(Kind.SELECT);
+    }
+
+    public long getInserts() {
+        return get(Kind.INSERT);
+    }
+
+    public long getUpdates() {
+        return get(Kind.UPDATE);
+    }
+
+    public long getDeletes() {
+        return get(Kind.DELETE);
+    }
+
+    public long getTotal() {
+        return Arrays.stream(counts).sum();
+    }
+
+    /**
+     * Statements counted in this snapshot but not in an earlier one.
+     */
+    public StatementCounts minus(StatementCounts earlier) {
+        long[] delta = new long[counts.length];
+        for (int i = 0; i < delta.length; i++) {
+            delta[i] = counts[i] - earlier.counts[i];
+        }
+        return new StatementCounts(delta);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("{");
+        for (Kind kind : Kind.values()) {
+            if (text.length() > 1) {
+                text.append(", ");
+            }
+            text.append(kind).append('=').append(get(kind));
+        }
+        return text.append('}').toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.hospital.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link BoundedCache}.
+ */
+@DisplayName("BoundedCache Tests")
+class BoundedCacheTest {
+
+    private static final long LATER = Long.MAX_VALUE;
+
+    @Test
+    @DisplayName("Least-recently-used entries should be evicted beyond the maximum size")
+    void testPut_EvictsLeastRecentlyUsed() {
+        // Arrange
+        BoundedCache<String, String> cache = new BoundedCache<>(2);
+        cache.put("a", "A", LATER);
+        cache.put("b", "B", LATER);
+        cache.get("a");
+
+        // Act
+        cache.put("c", "C", LATER);
+
+        // Assert
+        assertThat(cache.get("a")).isEqualTo("A");
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isEqualTo("C");
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(3);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitRate()).isEqualTo(0.75);
+    }
+
+    @Test
+    @DisplayName("Entries should not be served past their validity")
+    void testGet_ExpiredEntry() throws InterruptedException {
+        // Arrange
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("short", "S", System.currentTimeMillis() + 20);
+        cache.put("long", "L", LATER);
+        Thread.sleep(40);
+
+        // Act
+        String expired = cache.get("short");
+
+        // Assert
+        assertThat(expired).isNull();
+        assertThat(cache.put("past", "P", System.currentTimeMillis() - 1)).isFalse();
+        assertThat(cache.evictExpired()).isZero();
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("An entry should only be evicted while it still holds the expected value")
+    void testEvict_OnlyExpectedValue() {
+        // Arrange
+        BoundedCache<String, String> cache = new BoundedCache<>(10);
+        cache.put("a", "old", LATER);
+        cache.put("a", "new", LATER);
+
+        // Act & Assert
+        assertThat(cache.evict("a", "old")).isFalse();
+        assertThat(cache.evict("a", "new")).isTrue();
+        assertThat(cache.get("a")).isNull();
+    }
+
+    @Test
+    @DisplayName("A cache of size 0 should store nothing and count no lookups")
+    void testDisabled() {
+        // Arrange
+        BoundedCache<String, String> cache = new BoundedCache<>(0);
+
+        // Act
+        boolean cached = cache.put("a", "A", LATER);
+
+        // Assert
+        assertThat(cached).isFalse();
+        assertThat(cache.isEnabled()).isFalse();
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.getMissCount()).isZero();
+    }
+}
@@ -0,0 +1,115 @@
+package com.hospital.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests that {@link KeyHasher} produces the same keys as hashing the
+ * concatenated UTF-8 string.
+ */
+@DisplayName("KeyHasher Tests")
+class KeyHasherTest {
+
+    @Test
+    @DisplayName("Appended values should hash like their concatenated string")
+    void testAppend_MatchesConcatenatedString() throws Exception {
+        // Act
+        String key = KeyHasher.start()
+            .append("PAYMENT").append('|').append(-42L).append('|').append(150.5)
+            .append('|').append((Object) null).append('|').append((Object) 7)
+            .toHex();
+
+        // Assert
+        assertThat(key).isEqualTo(sha256Hex("PAYMENT|-42|150.5|null|7"));
+        assertThat(key).hasSize(KeyHasher.KEY_HEX_LENGTH);
+    }
+
+    @Test
+    @DisplayName("Non-ASCII text should be hashed as UTF-8")
+    void testUtf8Encoding() throws Exception {
+        // Arrange
+        String input = "João Conceição|São Paulo|🏥|" + "ã".repeat(600);
+
+        // Act
+        String key = KeyHasher.hashToHex(input);
+
+        // Assert
+        assertThat(key).isEqualTo(sha256Hex(input));
+    }
+
+    @Test
+    @DisplayName("Raw key should be the binary form of the hex key")
+    void testRawKey() {
+        // Act
+        byte[] raw = KeyHasher.start().append("A").append('|').append("B").toBytes();
+        String hex = KeyHasher.hashToHex("A|B");
+
+        // Assert
+        assertThat(raw).hasSize(KeyHasher.KEY_BYTES);
+        assertThat(HexFormat.of().formatHex(raw)).isEqualTo(hex);
+    }
+
+    @Test
+    @DisplayName("A finished key should not be finished again")
+    void testFinish_Once() {
+        // Arrange
+        KeyHasher hasher = KeyHasher.start().append("A");
+        hasher.toHex();
+
+        // Act & Assert
+        assertThatThrownBy(hasher::toHex).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("A key abandoned by an exception should not stop the next key from reusing the instance")
+    void testAbandonedKey_InstanceReused() throws Exception {
+        // Arrange
+        KeyHasher abandoned = KeyHasher.start().append("PAYMENT").append('|');
+        Object failing = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("boom");
+            }
+        };
+        assertThatThrownBy(() -> abandoned.append(failing)).isInstanceOf(IllegalStateException.class);
+
+        // Act
+        KeyHasher next = KeyHasher.start();
+        String key = next.append("A|B").toHex();
+
+        // Assert
+        assertThat(next).isSameAs(abandoned);
+        assertThat(KeyHasher.start()).isSameAs(abandoned);
+        assertThat(key).isEqualTo(sha256Hex("A|B"));
+    }
+
+    @Test
+    @DisplayName("A key derived while appending a value should not disturb the outer key")
+    void testNestedKey_FreshInstance() throws Exception {
+        // Arrange
+        Object keyed = new Object() {
+            @Override
+            public String toString() {
+                return "inner:" + KeyHasher.hashToHex("X");
+            }
+        };
+
+        // Act
+        String key = KeyHasher.start().append("outer|").append(keyed).append("|end").toHex();
+
+        // Assert
+        assertThat(key).isEqualTo(sha256Hex("outer|inner:" + sha256Hex("X") + "|end"));
+    }
+
+    private static String sha256Hex(String input) throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash);
+    }
+}
@@ -0,0 +1,16 @@
+-- H2 schema for coding_audit_entries (V9 migration without the append-only trigger).
+-- Used by tests that exercise the coding audit writer without a Spring context.
+
+CREATE TABLE coding_audit_entries (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    audit_id VARCHAR(36) NOT NULL,
+    process_instance_id VARCHAR(64),
+    activity_id VARCHAR(255),
+    seq INTEGER NOT NULL,
+    action VARCHAR(32) NOT NULL,
+    detail VARCHAR(1024),
+    recorded_at TIMESTAMP(3) NOT NULL
+);
+
+CREATE INDEX idx_coding_audit_entries_audit_id ON coding_audit_entries (audit_id);
+CREATE INDEX idx_coding_audit_entries_process ON coding_audit_entries (process_instance_id);
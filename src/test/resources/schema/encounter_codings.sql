@@ -0,0 +1,21 @@
+-- H2 schema for encounter_codings, matching the table Hibernate generates from EncounterCoding.
+-- Used by tests that exercise the JDBC coding paths without a Spring context.
+
+CREATE TABLE encounter_codings (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    encounter_id VARCHAR(64) NOT NULL,
+    patient_id VARCHAR(64),
+    principal_diagnosis VARCHAR(16),
+    secondary_diagnoses VARCHAR(1024),
+    procedures VARCHAR(1024),
+    drg_table_version BIGINT NOT NULL,
+    drg_code VARCHAR(8) NOT NULL,
+    drg_severity VARCHAR(8) NOT NULL,
+    relative_weight DOUBLE PRECISION NOT NULL,
+    expected_los INTEGER NOT NULL,
+    coded_at TIMESTAMP(6) NOT NULL,
+    regrouped_at TIMESTAMP(6),
+    CONSTRAINT uk_encounter_codings_encounter UNIQUE (encounter_id)
+);
+
+CREATE INDEX idx_encounter_codings_drg_version ON encounter_codings (drg_table_version);
@@ -0,0 +1,25 @@
+-- H2 schema for idempotency_keys, matching the table Hibernate generates from IdempotencyKey.
+-- Used by tests that exercise the JDBC idempotency paths without a Spring context.
+
+CREATE TABLE idempotency_keys (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    operation_type VARCHAR(100) NOT NULL,
+    operation_key VARCHAR(255) NOT NULL,
+    process_instance_id VARCHAR(64),
+    execution_id VARCHAR(64),
+    result CLOB,
+    result_type VARCHAR(255),
+    result_data VARBINARY(1048576),
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL,
+    lease_owner VARCHAR(128),
+    lease_expires_at TIMESTAMP(6),
+    fencing_token BIGINT,
+    version BIGINT,
+    CONSTRAINT uk_operation_type_key UNIQUE (operation_type, operation_key)
+);
+
+CREATE INDEX idx_expires_at ON idempotency_keys (expires_at);
+CREATE INDEX idx_status ON idempotency_keys (status);
+CREATE INDEX idx_lease_expires_at ON idempotency_keys (status, lease_expires_at);